@@ -0,0 +1,184 @@
+package main.java;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Latence de bout en bout des enregistrements reçus : instant de réception moins le timestamp
+ * producteur (ms, StreamRunners) que les bolts de sortie écrivent en dernier champ
+ * ("timestamp" en JSON, dernier champ en CSV, 8 derniers octets en binaire).
+ *
+ * Les latences vont dans un Recorder HdrHistogram (écrit par le thread du client, lu par
+ * intervalles depuis un autre thread) ; chaque intervalle est cumulé et, si demandé, écrit
+ * dans un fichier .hlog pour comparer des exécutions (HistogramLogProcessor, valeurs en ms).
+ */
+public class LatencyRecorder implements RecordHandler, Closeable {
+
+    // Un timestamp plus petit n'est pas un temps en ms (enregistrement sans timestamp)
+    private static final long MIN_TIMESTAMP_MS = 1_000_000_000_000L;
+    private static final byte[] KEY = "\"timestamp\"".getBytes(StandardCharsets.US_ASCII);
+
+    private final boolean binary;
+    private final Recorder recorder = new Recorder(3);
+    private final Histogram total = new Histogram(3);
+    private final HistogramLogWriter log;
+    private final long baseTime = System.currentTimeMillis();
+    private Histogram interval;
+
+    private volatile long missing;
+    private volatile long skewed;
+
+    /**
+     * @param hlog fichier des histogrammes d'intervalle (null = pas de fichier)
+     */
+    public LatencyRecorder(StreamClient.Framing framing, File hlog) throws FileNotFoundException {
+        this.binary = framing == StreamClient.Framing.LENGTH_PREFIXED;
+        if (hlog != null) {
+            log = new HistogramLogWriter(hlog);
+            log.outputLogFormatVersion();
+            log.outputStartTime(baseTime);
+            log.outputLegend();
+        } else {
+            log = null;
+        }
+    }
+
+    @Override
+    public void onBatch(RecordBatch batch) {
+        long now = System.currentTimeMillis();
+        byte[] a = batch.array();
+        for (int i = 0; i < batch.size(); i++) {
+            long timestamp = binary
+                    ? binaryTimestamp(a, batch.offset(i), batch.length(i))
+                    : textTimestamp(a, batch.offset(i), batch.length(i));
+            if (timestamp < MIN_TIMESTAMP_MS) {
+                missing++;
+                continue;
+            }
+            long latency = now - timestamp;
+            if (latency < 0) {
+                // Horloges du producteur et de l'auditeur décalées
+                skewed++;
+                latency = 0;
+            }
+            recorder.recordValue(latency);
+        }
+    }
+
+    /**
+     * Histogramme des latences reçues depuis l'appel précédent (cumulé et écrit dans le .hlog).
+     * L'histogramme rendu est réutilisé à l'appel suivant.
+     */
+    public synchronized Histogram interval() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        if (log != null) {
+            // Valeurs en ms : colonne Interval_Max sans conversion
+            log.outputIntervalHistogram((interval.getStartTimeStamp() - baseTime) / 1000.0,
+                    (interval.getEndTimeStamp() - baseTime) / 1000.0, interval, 1.0);
+        }
+        return interval;
+    }
+
+    /**
+     * Latences cumulées des intervalles lus
+     */
+    public synchronized Histogram total() {
+        return total.copy();
+    }
+
+    /**
+     * Enregistrements sans timestamp
+     */
+    public long missing() {
+        return missing;
+    }
+
+    /**
+     * Enregistrements datés du futur (latence comptée 0)
+     */
+    public long skewed() {
+        return skewed;
+    }
+
+    /**
+     * Lit le dernier intervalle et ferme le .hlog
+     */
+    @Override
+    public synchronized void close() {
+        interval();
+        if (log != null) {
+            log.close();
+        }
+    }
+
+    /**
+     * Ligne de percentiles d'un histogramme en ms
+     */
+    public static String percentiles(Histogram h) {
+        return String.format("p50 %d ms  p99 %d ms  p99.9 %d ms  max %d ms",
+                h.getValueAtPercentile(50), h.getValueAtPercentile(99), h.getValueAtPercentile(99.9), h.getMaxValue());
+    }
+
+    /**
+     * 8 derniers octets, gros-boutiste ; -1 si l'enregistrement est trop court
+     */
+    static long binaryTimestamp(byte[] a, int offset, int length) {
+        if (length < 8) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = offset + length - 8; i < offset + length; i++) {
+            value = value << 8 | (a[i] & 0xff);
+        }
+        return value;
+    }
+
+    /**
+     * Valeur du dernier champ "timestamp" d'une ligne JSON, ou dernier champ d'une ligne CSV ; -1 sinon
+     */
+    static long textTimestamp(byte[] a, int offset, int length) {
+        int end = offset + length;
+        int start;
+        if (length > 0 && a[offset] == '{') {
+            int key = lastIndexOf(a, offset, end, KEY);
+            if (key < 0) {
+                return -1;
+            }
+            start = key + KEY.length;
+            while (start < end && (a[start] == ' ' || a[start] == ':')) {
+                start++;
+            }
+        } else {
+            start = end;
+            while (start > offset && a[start - 1] != ',') {
+                start--;
+            }
+        }
+        long value = 0;
+        int digits = 0;
+        for (int i = start; i < end && a[i] >= '0' && a[i] <= '9' && digits < 19; i++, digits++) {
+            value = value * 10 + (a[i] - '0');
+        }
+        return digits > 0 ? value : -1;
+    }
+
+    private static int lastIndexOf(byte[] a, int from, int to, byte[] key) {
+        outer:
+        for (int i = to - key.length; i >= from; i--) {
+            for (int j = 0; j < key.length; j++) {
+                if (a[i + j] != key[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,65 @@
+package main.java;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Lot d'enregistrements reçus sur un port, découpés dans le tampon de lecture de la connexion.
+ * Les octets de l'enregistrement i sont array()[offset(i) .. offset(i) + length(i)) (sans fin de
+ * ligne ni préfixe de longueur). Le lot et son tampon sont réutilisés : ne pas les garder après
+ * le retour du callback.
+ */
+public final class RecordBatch {
+
+    private int port;
+    private byte[] array;
+    private int[] offsets = new int[1024];
+    private int[] lengths = new int[1024];
+    private int size;
+
+    /**
+     * Port d'où viennent les enregistrements
+     */
+    public int port() {
+        return port;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte[] array() {
+        return array;
+    }
+
+    public int offset(int i) {
+        return offsets[i];
+    }
+
+    public int length(int i) {
+        return lengths[i];
+    }
+
+    /**
+     * Enregistrement i décodé en texte (alloue : pour l'affichage, pas pour le comptage)
+     */
+    public String text(int i) {
+        return new String(array, offsets[i], lengths[i], StandardCharsets.UTF_8);
+    }
+
+    void reset(int port, byte[] array) {
+        this.port = port;
+        this.array = array;
+        this.size = 0;
+    }
+
+    void add(int offset, int length) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, 2 * size);
+            lengths = Arrays.copyOf(lengths, 2 * size);
+        }
+        offsets[size] = offset;
+        lengths[size] = length;
+        size++;
+    }
+}
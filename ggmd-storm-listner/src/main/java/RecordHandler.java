@@ -0,0 +1,15 @@
+package main.java;
+
+/**
+ * Reçoit les enregistrements d'un StreamClient par lots, dans le thread du client
+ */
+public interface RecordHandler {
+
+    void onBatch(RecordBatch batch);
+
+    /**
+     * Fin de la connexion au port (fermée par le serveur ou en erreur)
+     */
+    default void onClose(int port) {
+    }
+}
@@ -0,0 +1,224 @@
+package main.java;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Client des ports de sortie de la topologie : un seul thread et un sélecteur NIO pour tous
+ * les ports. Chaque connexion lit dans un tampon réutilisé, y découpe les enregistrements
+ * sans copie ni String (lignes, ou préfixe de longueur pour le format binaire) et les passe
+ * au RecordHandler par lots, un lot par lecture. Un enregistrement coupé par la lecture est
+ * ramené au début du tampon et complété à la lecture suivante.
+ *
+ * Une ligne d'abonnement (voir Subscription côté topologie) peut être envoyée à la connexion.
+ */
+public class StreamClient implements Closeable {
+
+    /**
+     * Découpage des enregistrements : lignes (JSON, CSV) ou [int longueur][octets] (binaire)
+     */
+    public enum Framing { LINES, LENGTH_PREFIXED }
+
+    public static final int DEFAULT_BUFFER_BYTES = 256 * 1024;
+    // Taille maximale d'un enregistrement (le tampon d'une connexion grandit jusque-là)
+    static final int MAX_RECORD_BYTES = 16 << 20;
+
+    private final String host;
+    private final int[] ports;
+    private final Framing framing;
+    private final String subscription;
+    private final RecordHandler handler;
+    private final RecordBatch batch = new RecordBatch();
+
+    private Selector selector;
+    private volatile boolean running;
+    private int open;
+    private volatile long records;
+    private volatile long bytes;
+
+    public StreamClient(String host, int[] ports, RecordHandler handler) {
+        this(host, ports, Framing.LINES, null, handler);
+    }
+
+    /**
+     * @param subscription ligne d'abonnement envoyée à chaque port (null = tous les enregistrements)
+     */
+    public StreamClient(String host, int[] ports, Framing framing, String subscription, RecordHandler handler) {
+        this.host = host;
+        this.ports = ports.clone();
+        this.framing = framing;
+        this.subscription = subscription;
+        this.handler = handler;
+    }
+
+    /**
+     * Se connecte à tous les ports (et envoie l'abonnement)
+     */
+    public void connect() throws IOException {
+        selector = Selector.open();
+        for (int port : ports) {
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+            if (subscription != null) {
+                ByteBuffer line = ByteBuffer.wrap((subscription + "\n").getBytes(StandardCharsets.US_ASCII));
+                while (line.hasRemaining()) {
+                    channel.write(line);
+                }
+            }
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new Connection(port));
+            open++;
+        }
+        running = true;
+    }
+
+    /**
+     * Lit les ports jusqu'à leur fermeture ou jusqu'à close(), dans le thread appelant
+     */
+    public void run() throws IOException {
+        try {
+            while (running && open > 0) {
+                selector.select(1000);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isReadable()) {
+                        read(key);
+                    }
+                }
+            }
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        }
+    }
+
+    /**
+     * Arrête run() (appelable depuis un autre thread)
+     */
+    @Override
+    public void close() {
+        running = false;
+        if (selector != null) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Enregistrements reçus (lu par le thread du client ou après run())
+     */
+    public long records() {
+        return records;
+    }
+
+    /**
+     * Octets reçus
+     */
+    public long bytes() {
+        return bytes;
+    }
+
+    private void read(SelectionKey key) {
+        Connection connection = (Connection) key.attachment();
+        int n;
+        try {
+            n = ((SocketChannel) key.channel()).read(connection.buffer);
+        } catch (IOException e) {
+            n = -1;
+        }
+        if (n < 0) {
+            closeConnection(key);
+            return;
+        }
+        bytes += n;
+        if (!frame(connection)) {
+            System.err.println("Record longer than " + MAX_RECORD_BYTES + " bytes on port " + connection.port);
+            closeConnection(key);
+        }
+    }
+
+    /**
+     * Découpe et livre les enregistrements complets, puis garde la fin incomplète ; faux si
+     * un enregistrement dépasse MAX_RECORD_BYTES
+     */
+    boolean frame(Connection connection) {
+        ByteBuffer buffer = connection.buffer;
+        byte[] a = buffer.array();
+        int end = buffer.position();
+        int start = 0;
+        batch.reset(connection.port, a);
+        if (framing == Framing.LINES) {
+            for (int i = connection.scanned; i < end; i++) {
+                if (a[i] == '\n') {
+                    batch.add(start, i - start);
+                    start = i + 1;
+                }
+            }
+        } else {
+            while (end - start >= 4) {
+                int length = (a[start] & 0xff) << 24 | (a[start + 1] & 0xff) << 16 | (a[start + 2] & 0xff) << 8 | (a[start + 3] & 0xff);
+                if (length < 0 || length > MAX_RECORD_BYTES) {
+                    return false;
+                }
+                if (end - start - 4 < length) {
+                    break;
+                }
+                batch.add(start + 4, length);
+                start += 4 + length;
+            }
+        }
+        if (batch.size() > 0) {
+            records += batch.size();
+            handler.onBatch(batch);
+        }
+
+        // Garder l'enregistrement incomplet au début du tampon, en l'agrandissant s'il est plein
+        int remaining = end - start;
+        if (start > 0) {
+            System.arraycopy(a, start, a, 0, remaining);
+            buffer.position(remaining);
+        } else if (!buffer.hasRemaining()) {
+            if (buffer.capacity() >= MAX_RECORD_BYTES) {
+                return false;
+            }
+            ByteBuffer larger = ByteBuffer.allocate(2 * buffer.capacity());
+            buffer.flip();
+            larger.put(buffer);
+            connection.buffer = larger;
+        }
+        connection.scanned = remaining;
+        return true;
+    }
+
+    private void closeConnection(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+        }
+        open--;
+        handler.onClose(((Connection) key.attachment()).port);
+    }
+
+    /**
+     * Tampon de lecture d'un port ; scanned octets du début sont déjà sans fin de ligne
+     */
+    static final class Connection {
+        final int port;
+        ByteBuffer buffer = ByteBuffer.allocate(DEFAULT_BUFFER_BYTES);
+        int scanned;
+
+        Connection(int port) {
+            this.port = port;
+        }
+    }
+}
@@ -1,41 +1,152 @@
 package main.java;
 
-import java.net.*;
-import java.io.*;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.HdrHistogram.Histogram;
 
 
 /**
  * Gestion de l'affichage en sortie des exitBold de storm
- * */
+ *
+ * Usage : StreamListner [--host h] [--count] [--latency] [--hlog f] [--binary] [--subscribe "subscribe ..."] port [port...]
+ *   --host      machine de la topologie (127.0.0.1 par défaut)
+ *   --count     compte les enregistrements et affiche le débit chaque seconde, sans les afficher
+ *   --latency   comme --count, avec les percentiles de latence producteur-auditeur de la seconde
+ *   --hlog      avec --latency, écrit les histogrammes de chaque seconde dans le fichier f
+ *   --binary    enregistrements au format binaire (préfixe de longueur) au lieu de lignes
+ *   --subscribe ligne d'abonnement envoyée à chaque port
+ */
 public class StreamListner {
 
+    private static final byte[] PREFIX = "Received: ".getBytes(StandardCharsets.US_ASCII);
+    private static final String USAGE = "Usage: StreamListner [--host h] [--count] [--latency] [--hlog file] [--binary] [--subscribe \"subscribe ...\"] port [port...]";
+
     public static void main(String[] args){
     String host = "127.0.0.1";
-    int port = Integer.parseInt( args[0] );
-
-        try (Socket socket = new Socket(host, port)) {
-            System.out.println("Connected to server.");
-
-            BufferedReader in = new BufferedReader(
-                    new InputStreamReader(socket.getInputStream()));
+    boolean count = false;
+    boolean latency = false;
+    File hlog = null;
+    StreamClient.Framing framing = StreamClient.Framing.LINES;
+    String subscription = null;
+    List<Integer> portList = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+        switch (args[i]) {
+            case "--host":
+                host = args[++i];
+                break;
+            case "--count":
+                count = true;
+                break;
+            case "--latency":
+                latency = true;
+                break;
+            case "--hlog":
+                latency = true;
+                hlog = new File(args[++i]);
+                break;
+            case "--binary":
+                framing = StreamClient.Framing.LENGTH_PREFIXED;
+                break;
+            case "--subscribe":
+                subscription = args[++i];
+                break;
+            default:
+                portList.add(Integer.parseInt(args[i]));
+        }
+    }
+    if (portList.isEmpty()) {
+        System.err.println(USAGE);
+        return;
+    }
+    int[] ports = portList.stream().mapToInt(Integer::intValue).toArray();
 
-            // Thread qui écoute le flux du serveur
-            new Thread(() -> {
-                try {
-                    String data;
-                    while ((data = in.readLine()) != null) {
-                        System.out.println("Received: " + data);
+        // Affichage par un tampon de sortie vidé à chaque lot, pas à chaque ligne
+        OutputStream out = new BufferedOutputStream(System.out, 1 << 16);
+        boolean binary = framing == StreamClient.Framing.LENGTH_PREFIXED;
+        LatencyRecorder latencies = null;
+        if (latency) {
+            try {
+                latencies = new LatencyRecorder(framing, hlog);
+            } catch (IOException e) {
+                System.err.println("Cannot write " + hlog + ": " + e.getMessage());
+                return;
+            }
+        }
+        RecordHandler handler = latency ? latencies : count ? batch -> { } : batch -> {
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    out.write(PREFIX);
+                    if (binary) {
+                        out.write(("<" + batch.length(i) + " bytes>").getBytes(StandardCharsets.US_ASCII));
+                    } else {
+                        out.write(batch.array(), batch.offset(i), batch.length(i));
                     }
-                } catch (IOException ignored) {}
-            }).start();
-
-            // Le programme reste ouvert tant que la connexion est active
-            Thread.sleep(Long.MAX_VALUE);
+                    out.write('\n');
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        };
 
+        try (StreamClient client = new StreamClient(host, ports, framing, subscription, handler)) {
+            client.connect();
+            System.out.println("Connected to server.");
+            if (count || latency) {
+                // Débit affiché par un thread à part : le client ne fait que compter
+                LatencyRecorder reported = latencies;
+                Thread reporter = new Thread(() -> report(client, reported), "StreamListner-report");
+                reporter.setDaemon(true);
+                reporter.start();
+            }
+            client.run();
         } catch (Exception e) {
             e.printStackTrace();
         }finally{
+            if (latencies != null) {
+                latencies.close();
+                Histogram total = latencies.total();
+                System.out.println("Latency: " + LatencyRecorder.percentiles(total) + "  ("
+                        + total.getTotalCount() + " records, " + latencies.missing() + " without timestamp, "
+                        + latencies.skewed() + " from the future)");
+            }
             System.out.println("Client exit!! ");
         }
     }
+
+    /**
+     * Affiche chaque seconde le débit reçu (compteurs lus sans synchronisation : valeurs approchées)
+     * et, si latencies n'est pas null, les percentiles de latence de la seconde
+     */
+    private static void report(StreamClient client, LatencyRecorder latencies) {
+        long lastRecords = 0;
+        long lastBytes = 0;
+        long last = System.nanoTime();
+        while (true) {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            long records = client.records();
+            long bytes = client.bytes();
+            double seconds = (now - last) / 1e9;
+            String line = String.format("%,d records  %,.0f records/s  %.1f MB/s", records,
+                    (records - lastRecords) / seconds, (bytes - lastBytes) / seconds / (1 << 20));
+            if (latencies != null) {
+                line += "  " + LatencyRecorder.percentiles(latencies.interval());
+            }
+            System.out.println(line);
+            lastRecords = records;
+            lastBytes = bytes;
+            last = now;
+        }
+    }
 }
@@ -0,0 +1,103 @@
+package main.java;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Tests de la lecture du timestamp producteur (JSON, CSV, binaire) et des enregistrements
+ * sans timestamp ou datés du futur
+ */
+public class LatencyRecorderTest extends TestCase {
+
+    private static final long TIMESTAMP = 1_700_000_123_456L;
+
+    public void testJsonTimestampIsLastTimestampField() {
+        assertEquals(TIMESTAMP, text("{\"id\":3,\"top\":12,\"timestamp\":" + TIMESTAMP + "}"));
+        assertEquals(TIMESTAMP, text("{\"id\": 3, \"timestamp\" : " + TIMESTAMP + "}"));
+        // Un champ "timestamp" imbriqué avant celui de l'enregistrement est ignoré
+        assertEquals(TIMESTAMP, text("{\"last\":{\"timestamp\":42},\"timestamp\":" + TIMESTAMP + "}"));
+        assertEquals(-1, text("{\"id\":3,\"top\":12}"));
+        assertEquals(-1, text("{\"id\":3,\"timestamp\":null}"));
+    }
+
+    public void testCsvTimestampIsLastField() {
+        assertEquals(TIMESTAMP, text("3,12,1,false," + TIMESTAMP));
+        assertEquals(TIMESTAMP, text(String.valueOf(TIMESTAMP)));
+        assertEquals(-1, text("3,12,Leader,"));
+        assertEquals(-1, text(""));
+    }
+
+    public void testTimestampIsReadWithinRecordBounds() {
+        // Enregistrement au milieu du tampon de lecture, entre deux autres
+        byte[] a = ("{\"timestamp\":1}\n3,12," + TIMESTAMP + "\n99999").getBytes(StandardCharsets.US_ASCII);
+        assertEquals(TIMESTAMP, LatencyRecorder.textTimestamp(a, 16, 5 + String.valueOf(TIMESTAMP).length()));
+        assertEquals(1, LatencyRecorder.textTimestamp(a, 0, 15));
+    }
+
+    public void testBinaryTimestampIsLastEightBytes() {
+        byte[] record = ByteBuffer.allocate(2 + 20 + 8 + 2).put(new byte[2]).putInt(3).putInt(12)
+                .putLong(-1L).putInt(0).putLong(TIMESTAMP).put(new byte[2]).array();
+        assertEquals(TIMESTAMP, LatencyRecorder.binaryTimestamp(record, 2, 28));
+        assertEquals(-1, LatencyRecorder.binaryTimestamp(record, 2, 7));
+    }
+
+    public void testMissingAndSkewedTimestampsAreCounted() throws Exception {
+        long now = System.currentTimeMillis();
+        String[] lines = {
+                "{\"id\":1,\"timestamp\":" + (now - 50) + "}",
+                "{\"id\":2}",
+                "2,7,12",
+                "{\"id\":3,\"timestamp\":" + (now + 60_000) + "}",
+        };
+        LatencyRecorder recorder = new LatencyRecorder(StreamClient.Framing.LINES, null);
+        recorder.onBatch(batch(lines));
+
+        assertEquals(2, recorder.missing());
+        assertEquals(1, recorder.skewed());
+        Histogram interval = recorder.interval();
+        assertEquals(2, interval.getTotalCount());
+        // Latence du futur comptée 0, l'autre d'au moins 50 ms
+        assertEquals(0, interval.getMinValue());
+        assertTrue(interval.getMaxValue() >= 50);
+        recorder.close();
+        assertEquals(2, recorder.total().getTotalCount());
+    }
+
+    public void testBinaryRecordsUseBinaryTimestamp() throws Exception {
+        long now = System.currentTimeMillis();
+        byte[] a = ByteBuffer.allocate(12 + 4).putInt(7).putLong(now - 20).putInt(5).array();
+        RecordBatch batch = new RecordBatch();
+        batch.reset(9001, a);
+        batch.add(0, 12);
+        batch.add(12, 4);
+
+        LatencyRecorder recorder = new LatencyRecorder(StreamClient.Framing.LENGTH_PREFIXED, null);
+        recorder.onBatch(batch);
+        assertEquals(1, recorder.missing());
+        assertEquals(0, recorder.skewed());
+        assertEquals(1, recorder.interval().getTotalCount());
+    }
+
+    private static long text(String record) {
+        byte[] a = record.getBytes(StandardCharsets.US_ASCII);
+        return LatencyRecorder.textTimestamp(a, 0, a.length);
+    }
+
+    /**
+     * Lot des lignes, découpées comme par StreamClient dans un même tampon
+     */
+    private static RecordBatch batch(String... lines) {
+        byte[] a = (String.join("\n", lines) + "\n").getBytes(StandardCharsets.US_ASCII);
+        RecordBatch batch = new RecordBatch();
+        batch.reset(9001, a);
+        int start = 0;
+        for (String line : lines) {
+            batch.add(start, line.length());
+            start += line.length() + 1;
+        }
+        return batch;
+    }
+}
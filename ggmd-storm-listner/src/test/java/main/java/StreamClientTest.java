@@ -0,0 +1,155 @@
+package main.java;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests du découpage des enregistrements d'une connexion : enregistrements coupés entre deux
+ * lectures, agrandissement du tampon, lignes et préfixes de longueur trop longs
+ */
+public class StreamClientTest extends TestCase {
+
+    private static final int PORT = 9001;
+
+    private final List<String> records = new ArrayList<>();
+    private int batches;
+
+    public void testLineSplitAcrossReadsIsCompleted() {
+        StreamClient client = client(StreamClient.Framing.LINES);
+        StreamClient.Connection connection = new StreamClient.Connection(PORT);
+
+        assertTrue(feed(client, connection, "a1\nb2"));
+        assertEquals(Arrays.asList("a1"), records);
+        // Fin incomplète ramenée au début du tampon, déjà parcourue
+        assertEquals(2, connection.buffer.position());
+        assertEquals(2, connection.scanned);
+
+        assertTrue(feed(client, connection, "2\nc3\n"));
+        assertEquals(Arrays.asList("a1", "b22", "c3"), records);
+        assertEquals(0, connection.buffer.position());
+        assertEquals(0, connection.scanned);
+        assertEquals(3, client.records());
+    }
+
+    public void testIncompleteLineIsNotDeliveredOrRescanned() {
+        StreamClient client = client(StreamClient.Framing.LINES);
+        StreamClient.Connection connection = new StreamClient.Connection(PORT);
+
+        assertTrue(feed(client, connection, "abc"));
+        assertEquals(3, connection.scanned);
+        assertTrue(feed(client, connection, "de"));
+        assertEquals(5, connection.scanned);
+        assertEquals(0, batches);
+
+        assertTrue(feed(client, connection, "\n"));
+        assertEquals(Arrays.asList("abcde"), records);
+        assertEquals(1, batches);
+        assertEquals(0, connection.scanned);
+    }
+
+    public void testBufferGrowsForLineLongerThanBuffer() {
+        StreamClient client = client(StreamClient.Framing.LINES);
+        StreamClient.Connection connection = new StreamClient.Connection(PORT);
+        String head = repeat('x', StreamClient.DEFAULT_BUFFER_BYTES);
+
+        // Tampon plein sans fin de ligne : il double, l'enregistrement reste au début
+        assertTrue(feed(client, connection, head));
+        assertEquals(2 * StreamClient.DEFAULT_BUFFER_BYTES, connection.buffer.capacity());
+        assertEquals(StreamClient.DEFAULT_BUFFER_BYTES, connection.buffer.position());
+        assertEquals(StreamClient.DEFAULT_BUFFER_BYTES, connection.scanned);
+        assertEquals(0, batches);
+
+        assertTrue(feed(client, connection, "yz\nnext"));
+        assertEquals(1, records.size());
+        assertEquals(head + "yz", records.get(0));
+        assertEquals(4, connection.buffer.position());
+        assertEquals(4, connection.scanned);
+    }
+
+    public void testLengthPrefixedRecordsSplitAcrossReads() {
+        StreamClient client = client(StreamClient.Framing.LENGTH_PREFIXED);
+        StreamClient.Connection connection = new StreamClient.Connection(PORT);
+        byte[] first = prefixed("first");
+        byte[] empty = prefixed("");
+        byte[] second = prefixed("second\nline");
+
+        // Préfixe de longueur lui-même coupé en deux
+        assertTrue(feed(client, connection, first, Arrays.copyOf(empty, 2)));
+        assertEquals(Arrays.asList("first"), records);
+        assertEquals(2, connection.buffer.position());
+
+        assertTrue(feed(client, connection, Arrays.copyOfRange(empty, 2, 4), Arrays.copyOf(second, 7)));
+        assertEquals(Arrays.asList("first", ""), records);
+        assertTrue(feed(client, connection, Arrays.copyOfRange(second, 7, second.length)));
+        assertEquals(Arrays.asList("first", "", "second\nline"), records);
+        assertEquals(0, connection.buffer.position());
+    }
+
+    public void testOversizeLengthPrefixIsRejected() {
+        StreamClient client = client(StreamClient.Framing.LENGTH_PREFIXED);
+        StreamClient.Connection connection = new StreamClient.Connection(PORT);
+        assertTrue(feed(client, connection, prefixed("ok")));
+
+        assertFalse(feed(client, connection, ByteBuffer.allocate(4).putInt(StreamClient.MAX_RECORD_BYTES + 1).array()));
+        assertFalse(feed(client, new StreamClient.Connection(PORT), ByteBuffer.allocate(4).putInt(-1).array()));
+        assertEquals(Arrays.asList("ok"), records);
+    }
+
+    public void testOversizeLineIsRejected() {
+        StreamClient client = client(StreamClient.Framing.LINES);
+        StreamClient.Connection connection = new StreamClient.Connection(PORT);
+        // Lectures qui remplissent le tampon sans fin de ligne, jusqu'à la taille maximale
+        int reads = 0;
+        while (true) {
+            ByteBuffer buffer = connection.buffer;
+            Arrays.fill(buffer.array(), buffer.position(), buffer.capacity(), (byte) 'x');
+            buffer.position(buffer.capacity());
+            if (!client.frame(connection)) {
+                break;
+            }
+            assertTrue(++reads < 20);
+        }
+        assertEquals(StreamClient.MAX_RECORD_BYTES, connection.buffer.capacity());
+        assertEquals(0, batches);
+    }
+
+    private StreamClient client(StreamClient.Framing framing) {
+        return new StreamClient("localhost", new int[] {PORT}, framing, null, batch -> {
+            assertEquals(PORT, batch.port());
+            batches++;
+            for (int i = 0; i < batch.size(); i++) {
+                records.add(batch.text(i));
+            }
+        });
+    }
+
+    /**
+     * Une lecture : les octets arrivent à la suite du tampon de la connexion, puis sont découpés
+     */
+    private static boolean feed(StreamClient client, StreamClient.Connection connection, byte[]... chunks) {
+        for (byte[] chunk : chunks) {
+            connection.buffer.put(chunk);
+        }
+        return client.frame(connection);
+    }
+
+    private static boolean feed(StreamClient client, StreamClient.Connection connection, String text) {
+        return feed(client, connection, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] prefixed(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(4 + bytes.length).putInt(bytes.length).put(bytes).array();
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -1,3 +1,3 @@
 #!/bin/bash
 
-java -jar ./target/StreamListner-0.1-jar-with-dependencies.jar $1
\ No newline at end of file
+java -jar ./target/StreamListner-0.1-jar-with-dependencies.jar "$@"
\ No newline at end of file
@@ -0,0 +1,73 @@
+package stormTP.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Tops déjà appliqués à l'état de chaque tortue, pour ignorer une frame rejouée par le spout.
+ *
+ * Deux colonnes du RunnerStore : le plus grand top appliqué et un masque des SPAN tops qui
+ * le précèdent (bit k = top appliqué - k). Les frames pouvant arriver dans le désordre
+ * (shuffleGrouping), un top en retard mais jamais vu est accepté ; un top plus ancien que
+ * le masque est traité comme un rejeu. 12 octets par tortue, sauvegardés avec son état.
+ */
+public class AppliedTops {
+
+    public static final int SPAN = 64;
+
+    private final RunnerStore.IntColumn lastTops;
+    private final RunnerStore.LongColumn masks;
+
+    public AppliedTops(RunnerStore runners) {
+        this.lastTops = runners.intColumn();
+        this.masks = runners.longColumn();
+    }
+
+    /**
+     * Marque le top comme appliqué à la tortue ; retourne faux s'il l'était déjà (rejeu)
+     * ou s'il précède de SPAN tops ou plus le plus grand top appliqué
+     */
+    public boolean apply(int slot, int top) {
+        long mask = masks.get(slot);
+        int lastTop = lastTops.get(slot);
+        if (mask == 0) {
+            // Aucun top pour cette tortue (case neuve ou remise à zéro)
+            lastTops.set(slot, top);
+            masks.set(slot, 1L);
+            return true;
+        }
+        long shift = (long) top - lastTop;
+        if (shift > 0) {
+            masks.set(slot, shift >= SPAN ? 1L : (mask << shift) | 1L);
+            lastTops.set(slot, top);
+            return true;
+        }
+        if (-shift >= SPAN) {
+            return false;
+        }
+        long bit = 1L << -shift;
+        if ((mask & bit) != 0) {
+            return false;
+        }
+        masks.set(slot, mask | bit);
+        return true;
+    }
+
+    /**
+     * Plus grand top appliqué à la tortue
+     */
+    public int lastTop(int slot) {
+        return lastTops.get(slot);
+    }
+
+    public void writeTo(int slot, DataOutput out) throws IOException {
+        out.writeInt(lastTops.get(slot));
+        out.writeLong(masks.get(slot));
+    }
+
+    public void readFrom(int slot, DataInput in) throws IOException {
+        lastTops.set(slot, in.readInt());
+        masks.set(slot, in.readLong());
+    }
+}
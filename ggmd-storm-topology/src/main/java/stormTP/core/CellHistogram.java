@@ -0,0 +1,155 @@
+package stormTP.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Histogramme compact du nombre de cellules parcourues pour un top :
+ * valeurs distinctes triées par ordre décroissant et nombre de tortues par valeur.
+ *
+ * Sert au classement distribué : chaque partition construit son histogramme local,
+ * les histogrammes sont fusionnés en comptes cumulés globaux, puis chaque partition
+ * retrouve le rang de ses tortues par recherche dichotomique.
+ */
+public class CellHistogram {
+
+    private final int size;
+    private final int[] values;
+    private final int[] counts;
+    // Nombre de tortues strictement devant chaque valeur (rempli après fusion)
+    private final int[] greater;
+
+    private CellHistogram(int size, int[] values, int[] counts, int[] greater) {
+        this.size = size;
+        this.values = values;
+        this.counts = counts;
+        this.greater = greater;
+    }
+
+    /**
+     * Histogramme local des n premières valeurs de cells
+     */
+    public static CellHistogram of(int[] cells, int n) {
+        int[] sorted = Arrays.copyOf(cells, n);
+        Arrays.sort(sorted);
+
+        int[] values = new int[n];
+        int[] counts = new int[n];
+        int size = 0;
+        for (int i = n - 1; i >= 0; i--) {
+            if (size > 0 && values[size - 1] == sorted[i]) {
+                counts[size - 1]++;
+            } else {
+                values[size] = sorted[i];
+                counts[size] = 1;
+                size++;
+            }
+        }
+        return new CellHistogram(size, Arrays.copyOf(values, size), Arrays.copyOf(counts, size), null);
+    }
+
+    /**
+     * Reconstruit un histogramme reçu dans un tuple
+     */
+    public static CellHistogram fromArrays(int[] values, int[] counts, int[] greater) {
+        return new CellHistogram(values.length, values, counts, greater);
+    }
+
+    /**
+     * Fusionne les histogrammes des partitions et calcule les comptes cumulés globaux
+     */
+    public static CellHistogram merge(List<CellHistogram> parts) {
+        int capacity = 0;
+        for (CellHistogram part : parts) {
+            capacity += part.size;
+        }
+
+        int[] values = new int[capacity];
+        int[] counts = new int[capacity];
+        int[] greater = new int[capacity];
+        int[] heads = new int[parts.size()];
+        int size = 0;
+        int running = 0;
+
+        while (true) {
+            // Plus grande valeur parmi les têtes des partitions (peu de partitions : parcours linéaire)
+            int best = -1;
+            for (int p = 0; p < heads.length; p++) {
+                CellHistogram part = parts.get(p);
+                if (heads[p] < part.size && (best < 0 || part.values[heads[p]] > parts.get(best).values[heads[best]])) {
+                    best = p;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+
+            int value = parts.get(best).values[heads[best]];
+            int count = 0;
+            for (int p = 0; p < heads.length; p++) {
+                CellHistogram part = parts.get(p);
+                if (heads[p] < part.size && part.values[heads[p]] == value) {
+                    count += part.counts[heads[p]];
+                    heads[p]++;
+                }
+            }
+
+            values[size] = value;
+            counts[size] = count;
+            greater[size] = running;
+            running += count;
+            size++;
+        }
+
+        return new CellHistogram(size, Arrays.copyOf(values, size), Arrays.copyOf(counts, size),
+                Arrays.copyOf(greater, size));
+    }
+
+    /**
+     * Rang (1 + nombre de tortues strictement devant) d'une tortue ayant parcouru cells cellules
+     */
+    public int rankOf(int cells) {
+        return greater[indexOf(cells)] + 1;
+    }
+
+    /**
+     * Vrai si plusieurs tortues ont parcouru cells cellules
+     */
+    public boolean isTie(int cells) {
+        return counts[indexOf(cells)] > 1;
+    }
+
+    private int indexOf(int cells) {
+        // Recherche dichotomique dans un tableau décroissant
+        int lo = 0;
+        int hi = size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int v = values[mid];
+            if (v == cells) {
+                return mid;
+            } else if (v > cells) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        throw new IllegalArgumentException("Value " + cells + " not found in histogram");
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int[] values() {
+        return values;
+    }
+
+    public int[] counts() {
+        return counts;
+    }
+
+    public int[] greater() {
+        return greater;
+    }
+}
@@ -0,0 +1,318 @@
+package stormTP.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/**
+ * Calcul du classement de toutes les tortues d'une même frame.
+ *
+ * Le rang d'une tortue vaut 1 + le nombre de tortues ayant parcouru strictement plus
+ * de cellules (classement "1, 2, 2, 4"), et l'égalité est signalée dès que deux tortues
+ * ont le même nombre de cellules. L'ordre produit est celui d'un tri stable décroissant,
+ * identique à celui de Collections.sort dans GiveRankBolt.
+ *
+ * Le mode parallèle découpe la frame en blocs traités sur un ForkJoinPool : histogramme
+ * local par bloc (tri par comptage, les valeurs étant bornées par tour*maxcel), somme
+ * préfixe sur les histogrammes pour obtenir rangs et égalités, puis placement stable.
+ * Si l'étendue des valeurs dépasse le nombre de tortues, les indices sont triés par un
+ * tri par base LSD (octet par octet, mêmes trois étapes par bloc à chaque passe).
+ */
+public class FrameRanker {
+
+    /** En dessous de cette taille de frame, le tri séquentiel reste le plus rapide */
+    public static final int SEQUENTIAL_THRESHOLD = 1 << 13;
+
+    private final ForkJoinPool pool;
+    private final int chunks;
+
+    public FrameRanker(ForkJoinPool pool) {
+        this.pool = pool;
+        this.chunks = Math.max(1, pool.getParallelism());
+    }
+
+    /**
+     * Résultat réutilisable d'un classement (évite de réallouer à chaque frame)
+     */
+    public static class Ranking {
+        int size;
+        int[] order = new int[0];
+        int[] rank = new int[0];
+        boolean[] tie = new boolean[0];
+
+        void reset(int n) {
+            if (order.length < n) {
+                order = new int[n];
+                rank = new int[n];
+                tie = new boolean[n];
+            }
+            size = n;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /** Indice d'entrée de la tortue placée en position pos (0 = meilleure) */
+        public int order(int pos) {
+            return order[pos];
+        }
+
+        /** Rang de la tortue d'indice d'entrée idx */
+        public int rank(int idx) {
+            return rank[idx];
+        }
+
+        /** Vrai si la tortue d'indice d'entrée idx est ex-aequo */
+        public boolean isTie(int idx) {
+            return tie[idx];
+        }
+    }
+
+    /** Largeur en bits d'un chiffre du tri par base */
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+
+    /**
+     * Classe les n premières valeurs de cells en parallèle.
+     * Retombe sur le tri séquentiel pour les petites frames ; si l'étendue des valeurs
+     * dépasse le nombre de tortues (histogramme plus grand que la frame), tri par base.
+     */
+    public void rank(final int[] cells, final int n, Ranking out) {
+        if (n < SEQUENTIAL_THRESHOLD || chunks == 1) {
+            rankByComparison(cells, n, out);
+            return;
+        }
+
+        final int nbChunks = Math.min(chunks, n / (SEQUENTIAL_THRESHOLD / 2));
+        final int chunkSize = (n + nbChunks - 1) / nbChunks;
+
+        // Passe 1 : min/max par bloc
+        final int[] mins = new int[nbChunks];
+        final int[] maxs = new int[nbChunks];
+        forEachChunk(nbChunks, c -> {
+            int from = c * chunkSize;
+            int to = Math.min(n, from + chunkSize);
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            for (int i = from; i < to; i++) {
+                int v = cells[i];
+                if (v < min) min = v;
+                if (v > max) max = v;
+            }
+            mins[c] = min;
+            maxs[c] = max;
+        });
+
+        int min = Integer.MAX_VALUE;
+        int maxValue = Integer.MIN_VALUE;
+        for (int c = 0; c < nbChunks; c++) {
+            min = Math.min(min, mins[c]);
+            maxValue = Math.max(maxValue, maxs[c]);
+        }
+        final int max = maxValue;
+        long range = (long) max - min + 1;
+        if (range > n) {
+            rankByRadix(cells, n, max, range, nbChunks, chunkSize, out);
+            return;
+        }
+        final int buckets = (int) range;
+
+        // Passe 2 : histogramme local par bloc, le bucket 0 correspond à la meilleure valeur
+        final int[][] hist = new int[nbChunks][];
+        forEachChunk(nbChunks, c -> {
+            int[] h = new int[buckets];
+            int from = c * chunkSize;
+            int to = Math.min(n, from + chunkSize);
+            for (int i = from; i < to; i++) {
+                h[max - cells[i]]++;
+            }
+            hist[c] = h;
+        });
+
+        // Passe 3 : somme préfixe, début de chaque bucket dans l'ordre final et décalage par bloc
+        final int[] bucketStart = new int[buckets];
+        final int[] bucketCount = new int[buckets];
+        int running = 0;
+        for (int b = 0; b < buckets; b++) {
+            bucketStart[b] = running;
+            for (int c = 0; c < nbChunks; c++) {
+                int count = hist[c][b];
+                hist[c][b] = running;
+                running += count;
+            }
+            bucketCount[b] = running - bucketStart[b];
+        }
+
+        // Passe 4 : placement stable et affectation des rangs
+        out.reset(n);
+        final int[] order = out.order;
+        final int[] rank = out.rank;
+        final boolean[] tie = out.tie;
+        forEachChunk(nbChunks, c -> {
+            int[] offsets = hist[c];
+            int from = c * chunkSize;
+            int to = Math.min(n, from + chunkSize);
+            for (int i = from; i < to; i++) {
+                int b = max - cells[i];
+                order[offsets[b]++] = i;
+                rank[i] = bucketStart[b] + 1;
+                tie[i] = bucketCount[b] > 1;
+            }
+        });
+    }
+
+    /**
+     * Tri par base LSD des clés max - cells[i] (0 = meilleure valeur, entier non signé sur
+     * 32 bits) : à chaque passe, histogramme des chiffres par bloc, somme préfixe puis
+     * placement stable, les clés voyageant avec leurs indices. Rangs et égalités en un
+     * passage linéaire sur l'ordre obtenu.
+     */
+    private void rankByRadix(final int[] cells, final int n, final int max, long range,
+                             final int nbChunks, final int chunkSize, Ranking out) {
+        out.reset(n);
+        int[] srcIdx = out.order;
+        int[] dstIdx = new int[n];
+        int[] srcKey = new int[n];
+        int[] dstKey = new int[n];
+        final int[] initIdx = srcIdx;
+        final int[] initKey = srcKey;
+        forEachChunk(nbChunks, c -> {
+            int from = c * chunkSize;
+            int to = Math.min(n, from + chunkSize);
+            for (int i = from; i < to; i++) {
+                initIdx[i] = i;
+                initKey[i] = max - cells[i];
+            }
+        });
+
+        int bits = 64 - Long.numberOfLeadingZeros(range - 1);
+        final int[][] hist = new int[nbChunks][RADIX];
+        for (int shift = 0; shift < bits; shift += RADIX_BITS) {
+            final int digitShift = shift;
+            final int[] fromIdx = srcIdx;
+            final int[] fromKey = srcKey;
+            final int[] toIdx = dstIdx;
+            final int[] toKey = dstKey;
+
+            forEachChunk(nbChunks, c -> {
+                int[] h = hist[c];
+                Arrays.fill(h, 0);
+                int from = c * chunkSize;
+                int to = Math.min(n, from + chunkSize);
+                for (int i = from; i < to; i++) {
+                    h[(fromKey[i] >>> digitShift) & (RADIX - 1)]++;
+                }
+            });
+
+            int running = 0;
+            for (int d = 0; d < RADIX; d++) {
+                for (int c = 0; c < nbChunks; c++) {
+                    int count = hist[c][d];
+                    hist[c][d] = running;
+                    running += count;
+                }
+            }
+
+            forEachChunk(nbChunks, c -> {
+                int[] offsets = hist[c];
+                int from = c * chunkSize;
+                int to = Math.min(n, from + chunkSize);
+                for (int i = from; i < to; i++) {
+                    int key = fromKey[i];
+                    int pos = offsets[(key >>> digitShift) & (RADIX - 1)]++;
+                    toIdx[pos] = fromIdx[i];
+                    toKey[pos] = key;
+                }
+            });
+
+            srcIdx = toIdx;
+            srcKey = toKey;
+            dstIdx = fromIdx;
+            dstKey = fromKey;
+        }
+        if (srcIdx != out.order) {
+            System.arraycopy(srcIdx, 0, out.order, 0, n);
+        }
+
+        int groupStart = 0;
+        for (int pos = 1; pos <= n; pos++) {
+            if (pos == n || srcKey[pos] != srcKey[groupStart]) {
+                boolean isTie = pos - groupStart > 1;
+                for (int p = groupStart; p < pos; p++) {
+                    int idx = out.order[p];
+                    out.rank[idx] = groupStart + 1;
+                    out.tie[idx] = isTie;
+                }
+                groupStart = pos;
+            }
+        }
+    }
+
+    /**
+     * Classement de référence : Collections.sort décroissant puis un seul passage linéaire
+     */
+    public static void rankByComparison(final int[] cells, int n, Ranking out) {
+        List<Integer> indices = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            indices.add(i);
+        }
+        Collections.sort(indices, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i1, Integer i2) {
+                return Integer.compare(cells[i2], cells[i1]);
+            }
+        });
+
+        out.reset(n);
+        int groupStart = 0;
+        for (int pos = 0; pos <= n; pos++) {
+            if (pos == n || (pos > 0 && cells[indices.get(pos)] != cells[indices.get(groupStart)])) {
+                // Fin d'un groupe de tortues ayant le même nombre de cellules
+                boolean isTie = pos - groupStart > 1;
+                for (int p = groupStart; p < pos; p++) {
+                    int idx = indices.get(p);
+                    out.order[p] = idx;
+                    out.rank[idx] = groupStart + 1;
+                    out.tie[idx] = isTie;
+                }
+                groupStart = pos;
+            }
+        }
+    }
+
+    private void forEachChunk(int nbChunks, IntConsumer body) {
+        pool.invoke(new ChunkTask(body, 0, nbChunks));
+    }
+
+    /**
+     * Découpe récursive de l'intervalle de blocs [lo, hi)
+     */
+    private static class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final IntConsumer body;
+        private final int lo;
+        private final int hi;
+
+        ChunkTask(IntConsumer body, int lo, int hi) {
+            this.body = body;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo == 1) {
+                body.accept(lo);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new ChunkTask(body, lo, mid), new ChunkTask(body, mid, hi));
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package stormTP.core;
+
+/**
+ * Lecture des tortues d'une frame JSON de StreamRunners ({"runners":[{"id":..,"top":..,
+ * "tour":..,"cellule":..,"total":..,"maxcel":..}, ...], ...}) en un seul passage, sans
+ * expression régulière ni allocation par tortue. Les autres clés sont ignorées.
+ *
+ * Curseur réutilisable d'une frame à l'autre :
+ *   if (reader.reset(json)) { while (reader.next()) { reader.id() ... } }
+ */
+public class FrameReader {
+
+    private static final String RUNNERS = "\"runners\"";
+    private static final String[] FIELDS = {"id", "top", "tour", "cellule", "total", "maxcel"};
+    private static final int ID = 0, TOP = 1, TOUR = 2, CELLULE = 3, TOTAL = 4, MAXCEL = 5;
+    private static final int ALL_FIELDS = (1 << FIELDS.length) - 1;
+
+    private final int[] values = new int[FIELDS.length];
+    private String json;
+    private int pos;
+    private int end;
+
+    /**
+     * Positionne le curseur avant la première tortue ; faux si la frame n'a pas de tortues
+     */
+    public boolean reset(String json) {
+        this.json = json;
+        this.end = json.length();
+        int key = json.indexOf(RUNNERS);
+        if (key < 0) {
+            return false;
+        }
+        pos = skipBlanks(key + RUNNERS.length());
+        if (pos >= end || json.charAt(pos) != ':') {
+            return false;
+        }
+        pos = skipBlanks(pos + 1);
+        if (pos >= end || json.charAt(pos) != '[') {
+            return false;
+        }
+        pos++;
+        return true;
+    }
+
+    /**
+     * Lit la tortue suivante ; faux à la fin du tableau
+     *
+     * @throws IllegalArgumentException si la tortue est mal formée ou incomplète
+     */
+    public boolean next() {
+        pos = skipBlanks(pos);
+        if (pos < end && json.charAt(pos) == ',') {
+            pos = skipBlanks(pos + 1);
+        }
+        if (pos >= end || json.charAt(pos) == ']') {
+            return false;
+        }
+        if (json.charAt(pos) != '{') {
+            throw new IllegalArgumentException("Runner object expected at " + pos + " in JSON: " + json);
+        }
+        int objectStart = pos;
+        pos++;
+        int seen = 0;
+        while (true) {
+            pos = skipBlanks(pos);
+            if (pos >= end) {
+                throw new IllegalArgumentException("Unterminated runner object in JSON: " + json);
+            }
+            char c = json.charAt(pos);
+            if (c == '}') {
+                pos++;
+                break;
+            }
+            if (c == ',') {
+                pos++;
+                continue;
+            }
+            if (c != '"') {
+                throw new IllegalArgumentException("Key expected at " + pos + " in JSON: " + json);
+            }
+            int keyStart = pos + 1;
+            int keyEnd = json.indexOf('"', keyStart);
+            if (keyEnd < 0) {
+                throw new IllegalArgumentException("Unterminated key in JSON: " + json);
+            }
+            pos = skipBlanks(keyEnd + 1);
+            if (pos >= end || json.charAt(pos) != ':') {
+                throw new IllegalArgumentException("':' expected at " + pos + " in JSON: " + json);
+            }
+            pos = skipBlanks(pos + 1);
+            int field = field(keyStart, keyEnd - keyStart);
+            if (field >= 0 && pos < end && isNumberStart(json.charAt(pos))) {
+                values[field] = parseInt();
+                seen |= 1 << field;
+            } else {
+                skipValue();
+            }
+        }
+        if (seen != ALL_FIELDS) {
+            for (int field = 0; field < FIELDS.length; field++) {
+                if ((seen & 1 << field) == 0) {
+                    throw new RuntimeException("Field " + FIELDS[field] + " not found in JSON: "
+                            + json.substring(objectStart, pos));
+                }
+            }
+        }
+        return true;
+    }
+
+    public int id() {
+        return values[ID];
+    }
+
+    public int top() {
+        return values[TOP];
+    }
+
+    public int tour() {
+        return values[TOUR];
+    }
+
+    public int cellule() {
+        return values[CELLULE];
+    }
+
+    public int total() {
+        return values[TOTAL];
+    }
+
+    public int maxcel() {
+        return values[MAXCEL];
+    }
+
+    /**
+     * Nombre de cellules parcourues depuis le départ
+     */
+    public int cells() {
+        return values[TOUR] * values[MAXCEL] + values[CELLULE];
+    }
+
+    private int field(int start, int length) {
+        for (int field = 0; field < FIELDS.length; field++) {
+            if (FIELDS[field].length() == length && json.regionMatches(start, FIELDS[field], 0, length)) {
+                return field;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isNumberStart(char c) {
+        return c == '-' || (c >= '0' && c <= '9');
+    }
+
+    private int parseInt() {
+        boolean negative = json.charAt(pos) == '-';
+        if (negative) {
+            pos++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (pos < end) {
+            char c = json.charAt(pos);
+            if (c < '0' || c > '9') {
+                break;
+            }
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Integer overflow at " + pos + " in JSON: " + json);
+            }
+            pos++;
+            digits++;
+        }
+        if (digits == 0) {
+            throw new IllegalArgumentException("Digit expected at " + pos + " in JSON: " + json);
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Saute une valeur ignorée : chaîne, ou tout jusqu'au ',' ou '}' suivant hors imbrication
+     */
+    private void skipValue() {
+        int depth = 0;
+        while (pos < end) {
+            char c = json.charAt(pos);
+            if (c == '"') {
+                pos++;
+                while (pos < end && json.charAt(pos) != '"') {
+                    if (json.charAt(pos) == '\\') {
+                        pos++;
+                    }
+                    pos++;
+                }
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) {
+                    return;
+                }
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private int skipBlanks(int i) {
+        while (i < end && Character.isWhitespace(json.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+}
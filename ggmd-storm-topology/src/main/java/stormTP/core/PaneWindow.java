@@ -0,0 +1,236 @@
+package stormTP.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Fenêtres de plusieurs tailles partagées en volets (panes) de paneSize positions.
+ *
+ * Chaque volet ne garde que son agrégat partiel : nombre d'éléments, premier et dernier
+ * élément (position, valeur). Une fenêtre de k volets se déduit en combinant les k derniers
+ * volets clos, si bien que la mémoire et le travail dépendent du nombre de volets
+ * (paneCount) et non de la taille ni du nombre de fenêtres demandées.
+ *
+ * Les volets sont rangés dans un tableau circulaire indexé par numéro de volet : le volet
+ * courant plus paneCount - 1 volets clos. Un élément en retard met à jour son volet
+ * tant que celui-ci est encore conservé.
+ */
+public class PaneWindow {
+
+    private final long paneSize;
+    private final int paneCount;
+
+    // Agrégat partiel de chaque case (numéro de volet stocké pour détecter les cases périmées)
+    private final long[] paneIds;
+    private final int[] counts;
+    private final long[] firstPositions;
+    private final int[] firstValues;
+    private final long[] lastPositions;
+    private final int[] lastValues;
+
+    // Plus grand numéro de volet reçu
+    private long currentPane = Long.MIN_VALUE;
+
+    public PaneWindow(long paneSize, int paneCount) {
+        if (paneSize <= 0 || paneCount <= 0) {
+            throw new IllegalArgumentException("Invalid panes: size=" + paneSize + " count=" + paneCount);
+        }
+        this.paneSize = paneSize;
+        this.paneCount = paneCount;
+        this.paneIds = new long[paneCount];
+        this.counts = new int[paneCount];
+        this.firstPositions = new long[paneCount];
+        this.firstValues = new int[paneCount];
+        this.lastPositions = new long[paneCount];
+        this.lastValues = new int[paneCount];
+    }
+
+    /**
+     * Taille de volet commune à plusieurs tailles de fenêtre (leur PGCD)
+     */
+    public static long paneSizeFor(long... lengths) {
+        long gcd = 0;
+        for (long length : lengths) {
+            if (length <= 0) {
+                throw new IllegalArgumentException("Invalid window length: " + length);
+            }
+            long a = gcd;
+            long b = length;
+            while (b != 0) {
+                long r = a % b;
+                a = b;
+                b = r;
+            }
+            gcd = a;
+        }
+        return gcd;
+    }
+
+    /**
+     * Ajoute un élément ; retourne vrai s'il ouvre un nouveau volet (le volet précédent est clos)
+     */
+    public boolean add(long position, int value) {
+        long pane = Math.floorDiv(position, paneSize);
+        int slot = (int) Math.floorMod(pane, (long) paneCount);
+
+        boolean opened = false;
+        if (currentPane == Long.MIN_VALUE || pane > currentPane) {
+            opened = currentPane != Long.MIN_VALUE;
+            currentPane = pane;
+        } else if (currentPane - pane >= paneCount) {
+            // Volet déjà sorti de la plus grande fenêtre
+            return false;
+        }
+
+        if (paneIds[slot] != pane || counts[slot] == 0) {
+            paneIds[slot] = pane;
+            counts[slot] = 1;
+            firstPositions[slot] = position;
+            firstValues[slot] = value;
+            lastPositions[slot] = position;
+            lastValues[slot] = value;
+            return opened;
+        }
+
+        counts[slot]++;
+        if (position < firstPositions[slot]) {
+            firstPositions[slot] = position;
+            firstValues[slot] = value;
+        }
+        if (position >= lastPositions[slot]) {
+            lastPositions[slot] = position;
+            lastValues[slot] = value;
+        }
+        return opened;
+    }
+
+    /**
+     * Combine les panes derniers volets clos (ceux qui précèdent le volet courant) dans out ;
+     * retourne faux si aucun n'a d'élément
+     */
+    public boolean combine(int panes, Span out) {
+        if (panes <= 0 || panes >= paneCount) {
+            throw new IllegalArgumentException("Invalid pane count: " + panes + " (max " + (paneCount - 1) + ")");
+        }
+        out.count = 0;
+        if (currentPane == Long.MIN_VALUE) {
+            return false;
+        }
+
+        for (long pane = currentPane - panes; pane < currentPane; pane++) {
+            int slot = (int) Math.floorMod(pane, (long) paneCount);
+            if (paneIds[slot] != pane || counts[slot] == 0) {
+                continue;
+            }
+            if (out.count == 0) {
+                out.firstPosition = firstPositions[slot];
+                out.firstValue = firstValues[slot];
+            }
+            out.lastPosition = lastPositions[slot];
+            out.lastValue = lastValues[slot];
+            out.count += counts[slot];
+        }
+        return out.count > 0;
+    }
+
+    /**
+     * Agrégat d'un seul volet (numéro pane) dans out ; retourne faux s'il est vide ou plus conservé
+     */
+    public boolean pane(long pane, Span out) {
+        int slot = (int) Math.floorMod(pane, (long) paneCount);
+        if (currentPane == Long.MIN_VALUE || paneIds[slot] != pane || counts[slot] == 0) {
+            out.count = 0;
+            return false;
+        }
+        out.count = counts[slot];
+        out.firstPosition = firstPositions[slot];
+        out.firstValue = firstValues[slot];
+        out.lastPosition = lastPositions[slot];
+        out.lastValue = lastValues[slot];
+        return true;
+    }
+
+    public long paneSize() {
+        return paneSize;
+    }
+
+    /**
+     * Écrit les volets conservés sous forme binaire compacte (checkpoints)
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(currentPane);
+        int live = 0;
+        for (int slot = 0; slot < paneCount; slot++) {
+            if (isLive(slot)) {
+                live++;
+            }
+        }
+        out.writeInt(live);
+        for (int slot = 0; slot < paneCount; slot++) {
+            if (isLive(slot)) {
+                out.writeLong(paneIds[slot]);
+                out.writeInt(counts[slot]);
+                out.writeLong(firstPositions[slot]);
+                out.writeInt(firstValues[slot]);
+                out.writeLong(lastPositions[slot]);
+                out.writeInt(lastValues[slot]);
+            }
+        }
+    }
+
+    /**
+     * Remplace le contenu par des volets écrits par writeTo (mêmes paneSize et paneCount)
+     */
+    public void readFrom(DataInput in) throws IOException {
+        currentPane = in.readLong();
+        Arrays.fill(counts, 0);
+        int live = in.readInt();
+        for (int i = 0; i < live; i++) {
+            long pane = in.readLong();
+            int slot = (int) Math.floorMod(pane, (long) paneCount);
+            paneIds[slot] = pane;
+            counts[slot] = in.readInt();
+            firstPositions[slot] = in.readLong();
+            firstValues[slot] = in.readInt();
+            lastPositions[slot] = in.readLong();
+            lastValues[slot] = in.readInt();
+        }
+    }
+
+    private boolean isLive(int slot) {
+        return counts[slot] > 0 && currentPane - paneIds[slot] < paneCount;
+    }
+
+    /**
+     * Agrégat d'une fenêtre reconstituée à partir des volets, réutilisable
+     */
+    public static class Span {
+        int count;
+        long firstPosition;
+        int firstValue;
+        long lastPosition;
+        int lastValue;
+
+        public int count() {
+            return count;
+        }
+
+        public long firstPosition() {
+            return firstPosition;
+        }
+
+        public int firstValue() {
+            return firstValue;
+        }
+
+        public long lastPosition() {
+            return lastPosition;
+        }
+
+        public int lastValue() {
+            return lastValue;
+        }
+    }
+}
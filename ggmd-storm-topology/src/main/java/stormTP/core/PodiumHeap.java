@@ -0,0 +1,205 @@
+package stormTP.core;
+
+import java.util.Arrays;
+
+/**
+ * Podium des K meilleures tortues d'une frame, sans classer toute la frame.
+ *
+ * Un tas-min borné à K entrées (tableaux primitifs) garde les meilleures valeurs de
+ * nbCellsParcourus : O(n log K) par frame. Les tortues à égalité avec la plus petite
+ * valeur du tas sont conservées à part, si bien que le podium contient exactement
+ * toutes les tortues de rang <= K (une égalité à la K-ième place peut donc l'agrandir).
+ */
+public class PodiumHeap {
+
+    private final int k;
+
+    // Tas-min indexé à partir de 0
+    private final int[] heapIds;
+    private final int[] heapCells;
+    private int heapSize = 0;
+
+    // Tortues exclues du tas mais à égalité avec son minimum
+    private int[] tiedIds = new int[8];
+    private int tiedSize = 0;
+    private int tiedCells;
+
+    public PodiumHeap(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("Podium size must be positive: " + k);
+        }
+        this.k = k;
+        this.heapIds = new int[k];
+        this.heapCells = new int[k];
+    }
+
+    public void clear() {
+        heapSize = 0;
+        tiedSize = 0;
+    }
+
+    /**
+     * Propose une tortue pour le podium
+     */
+    public void offer(int id, int cells) {
+        if (heapSize < k) {
+            heapIds[heapSize] = id;
+            heapCells[heapSize] = cells;
+            siftUp(heapSize++);
+            return;
+        }
+
+        int min = heapCells[0];
+        if (cells < min) {
+            return;
+        }
+        if (cells == min) {
+            addTied(id, cells);
+            return;
+        }
+
+        // La nouvelle tortue remplace le minimum, qui reste dans le podium s'il est encore à égalité
+        int evictedId = heapIds[0];
+        heapIds[0] = id;
+        heapCells[0] = cells;
+        siftDown(0);
+
+        if (heapCells[0] == min) {
+            addTied(evictedId, min);
+        } else {
+            tiedSize = 0;
+        }
+    }
+
+    /**
+     * Vide le podium dans out, trié par nbCellsParcourus décroissant puis par id
+     */
+    public void drainTo(Podium out) {
+        int n = heapSize + tiedSize;
+        out.reset(n);
+
+        long[] keys = new long[n];
+        for (int i = 0; i < heapSize; i++) {
+            keys[i] = sortKey(heapCells[i], heapIds[i]);
+        }
+        for (int i = 0; i < tiedSize; i++) {
+            keys[heapSize + i] = sortKey(tiedCells, tiedIds[i]);
+        }
+        Arrays.sort(keys);
+
+        // Tous les meilleurs que le minimum sont dans le tas : le rang dans le podium est le rang global
+        int groupStart = 0;
+        for (int pos = 0; pos <= n; pos++) {
+            if (pos == n || (pos > 0 && cellsOf(keys[pos]) != cellsOf(keys[groupStart]))) {
+                boolean isTie = pos - groupStart > 1;
+                for (int p = groupStart; p < pos; p++) {
+                    out.ids[p] = idOf(keys[p]);
+                    out.cells[p] = cellsOf(keys[p]);
+                    out.ranks[p] = groupStart + 1;
+                    out.ties[p] = isTie;
+                }
+                groupStart = pos;
+            }
+        }
+        clear();
+    }
+
+    // Clé triable croissante : cellules décroissantes puis id croissant
+    private static long sortKey(int cells, int id) {
+        return ((long) (Integer.MAX_VALUE - cells) << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    private static int cellsOf(long key) {
+        return Integer.MAX_VALUE - (int) (key >>> 32);
+    }
+
+    private static int idOf(long key) {
+        return (int) key;
+    }
+
+    private void addTied(int id, int cells) {
+        if (tiedSize == tiedIds.length) {
+            tiedIds = Arrays.copyOf(tiedIds, tiedSize * 2);
+        }
+        tiedIds[tiedSize++] = id;
+        tiedCells = cells;
+    }
+
+    private void siftUp(int i) {
+        int id = heapIds[i];
+        int cells = heapCells[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapCells[parent] <= cells) {
+                break;
+            }
+            heapIds[i] = heapIds[parent];
+            heapCells[i] = heapCells[parent];
+            i = parent;
+        }
+        heapIds[i] = id;
+        heapCells[i] = cells;
+    }
+
+    private void siftDown(int i) {
+        int id = heapIds[i];
+        int cells = heapCells[i];
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            int right = child + 1;
+            if (right < heapSize && heapCells[right] < heapCells[child]) {
+                child = right;
+            }
+            if (cells <= heapCells[child]) {
+                break;
+            }
+            heapIds[i] = heapIds[child];
+            heapCells[i] = heapCells[child];
+            i = child;
+        }
+        heapIds[i] = id;
+        heapCells[i] = cells;
+    }
+
+    /**
+     * Podium d'une frame, réutilisable d'une frame à l'autre
+     */
+    public static class Podium {
+        int size;
+        int[] ids = new int[0];
+        int[] cells = new int[0];
+        int[] ranks = new int[0];
+        boolean[] ties = new boolean[0];
+
+        void reset(int n) {
+            if (ids.length < n) {
+                ids = new int[n];
+                cells = new int[n];
+                ranks = new int[n];
+                ties = new boolean[n];
+            }
+            size = n;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int id(int pos) {
+            return ids[pos];
+        }
+
+        public int cells(int pos) {
+            return cells[pos];
+        }
+
+        public int rank(int pos) {
+            return ranks[pos];
+        }
+
+        public boolean isTie(int pos) {
+            return ties[pos];
+        }
+    }
+}
@@ -0,0 +1,533 @@
+package stormTP.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * État par tortue en colonnes (struct-of-arrays) : chaque tortue reçoit une case (slot),
+ * attribuée dans l'ordre d'arrivée, et chaque champ d'état est un tableau primitif indexé par case.
+ *
+ * Les ids sont normalement consécutifs (0..total-1) : la case d'un id inférieur à denseLimit
+ * se lit directement dans un tableau. Les autres ids (négatifs ou très grands) passent par une
+ * table à adressage ouvert. Les colonnes grandissent avec le nombre de cases ; la case d'une
+ * tortue retirée est remise à zéro (null) puis réutilisée.
+ *
+ * Pour les checkpoints incrémentaux, trackChanges() active le suivi des cases modifiées :
+ * l'opérateur signale chaque modification par touch(slot), drainChanges() les restitue une fois,
+ * drainRemoved() restitue les ids retirés.
+ *
+ * Avec expireIdle(timeout), les cases sont chaînées par ordre d'accès (access) : evictIdle(now)
+ * retire depuis la tête celles dont le dernier accès date d'au moins timeout, en O(1) amorti.
+ * Le temps est celui de l'opérateur (top, temps d'événement...).
+ */
+public class RunnerStore {
+
+    public static final int DEFAULT_DENSE_LIMIT = 1 << 22;
+    private static final int ABSENT = -1;
+
+    private final int denseLimit;
+    // Case de chaque id dense (ABSENT si aucune)
+    private int[] denseSlots;
+
+    // Table des ids épars : case + 1 (0 = vide)
+    private int[] sparseKeys;
+    private int[] sparseSlots;
+    private int sparseMask;
+    private int sparseShift;
+    private int sparseSize = 0;
+
+    // Id de chaque case ; cases jamais attribuées au-delà de slotCount
+    private int[] ids;
+    private int slotCount = 0;
+    private int size = 0;
+    private final List<Column> columns = new ArrayList<>();
+
+    // Cases libérées, réutilisées en priorité
+    private int[] freeSlots = new int[16];
+    private int freeCount = 0;
+
+    // Cases modifiées depuis le dernier drainChanges() (bitmap + liste), ids retirés, si suivi activé
+    private long[] changedBits;
+    private int[] changed;
+    private int changedCount = 0;
+    private int[] removed;
+    private int removedCount = 0;
+
+    // Liste doublement chaînée par ordre d'accès, si expiration activée
+    private long idleTimeout = 0;
+    private long[] lastAccess;
+    private int[] accessPrev;
+    private int[] accessNext;
+    private int accessHead = ABSENT;
+    private int accessTail = ABSENT;
+    private long evictions = 0;
+
+    public RunnerStore() {
+        this(DEFAULT_DENSE_LIMIT);
+    }
+
+    public RunnerStore(int denseLimit) {
+        if (denseLimit < 0) {
+            throw new IllegalArgumentException("Invalid dense limit: " + denseLimit);
+        }
+        this.denseLimit = denseLimit;
+        this.denseSlots = new int[Math.min(16, denseLimit)];
+        Arrays.fill(denseSlots, ABSENT);
+        this.ids = new int[16];
+        initSparse(16);
+    }
+
+    /**
+     * Case de l'id, ou -1 s'il n'en a pas
+     */
+    public int find(int id) {
+        if (id >= 0 && id < denseLimit) {
+            return id < denseSlots.length ? denseSlots[id] : ABSENT;
+        }
+        int i = sparseSlot(id);
+        while (sparseSlots[i] != 0) {
+            if (sparseKeys[i] == id) {
+                return sparseSlots[i] - 1;
+            }
+            i = (i + 1) & sparseMask;
+        }
+        return ABSENT;
+    }
+
+    /**
+     * Attribue une case à un id qui n'en a pas ; ses colonnes valent 0 (ou null)
+     */
+    public int add(int id) {
+        if (find(id) != ABSENT) {
+            throw new IllegalArgumentException("Runner " + id + " already has a slot");
+        }
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            slot = slotCount++;
+            if (slot == ids.length) {
+                grow(ids.length * 2);
+            }
+        }
+        ids[slot] = id;
+        size++;
+
+        if (id >= 0 && id < denseLimit) {
+            if (id >= denseSlots.length) {
+                int length = denseSlots.length;
+                int capacity = (int) Math.min(denseLimit, Math.max(id + 1L, length * 2L));
+                denseSlots = Arrays.copyOf(denseSlots, capacity);
+                Arrays.fill(denseSlots, length, capacity, ABSENT);
+            }
+            denseSlots[id] = slot;
+        } else {
+            putSparse(id, slot);
+        }
+        if (idleTimeout > 0) {
+            link(slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Retire la tortue : sa case est remise à zéro et sera réutilisée ; retourne faux si absente
+     */
+    public boolean remove(int id) {
+        int slot = find(id);
+        if (slot == ABSENT) {
+            return false;
+        }
+        if (id >= 0 && id < denseLimit) {
+            denseSlots[id] = ABSENT;
+        } else {
+            removeSparse(id);
+        }
+        if (idleTimeout > 0) {
+            unlink(slot);
+            lastAccess[slot] = 0;
+        }
+        for (Column column : columns) {
+            column.clear(slot);
+        }
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        size--;
+
+        if (removed != null) {
+            if (removedCount == removed.length) {
+                removed = Arrays.copyOf(removed, removedCount * 2);
+            }
+            removed[removedCount++] = id;
+        }
+        return true;
+    }
+
+    /**
+     * Id de la tortue qui occupe la case
+     */
+    public int id(int slot) {
+        return ids[slot];
+    }
+
+    /**
+     * Nombre de tortues présentes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Active le suivi des cases modifiées (aucune n'est marquée à l'activation)
+     */
+    public void trackChanges() {
+        if (changed == null) {
+            changed = new int[ids.length];
+            changedBits = new long[(ids.length + 63) >>> 6];
+            removed = new int[16];
+        }
+    }
+
+    /**
+     * Marque la case comme modifiée (sans effet si le suivi n'est pas activé)
+     */
+    public void touch(int slot) {
+        if (changed != null && (changedBits[slot >>> 6] & (1L << slot)) == 0) {
+            changedBits[slot >>> 6] |= 1L << slot;
+            changed[changedCount++] = slot;
+        }
+    }
+
+    /**
+     * Visite une fois chaque case modifiée depuis l'appel précédent et encore occupée ;
+     * retourne leur nombre
+     */
+    public int drainChanges(SlotVisitor visitor) {
+        int n = 0;
+        for (int i = 0; i < changedCount; i++) {
+            int slot = changed[i];
+            changedBits[slot >>> 6] &= ~(1L << slot);
+            if (find(ids[slot]) == slot) {
+                visitor.visit(slot);
+                n++;
+            }
+        }
+        changedCount = 0;
+        return n;
+    }
+
+    /**
+     * Visite les ids retirés depuis l'appel précédent (avant drainChanges, un id revenu
+     * entre-temps y figurant aussi) ; retourne leur nombre
+     */
+    public int drainRemoved(SlotVisitor visitor) {
+        int n = removedCount;
+        for (int i = 0; i < n; i++) {
+            visitor.visit(removed[i]);
+        }
+        removedCount = 0;
+        return n;
+    }
+
+    public interface SlotVisitor {
+        void visit(int slot);
+    }
+
+    /**
+     * Active l'expiration des tortues sans accès depuis timeout (> 0)
+     */
+    public void expireIdle(long timeout) {
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("Invalid idle timeout: " + timeout);
+        }
+        if (idleTimeout == 0) {
+            lastAccess = new long[ids.length];
+            accessPrev = new int[ids.length];
+            accessNext = new int[ids.length];
+            for (int slot = 0; slot < slotCount; slot++) {
+                if (find(ids[slot]) == slot) {
+                    link(slot);
+                }
+            }
+        }
+        idleTimeout = timeout;
+    }
+
+    /**
+     * Enregistre un accès à la case à l'instant time (sans effet si l'expiration n'est pas activée).
+     * La liste reste triée par dernier accès : O(1) quand le temps ne recule pas (cas normal),
+     * sinon la case est insérée à sa place en remontant depuis la queue (restauration).
+     */
+    public void access(int slot, long time) {
+        if (idleTimeout > 0) {
+            lastAccess[slot] = time;
+            unlink(slot);
+            int prev = accessTail;
+            while (prev != ABSENT && lastAccess[prev] > time) {
+                prev = accessPrev[prev];
+            }
+            linkAfter(prev, slot);
+        }
+    }
+
+    /**
+     * Instant du dernier accès à la case (0 si l'expiration n'est pas activée)
+     */
+    public long lastAccess(int slot) {
+        return idleTimeout > 0 ? lastAccess[slot] : 0;
+    }
+
+    /**
+     * Retire les tortues sans accès depuis idleTimeout à l'instant now, en partant de la plus
+     * ancienne ; visitor est appelé avec la case avant son retrait. Retourne leur nombre.
+     */
+    public int evictIdle(long now, SlotVisitor visitor) {
+        int n = 0;
+        while (idleTimeout > 0 && accessHead != ABSENT && now - lastAccess[accessHead] >= idleTimeout) {
+            int slot = accessHead;
+            visitor.visit(slot);
+            remove(ids[slot]);
+            n++;
+        }
+        evictions += n;
+        return n;
+    }
+
+    /**
+     * Nombre total de tortues retirées par expiration
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    public IntColumn intColumn() {
+        return register(new IntColumn(ids.length));
+    }
+
+    public LongColumn longColumn() {
+        return register(new LongColumn(ids.length));
+    }
+
+    public <V> ObjectColumn<V> objectColumn() {
+        return register(new ObjectColumn<V>(ids.length));
+    }
+
+    private <C extends Column> C register(C column) {
+        columns.add(column);
+        return column;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        for (Column column : columns) {
+            column.grow(capacity);
+        }
+        if (changed != null) {
+            changed = Arrays.copyOf(changed, capacity);
+            changedBits = Arrays.copyOf(changedBits, (capacity + 63) >>> 6);
+        }
+        if (idleTimeout > 0) {
+            lastAccess = Arrays.copyOf(lastAccess, capacity);
+            accessPrev = Arrays.copyOf(accessPrev, capacity);
+            accessNext = Arrays.copyOf(accessNext, capacity);
+        }
+    }
+
+    /**
+     * Chaîne la case en queue de la liste d'accès
+     */
+    private void link(int slot) {
+        linkAfter(accessTail, slot);
+    }
+
+    /**
+     * Chaîne la case après prev (en tête si prev est ABSENT)
+     */
+    private void linkAfter(int prev, int slot) {
+        int next = prev == ABSENT ? accessHead : accessNext[prev];
+        accessPrev[slot] = prev;
+        accessNext[slot] = next;
+        if (prev == ABSENT) {
+            accessHead = slot;
+        } else {
+            accessNext[prev] = slot;
+        }
+        if (next == ABSENT) {
+            accessTail = slot;
+        } else {
+            accessPrev[next] = slot;
+        }
+    }
+
+    private void unlink(int slot) {
+        int prev = accessPrev[slot];
+        int next = accessNext[slot];
+        if (prev == ABSENT) {
+            accessHead = next;
+        } else {
+            accessNext[prev] = next;
+        }
+        if (next == ABSENT) {
+            accessTail = prev;
+        } else {
+            accessPrev[next] = prev;
+        }
+    }
+
+    private void initSparse(int capacity) {
+        sparseKeys = new int[capacity];
+        sparseSlots = new int[capacity];
+        sparseMask = capacity - 1;
+        sparseShift = Integer.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    private int sparseSlot(int id) {
+        return (id * 0x9E3779B9) >>> sparseShift;
+    }
+
+    private void putSparse(int id, int slot) {
+        int i = sparseSlot(id);
+        while (sparseSlots[i] != 0) {
+            i = (i + 1) & sparseMask;
+        }
+        sparseKeys[i] = id;
+        sparseSlots[i] = slot + 1;
+        if (++sparseSize > (sparseMask + 1) >>> 1) {
+            int[] oldKeys = sparseKeys;
+            int[] oldSlots = sparseSlots;
+            initSparse(oldKeys.length * 2);
+            for (int j = 0; j < oldSlots.length; j++) {
+                if (oldSlots[j] != 0) {
+                    int k = sparseSlot(oldKeys[j]);
+                    while (sparseSlots[k] != 0) {
+                        k = (k + 1) & sparseMask;
+                    }
+                    sparseKeys[k] = oldKeys[j];
+                    sparseSlots[k] = oldSlots[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Retire un id épars en reculant les entrées suivantes de la grappe (comme IntObjectMap)
+     */
+    private void removeSparse(int id) {
+        int free = sparseSlot(id);
+        while (sparseKeys[free] != id || sparseSlots[free] == 0) {
+            free = (free + 1) & sparseMask;
+        }
+        int i = free;
+        while (true) {
+            i = (i + 1) & sparseMask;
+            if (sparseSlots[i] == 0) {
+                break;
+            }
+            int home = sparseSlot(sparseKeys[i]);
+            if (((i - home) & sparseMask) >= ((i - free) & sparseMask)) {
+                sparseKeys[free] = sparseKeys[i];
+                sparseSlots[free] = sparseSlots[i];
+                free = i;
+            }
+        }
+        sparseSlots[free] = 0;
+        sparseSize--;
+    }
+
+    private abstract static class Column {
+        abstract void grow(int capacity);
+
+        abstract void clear(int slot);
+    }
+
+    /**
+     * Champ int de chaque tortue
+     */
+    public static final class IntColumn extends Column {
+        private int[] values;
+
+        private IntColumn(int capacity) {
+            values = new int[capacity];
+        }
+
+        public int get(int slot) {
+            return values[slot];
+        }
+
+        public void set(int slot, int value) {
+            values[slot] = value;
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void clear(int slot) {
+            values[slot] = 0;
+        }
+    }
+
+    /**
+     * Champ long de chaque tortue
+     */
+    public static final class LongColumn extends Column {
+        private long[] values;
+
+        private LongColumn(int capacity) {
+            values = new long[capacity];
+        }
+
+        public long get(int slot) {
+            return values[slot];
+        }
+
+        public void set(int slot, long value) {
+            values[slot] = value;
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void clear(int slot) {
+            values[slot] = 0;
+        }
+    }
+
+    /**
+     * Champ objet de chaque tortue (fenêtre, volets...)
+     */
+    public static final class ObjectColumn<V> extends Column {
+        private Object[] values;
+
+        private ObjectColumn(int capacity) {
+            values = new Object[capacity];
+        }
+
+        @SuppressWarnings("unchecked")
+        public V get(int slot) {
+            return (V) values[slot];
+        }
+
+        public void set(int slot, V value) {
+            values[slot] = value;
+        }
+
+        @Override
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override
+        void clear(int slot) {
+            values[slot] = null;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package stormTP.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Fenêtre glissante des length derniers éléments (par position), évaluée tous les slide ajouts.
+ *
+ * Mémoire constante : le tampon ne dépasse jamais length éléments. Un élément en retard
+ * plus ancien que toute la fenêtre pleine est ignoré (il n'en ferait pas partie), mais
+ * compte tout de même pour la cadence d'évaluation.
+ */
+public class SlidingCountWindow {
+
+    private final int length;
+    private final int slide;
+    private final WindowAggregator aggregator;
+    private final WindowBuffer buffer;
+    private long added = 0;
+
+    public SlidingCountWindow(int length, int slide) {
+        this(length, slide, WindowAggregator.NONE);
+    }
+
+    public SlidingCountWindow(int length, int slide, WindowAggregator aggregator) {
+        if (length <= 0 || slide <= 0) {
+            throw new IllegalArgumentException("Invalid count window: length=" + length + " slide=" + slide);
+        }
+        this.length = length;
+        this.slide = slide;
+        this.aggregator = aggregator;
+        this.buffer = new WindowBuffer(length);
+    }
+
+    /**
+     * Ajoute un élément ; retourne vrai si la fenêtre doit être évaluée
+     */
+    public boolean add(long position, int value) {
+        added++;
+
+        if (buffer.size() == length) {
+            if (position < buffer.firstPosition()) {
+                return added % slide == 0;
+            }
+            aggregator.evict(buffer.firstPosition(), buffer.firstValue());
+            buffer.removeFirst();
+        }
+        buffer.insert(position, value);
+        aggregator.add(position, value);
+
+        return added % slide == 0;
+    }
+
+    public WindowBuffer buffer() {
+        return buffer;
+    }
+
+    public WindowAggregator aggregator() {
+        return aggregator;
+    }
+
+    public int size() {
+        return buffer.size();
+    }
+
+    /**
+     * Nombre total d'éléments reçus, y compris ceux ignorés
+     */
+    public long added() {
+        return added;
+    }
+
+    /**
+     * Écrit le contenu de la fenêtre sous forme binaire compacte (checkpoints)
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeLong(added);
+        out.writeInt(buffer.size());
+        for (int i = 0; i < buffer.size(); i++) {
+            out.writeLong(buffer.position(i));
+            out.writeInt(buffer.value(i));
+        }
+    }
+
+    /**
+     * Remplace le contenu par celui écrit par writeTo ; l'agrégat est recalculé
+     */
+    public void readFrom(DataInput in) throws IOException {
+        added = in.readLong();
+        buffer.clear();
+        aggregator.reset();
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            long position = in.readLong();
+            int value = in.readInt();
+            buffer.insert(position, value);
+            aggregator.add(position, value);
+        }
+    }
+}
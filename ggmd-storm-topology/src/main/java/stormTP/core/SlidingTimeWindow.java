@@ -0,0 +1,70 @@
+package stormTP.core;
+
+/**
+ * Fenêtre glissante temporelle : garde les éléments dont la position (instant en ms)
+ * est à au plus length de l'instant courant, et devient à évaluer toutes les slide ms.
+ *
+ * Les éléments sont gardés triés par instant : l'éviction ne touche que la tête
+ * du tampon, en O(1) amorti par élément.
+ */
+public class SlidingTimeWindow {
+
+    private final long length;
+    private final long slide;
+    private final WindowAggregator aggregator;
+    private final WindowBuffer buffer = new WindowBuffer(16);
+    private boolean fired = false;
+    private long lastFireTime;
+
+    public SlidingTimeWindow(long length, long slide) {
+        this(length, slide, WindowAggregator.NONE);
+    }
+
+    public SlidingTimeWindow(long length, long slide, WindowAggregator aggregator) {
+        if (length <= 0 || slide <= 0) {
+            throw new IllegalArgumentException("Invalid time window: length=" + length + " slide=" + slide);
+        }
+        this.length = length;
+        this.slide = slide;
+        this.aggregator = aggregator;
+    }
+
+    public void add(long time, int value) {
+        buffer.insert(time, value);
+        aggregator.add(time, value);
+    }
+
+    /**
+     * Retire les éléments sortis de la fenêtre à l'instant now
+     */
+    public void evict(long now) {
+        while (!buffer.isEmpty() && now - buffer.firstPosition() > length) {
+            aggregator.evict(buffer.firstPosition(), buffer.firstValue());
+            buffer.removeFirst();
+        }
+    }
+
+    /**
+     * Vrai si la fenêtre n'a jamais été évaluée ou ne l'a pas été depuis slide ms
+     */
+    public boolean isDue(long now) {
+        return !fired || now - lastFireTime >= slide;
+    }
+
+    public void markFired(long now) {
+        fired = true;
+        lastFireTime = now;
+    }
+
+    public WindowBuffer buffer() {
+        return buffer;
+    }
+
+    public WindowAggregator aggregator() {
+        return aggregator;
+    }
+
+    public int size() {
+        return buffer.size();
+    }
+}
@@ -0,0 +1,36 @@
+package stormTP.core;
+
+/**
+ * Somme et nombre des valeurs présentes dans une fenêtre, en O(1) par élément
+ */
+public class SumAggregator implements WindowAggregator {
+
+    private long sum = 0;
+    private int count = 0;
+
+    @Override
+    public void add(long position, int value) {
+        sum += value;
+        count++;
+    }
+
+    @Override
+    public void evict(long position, int value) {
+        sum -= value;
+        count--;
+    }
+
+    @Override
+    public void reset() {
+        sum = 0;
+        count = 0;
+    }
+
+    public long sum() {
+        return sum;
+    }
+
+    public int count() {
+        return count;
+    }
+}
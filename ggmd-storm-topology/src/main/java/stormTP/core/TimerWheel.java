@@ -0,0 +1,81 @@
+package stormTP.core;
+
+import java.util.Arrays;
+
+/**
+ * Roue de temporisation : des ids (tortues) rangés par échéance (tick) dans un tableau
+ * circulaire de seaux. Programmer et expirer un id coûtent O(1) ; expirer un tick ne
+ * parcourt que les ids de son seau.
+ *
+ * La roue couvre slots ticks consécutifs : un seau non expiré est écrasé quand un tick
+ * plus récent de slots ticks ou plus réutilise sa case.
+ */
+public class TimerWheel {
+
+    private final long[] ticks;
+    private final int[][] buckets;
+    private final int[] sizes;
+
+    public TimerWheel(int slots) {
+        if (slots <= 0) {
+            throw new IllegalArgumentException("Invalid wheel size: " + slots);
+        }
+        this.ticks = new long[slots];
+        this.buckets = new int[slots][];
+        this.sizes = new int[slots];
+        Arrays.fill(ticks, Long.MIN_VALUE);
+        for (int i = 0; i < slots; i++) {
+            buckets[i] = new int[4];
+        }
+    }
+
+    /**
+     * Programme id à l'échéance tick
+     */
+    public void schedule(long tick, int id) {
+        int slot = slot(tick);
+        if (ticks[slot] != tick) {
+            ticks[slot] = tick;
+            sizes[slot] = 0;
+        }
+        if (sizes[slot] == buckets[slot].length) {
+            buckets[slot] = Arrays.copyOf(buckets[slot], sizes[slot] * 2);
+        }
+        buckets[slot][sizes[slot]++] = id;
+    }
+
+    /**
+     * Visite puis retire les ids programmés à l'échéance tick (dans l'ordre de programmation) ;
+     * retourne leur nombre
+     */
+    public int expire(long tick, Visitor visitor) {
+        int slot = slot(tick);
+        if (ticks[slot] != tick) {
+            return 0;
+        }
+        int n = sizes[slot];
+        int[] ids = buckets[slot];
+        for (int i = 0; i < n; i++) {
+            visitor.visit(ids[i]);
+        }
+        ticks[slot] = Long.MIN_VALUE;
+        sizes[slot] = 0;
+        return n;
+    }
+
+    /**
+     * Nombre d'ids programmés à l'échéance tick
+     */
+    public int size(long tick) {
+        int slot = slot(tick);
+        return ticks[slot] == tick ? sizes[slot] : 0;
+    }
+
+    public interface Visitor {
+        void visit(int id);
+    }
+
+    private int slot(long tick) {
+        return (int) Math.floorMod(tick, (long) ticks.length);
+    }
+}
@@ -0,0 +1,73 @@
+package stormTP.core;
+
+import java.util.Arrays;
+
+/**
+ * Contexte de trace d'une frame échantillonnée, porté par les tuples en un seul champ long[] :
+ * [id de frame, tâche 0, instant 0, tâche 1, instant 1, ...]. Chaque opérateur traversé ajoute
+ * son étape (id de tâche et instant d'émission) dans une copie ; le tableau reçu n'est jamais
+ * modifié, un même tuple pouvant être lu par plusieurs tâches.
+ *
+ * Les instants sont en nanosecondes depuis l'époque (horloge murale au démarrage de la JVM plus
+ * System.nanoTime) : comparables entre workers à la synchronisation des horloges près.
+ */
+public final class TraceContext {
+
+    private static final long EPOCH_OFFSET_NANOS = System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+
+    private TraceContext() {
+    }
+
+    /**
+     * Instant courant en nanosecondes depuis l'époque
+     */
+    public static long nowNanos() {
+        return EPOCH_OFFSET_NANOS + System.nanoTime();
+    }
+
+    /**
+     * Vrai si la frame est tracée : une frame sur sampleEvery (0 = aucune)
+     */
+    public static boolean sampled(long frameId, int sampleEvery) {
+        return sampleEvery > 0 && frameId % sampleEvery == 0;
+    }
+
+    /**
+     * Trace d'une frame, avec sa première étape
+     */
+    public static long[] start(long frameId, int task, long nanos) {
+        return new long[] {frameId, task, nanos};
+    }
+
+    /**
+     * Copie de la trace avec une étape de plus ; null pour une frame non tracée
+     */
+    public static long[] hop(long[] trace, int task, long nanos) {
+        if (trace == null) {
+            return null;
+        }
+        long[] next = Arrays.copyOf(trace, trace.length + 2);
+        next[trace.length] = task;
+        next[trace.length + 1] = nanos;
+        return next;
+    }
+
+    public static long frameId(long[] trace) {
+        return trace[0];
+    }
+
+    /**
+     * Nombre d'étapes de la trace
+     */
+    public static int hops(long[] trace) {
+        return (trace.length - 1) / 2;
+    }
+
+    public static int task(long[] trace, int hop) {
+        return (int) trace[1 + 2 * hop];
+    }
+
+    public static long nanos(long[] trace, int hop) {
+        return trace[2 + 2 * hop];
+    }
+}
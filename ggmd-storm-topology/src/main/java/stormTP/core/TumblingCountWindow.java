@@ -0,0 +1,59 @@
+package stormTP.core;
+
+/**
+ * Fenêtre sautante de length éléments consécutifs : seuls l'agrégat et les positions
+ * de début et de fin du bloc courant sont conservés (aucun tampon).
+ *
+ * Quand add() signale un bloc complet, l'agrégat reste lisible jusqu'à l'ajout suivant,
+ * qui ouvre le bloc d'après.
+ */
+public class TumblingCountWindow {
+
+    private final int length;
+    private final WindowAggregator aggregator;
+    private int count = 0;
+    private long firstPosition;
+    private long lastPosition;
+
+    public TumblingCountWindow(int length, WindowAggregator aggregator) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Invalid count window: length=" + length);
+        }
+        this.length = length;
+        this.aggregator = aggregator;
+    }
+
+    /**
+     * Ajoute un élément ; retourne vrai si le bloc courant est complet
+     */
+    public boolean add(long position, int value) {
+        if (count == length) {
+            aggregator.reset();
+            count = 0;
+        }
+        if (count == 0) {
+            firstPosition = position;
+        }
+        lastPosition = position;
+        aggregator.add(position, value);
+        count++;
+
+        return count == length;
+    }
+
+    public WindowAggregator aggregator() {
+        return aggregator;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public long firstPosition() {
+        return firstPosition;
+    }
+
+    public long lastPosition() {
+        return lastPosition;
+    }
+}
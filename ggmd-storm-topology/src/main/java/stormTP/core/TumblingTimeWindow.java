@@ -0,0 +1,64 @@
+package stormTP.core;
+
+/**
+ * Fenêtre sautante temporelle alignée sur des multiples de length : [k*length, (k+1)*length).
+ * Seul l'agrégat de la fenêtre courante est conservé.
+ *
+ * Usage : tester isComplete(t) avant add(t, v) pour lire l'agrégat de la fenêtre qui se ferme ;
+ * l'ajout suivant ouvre alors la fenêtre contenant t.
+ */
+public class TumblingTimeWindow {
+
+    private final long length;
+    private final WindowAggregator aggregator;
+    private int count = 0;
+    private long start;
+
+    public TumblingTimeWindow(long length, WindowAggregator aggregator) {
+        if (length <= 0) {
+            throw new IllegalArgumentException("Invalid time window: length=" + length);
+        }
+        this.length = length;
+        this.aggregator = aggregator;
+    }
+
+    /**
+     * Ajoute un élément ; retourne faux s'il est en retard sur la fenêtre courante (ignoré)
+     */
+    public boolean add(long time, int value) {
+        if (count > 0 && time < start) {
+            return false;
+        }
+        if (count == 0 || time >= start + length) {
+            aggregator.reset();
+            count = 0;
+            start = Math.floorDiv(time, length) * length;
+        }
+        aggregator.add(time, value);
+        count++;
+        return true;
+    }
+
+    /**
+     * Vrai si la fenêtre courante est non vide et close à l'instant now
+     */
+    public boolean isComplete(long now) {
+        return count > 0 && now >= start + length;
+    }
+
+    public WindowAggregator aggregator() {
+        return aggregator;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public long start() {
+        return start;
+    }
+
+    public long end() {
+        return start + length;
+    }
+}
@@ -0,0 +1,53 @@
+package stormTP.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Filigrane (watermark) d'un opérateur qui reçoit plusieurs flux amont : le minimum des derniers
+ * filigranes de chaque tâche source. Tant qu'une source ne s'est pas manifestée, le filigrane
+ * reste à Long.MIN_VALUE ; celui d'une source ne recule jamais.
+ */
+public class WatermarkTracker {
+
+    private final int[] sourceTasks;
+    private final long[] watermarks;
+    private long current = Long.MIN_VALUE;
+
+    public WatermarkTracker(Collection<Integer> sourceTasks) {
+        if (sourceTasks.isEmpty()) {
+            throw new IllegalArgumentException("No watermark source");
+        }
+        this.sourceTasks = new int[sourceTasks.size()];
+        int i = 0;
+        for (int task : sourceTasks) {
+            this.sourceTasks[i++] = task;
+        }
+        Arrays.sort(this.sourceTasks);
+        this.watermarks = new long[this.sourceTasks.length];
+        Arrays.fill(watermarks, Long.MIN_VALUE);
+    }
+
+    /**
+     * Enregistre le filigrane d'une tâche source et retourne le filigrane global
+     */
+    public long update(int sourceTask, long watermark) {
+        int i = Arrays.binarySearch(sourceTasks, sourceTask);
+        if (i < 0) {
+            throw new IllegalArgumentException("Unknown watermark source task " + sourceTask);
+        }
+        if (watermark > watermarks[i]) {
+            watermarks[i] = watermark;
+            long min = Long.MAX_VALUE;
+            for (long w : watermarks) {
+                min = Math.min(min, w);
+            }
+            current = min;
+        }
+        return current;
+    }
+
+    public long current() {
+        return current;
+    }
+}
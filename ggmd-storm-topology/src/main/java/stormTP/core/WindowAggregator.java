@@ -0,0 +1,34 @@
+package stormTP.core;
+
+/**
+ * Agrégat maintenu incrémentalement par une fenêtre : chaque élément est ajouté
+ * à son entrée dans la fenêtre et retiré à sa sortie, sans jamais reparcourir le contenu.
+ *
+ * Un élément est un couple (position, valeur) : la position est un top ou un instant
+ * en millisecondes, la valeur un entier (cellules parcourues, rang, points...).
+ */
+public interface WindowAggregator {
+
+    /**
+     * Agrégat vide, pour les fenêtres dont seules les bornes intéressent
+     */
+    WindowAggregator NONE = new WindowAggregator() {
+        @Override
+        public void add(long position, int value) {
+        }
+
+        @Override
+        public void evict(long position, int value) {
+        }
+
+        @Override
+        public void reset() {
+        }
+    };
+
+    void add(long position, int value);
+
+    void evict(long position, int value);
+
+    void reset();
+}
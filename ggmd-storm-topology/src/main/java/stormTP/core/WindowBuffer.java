@@ -0,0 +1,108 @@
+package stormTP.core;
+
+/**
+ * Tampon circulaire d'éléments (position, valeur) triés par position, sur tableaux primitifs.
+ *
+ * L'ajout en fin est en O(1) ; un élément en retard est inséré après les positions égales
+ * (comme un tri stable), le décalage étant borné par le nombre d'éléments plus récents.
+ */
+public class WindowBuffer {
+
+    private long[] positions;
+    private int[] values;
+    private int head = 0; // indice du plus ancien élément
+    private int size = 0;
+
+    public WindowBuffer(int initialCapacity) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + initialCapacity);
+        }
+        this.positions = new long[initialCapacity];
+        this.values = new int[initialCapacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public long position(int i) {
+        return positions[slot(i)];
+    }
+
+    public int value(int i) {
+        return values[slot(i)];
+    }
+
+    public long firstPosition() {
+        return positions[head];
+    }
+
+    public int firstValue() {
+        return values[head];
+    }
+
+    public long lastPosition() {
+        return positions[slot(size - 1)];
+    }
+
+    public int lastValue() {
+        return values[slot(size - 1)];
+    }
+
+    /**
+     * Insère un élément à sa place, après les éléments de même position
+     */
+    public void insert(long position, int value) {
+        if (size == positions.length) {
+            grow();
+        }
+        int pos = size;
+        while (pos > 0 && position(pos - 1) > position) {
+            set(pos, position(pos - 1), value(pos - 1));
+            pos--;
+        }
+        set(pos, position, value);
+        size++;
+    }
+
+    /**
+     * Retire le plus ancien élément (lire firstPosition/firstValue avant)
+     */
+    public void removeFirst() {
+        head = slot(1);
+        size--;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private int slot(int i) {
+        int s = head + i;
+        return s < positions.length ? s : s - positions.length;
+    }
+
+    private void set(int i, long position, int value) {
+        int s = slot(i);
+        positions[s] = position;
+        values[s] = value;
+    }
+
+    private void grow() {
+        int capacity = positions.length * 2;
+        long[] newPositions = new long[capacity];
+        int[] newValues = new int[capacity];
+        for (int i = 0; i < size; i++) {
+            newPositions[i] = position(i);
+            newValues[i] = value(i);
+        }
+        positions = newPositions;
+        values = newValues;
+        head = 0;
+    }
+}
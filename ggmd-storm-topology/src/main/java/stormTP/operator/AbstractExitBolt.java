@@ -0,0 +1,228 @@
+package stormTP.operator;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.codahale.metrics.Timer;
+import org.apache.storm.Config;
+import org.apache.storm.generated.GlobalStreamId;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.IRichBolt;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.utils.TupleUtils;
+import stormTP.stream.BatchingSink;
+import stormTP.stream.RecordBuffer;
+import stormTP.stream.RecordSerializer;
+import stormTP.stream.StreamEmiter;
+import stormTP.stream.Subscription;
+
+/**
+ * Base des bolts de sortie : chaque tuple est écrit par un RecordSerializer (JSON, CSV, binaire)
+ * dans un tampon réutilisé, puis envoyé aux auditeurs du port par micro-lots (BatchingSink,
+ * vidé aussi au tick). Aucun tuple n'est émis en aval.
+ *
+ * La sous-classe déclare son schéma d'entrée (inputFields), vérifié au prepare() contre les
+ * flux reçus. Par défaut chaque champ du schéma est écrit selon le type de sa valeur ;
+ * writeFields() se redéfinit pour un format particulier.
+ *
+ * Chaque enregistrement est étiqueté pour les abonnements des auditeurs : type du bolt
+ * (recordType), id de tortue et rang (champs "id" et "rang" par défaut, s'ils existent).
+ *
+ * Si toutes les sources déclarent le timestamp producteur (FrameTimestamps), il est écrit en
+ * dernier champ de chaque enregistrement, après ceux de writeFields() : l'auditeur le trouve
+ * en fin d'enregistrement quel que soit le format (dernier champ CSV, 8 derniers octets en binaire).
+ * La trace des frames échantillonnées (champ "trace") n'est pas écrite : ses durées par étape
+ * vont dans les histogrammes de Tracing.
+ */
+public abstract class AbstractExitBolt implements IRichBolt {
+
+    private static final long serialVersionUID = 4262369370788107366L;
+    private static Logger logger = Logger.getLogger("ExitBoltLogger");
+
+    private final int port;
+    private final RecordSerializer serializer;
+    private final int batchBytes;
+    private final long maxLatencyMs;
+    private final StreamEmiter semit;
+
+    private transient OutputCollector collector;
+    private transient RecordBuffer record;
+    private transient BatchingSink sink;
+    private transient Fields fields;
+    private transient boolean hasId;
+    private transient boolean hasRank;
+    private transient boolean hasTimestamp;
+    private transient boolean hasTrace;
+    private transient Tracing tracing;
+    private transient Timer serializeTime;
+
+    protected AbstractExitBolt(int port, RecordSerializer serializer) {
+        this(port, serializer, BatchingSink.DEFAULT_BATCH_BYTES, BatchingSink.DEFAULT_MAX_LATENCY_MS);
+    }
+
+    /**
+     * @param batchBytes taille d'un lot (au plus BatchingSink.MAX_BATCH_BYTES)
+     * @param maxLatencyMs attente maximale d'un enregistrement avant l'envoi de son lot (0 = sans lot)
+     */
+    protected AbstractExitBolt(int port, RecordSerializer serializer, int batchBytes, long maxLatencyMs) {
+        if (batchBytes <= 0 || batchBytes > BatchingSink.MAX_BATCH_BYTES || maxLatencyMs < 0) {
+            throw new IllegalArgumentException("Invalid batch=" + batchBytes + " latency=" + maxLatencyMs);
+        }
+        this.port = port;
+        this.serializer = serializer;
+        this.batchBytes = batchBytes;
+        this.maxLatencyMs = maxLatencyMs;
+        this.semit = new StreamEmiter(port);
+    }
+
+    /**
+     * Champs que les tuples reçus doivent contenir
+     */
+    protected abstract Fields inputFields();
+
+    /**
+     * Écrit les champs de l'enregistrement du tuple (entre beginRecord et endRecord)
+     */
+    protected void writeFields(Tuple t, RecordSerializer format, RecordBuffer out) {
+        for (String name : fields) {
+            writeValue(format, out, name, t.getValueByField(name));
+        }
+    }
+
+    /**
+     * Type des enregistrements, pour les abonnements (Subscription.TYPE_*)
+     */
+    protected int recordType() {
+        return Subscription.TYPE_RAW;
+    }
+
+    /**
+     * Id de tortue de l'enregistrement, ou Subscription.UNTAGGED
+     */
+    protected int recordId(Tuple t) {
+        return hasId ? t.getIntegerByField("id").intValue() : Subscription.UNTAGGED;
+    }
+
+    /**
+     * Rang de l'enregistrement, ou Subscription.UNTAGGED
+     */
+    protected int recordRank(Tuple t) {
+        return hasRank ? t.getIntegerByField("rang").intValue() : Subscription.UNTAGGED;
+    }
+
+    /**
+     * Écrit une valeur selon son type
+     */
+    protected static void writeValue(RecordSerializer format, RecordBuffer out, String name, Object value) {
+        if (value instanceof Integer) {
+            format.field(out, name, ((Integer) value).intValue());
+        } else if (value instanceof Long) {
+            format.field(out, name, ((Long) value).longValue());
+        } else if (value instanceof Double) {
+            format.field(out, name, ((Double) value).doubleValue(), 2);
+        } else if (value instanceof Boolean) {
+            format.field(out, name, ((Boolean) value).booleanValue());
+        } else if (value instanceof CharSequence) {
+            format.field(out, name, (CharSequence) value);
+        } else {
+            format.field(out, name, String.valueOf(value));
+        }
+    }
+
+    @Override
+    public void execute(Tuple t) {
+        try {
+            if (TupleUtils.isTick(t)) {
+                sink.flushIfDue(System.nanoTime());
+            } else {
+                long start = System.nanoTime();
+                record.clear();
+                serializer.beginRecord(record);
+                writeFields(t, serializer, record);
+                if (hasTimestamp) {
+                    serializer.field(record, FrameTimestamps.FIELD, FrameTimestamps.ofTuple(t));
+                }
+                serializer.endRecord(record);
+                serializeTime.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                sink.append(record.array(), 0, record.length(), recordType(), recordId(t), recordRank(t));
+                if (hasTrace) {
+                    tracing.record((long[]) t.getValueByField(Tracing.FIELD));
+                }
+            }
+            collector.ack(t);
+        } catch (IOException | RuntimeException e) {
+            logger.severe("Cannot send record on port " + port + ": " + e.getMessage());
+            collector.fail(t);
+        }
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        // Tick pour vider le dernier lot d'un flux arrêté
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, 1);
+        return conf;
+    }
+
+    @Override
+    public void cleanup() {
+        try {
+            sink.flush();
+        } catch (IOException e) {
+            logger.warning("Cannot flush last batch: " + e.getMessage());
+        }
+        logger.info(getClass().getSimpleName() + " on port " + port + ": " + sink.summary());
+        semit.close();
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        this.collector = new MeteredOutputCollector(collector, context);
+        this.fields = inputFields();
+        this.hasId = fields.contains("id");
+        this.hasRank = fields.contains("rang");
+        this.hasTimestamp = !fields.contains(FrameTimestamps.FIELD);
+        this.hasTrace = true;
+        for (GlobalStreamId source : context.getThisSources().keySet()) {
+            Fields declared = context.getComponentOutputFields(source);
+            hasTimestamp &= declared.contains(FrameTimestamps.FIELD);
+            hasTrace &= declared.contains(Tracing.FIELD);
+            for (String name : fields) {
+                if (!declared.contains(name)) {
+                    throw new IllegalStateException(getClass().getSimpleName() + " needs field " + name
+                            + " but " + source.get_componentId() + ":" + source.get_streamId() + " declares " + declared);
+                }
+            }
+        }
+        try {
+            semit.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open " + semit, e);
+        }
+        this.record = new RecordBuffer();
+        this.sink = new BatchingSink(semit, batchBytes, maxLatencyMs);
+        this.tracing = new Tracing(context);
+        this.serializeTime = context.registerTimer("serializeTime");
+        registerEmitterGauges(context, semit);
+    }
+
+    /**
+     * Jauges de l'émetteur : file d'attente, enregistrements perdus et auditeurs connectés
+     */
+    static void registerEmitterGauges(TopologyContext context, StreamEmiter semit) {
+        context.registerGauge("emitterQueued", () -> semit.queued());
+        context.registerGauge("droppedRecords", () -> semit.dropped());
+        context.registerGauge("subscribers", () -> semit.subscribers());
+    }
+}
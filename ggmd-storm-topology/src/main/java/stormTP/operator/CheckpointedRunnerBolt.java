@@ -0,0 +1,172 @@
+package stormTP.operator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.codahale.metrics.Counter;
+import org.apache.storm.state.KeyValueState;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.IRichBolt;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.topology.base.BaseStatefulBolt;
+import org.apache.storm.tuple.Tuple;
+import stormTP.state.MappedKeyValueState;
+
+/**
+ * Version checkpointée d'un opérateur à état par tortue : l'opérateur garde son état en mémoire
+ * et, à chaque checkpoint de Storm (prePrepare), seules les tortues modifiées depuis le précédent
+ * sont écrites dans le KeyValueState (clé = id, valeur = état binaire compact).
+ * Les tortues expirées (RunnerStore.evictIdle) sont supprimées du KeyValueState.
+ * initState() reconstruit l'état ; après un rollback, il est relu avant le tuple suivant.
+ *
+ * Avec un spout fiable (InputStreamSpout en mode reliable) et les acks activés, une frame en
+ * échec ou expirée est rejouée. L'opérateur garde dans l'état de chaque tortue les tops déjà
+ * appliqués (AppliedTops) et ignore ceux d'une frame rejouée, sans réémettre leurs sorties.
+ * Après un rollback, l'état revient au dernier checkpoint, tops appliqués compris : les tuples
+ * postérieurs sont appliqués de nouveau et leurs sorties réémises (au moins une fois).
+ *
+ * Métriques : "checkpointRunnersWritten" et "checkpointRunnersDeleted" (tortues écrites et
+ * supprimées par les checkpoints), "stateKeys" (clés de l'état au dernier checkpoint ; clés
+ * validées pour un MappedKeyValueState).
+ */
+public abstract class CheckpointedRunnerBolt<B extends IRichBolt & RunnerCheckpoint>
+        extends BaseStatefulBolt<KeyValueState<Integer, byte[]>> {
+
+    private static final long serialVersionUID = 4262369370788107359L;
+    private static Logger logger = Logger.getLogger("CheckpointedRunnerBoltLogger");
+
+    // Clé réservée à l'état commun (aucune tortue n'a cet id)
+    public static final int GLOBAL_KEY = Integer.MIN_VALUE;
+
+    private final B bolt;
+    private transient KeyValueState<Integer, byte[]> state;
+    private transient boolean reloadState;
+    private transient ByteArrayOutputStream bytes;
+    private transient DataOutputStream out;
+    private transient Counter runnersWritten;
+    private transient Counter runnersDeleted;
+    private transient int stateKeys;
+
+    protected CheckpointedRunnerBolt(B bolt) {
+        this.bolt = bolt;
+    }
+
+    @Override
+    public void prepare(Map<String, Object> stormConf, TopologyContext context, OutputCollector collector) {
+        bolt.prepare(stormConf, context, collector);
+        this.bytes = new ByteArrayOutputStream();
+        this.out = new DataOutputStream(bytes);
+        this.runnersWritten = context.registerCounter("checkpointRunnersWritten");
+        this.runnersDeleted = context.registerCounter("checkpointRunnersDeleted");
+        context.registerGauge("stateKeys", this::stateKeys);
+    }
+
+    @Override
+    public void initState(KeyValueState<Integer, byte[]> state) {
+        this.state = state;
+        restore();
+    }
+
+    @Override
+    public void execute(Tuple t) {
+        if (reloadState) {
+            restore();
+        }
+        bolt.execute(t);
+    }
+
+    /**
+     * Écrit les tortues modifiées et l'état commun avant que Storm ne prépare le checkpoint
+     */
+    @Override
+    public void prePrepare(long txid) {
+        try {
+            // Tortues expirées d'abord : une tortue revenue depuis est réécrite juste après
+            int deleted = bolt.runners().drainRemoved(id -> state.delete(id));
+            int written = bolt.runners().drainChanges(slot -> state.put(bolt.runners().id(slot), encode(slot)));
+            state.put(GLOBAL_KEY, encode(-1));
+            runnersWritten.inc(written);
+            runnersDeleted.inc(deleted);
+            // Après écriture, l'état contient exactement les tortues en mémoire et l'état commun
+            stateKeys = bolt.runners().size() + 1;
+            logger.fine(() -> "Checkpoint " + txid + ": " + written + " runners written, " + deleted + " deleted");
+        } catch (UncheckedIOException e) {
+            throw new IllegalStateException("Cannot checkpoint state " + txid, e);
+        }
+    }
+
+    /**
+     * L'état sera ramené au dernier checkpoint : l'état en mémoire doit l'être aussi
+     */
+    @Override
+    public void preRollback() {
+        reloadState = true;
+    }
+
+    private int stateKeys() {
+        if (state instanceof MappedKeyValueState) {
+            return ((MappedKeyValueState<?, ?>) state).committedSize();
+        }
+        return stateKeys;
+    }
+
+    private byte[] encode(int slot) {
+        try {
+            bytes.reset();
+            if (slot < 0) {
+                bolt.writeGlobal(out);
+            } else {
+                bolt.writeRunner(slot, out);
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void restore() {
+        try {
+            bolt.resetState();
+            byte[] global = state.get(GLOBAL_KEY);
+            if (global != null) {
+                bolt.readGlobal(new DataInputStream(new ByteArrayInputStream(global)));
+            }
+            int keys = 0;
+            for (Map.Entry<Integer, byte[]> e : state) {
+                keys++;
+                if (e.getKey() != GLOBAL_KEY) {
+                    bolt.readRunner(e.getKey(), new DataInputStream(new ByteArrayInputStream(e.getValue())));
+                }
+            }
+            bolt.runners().trackChanges();
+            stateKeys = keys;
+            reloadState = false;
+            logger.info("State restored: " + bolt.runners().size() + " runners");
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot restore state", e);
+        }
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        bolt.declareOutputFields(declarer);
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        return bolt.getComponentConfiguration();
+    }
+
+    @Override
+    public void cleanup() {
+        bolt.cleanup();
+    }
+}
@@ -1,11 +1,14 @@
 package stormTP.operator;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Map;
-import java.util.HashMap;
-import java.util.List;
-import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
 import org.apache.storm.task.OutputCollector;
 import org.apache.storm.task.TopologyContext;
 import org.apache.storm.topology.IRichBolt;
@@ -13,96 +16,95 @@ import org.apache.storm.topology.OutputFieldsDeclarer;
 import org.apache.storm.tuple.Fields;
 import org.apache.storm.tuple.Tuple;
 import org.apache.storm.tuple.Values;
+import stormTP.core.AppliedTops;
+import stormTP.core.RunnerStore;
 
 /**
  * Opérateur stateful qui calcule le nombre de points bonus cumulés par les tortues.
- * Émet des tuples avec le schéma: (id, tops, score)
+ * Émet des tuples avec le schéma: (id, tops, score, timestamp, trace), timestamp étant celui du dernier rang du bloc
  * Les points bonus sont calculés tous les 15 tops.
+ * Accepte aussi le flux batch de GiveRankBolt (un tuple par frame, à recevoir en allGrouping).
+ *
+ * L'état d'une tortue tient en quelques champs primitifs (somme courante des rangs du bloc),
+ * soit O(1) par tortue quelle que soit la durée de la course. Une tortue doit toujours être
+ * traitée par la même tâche : fieldsGrouping("id") sur le flux par tortue, ou allGrouping
+ * sur le flux batch où chaque tâche ne garde que ses tortues (même partition par id).
+ * Avec idleTops > 0, l'état d'une tortue sans rang depuis idleTops tops est retiré (gauges
+ * liveRunners et evictedRunners) : si elle revient, son score repart de zéro.
+ * Un rang dont le top est déjà appliqué à la tortue (frame rejouée par le spout) est ignoré
+ * (compteur replayedRanks) : voir AppliedTops.
+ * Version checkpointée : StatefulComputeBonusBolt.
  */
-public class ComputeBonusBolt implements IRichBolt {
+public class ComputeBonusBolt implements IRichBolt, RunnerCheckpoint {
 
     private static final long serialVersionUID = 4262369370788107346L;
     private static Logger logger = Logger.getLogger("ComputeBonusBoltLogger");
     private OutputCollector collector;
+    private int taskId;
+    private int taskIndex = 0;
+    private int numTasks = 1;
     
-    // État stateful : stockage des données par tortue
-    private Map<Integer, TurtleState> turtleStates = new HashMap<>();
+    // État stateful : une colonne par champ, une case par tortue (voir RunnerStore).
+    // Bloc courant de BONUS_INTERVAL tops réduit au nombre et à la somme de ses rangs
+    private transient RunnerStore runners;
+    private transient RunnerStore.IntColumn totalScores;
+    private transient RunnerStore.IntColumn firstTops;
+    private transient RunnerStore.IntColumn blockCounts;
+    private transient RunnerStore.LongColumn blockRankSums;
+    private transient AppliedTops appliedTops;
     
     // Constante pour le calcul des bonus
     private static final int BONUS_INTERVAL = 15;
     
-    // Classe interne pour stocker l'état d'une tortue
-    private static class TurtleState {
-        int id;
-        String nom;
-        int totalScore = 0;
-        int firstTop = -1;
-        int lastTop = -1;
-        List<RankData> rankHistory = new ArrayList<>();
-        
-        TurtleState(int id, String nom) {
-            this.id = id;
-            this.nom = nom;
-        }
-    }
+    // Expiration des tortues inactives, en tops (0 = jamais) ; horloge = plus grand top reçu
+    private final int idleTops;
+    private transient long clock;
     
-    // Classe pour stocker les données de classement
-    private static class RankData {
-        int top;
-        String rang;
-        int total;
-        
-        RankData(int top, String rang, int total) {
-            this.top = top;
-            this.rang = rang;
-            this.total = total;
-        }
-    }
+    // Métriques : mise à jour des scores d'un tuple (rang ou batch)
+    private transient Timer scoreTimer;
+    private transient Counter replayedRanks;
     
     public ComputeBonusBolt() {
+        this(0);
+    }
+    
+    /**
+     * @param idleTops nombre de tops sans rang après lequel l'état d'une tortue est retiré (0 = jamais)
+     */
+    public ComputeBonusBolt(int idleTops) {
+        if (idleTops < 0) {
+            throw new IllegalArgumentException("Invalid idle tops: " + idleTops);
+        }
+        this.idleTops = idleTops;
     }
     
     @Override
     public void execute(Tuple t) {
         try {
-            // Lire le schéma d'entrée de GiveRankBolt: (id, top, rang, total, maxcel)
-            int id = (Integer) t.getValueByField("id");
-            int top = (Integer) t.getValueByField("top");
-            String rang = (String) t.getValueByField("rang");
-            int total = (Integer) t.getValueByField("total");
-            int maxcel = (Integer) t.getValueByField("maxcel");
-            
-            logger.info("Received turtle: id=" + id + " top=" + top + " rang=" + rang);
-            
-            // Initialiser l'état de la tortue si nécessaire
-            if (!turtleStates.containsKey(id)) {
-                turtleStates.put(id, new TurtleState(id, "Turtle" + id));
-            }
-            
-            TurtleState state = turtleStates.get(id);
-            
-            // Mettre à jour l'état
-            if (state.firstTop == -1) {
-                state.firstTop = top;
-            }
-            state.lastTop = top;
-            
-            // Ajouter les données de rang
-            state.rankHistory.add(new RankData(top, rang, total));
-            
-            // Calculer les points bonus tous les 15 tops
-            if (state.rankHistory.size() % BONUS_INTERVAL == 0) {
-                int bonusPoints = calculateBonusPoints(state, total);
-                state.totalScore += bonusPoints;
-                
-                // Créer la chaîne tops
-                String tops = state.firstTop + "-" + state.lastTop;
+            long start = System.nanoTime();
+            if (GiveRankBolt.BATCH_STREAM.equals(t.getSourceStreamId())) {
+                // Lire le schéma batch de GiveRankBolt: (top, total, maxcel, ids, rangs, exaequos, timestamp, trace)
+                int top = (Integer) t.getValueByField("top");
+                int total = (Integer) t.getValueByField("total");
+                int[] ids = (int[]) t.getValueByField("ids");
+                int[] rangs = (int[]) t.getValueByField("rangs");
                 
-                logger.info("Calculating bonus for turtle id=" + id + " tops=" + tops + " bonus=" + bonusPoints + " totalScore=" + state.totalScore);
+                for (int i = 0; i < ids.length; i++) {
+                    if (GiveRankBolt.ownsRunner(ids[i], taskIndex, numTasks)) {
+                        processRank(ids[i], top, rangs[i], total, t);
+                    }
+                }
+            } else {
+                // Lire le schéma d'entrée de GiveRankBolt: (id, top, rang, exaequo, total, maxcel, timestamp, trace)
+                int id = (Integer) t.getValueByField("id");
+                int top = (Integer) t.getValueByField("top");
+                int rang = (Integer) t.getValueByField("rang");
+                int total = (Integer) t.getValueByField("total");
                 
-                // Émettre le tuple avec le schéma (id, tops, score)
-                collector.emit(t, new Values(id, tops, state.totalScore));
+                processRank(id, top, rang, total, t);
             }
+            runners.evictIdle(clock, slot -> logger.fine(() -> "Evicting idle turtle id=" + runners.id(slot)));
+            scoreTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
             
             collector.ack(t);
             
@@ -114,47 +116,118 @@ public class ComputeBonusBolt implements IRichBolt {
     }
     
     /**
-     * Calcule les points bonus pour les 15 derniers tops
+     * Met à jour l'état d'une tortue avec son rang pour un top
      */
-    private int calculateBonusPoints(TurtleState state, int totalParticipants) {
-        int bonusPoints = 0;
+    private void processRank(int id, int top, int rang, int total, Tuple anchor) {
+        logger.fine(() -> "Received turtle: id=" + id + " top=" + top + " rang=" + rang);
         
-        // Prendre les 15 derniers classements
-        int startIndex = Math.max(0, state.rankHistory.size() - BONUS_INTERVAL);
-        List<RankData> recentRanks = state.rankHistory.subList(startIndex, state.rankHistory.size());
+        // Initialiser l'état de la tortue si nécessaire
+        int slot = runners.find(id);
+        if (slot < 0) {
+            slot = runners.add(id);
+            firstTops.set(slot, top);
+        }
+        if (!appliedTops.apply(slot, top)) {
+            logger.fine(() -> "Replayed rank for turtle id=" + id + " top=" + top);
+            replayedRanks.inc();
+            return;
+        }
+        clock = Math.max(clock, top);
+        runners.access(slot, clock);
         
-        for (RankData rankData : recentRanks) {
-            int points = calculatePointsFromRank(rankData.rang, totalParticipants);
-            bonusPoints += points;
-            logger.info("Top " + rankData.top + " rang=" + rankData.rang + " points=" + points);
+        // Ouvrir un nouveau bloc après un bloc complet
+        int blockCount = blockCounts.get(slot);
+        long blockRankSum = blockRankSums.get(slot);
+        if (blockCount == BONUS_INTERVAL) {
+            blockCount = 0;
+            blockRankSum = 0;
         }
+        blockCount++;
+        blockRankSum += rang;
+        blockCounts.set(slot, blockCount);
+        blockRankSums.set(slot, blockRankSum);
+        runners.touch(slot);
         
-        return bonusPoints;
+        // Calculer les points bonus tous les 15 tops
+        if (blockCount == BONUS_INTERVAL) {
+            int bonusPoints = calculateBonusPoints(blockCount, blockRankSum, total);
+            int totalScore = totalScores.get(slot) + bonusPoints;
+            totalScores.set(slot, totalScore);
+            
+            // Créer la chaîne tops
+            String tops = firstTops.get(slot) + "-" + top;
+            
+            logger.fine(() -> "Calculating bonus for turtle id=" + id + " tops=" + tops + " bonus=" + bonusPoints + " totalScore=" + totalScore);
+            
+            // Émettre le tuple avec le schéma (id, tops, score, timestamp, trace)
+            collector.emit(anchor, new Values(id, tops, totalScore, FrameTimestamps.ofTuple(anchor),
+                    Tracing.next(anchor, taskId)));
+        }
     }
     
     /**
-     * Convertit un rang en points bonus
-     * Points = total participants - rang
+     * Calcule les points bonus des 15 derniers tops : somme des (total participants - rang).
+     * Un rang ne dépasse jamais le nombre de participants, la somme se déduit donc
+     * de celle des rangs sans reparcourir le bloc.
      */
-    private int calculatePointsFromRank(String rang, int totalParticipants) {
-        try {
-            // Extraire le nombre du rang (enlever "ex" si présent)
-            String numericRank = rang.replaceAll("ex", "");
-            int rankNumber = Integer.parseInt(numericRank);
-            
-            // Calculer les points : total participants - rang
-            int points = totalParticipants - rankNumber;
-            return Math.max(0, points); // Assurer que les points ne soient pas négatifs
-            
-        } catch (NumberFormatException e) {
-            logger.warning("Invalid rank format: " + rang);
-            return 0;
+    private int calculateBonusPoints(int count, long rankSum, int totalParticipants) {
+        long points = (long) count * totalParticipants - rankSum;
+        return (int) Math.max(0, points); // Assurer que les points ne soient pas négatifs
+    }
+    
+    @Override
+    public void resetState() {
+        this.runners = new RunnerStore();
+        this.totalScores = runners.intColumn();
+        this.firstTops = runners.intColumn();
+        this.blockCounts = runners.intColumn();
+        this.blockRankSums = runners.longColumn();
+        this.appliedTops = new AppliedTops(runners);
+        if (idleTops > 0) {
+            runners.expireIdle(idleTops);
         }
+        this.clock = 0;
+    }
+    
+    @Override
+    public RunnerStore runners() {
+        return runners;
+    }
+    
+    @Override
+    public void writeRunner(int slot, DataOutput out) throws IOException {
+        out.writeInt(totalScores.get(slot));
+        out.writeInt(firstTops.get(slot));
+        out.writeInt(blockCounts.get(slot));
+        out.writeLong(blockRankSums.get(slot));
+        appliedTops.writeTo(slot, out);
+        out.writeLong(runners.lastAccess(slot));
+    }
+    
+    @Override
+    public void readRunner(int id, DataInput in) throws IOException {
+        int slot = runners.add(id);
+        totalScores.set(slot, in.readInt());
+        firstTops.set(slot, in.readInt());
+        blockCounts.set(slot, in.readInt());
+        blockRankSums.set(slot, in.readLong());
+        appliedTops.readFrom(slot, in);
+        runners.access(slot, in.readLong());
+    }
+    
+    @Override
+    public void writeGlobal(DataOutput out) throws IOException {
+        out.writeLong(clock);
+    }
+    
+    @Override
+    public void readGlobal(DataInput in) throws IOException {
+        clock = in.readLong();
     }
     
     @Override
     public void declareOutputFields(OutputFieldsDeclarer declarer) {
-        declarer.declare(new Fields("id", "tops", "score"));
+        declarer.declare(new Fields("id", "tops", "score", "timestamp", "trace"));
     }
     
     @Override
@@ -169,6 +242,14 @@ public class ComputeBonusBolt implements IRichBolt {
     @Override
     @SuppressWarnings("rawtypes")
     public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
-        this.collector = collector;
+        this.collector = new MeteredOutputCollector(collector, context);
+        this.taskId = context.getThisTaskId();
+        resetState();
+        context.registerGauge("liveRunners", () -> runners.size());
+        context.registerGauge("evictedRunners", () -> runners.evictions());
+        this.scoreTimer = context.registerTimer("scoreTime");
+        this.replayedRanks = context.registerCounter("replayedRanks");
+        this.taskIndex = context.getThisTaskIndex();
+        this.numTasks = context.getComponentTasks(context.getThisComponentId()).size();
     }
 }
\ No newline at end of file
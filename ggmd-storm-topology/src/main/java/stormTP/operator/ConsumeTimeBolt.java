@@ -33,8 +33,6 @@ public class ConsumeTimeBolt implements IRichBolt {
 		 */
 		public void execute(Tuple t) {
 			
-			 logger.info("[ConsumeTime] EXEC");
-					
 			/* récupération du message */
 			String n = t.getValueByField("json").toString();
 
@@ -59,7 +57,7 @@ public class ConsumeTimeBolt implements IRichBolt {
 
 			JsonObject row = r.build();
 
-			logger.info("[ConsumeTime] " + row.toString());
+			logger.fine(() -> "[ConsumeTime] " + row.toString());
 			collector.emit(t, new Values(row.toString()));
 			collector.ack(t);
 		}
@@ -109,7 +107,7 @@ private String encrypter( String val ){
 		 */
 		@SuppressWarnings("rawtypes")
 		public void prepare(Map arg0, TopologyContext context, OutputCollector collector) {
-			this.collector = collector;
+			this.collector = new MeteredOutputCollector(collector, context);
 			
 		}
 	}
\ No newline at end of file
@@ -1,88 +1,45 @@
 package stormTP.operator;
 
-import java.util.Map;
-//import java.util.logging.Logger;
-
-import org.apache.storm.task.OutputCollector;
-import org.apache.storm.task.TopologyContext;
-import org.apache.storm.topology.IRichBolt;
-import org.apache.storm.topology.OutputFieldsDeclarer;
 import org.apache.storm.tuple.Fields;
 import org.apache.storm.tuple.Tuple;
-import org.apache.storm.tuple.Values;
-import stormTP.stream.StreamEmiter;
+import stormTP.stream.JsonSerializer;
+import stormTP.stream.RecordBuffer;
+import stormTP.stream.RecordSerializer;
+import stormTP.stream.Subscription;
 
 /**
- * Exit3Bolt basé sur ExitBolt
- * Prend en entrée des tuples de schéma (id, top, rang, total, maxcel)
- * et produit en sortie un tuple de schéma (json)
+ * Exit3Bolt basé sur AbstractExitBolt
+ * Prend en entrée des tuples de schéma (id, top, rang, exaequo, total, maxcel)
+ * et écrit {"id","top","rang","total","maxcel"}, le rang au format "Nex" en cas d'égalité
  */
-public class Exit3Bolt implements IRichBolt {
+public class Exit3Bolt extends AbstractExitBolt {
 
     private static final long serialVersionUID = 4262369370788107345L;
-    //private static Logger logger = Logger.getLogger("Exit3BoltLogger");
-    private OutputCollector collector;
-    int port = -1;
-    StreamEmiter semit = null;
-    
+
     public Exit3Bolt(int port) {
-        this.port = port;
-        this.semit = new StreamEmiter(this.port);
-    }
-    
-    /* (non-Javadoc)
-     * @see backtype.storm.topology.IRichBolt#execute(backtype.storm.tuple.Tuple)
-     */
-    public void execute(Tuple t) {
-        
-        // Lire le schéma d'entrée: (id, top, rang, total, maxcel)
-        int id = (Integer) t.getValueByField("id");
-        int top = (Integer) t.getValueByField("top");
-        String rang = (String) t.getValueByField("rang");
-        int total = (Integer) t.getValueByField("total");
-        int maxcel = (Integer) t.getValueByField("maxcel");
-        
-        // Créer l'objet JSON attendu
-        String jsonOutput = String.format("{\"id\":%d,\"top\":%d,\"rang\":\"%s\",\"total\":%d,\"maxcel\":%d}", 
-            id, top, rang, total, maxcel);
-        
-        // Émettre le tuple avec schéma (json) - comme dans ExitBolt original
-        collector.emit(t, new Values(jsonOutput));
-        
-        // Envoyer aussi via StreamEmiter (attention au blocage potentiel)
-        this.semit.send(jsonOutput);
-        
-        collector.ack(t);
-        
-        return;
+        this(port, new JsonSerializer());
     }
-    
-    /* (non-Javadoc)
-     * @see backtype.storm.topology.IComponent#declareOutputFields(backtype.storm.topology.OutputFieldsDeclarer)
-     */
-    public void declareOutputFields(OutputFieldsDeclarer arg0) {
-        arg0.declare(new Fields("json"));
+
+    public Exit3Bolt(int port, RecordSerializer serializer) {
+        super(port, serializer);
     }
-    
-    /* (non-Javadoc)
-     * @see backtype.storm.topology.IComponent#getComponentConfiguration()
-     */
-    public Map<String, Object> getComponentConfiguration() {
-        return null;
+
+    @Override
+    protected Fields inputFields() {
+        return new Fields("id", "top", "rang", "exaequo", "total", "maxcel");
     }
 
-    /* (non-Javadoc)
-     * @see backtype.storm.topology.IBasicBolt#cleanup()
-     */
-    public void cleanup() {
-        
+    @Override
+    protected int recordType() {
+        return Subscription.TYPE_RANK;
     }
-    
-    /* (non-Javadoc)
-     * @see backtype.storm.topology.IRichBolt#prepare(java.util.Map, backtype.storm.task.TopologyContext, backtype.storm.task.OutputCollector)
-     */
-    @SuppressWarnings("rawtypes")
-    public void prepare(Map arg0, TopologyContext context, OutputCollector collector) {
-        this.collector = collector;
+
+    @Override
+    protected void writeFields(Tuple t, RecordSerializer format, RecordBuffer out) {
+        format.field(out, "id", t.getIntegerByField("id").intValue());
+        format.field(out, "top", t.getIntegerByField("top").intValue());
+        format.field(out, "rang", t.getIntegerByField("rang").longValue(), t.getBooleanByField("exaequo") ? "ex" : "");
+        format.field(out, "total", t.getIntegerByField("total").intValue());
+        format.field(out, "maxcel", t.getIntegerByField("maxcel").intValue());
     }
-}
\ No newline at end of file
+}
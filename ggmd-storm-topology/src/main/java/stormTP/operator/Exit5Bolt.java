@@ -1,90 +1,48 @@
 package stormTP.operator;
 
-import java.util.Map;
-//import java.util.logging.Logger;
-
-import org.apache.storm.task.OutputCollector;
-import org.apache.storm.task.TopologyContext;
-import org.apache.storm.topology.IRichBolt;
-import org.apache.storm.topology.OutputFieldsDeclarer;
 import org.apache.storm.tuple.Fields;
 import org.apache.storm.tuple.Tuple;
-import org.apache.storm.tuple.Values;
-import stormTP.stream.StreamEmiter;
+import stormTP.stream.JsonSerializer;
+import stormTP.stream.RecordBuffer;
+import stormTP.stream.RecordSerializer;
+import stormTP.stream.Subscription;
 
 /**
- * Exit5Bolt basé sur ExitBolt
- * Prend en entrée des tuples de schéma (id, nom, tops, vitesse)
- * et produit en sortie un tuple de schéma (json)
+ * Exit5Bolt basé sur AbstractExitBolt
+ * Prend en entrée des tuples de schéma (id, nom, tops, vitesse) ou (id, nom, fenetre, tops, vitesse)
+ * et écrit la vitesse avec deux décimales (point décimal quelle que soit la locale)
  */
-public class Exit5Bolt implements IRichBolt {
+public class Exit5Bolt extends AbstractExitBolt {
 
     private static final long serialVersionUID = 4262369370788107349L;
-    //private static Logger logger = Logger.getLogger("Exit5BoltLogger");
-    private OutputCollector collector;
-    int port = -1;
-    StreamEmiter semit = null;
-    
+
     public Exit5Bolt(int port) {
-        this.port = port;
-        this.semit = new StreamEmiter(this.port);
-    }
-    
-    /* (non-Javadoc)
-     * @see backtype.storm.topology.IRichBolt#execute(backtype.storm.tuple.Tuple)
-     */
-    public void execute(Tuple t) {
-        
-        // Lire le schéma d'entrée: (id, nom, tops, vitesse)
-        int id = (Integer) t.getValueByField("id");
-        String nom = (String) t.getValueByField("nom");
-        String tops = (String) t.getValueByField("tops");
-        double vitesse = (Double) t.getValueByField("vitesse");
-        
-        // Créer l'objet JSON attendu
-        String jsonOutput = String.format("{\"id\":%d,\"nom\":\"%s\",\"tops\":\"%s\",\"vitesse\":%.2f}", 
-            id, nom, tops, vitesse);
-        
-        System.out.println("=== TURTLE SPEED ===");
-        System.out.println(jsonOutput);
-        
-        // Émettre le tuple avec schéma (json) - comme dans ExitBolt original
-        collector.emit(t, new Values(jsonOutput));
-        
-        // Envoyer aussi via StreamEmiter (attention au blocage potentiel)
-        this.semit.send(jsonOutput);
-        
-        collector.ack(t);
-        
-        return;
+        this(port, new JsonSerializer());
     }
-    
-    /* (non-Javadoc)
-     * @see backtype.storm.topology.IComponent#declareOutputFields(backtype.storm.topology.OutputFieldsDeclarer)
-     */
-    public void declareOutputFields(OutputFieldsDeclarer arg0) {
-        arg0.declare(new Fields("json"));
+
+    public Exit5Bolt(int port, RecordSerializer serializer) {
+        super(port, serializer);
     }
-    
-    /* (non-Javadoc)
-     * @see backtype.storm.topology.IComponent#getComponentConfiguration()
-     */
-    public Map<String, Object> getComponentConfiguration() {
-        return null;
+
+    @Override
+    protected Fields inputFields() {
+        return new Fields("id", "nom", "tops", "vitesse");
     }
 
-    /* (non-Javadoc)
-     * @see backtype.storm.topology.IBasicBolt#cleanup()
-     */
-    public void cleanup() {
-        
+    @Override
+    protected int recordType() {
+        return Subscription.TYPE_SPEED;
     }
-    
-    /* (non-Javadoc)
-     * @see backtype.storm.topology.IRichBolt#prepare(java.util.Map, backtype.storm.task.TopologyContext, backtype.storm.task.OutputCollector)
-     */
-    @SuppressWarnings("rawtypes")
-    public void prepare(Map arg0, TopologyContext context, OutputCollector collector) {
-        this.collector = collector;
+
+    @Override
+    protected void writeFields(Tuple t, RecordSerializer format, RecordBuffer out) {
+        format.field(out, "id", t.getIntegerByField("id").intValue());
+        format.field(out, "nom", t.getStringByField("nom"));
+        // Taille de fenêtre optionnelle (MultiSpeedBolt)
+        if (t.contains("fenetre")) {
+            format.field(out, "fenetre", t.getIntegerByField("fenetre").intValue());
+        }
+        format.field(out, "tops", t.getStringByField("tops"));
+        format.field(out, "vitesse", t.getDoubleByField("vitesse").doubleValue(), 2);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,54 @@
+package stormTP.operator;
+
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import stormTP.stream.JsonSerializer;
+import stormTP.stream.RecordBuffer;
+import stormTP.stream.RecordSerializer;
+import stormTP.stream.Subscription;
+
+/**
+ * Exit8Bolt basé sur AbstractExitBolt
+ * Prend en entrée des tuples de schéma (top, total, ids, ranks, ties)
+ * et écrit {"top","total","podium":[{"id","rang"}...]}, le rang au format "Nex" en cas d'égalité
+ */
+public class Exit8Bolt extends AbstractExitBolt {
+
+    private static final long serialVersionUID = 4262369370788107356L;
+
+    public Exit8Bolt(int port) {
+        this(port, new JsonSerializer());
+    }
+
+    public Exit8Bolt(int port, RecordSerializer serializer) {
+        super(port, serializer);
+    }
+
+    @Override
+    protected Fields inputFields() {
+        return new Fields("top", "total", "ids", "ranks", "ties");
+    }
+
+    @Override
+    protected int recordType() {
+        return Subscription.TYPE_PODIUM;
+    }
+
+    @Override
+    protected void writeFields(Tuple t, RecordSerializer format, RecordBuffer out) {
+        int[] ids = (int[]) t.getValueByField("ids");
+        int[] ranks = (int[]) t.getValueByField("ranks");
+        boolean[] ties = (boolean[]) t.getValueByField("ties");
+
+        format.field(out, "top", t.getIntegerByField("top").intValue());
+        format.field(out, "total", t.getIntegerByField("total").intValue());
+        format.beginArray(out, "podium");
+        for (int i = 0; i < ids.length; i++) {
+            format.beginElement(out);
+            format.field(out, "id", ids[i]);
+            format.field(out, "rang", ranks[i], ties[i] ? "ex" : "");
+            format.endElement(out);
+        }
+        format.endArray(out);
+    }
+}
@@ -1,30 +1,57 @@
 package stormTP.operator;
 
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
 import java.util.Map;
-//import java.util.logging.Logger;
+import java.util.logging.Logger;
 
+import org.apache.storm.Config;
 import org.apache.storm.task.OutputCollector;
 import org.apache.storm.task.TopologyContext;
 import org.apache.storm.topology.IRichBolt;
 import org.apache.storm.topology.OutputFieldsDeclarer;
 import org.apache.storm.tuple.Fields;
 import org.apache.storm.tuple.Tuple;
+import org.apache.storm.utils.TupleUtils;
+import stormTP.stream.BatchingSink;
 import stormTP.stream.StreamEmiter;
 
 
+/**
+ * Émet le champ json de chaque tuple vers les auditeurs, par micro-lots (BatchingSink) :
+ * un lot part à batchBytes octets ou après maxLatencyMs, ou au tick suivant si le flux s'arrête.
+ * Les frames tracées (champ "trace") alimentent les histogrammes par étape (Tracing).
+ */
 public class ExitBolt implements IRichBolt {
 
 	private static final long serialVersionUID = 4262369370788107342L;
-	//private static Logger logger = Logger.getLogger("ExitBolt");
+	private static Logger logger = Logger.getLogger("ExitBolt");
 	private OutputCollector collector;
 	int port = -1;
 	StreamEmiter semit = null;
+	private final int batchBytes;
+	private final long maxLatencyMs;
+	private transient BatchingSink sink;
+	private transient Tracing tracing;
 	
 	public ExitBolt (int port) {
+		this(port, BatchingSink.DEFAULT_BATCH_BYTES, BatchingSink.DEFAULT_MAX_LATENCY_MS);
+	}
+	
+	/**
+	 * @param batchBytes taille d'un lot (au plus BatchingSink.MAX_BATCH_BYTES)
+	 * @param maxLatencyMs attente maximale d'une ligne avant l'envoi de son lot (0 = sans lot)
+	 */
+	public ExitBolt (int port, int batchBytes, long maxLatencyMs) {
+		if (batchBytes <= 0 || batchBytes > BatchingSink.MAX_BATCH_BYTES || maxLatencyMs < 0) {
+			throw new IllegalArgumentException("Invalid batch=" + batchBytes + " latency=" + maxLatencyMs);
+		}
 		this.port = port;
 		this.semit = new StreamEmiter(this.port);
-		
+		this.batchBytes = batchBytes;
+		this.maxLatencyMs = maxLatencyMs;
 	}
 	
 	/* (non-Javadoc)
@@ -32,10 +59,21 @@ public class ExitBolt implements IRichBolt {
 	 */
 	public void execute(Tuple t) {
 	
-		String n = t.getValueByField("json").toString();
-	
-		this.semit.send(n);
-		collector.ack(t);
+		try {
+			if (TupleUtils.isTick(t)) {
+				this.sink.flushIfDue(System.nanoTime());
+			} else {
+				byte[] n = (t.getValueByField("json").toString() + "\n").getBytes(StandardCharsets.UTF_8);
+				this.sink.append(n, 0, n.length);
+				if (t.contains(Tracing.FIELD)) {
+					this.tracing.record((long[]) t.getValueByField(Tracing.FIELD));
+				}
+			}
+			collector.ack(t);
+		} catch (IOException | IllegalArgumentException e) {
+			logger.severe("Cannot send record: " + e.getMessage());
+			collector.fail(t);
+		}
 		
 		return;
 		
@@ -55,14 +93,23 @@ public class ExitBolt implements IRichBolt {
 	 * @see backtype.storm.topology.IComponent#getComponentConfiguration()
 	 */
 	public Map<String, Object> getComponentConfiguration() {
-		return null;
+		// Tick pour vider le dernier lot d'un flux arrêté
+		Map<String, Object> conf = new HashMap<>();
+		conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, 1);
+		return conf;
 	}
 
 	/* (non-Javadoc)
 	 * @see backtype.storm.topology.IBasicBolt#cleanup()
 	 */
 	public void cleanup() {
-		
+		try {
+			this.sink.flush();
+		} catch (IOException e) {
+			logger.warning("Cannot flush last batch: " + e.getMessage());
+		}
+		logger.info("ExitBolt on port " + this.port + ": " + this.sink.summary());
+		this.semit.close();
 	}
 	
 	/* (non-Javadoc)
@@ -70,6 +117,14 @@ public class ExitBolt implements IRichBolt {
 	 */
 	@SuppressWarnings("rawtypes")
 	public void prepare(Map arg0, TopologyContext context, OutputCollector collector) {
-		this.collector = collector;
+		this.collector = new MeteredOutputCollector(collector, context);
+		try {
+			this.semit.open();
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot open " + this.semit, e);
+		}
+		this.sink = new BatchingSink(this.semit, this.batchBytes, this.maxLatencyMs);
+		this.tracing = new Tracing(context);
+		AbstractExitBolt.registerEmitterGauges(context, this.semit);
 	}
 }
\ No newline at end of file
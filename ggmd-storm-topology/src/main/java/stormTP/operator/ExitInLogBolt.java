@@ -72,6 +72,6 @@ public class ExitInLogBolt implements IRichBolt {
 	 */
 	@SuppressWarnings("rawtypes")
 	public void prepare(Map arg0, TopologyContext context, OutputCollector collector) {
-		this.collector = collector;
+		this.collector = new MeteredOutputCollector(collector, context);
 	}
 }
\ No newline at end of file
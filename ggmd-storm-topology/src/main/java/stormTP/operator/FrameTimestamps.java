@@ -0,0 +1,39 @@
+package stormTP.operator;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.storm.tuple.Tuple;
+
+/**
+ * Timestamp producteur des frames (champ "timestamp" de StreamRunners, en ms).
+ * Chaque opérateur le recopie en dernier champ de son schéma, jusqu'aux bolts de sortie qui
+ * l'écrivent dans l'enregistrement : l'auditeur en déduit la latence de bout en bout.
+ */
+public final class FrameTimestamps {
+
+    public static final String FIELD = "timestamp";
+
+    private static final Pattern TIMESTAMP_PATTERN = Pattern.compile("\"timestamp\"\\s*:\\s*(\\d+)");
+
+    private FrameTimestamps() {
+    }
+
+    /**
+     * Timestamp d'une frame JSON ; instant courant si la frame n'en a pas
+     */
+    public static long ofFrame(String json) {
+        Matcher matcher = TIMESTAMP_PATTERN.matcher(json);
+        if (matcher.find()) {
+            return Long.parseLong(matcher.group(1));
+        }
+        return System.currentTimeMillis();
+    }
+
+    /**
+     * Timestamp d'un tuple ; instant courant pour une source sans timestamp (tick, filigrane)
+     */
+    public static long ofTuple(Tuple t) {
+        return t.contains(FIELD) ? ((Number) t.getValueByField(FIELD)).longValue() : System.currentTimeMillis();
+    }
+}
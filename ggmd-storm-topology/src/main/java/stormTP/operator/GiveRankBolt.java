@@ -1,15 +1,20 @@
 package stormTP.operator;
 
 import java.util.Map;
-import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import org.apache.storm.Config;
 import org.apache.storm.task.OutputCollector;
 import org.apache.storm.task.TopologyContext;
 import org.apache.storm.topology.IRichBolt;
@@ -17,19 +22,50 @@ import org.apache.storm.topology.OutputFieldsDeclarer;
 import org.apache.storm.tuple.Fields;
 import org.apache.storm.tuple.Tuple;
 import org.apache.storm.tuple.Values;
+import stormTP.core.FrameRanker;
+import stormTP.core.FrameReader;
 
 /**
  * Bolt qui détermine le classement des tortues sur la piste
- * Émet des tuples avec le schéma: (id, top, rang, total, maxcel)
+ * Émet des tuples avec le schéma: (id, top, rang, exaequo, total, maxcel, timestamp, trace)
+ * où rang est un int et exaequo un boolean ; le format "Nex" n'est produit que par les bolts de sortie.
+ * timestamp est le temps d'événement de la frame (champ "timestamp" du producteur).
+ * Avec un parallélisme > 0, le classement d'une frame est réparti sur un ForkJoinPool (voir FrameRanker).
+ * En mode batch, émet à la place un seul tuple par frame sur BATCH_STREAM avec le schéma
+ * (top, total, maxcel, ids, rangs, exaequos, timestamp, trace), tableaux triés du premier au dernier.
+ * Ce flux est diffusé à toutes les tâches du consommateur : chacune n'en traite que ses tortues (ownsRunner).
+ * Les filigranes reçus du spout sur WATERMARK_STREAM sont relayés après les frames qui les précèdent.
  */
 public class GiveRankBolt implements IRichBolt {
 
     private static final long serialVersionUID = 4262369370788107344L;
     private static Logger logger = Logger.getLogger("GiveRankBoltLogger");
     private OutputCollector collector;
+    private int taskId;
+    // Trace des rangs de la frame en cours, prise une fois la frame classée (null si non tracée)
+    private long[] frameTrace;
+    
+    // Métriques : analyse de la frame, classement (émission comprise), tortues par frame
+    private transient Timer parseTimer;
+    private transient Timer rankTimer;
+    private transient Histogram frameSizes;
+    private transient FrameReader frame;
+    
+    public static final String BATCH_STREAM = "rankBatch";
+    public static final String WATERMARK_STREAM = InputStreamSpout.WATERMARK_STREAM;
+    
+    // Un tuple par frame (un seul ancrage) au lieu d'un tuple par tortue
+    private final boolean batchOutput;
+    private transient int[] batchIds;
+    private transient int[] batchRangs;
+    private transient boolean[] batchExaequos;
     
-    // Stockage des données des tortues pour un top donné
-    private Map<Integer, Map<Integer, TurtleData>> topToTurtles = new HashMap<>();
+    // Nombre de threads pour le classement intra-frame (0 = tri séquentiel)
+    private final int parallelism;
+    private transient ForkJoinPool pool;
+    private transient FrameRanker ranker;
+    private transient FrameRanker.Ranking ranking;
+    private transient int[] cellsBuffer;
     
     // Classe interne pour stocker les données d'une tortue
     private static class TurtleData {
@@ -39,28 +75,54 @@ public class GiveRankBolt implements IRichBolt {
         int nbCellsParcourus;
         int total;
         int maxcel;
+        long timestamp;
         Tuple originalTuple;
         
-        TurtleData(int id, int top, String nom, int nbCellsParcourus, int total, int maxcel, Tuple tuple) {
+        TurtleData(int id, int top, String nom, int nbCellsParcourus, int total, int maxcel, long timestamp, Tuple tuple) {
             this.id = id;
             this.top = top;
             this.nom = nom;
             this.nbCellsParcourus = nbCellsParcourus;
             this.total = total;
             this.maxcel = maxcel;
+            this.timestamp = timestamp;
             this.originalTuple = tuple;
         }
     }
     
     public GiveRankBolt() {
+        this(0);
+    }
+    
+    /**
+     * @param parallelism nombre de threads utilisés pour classer une frame (0 = tri séquentiel)
+     */
+    public GiveRankBolt(int parallelism) {
+        this(parallelism, false);
+    }
+    
+    /**
+     * @param parallelism nombre de threads utilisés pour classer une frame (0 = tri séquentiel)
+     * @param batchOutput vrai pour émettre tout le classement d'une frame dans un seul tuple
+     */
+    public GiveRankBolt(int parallelism, boolean batchOutput) {
+        this.parallelism = parallelism;
+        this.batchOutput = batchOutput;
     }
     
     @Override
     public void execute(Tuple t) {
         try {
+            if (WATERMARK_STREAM.equals(t.getSourceStreamId())) {
+                // Les frames antérieures ont déjà été classées et émises : le filigrane peut suivre
+                collector.emit(WATERMARK_STREAM, t, new Values(t.getValueByField("watermark")));
+                collector.ack(t);
+                return;
+            }
+            
             // Parse JSON input from InputStreamSpout
             String jsonInput = t.getValueByField("json").toString();
-            logger.info("Received JSON: " + jsonInput);
+            logger.fine(() -> "Received JSON: " + jsonInput);
             
             // Parse the JSON to extract runners
             parseJsonAndProcess(jsonInput, t);
@@ -75,41 +137,34 @@ public class GiveRankBolt implements IRichBolt {
     
     private void parseJsonAndProcess(String jsonInput, Tuple originalTuple) {
         try {
+            long start = System.nanoTime();
             // Find all runners in the JSON
-            Pattern runnersPattern = Pattern.compile("\"runners\"\\s*:\\s*\\[([^\\]]+)\\]");
-            Matcher runnersMatcher = runnersPattern.matcher(jsonInput);
-            
-            if (runnersMatcher.find()) {
-                String runnersArray = runnersMatcher.group(1);
-                
-                // Parse individual runner objects
-                Pattern runnerPattern = Pattern.compile("\\{[^}]+\\}");
-                Matcher runnerMatcher = runnerPattern.matcher(runnersArray);
-                
+            if (frame.reset(jsonInput)) {
                 List<TurtleData> turtlesInThisFrame = new ArrayList<>();
                 int total = 0;
                 int maxcel = 0;
                 int top = 0;
+                long timestamp = FrameTimestamps.ofFrame(jsonInput);
                 
-                while (runnerMatcher.find()) {
-                    String runnerJson = runnerMatcher.group();
-                    
-                    int id = extractIntField(runnerJson, "id");
-                    top = extractIntField(runnerJson, "top"); // Get top from individual runner
-                    int tour = extractIntField(runnerJson, "tour");
-                    int cellule = extractIntField(runnerJson, "cellule");
-                    total = extractIntField(runnerJson, "total");
-                    maxcel = extractIntField(runnerJson, "maxcel");
+                while (frame.next()) {
+                    int id = frame.id();
+                    top = frame.top(); // Get top from individual runner
+                    total = frame.total();
+                    maxcel = frame.maxcel();
                     
-                    int nbCellsParcourus = tour * maxcel + cellule;
+                    int nbCellsParcourus = frame.cells();
                     String nom = "Turtle" + id; // Simple name generation
                     
-                    turtlesInThisFrame.add(new TurtleData(id, top, nom, nbCellsParcourus, total, maxcel, originalTuple));
+                    turtlesInThisFrame.add(new TurtleData(id, top, nom, nbCellsParcourus, total, maxcel, timestamp, originalTuple));
                 }
                 
                 // Calculate ranks for all turtles and emit
+                parseTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                frameSizes.update(turtlesInThisFrame.size());
                 if (!turtlesInThisFrame.isEmpty()) {
+                    long rankStart = System.nanoTime();
                     calculateRanksAndEmitAll(turtlesInThisFrame);
+                    rankTimer.update(System.nanoTime() - rankStart, TimeUnit.NANOSECONDS);
                 }
             }
             
@@ -120,26 +175,13 @@ public class GiveRankBolt implements IRichBolt {
         }
     }
     
-    /**
-     * Extract integer field value from JSON string using regex
-     */
-    private int extractIntField(String json, String fieldName) {
-        Pattern pattern = Pattern.compile("\"" + fieldName + "\"\\s*:\\s*(\\d+)");
-        Matcher matcher = pattern.matcher(json);
-        if (matcher.find()) {
-            return Integer.parseInt(matcher.group(1));
-        }
-        throw new RuntimeException("Field " + fieldName + " not found in JSON: " + json);
-    }
-    
-    private void calculateRanksAndEmit(int top, Map<Integer, TurtleData> turtles) {
-        // Convertir en liste pour le tri
-        List<TurtleData> turtleList = new ArrayList<>(turtles.values());
-        calculateRanksAndEmitAll(turtleList);
-    }
-    
     private void calculateRanksAndEmitAll(List<TurtleData> turtleList) {
-        logger.info("Processing " + turtleList.size() + " turtles for ranking");
+        logger.fine(() -> "Processing " + turtleList.size() + " turtles for ranking");
+        
+        if (ranker != null) {
+            calculateRanksInParallelAndEmitAll(turtleList);
+            return;
+        }
         
         // Trier par nbCellsParcourus (décroissant)
         Collections.sort(turtleList, new Comparator<TurtleData>() {
@@ -150,27 +192,96 @@ public class GiveRankBolt implements IRichBolt {
         });
         
         // Log sorted results
-        for (int i = 0; i < turtleList.size(); i++) {
-            TurtleData turtle = turtleList.get(i);
-            logger.info("Sorted position " + i + ": id=" + turtle.id + " cells=" + turtle.nbCellsParcourus);
+        if (logger.isLoggable(Level.FINE)) {
+            for (int i = 0; i < turtleList.size(); i++) {
+                TurtleData turtle = turtleList.get(i);
+                logger.fine("Sorted position " + i + ": id=" + turtle.id + " cells=" + turtle.nbCellsParcourus);
+            }
         }
         
         // Calculer les rangs
+        startBatch(turtleList.size(), turtleList.get(0).originalTuple);
         for (int i = 0; i < turtleList.size(); i++) {
             TurtleData turtle = turtleList.get(i);
-            String rang = calculateRank(i, turtle, turtleList);
+            int rang = calculateRank(i, turtle, turtleList);
+            boolean exaequo = hasEquality(i, turtle, turtleList);
             
-            logger.info("Emitting turtle id=" + turtle.id + " rang=" + rang + " cells=" + turtle.nbCellsParcourus);
-            collector.emit(turtle.originalTuple, new Values(turtle.id, turtle.top, rang, turtle.total, turtle.maxcel));
+            logger.fine(() -> "Emitting turtle id=" + turtle.id + " rang=" + rang + " exaequo=" + exaequo + " cells=" + turtle.nbCellsParcourus);
+            emitRank(i, turtle, rang, exaequo);
         }
         
         // Ack the original tuple once for all emissions
         if (!turtleList.isEmpty()) {
+            emitBatch(turtleList.get(0));
+            collector.ack(turtleList.get(0).originalTuple);
+        }
+    }
+    
+    /**
+     * Classement par tri par comptage parallèle, sans log par tortue
+     */
+    private void calculateRanksInParallelAndEmitAll(List<TurtleData> turtleList) {
+        int n = turtleList.size();
+        if (cellsBuffer == null || cellsBuffer.length < n) {
+            cellsBuffer = new int[n];
+        }
+        for (int i = 0; i < n; i++) {
+            cellsBuffer[i] = turtleList.get(i).nbCellsParcourus;
+        }
+        
+        ranker.rank(cellsBuffer, n, ranking);
+        
+        startBatch(n, turtleList.get(0).originalTuple);
+        for (int pos = 0; pos < n; pos++) {
+            int idx = ranking.order(pos);
+            emitRank(pos, turtleList.get(idx), ranking.rank(idx), ranking.isTie(idx));
+        }
+        
+        if (n > 0) {
+            emitBatch(turtleList.get(0));
             collector.ack(turtleList.get(0).originalTuple);
         }
     }
     
-    private String calculateRank(int position, TurtleData turtle, List<TurtleData> sortedTurtles) {
+    /**
+     * Prépare l'émission d'une frame classée : tableaux du batch, ou trace des tuples par tortue
+     */
+    private void startBatch(int n, Tuple originalTuple) {
+        if (batchOutput) {
+            // Nouveaux tableaux à chaque frame : le tuple émis en garde la référence
+            batchIds = new int[n];
+            batchRangs = new int[n];
+            batchExaequos = new boolean[n];
+        } else {
+            frameTrace = Tracing.next(originalTuple, taskId);
+        }
+    }
+    
+    /**
+     * Émet le rang d'une tortue, ou l'ajoute au batch de la frame à la position pos
+     */
+    private void emitRank(int pos, TurtleData turtle, int rang, boolean exaequo) {
+        if (batchOutput) {
+            batchIds[pos] = turtle.id;
+            batchRangs[pos] = rang;
+            batchExaequos[pos] = exaequo;
+        } else {
+            collector.emit(turtle.originalTuple, new Values(turtle.id, turtle.top, rang, exaequo, turtle.total, turtle.maxcel, turtle.timestamp, frameTrace));
+        }
+    }
+    
+    private void emitBatch(TurtleData first) {
+        if (batchOutput) {
+            collector.emit(BATCH_STREAM, first.originalTuple,
+                    new Values(first.top, first.total, first.maxcel, batchIds, batchRangs, batchExaequos, first.timestamp,
+                            Tracing.next(first.originalTuple, taskId)));
+            batchIds = null;
+            batchRangs = null;
+            batchExaequos = null;
+        }
+    }
+    
+    private int calculateRank(int position, TurtleData turtle, List<TurtleData> sortedTurtles) {
         // Find the actual rank based on unique scores
         int actualRank = 1;
         for (int i = 0; i < position; i++) {
@@ -178,43 +289,61 @@ public class GiveRankBolt implements IRichBolt {
                 actualRank++;
             }
         }
-        
-        // Check if there are ties
-        boolean hasEquality = false;
-        for (int i = 0; i < sortedTurtles.size(); i++) {
-            if (i != position && sortedTurtles.get(i).nbCellsParcourus == turtle.nbCellsParcourus) {
-                hasEquality = true;
-                break;
-            }
-        }
-        
-        logger.info("Turtle id=" + turtle.id + " position=" + position + " actualRank=" + actualRank + " hasEquality=" + hasEquality);
-        
-        // Return rank with "ex" if there are ties
-        if (hasEquality) {
-            return actualRank + "ex";
-        } else {
-            return String.valueOf(actualRank);
-        }
+        return actualRank;
+    }
+    
+    private boolean hasEquality(int position, TurtleData turtle, List<TurtleData> sortedTurtles) {
+        // La liste est triée : les ex-aequo sont forcément voisins
+        return (position > 0 && sortedTurtles.get(position - 1).nbCellsParcourus == turtle.nbCellsParcourus)
+                || (position + 1 < sortedTurtles.size() && sortedTurtles.get(position + 1).nbCellsParcourus == turtle.nbCellsParcourus);
+    }
+    
+    /**
+     * Le batch est diffusé à toutes les tâches du consommateur (allGrouping) : vrai si la tortue id
+     * revient à la tâche d'indice taskIndex parmi numTasks
+     */
+    public static boolean ownsRunner(int id, int taskIndex, int numTasks) {
+        return numTasks == 1 || Math.floorMod(id, numTasks) == taskIndex;
     }
     
     @Override
     public void declareOutputFields(OutputFieldsDeclarer declarer) {
-        declarer.declare(new Fields("id", "top", "rang", "total", "maxcel"));
+        declarer.declare(new Fields("id", "top", "rang", "exaequo", "total", "maxcel", "timestamp", "trace"));
+        declarer.declareStream(BATCH_STREAM, new Fields("top", "total", "maxcel", "ids", "rangs", "exaequos", "timestamp", "trace"));
+        declarer.declareStream(WATERMARK_STREAM, new Fields("watermark"));
     }
     
     @Override
     public Map<String, Object> getComponentConfiguration() {
-        return null;
+        if (!batchOutput) {
+            return null;
+        }
+        // Sérialisation Kryo du classement batch, fusionnée dans la configuration de la topologie
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_KRYO_REGISTER, Arrays.asList(int[].class.getName(), boolean[].class.getName()));
+        return conf;
     }
     
     @Override
     public void cleanup() {
+        if (pool != null) {
+            pool.shutdown();
+        }
     }
     
     @Override
     @SuppressWarnings("rawtypes")
     public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
-        this.collector = collector;
+        this.collector = new MeteredOutputCollector(collector, context);
+        this.taskId = context.getThisTaskId();
+        this.parseTimer = context.registerTimer("parseTime");
+        this.frame = new FrameReader();
+        this.rankTimer = context.registerTimer("rankTime");
+        this.frameSizes = context.registerHistogram("runnersPerFrame");
+        if (parallelism > 0) {
+            this.pool = new ForkJoinPool(parallelism);
+            this.ranker = new FrameRanker(pool);
+            this.ranking = new FrameRanker.Ranking();
+        }
     }
 }
\ No newline at end of file
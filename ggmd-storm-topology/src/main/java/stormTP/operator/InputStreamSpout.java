@@ -1,8 +1,14 @@
 package stormTP.operator;
 
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Logger;
 
+import com.codahale.metrics.Counter;
+import org.apache.storm.Config;
 import org.apache.storm.spout.SpoutOutputCollector;
 import org.apache.storm.task.TopologyContext;
 import org.apache.storm.topology.base.BaseRichSpout;
@@ -10,12 +16,27 @@ import org.apache.storm.topology.OutputFieldsDeclarer;
 import org.apache.storm.tuple.Fields;
 import org.apache.storm.tuple.Values;
 import org.apache.storm.utils.Utils;
+import stormTP.core.TraceContext;
 
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.net.Socket;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
+ * Spout qui lit les frames JSON du flux d'entrée.
+ * Émet chaque frame avec le schéma (json) puis, sur WATERMARK_STREAM, le filigrane (watermark)
+ * en temps d'événement : le plus grand "timestamp" producteur émis jusque-là. Les opérateurs
+ * qui le reçoivent (dans l'ordre des frames) savent qu'aucune frame antérieure ne suivra.
+ *
+ * En mode fiable, chaque frame est émise avec un identifiant et gardée jusqu'à son ack ;
+ * une frame en échec (ou expirée) est réémise, ce qui permet aux bolts checkpointés de rejouer
+ * les frames postérieures au dernier checkpoint. Les filigranes ne sont pas rejoués.
+ *
+ * Une frame sur Tracing.SAMPLE_EVERY (configuration de la topologie) porte un contexte de
+ * trace dans le champ "trace" ; ce champ est null pour les autres frames et les frames rejouées.
+ *
  * @author lumineau
  *
  */
@@ -29,13 +50,42 @@ public class InputStreamSpout extends BaseRichSpout {
 	private Socket socket;
 	private BufferedReader reader;
 	
+	public static final String WATERMARK_STREAM = "watermark";
+	
+	private static final Pattern TIMESTAMP_PATTERN = Pattern.compile("\"timestamp\"\\s*:\\s*(\\d+)");
+	
+	// Plus grand timestamp producteur émis
+	private long maxTimestamp = Long.MIN_VALUE;
+	
+	// Mode fiable : frames non acquittées par identifiant, frames à réémettre
+	private final boolean reliable;
+	private transient Map<Long, String> pending;
+	private transient Deque<Long> replay;
+	private transient long nextMsgId;
+	
+	// Traçage : une frame sur sampleEvery (0 = aucune)
+	private transient int sampleEvery;
+	private transient int taskId;
+	private transient long frames;
+	
+	private transient Counter framesIn;
+	private transient Counter framesReplayed;
+	private transient Counter framesFailed;
+	
 	/**
 	 * 
 	 */
 	public InputStreamSpout(String host, int port ) {
+		this(host, port, false);
+	}
+	
+	/**
+	 * @param reliable vrai pour rejouer les frames en échec (bolts checkpointés)
+	 */
+	public InputStreamSpout(String host, int port, boolean reliable) {
 		this.host = host;
 		this.port = port;
-
+		this.reliable = reliable;
 	}
 	
 	
@@ -48,11 +98,24 @@ public class InputStreamSpout extends BaseRichSpout {
 
 		try {
 
+			if (reliable && !replay.isEmpty()) {
+				Long msgId = replay.poll();
+				String json = pending.get(msgId);
+				if (json != null) {
+					collector.emit(new Values(json, null), msgId);
+					framesReplayed.inc();
+					logger.fine(() -> "REPLAY " + msgId);
+				}
+				return;
+			}
+
 			if (reader.ready()) {
 				String json = reader.readLine();
 				if (json != null) {
-					collector.emit(new Values(json));
-					logger.info("EMIT OK");
+					emitFrame(json);
+					framesIn.inc();
+					logger.fine("EMIT OK");
+					emitWatermark(json);
 				}
 			}
 
@@ -65,6 +128,33 @@ public class InputStreamSpout extends BaseRichSpout {
 		}
 	}
 
+	private void emitFrame(String json) {
+		long frameId = frames++;
+		long[] trace = TraceContext.sampled(frameId, sampleEvery)
+				? TraceContext.start(frameId, taskId, TraceContext.nowNanos())
+				: null;
+		if (reliable) {
+			long msgId = nextMsgId++;
+			pending.put(msgId, json);
+			collector.emit(new Values(json, trace), msgId);
+		} else {
+			collector.emit(new Values(json, trace));
+		}
+	}
+
+	/**
+	 * Émet le filigrane si la frame fait avancer le temps d'événement
+	 */
+	private void emitWatermark(String json) {
+		Matcher matcher = TIMESTAMP_PATTERN.matcher(json);
+		if (matcher.find()) {
+			long timestamp = Long.parseLong(matcher.group(1));
+			if (timestamp > maxTimestamp) {
+				maxTimestamp = timestamp;
+				collector.emit(WATERMARK_STREAM, new Values(maxTimestamp));
+			}
+		}
+	}
 	
 	/* (non-Javadoc)
 	 * @see org.apache.storm.spout.ISpout#open(java.util.Map, org.apache.storm.task.TopologyContext, org.apache.storm.spout.SpoutOutputCollector)
@@ -73,6 +163,16 @@ public class InputStreamSpout extends BaseRichSpout {
 	@Override
 	public void open(Map conf, TopologyContext context, SpoutOutputCollector collector) {
 		this.collector = collector;
+		this.pending = new HashMap<>();
+		this.replay = new ArrayDeque<>();
+		this.nextMsgId = 0;
+		this.sampleEvery = Tracing.sampleEvery(conf);
+		this.taskId = context.getThisTaskId();
+		this.frames = 0;
+		this.framesIn = context.registerCounter("framesIn");
+		this.framesReplayed = context.registerCounter("framesReplayed");
+		this.framesFailed = context.registerCounter("framesFailed");
+		context.registerGauge("pendingFrames", () -> pending.size());
 
 		try {
 			socket = new Socket(host, port);
@@ -115,7 +215,10 @@ public class InputStreamSpout extends BaseRichSpout {
 	 */
 	@Override
 	public void ack(Object msgId) {
-		logger.info("*****  ACK  :   " + msgId + " *******");
+		logger.fine(() -> "*****  ACK  :   " + msgId + " *******");
+		if (reliable) {
+			pending.remove(msgId);
+		}
 	}
 
 	/* (non-Javadoc)
@@ -125,6 +228,10 @@ public class InputStreamSpout extends BaseRichSpout {
 	@Override
 	public void fail(Object msgId) {
 		logger.info("***** FAIL  :   " + msgId + " *******");
+		framesFailed.inc();
+		if (reliable && pending.containsKey(msgId)) {
+			replay.add((Long) msgId);
+		}
 	
 	}
 
@@ -133,7 +240,8 @@ public class InputStreamSpout extends BaseRichSpout {
 	 */
 	@Override
 	public void declareOutputFields(OutputFieldsDeclarer declarer) {
-		declarer.declare( new Fields("json"));
+		declarer.declare( new Fields("json", "trace"));
+		declarer.declareStream(WATERMARK_STREAM, new Fields("watermark"));
 		
 	}
 
@@ -142,6 +250,9 @@ public class InputStreamSpout extends BaseRichSpout {
 	 */
 	@Override
 	public Map<String, Object> getComponentConfiguration() {
-		return null;
+		// Sérialisation Kryo de la trace, fusionnée dans la configuration de la topologie
+		Map<String, Object> conf = new HashMap<>();
+		conf.put(Config.TOPOLOGY_KRYO_REGISTER, Collections.singletonList(long[].class.getName()));
+		return conf;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package stormTP.operator;
+
+import java.util.Collection;
+import java.util.List;
+
+import com.codahale.metrics.Counter;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.utils.TupleUtils;
+
+/**
+ * OutputCollector qui compte les tuples de l'opérateur dans les métriques v2 de Storm :
+ * "tuplesIn" (tuples acquittés ou en échec, ticks exclus), "tuplesOut" (tuples émis) et
+ * "tuplesFailed". Chaque bolt l'installe au prepare() à la place du collector reçu ;
+ * toutes les variantes d'emit passent par les deux méthodes redéfinies.
+ */
+public class MeteredOutputCollector extends OutputCollector {
+
+    private final Counter in;
+    private final Counter out;
+    private final Counter failed;
+
+    public MeteredOutputCollector(OutputCollector delegate, TopologyContext context) {
+        super(delegate);
+        this.in = context.registerCounter("tuplesIn");
+        this.out = context.registerCounter("tuplesOut");
+        this.failed = context.registerCounter("tuplesFailed");
+    }
+
+    @Override
+    public List<Integer> emit(String streamId, Collection<Tuple> anchors, List<Object> tuple) {
+        out.inc();
+        return super.emit(streamId, anchors, tuple);
+    }
+
+    @Override
+    public void emitDirect(int taskId, String streamId, Collection<Tuple> anchors, List<Object> tuple) {
+        out.inc();
+        super.emitDirect(taskId, streamId, anchors, tuple);
+    }
+
+    @Override
+    public void ack(Tuple input) {
+        if (!TupleUtils.isTick(input)) {
+            in.inc();
+        }
+        super.ack(input);
+    }
+
+    @Override
+    public void fail(Tuple input) {
+        in.inc();
+        failed.inc();
+        super.fail(input);
+    }
+}
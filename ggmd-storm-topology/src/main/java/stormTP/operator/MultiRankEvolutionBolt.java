@@ -0,0 +1,157 @@
+package stormTP.operator;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import com.codahale.metrics.Histogram;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.IRichBolt;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.Values;
+import stormTP.core.PaneWindow;
+import stormTP.core.RunnerStore;
+
+/**
+ * Évolution du rang des tortues sur plusieurs fenêtres temporelles (30 s, 5 min et 1 h par défaut),
+ * en temps d'événement (champ "timestamp" producteur de la frame), comme RankEvolutionBolt.
+ * Le temps est découpé en volets (PGCD des durées) : chaque tortue ne garde que le premier
+ * et le dernier rang de chaque volet, partagés par toutes les fenêtres. À chaque volet clos,
+ * une évolution est émise par fenêtre avec le schéma: (id, nom, fenetre, date, evolution, timestamp, trace)
+ * où date est la fin du volet clos.
+ * Accepte aussi le flux batch de GiveRankBolt (un tuple par frame, à recevoir en allGrouping).
+ */
+public class MultiRankEvolutionBolt implements IRichBolt {
+
+    private static final long serialVersionUID = 4262369370788107358L;
+    private static Logger logger = Logger.getLogger("MultiRankEvolutionBoltLogger");
+    private OutputCollector collector;
+    private int taskId;
+    private int taskIndex = 0;
+    private int numTasks = 1;
+
+    // Durées de fenêtre en ms, triées
+    private final long[] windowDurations;
+    private final long paneSize;
+
+    // Volets de chaque tortue
+    private transient RunnerStore runners;
+    private transient RunnerStore.ObjectColumn<PaneWindow> turtlePanes;
+    private transient PaneWindow.Span span;
+    private transient Histogram windowSize;
+
+    public MultiRankEvolutionBolt() {
+        this(30000L, 300000L, 3600000L);
+    }
+
+    public MultiRankEvolutionBolt(long... windowDurations) {
+        this.paneSize = PaneWindow.paneSizeFor(windowDurations);
+        this.windowDurations = Arrays.copyOf(windowDurations, windowDurations.length);
+        Arrays.sort(this.windowDurations);
+    }
+
+    @Override
+    public void execute(Tuple t) {
+        try {
+            long eventTime = FrameTimestamps.ofTuple(t);
+
+            if (GiveRankBolt.BATCH_STREAM.equals(t.getSourceStreamId())) {
+                // Lire le schéma batch de GiveRankBolt: (top, total, maxcel, ids, rangs, exaequos, timestamp, trace)
+                int[] ids = (int[]) t.getValueByField("ids");
+                int[] rangs = (int[]) t.getValueByField("rangs");
+
+                for (int i = 0; i < ids.length; i++) {
+                    if (GiveRankBolt.ownsRunner(ids[i], taskIndex, numTasks)) {
+                        processRank(ids[i], rangs[i], eventTime, t);
+                    }
+                }
+            } else {
+                // Lire le schéma d'entrée de GiveRankBolt: (id, top, rang, exaequo, total, maxcel, timestamp, trace)
+                int id = (Integer) t.getValueByField("id");
+                int rang = (Integer) t.getValueByField("rang");
+
+                processRank(id, rang, eventTime, t);
+            }
+
+            collector.ack(t);
+
+        } catch (Exception e) {
+            logger.severe("Error in MultiRankEvolutionBolt: " + e.getMessage());
+            e.printStackTrace();
+            collector.fail(t);
+        }
+    }
+
+    private void processRank(int id, int rang, long eventTime, Tuple anchor) {
+        int slot = runners.find(id);
+        if (slot < 0) {
+            slot = runners.add(id);
+            // Volet courant + assez de volets clos pour la plus longue fenêtre
+            turtlePanes.set(slot, new PaneWindow(paneSize, (int) (windowDurations[windowDurations.length - 1] / paneSize) + 1));
+        }
+        PaneWindow panes = turtlePanes.get(slot);
+
+        if (!panes.add(eventTime, rang)) {
+            return;
+        }
+
+        // Un volet vient de se clore : une évolution par fenêtre
+        String date = null;
+        for (long duration : windowDurations) {
+            if (panes.combine((int) (duration / paneSize), span) && span.count() >= 2) {
+                if (date == null) {
+                    date = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(Math.floorDiv(eventTime, paneSize) * paneSize));
+                }
+                windowSize.update(span.count());
+                String evolution = evolutionOf(span.firstValue() - span.lastValue());
+
+                logger.fine(() -> "Emitting evolution for turtle id=" + id + " fenetre=" + duration + " evolution=" + evolution);
+                collector.emit(anchor, new Values(id, "Turtle" + id, duration, date, evolution, eventTime,
+                        Tracing.next(anchor, taskId)));
+            }
+        }
+    }
+
+    private static String evolutionOf(int rankDifference) {
+        if (rankDifference > 0) {
+            return "En progression"; // Le rang a diminué (meilleur classement)
+        } else if (rankDifference < 0) {
+            return "En régression"; // Le rang a augmenté (pire classement)
+        } else {
+            return "Constant"; // Même rang
+        }
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        declarer.declare(new Fields("id", "nom", "fenetre", "date", "evolution", "timestamp", "trace"));
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        return null;
+    }
+
+    @Override
+    public void cleanup() {
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        this.collector = new MeteredOutputCollector(collector, context);
+        this.taskId = context.getThisTaskId();
+        this.taskIndex = context.getThisTaskIndex();
+        this.numTasks = context.getComponentTasks(context.getThisComponentId()).size();
+        this.runners = new RunnerStore();
+        this.turtlePanes = runners.objectColumn();
+        this.span = new PaneWindow.Span();
+        this.windowSize = context.registerHistogram("windowSize");
+        context.registerGauge("liveRunners", () -> runners.size());
+    }
+}
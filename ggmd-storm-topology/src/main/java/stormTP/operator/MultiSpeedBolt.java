@@ -0,0 +1,142 @@
+package stormTP.operator;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.IRichBolt;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.Values;
+import stormTP.core.FrameReader;
+import stormTP.core.PaneWindow;
+import stormTP.core.RunnerStore;
+
+/**
+ * Vitesse moyenne des tortues sur plusieurs tailles de fenêtre (10, 50 et 500 tops par défaut).
+ * Les tops sont découpés en volets (PGCD des tailles) : chaque tortue ne garde qu'un agrégat
+ * par volet, partagé par toutes les fenêtres. À chaque volet clos, une vitesse est émise
+ * par taille de fenêtre avec le schéma: (id, nom, fenetre, tops, vitesse, timestamp, trace)
+ */
+public class MultiSpeedBolt implements IRichBolt {
+
+    private static final long serialVersionUID = 4262369370788107357L;
+    private static Logger logger = Logger.getLogger("MultiSpeedBoltLogger");
+    private OutputCollector collector;
+    private int taskId;
+
+
+    // Tailles de fenêtre en tops, triées
+    private final int[] windowTops;
+    private final int paneSize;
+
+    // Volets de chaque tortue
+    private transient RunnerStore runners;
+    private transient RunnerStore.ObjectColumn<PaneWindow> turtlePanes;
+    private transient PaneWindow.Span span;
+    private transient FrameReader frame;
+
+    // Métriques : traitement d'une frame, volets par fenêtre évaluée
+    private transient Timer frameTimer;
+    private transient Histogram windowSizes;
+
+    public MultiSpeedBolt() {
+        this(10, 50, 500);
+    }
+
+    public MultiSpeedBolt(int... windowTops) {
+        long[] lengths = new long[windowTops.length];
+        for (int i = 0; i < windowTops.length; i++) {
+            lengths[i] = windowTops[i];
+        }
+        this.paneSize = (int) PaneWindow.paneSizeFor(lengths);
+        this.windowTops = Arrays.copyOf(windowTops, windowTops.length);
+        Arrays.sort(this.windowTops);
+    }
+
+    @Override
+    public void execute(Tuple t) {
+        try {
+            long start = System.nanoTime();
+            String jsonInput = t.getValueByField("json").toString();
+            if (frame.reset(jsonInput)) {
+                long timestamp = FrameTimestamps.ofFrame(jsonInput);
+
+                while (frame.next()) {
+                    processTurtleSpeed(frame.id(), frame.top(), frame.cells(), timestamp, t);
+                }
+            }
+            frameTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            collector.ack(t);
+
+        } catch (Exception e) {
+            logger.severe("Error in MultiSpeedBolt: " + e.getMessage());
+            e.printStackTrace();
+            collector.fail(t);
+        }
+    }
+
+    private void processTurtleSpeed(int id, int top, int nbCellsParcourus, long timestamp, Tuple anchor) {
+        int slot = runners.find(id);
+        if (slot < 0) {
+            slot = runners.add(id);
+            // Volet courant + assez de volets clos pour la plus grande fenêtre
+            turtlePanes.set(slot, new PaneWindow(paneSize, windowTops[windowTops.length - 1] / paneSize + 1));
+        }
+        PaneWindow panes = turtlePanes.get(slot);
+
+        if (!panes.add(top, nbCellsParcourus)) {
+            return;
+        }
+
+        // Un volet vient de se clore : une vitesse par taille de fenêtre
+        long[] trace = Tracing.next(anchor, taskId);
+        for (int windowSize : windowTops) {
+            if (panes.combine(windowSize / paneSize, span) && span.lastPosition() > span.firstPosition()) {
+                windowSizes.update(span.count());
+                int firstTop = (int) span.firstPosition();
+                int lastTop = (int) span.lastPosition();
+                double vitesse = (double) (span.lastValue() - span.firstValue()) / (lastTop - firstTop);
+                String tops = firstTop + "-" + lastTop;
+
+                logger.fine(() -> "Emitting speed for turtle id=" + id + " fenetre=" + windowSize + " tops=" + tops + " vitesse=" + vitesse);
+                collector.emit(anchor, new Values(id, "Turtle" + id, windowSize, tops, vitesse, timestamp, trace));
+            }
+        }
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        declarer.declare(new Fields("id", "nom", "fenetre", "tops", "vitesse", "timestamp", "trace"));
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        return null;
+    }
+
+    @Override
+    public void cleanup() {
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        this.collector = new MeteredOutputCollector(collector, context);
+        this.taskId = context.getThisTaskId();
+        this.runners = new RunnerStore();
+        this.turtlePanes = runners.objectColumn();
+        this.span = new PaneWindow.Span();
+        context.registerGauge("liveRunners", () -> runners.size());
+        this.frameTimer = context.registerTimer("frameTime");
+        this.frame = new FrameReader();
+        this.windowSizes = context.registerHistogram("windowSize");
+    }
+}
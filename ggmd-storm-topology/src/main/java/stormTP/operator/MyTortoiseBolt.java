@@ -1,10 +1,10 @@
 package stormTP.operator;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
+import com.codahale.metrics.Timer;
 import org.apache.storm.task.OutputCollector;
 import org.apache.storm.task.TopologyContext;
 import org.apache.storm.topology.IRichBolt;
@@ -12,6 +12,7 @@ import org.apache.storm.topology.OutputFieldsDeclarer;
 import org.apache.storm.tuple.Fields;
 import org.apache.storm.tuple.Tuple;
 import org.apache.storm.tuple.Values;
+import stormTP.core.FrameReader;
 
 
 /**
@@ -25,6 +26,9 @@ public class MyTortoiseBolt implements IRichBolt {
 
 	private static Logger logger = Logger.getLogger("MyTortoiseBoltLogger");
 	private OutputCollector collector;
+	private int taskId;
+	private transient Timer parseTimer;
+	private transient FrameReader frame;
 	private int targetId = 3; // default target tortoise id
 	private static final String[] NAMES = new String[]{"Caroline", "Donatello", "Raphaelo", "Michelangelo", "Gamera", "Leonardo", "April"};
 	
@@ -47,38 +51,41 @@ public class MyTortoiseBolt implements IRichBolt {
 	public void execute(Tuple t) {
 
 		try {
+			long start = System.nanoTime();
 			String n = t.getValueByField("json").toString();
-			logger.info("================================================================================");
-			logger.info("=> Processing JSON: " + n);
+			logger.fine(() -> "=> Processing JSON: " + n);
 			
-			// Simple regex-based parsing for the specific JSON structure
-			// Looking for runner objects with "id":<targetId>
-			Pattern runnerPattern = Pattern.compile("\\{[^}]*\"id\"\\s*:\\s*" + this.targetId + "[^}]*\\}");
-			Matcher matcher = runnerPattern.matcher(n);
+			// Looking for the runner object with "id":<targetId>
+			boolean found = false;
+			if (frame.reset(n)) {
+				while (frame.next()) {
+					if (frame.id() == this.targetId) {
+						found = true;
+						break;
+					}
+				}
+			}
 			
-			if (matcher.find()) {
-				String runnerJson = matcher.group();
-				logger.info("=> Found target runner: " + runnerJson);
-				
-				// Extract individual fields using regex
-				int id = extractIntField(runnerJson, "id");
-				int top = extractIntField(runnerJson, "top");
-				int tour = extractIntField(runnerJson, "tour");
-				int cellule = extractIntField(runnerJson, "cellule");
-				int total = extractIntField(runnerJson, "total");
-				int maxcel = extractIntField(runnerJson, "maxcel");
+			if (found) {
+				int id = frame.id();
+				int top = frame.top();
+				int total = frame.total();
+				int maxcel = frame.maxcel();
 				
-				int nbCellsParcourus = tour * maxcel + cellule;
+				int nbCellsParcourus = frame.cells();
 				String nom = NAMES[id % NAMES.length];
 				
-				logger.info("=> turtle id=" + id + " top=" + top + " name=" + nom + " cells=" + nbCellsParcourus);
-				collector.emit(t, new Values(id, top, nom, nbCellsParcourus, total, maxcel));
+				parseTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+				logger.fine(() -> "=> turtle id=" + id + " top=" + top + " name=" + nom + " cells=" + nbCellsParcourus);
+				collector.emit(t, new Values(id, top, nom, nbCellsParcourus, total, maxcel, FrameTimestamps.ofFrame(n),
+						Tracing.next(t, taskId)));
 				collector.ack(t);
 				return;
 			}
 			
 			// target not found in this frame
-			logger.info("=> Target turtle id=" + this.targetId + " not found in this frame");
+			parseTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+			logger.fine(() -> "=> Target turtle id=" + this.targetId + " not found in this frame");
 			collector.ack(t);
 		} catch (Exception e) {
 			logger.severe("Error parsing tuple: " + e.getMessage());
@@ -88,25 +95,13 @@ public class MyTortoiseBolt implements IRichBolt {
 		return;
 	}
 	
-	/**
-	 * Extract integer field value from JSON string using regex
-	 */
-	private int extractIntField(String json, String fieldName) {
-		Pattern pattern = Pattern.compile("\"" + fieldName + "\"\\s*:\\s*(\\d+)");
-		Matcher matcher = pattern.matcher(json);
-		if (matcher.find()) {
-			return Integer.parseInt(matcher.group(1));
-		}
-		throw new RuntimeException("Field " + fieldName + " not found in JSON: " + json);
-	}
-	
 	
 	
 	/* (non-Javadoc)
 	 * @see backtype.storm.topology.IComponent#declareOutputFields(backtype.storm.topology.OutputFieldsDeclarer)
 	 */
 	public void declareOutputFields(OutputFieldsDeclarer declarer) {
-		declarer.declare(new Fields("id", "top", "nom", "nbCellsParcourus", "total", "maxcel"));
+		declarer.declare(new Fields("id", "top", "nom", "nbCellsParcourus", "total", "maxcel", "timestamp", "trace"));
 	}
 		
 
@@ -131,6 +126,9 @@ public class MyTortoiseBolt implements IRichBolt {
 	 */
 	@SuppressWarnings("rawtypes")
 	public void prepare(Map arg0, TopologyContext context, OutputCollector collector) {
-		this.collector = collector;
+		this.collector = new MeteredOutputCollector(collector, context);
+		this.taskId = context.getThisTaskId();
+		this.parseTimer = context.registerTimer("parseTime");
+		this.frame = new FrameReader();
 	}
 }
\ No newline at end of file
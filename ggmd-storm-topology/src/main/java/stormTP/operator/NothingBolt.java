@@ -36,7 +36,7 @@ public class NothingBolt implements IRichBolt {
 	
 		try {
 			String n = t.getValueByField("json").toString();
-			logger.info( "=> " + n + " treated!");
+			logger.fine(() -> "=> " + n + " treated!");
 			collector.emit(t, new Values(n));
 			collector.ack(t);
 		}catch (Exception e){
@@ -77,6 +77,6 @@ public class NothingBolt implements IRichBolt {
 	 */
 	@SuppressWarnings("rawtypes")
 	public void prepare(Map arg0, TopologyContext context, OutputCollector collector) {
-		this.collector = collector;
+		this.collector = new MeteredOutputCollector(collector, context);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,230 @@
+package stormTP.operator;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.IRichBolt;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.Values;
+import stormTP.core.CellHistogram;
+
+/**
+ * Partition du classement distribué (fieldsGrouping sur l'id de la tortue).
+ *
+ * Phase 1 : à la fin d'une frame, émet l'histogramme local de nbCellsParcourus
+ * sur HISTOGRAM_STREAM avec le schéma (top, partitions, values, counts).
+ * Phase 2 : à réception des comptes globaux de RankMergeBolt (top, values, greater, counts),
+ * classe localement ses tortues et émet le même schéma que GiveRankBolt: (id, top, rang, exaequo, total, maxcel, timestamp, trace)
+ *
+ * Les frames d'une tâche split passent par une tâche merge dans l'ordre des tops : à la réception
+ * des comptes d'un top, une frame en attente de plus de lagTops tops plus ancienne ne sera plus
+ * classée (fin de frame ou comptes perdus). Elle est retirée et ses tuples mis en échec
+ * (compteur expiredFrames). Avec plusieurs tâches split ou merge, lagTops doit couvrir leur décalage.
+ * Des tortues reçues pour une frame dont l'histogramme est déjà parti viennent d'une frame
+ * rejouée par le spout : elles remplacent la frame gardée, dont les tuples sont mis en échec
+ * (compteur replayedFrames).
+ */
+public class PartitionRankBolt implements IRichBolt {
+
+    private static final long serialVersionUID = 4262369370788107353L;
+    private static Logger logger = Logger.getLogger("PartitionRankBoltLogger");
+    private OutputCollector collector;
+    private int taskId;
+    private int partitions;
+    private transient Timer rankTime;
+    private transient Counter expiredFrames;
+    private transient Counter replayedFrames;
+
+    public static final String HISTOGRAM_STREAM = "histogram";
+
+    // Tortues reçues par top, en attente des comptes globaux
+    private Map<Integer, PendingFrame> pendingFrames = new HashMap<>();
+    private final int lagTops;
+
+    // Classe interne pour stocker les tortues d'une frame côté partition
+    private static class PendingFrame {
+        int size = 0;
+        int[] ids = new int[16];
+        int[] cells = new int[16];
+        int[] totals = new int[16];
+        int[] maxcels = new int[16];
+        long[] timestamps = new long[16];
+        Tuple[] tuples = new Tuple[16];
+        // Histogramme local émis (fin de frame reçue)
+        boolean ended;
+
+        void add(int id, int nbCells, int total, int maxcel, long timestamp, Tuple tuple) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                cells = Arrays.copyOf(cells, capacity);
+                totals = Arrays.copyOf(totals, capacity);
+                maxcels = Arrays.copyOf(maxcels, capacity);
+                timestamps = Arrays.copyOf(timestamps, capacity);
+                tuples = Arrays.copyOf(tuples, capacity);
+            }
+            ids[size] = id;
+            cells[size] = nbCells;
+            totals[size] = total;
+            maxcels[size] = maxcel;
+            timestamps[size] = timestamp;
+            tuples[size] = tuple;
+            size++;
+        }
+    }
+
+    public PartitionRankBolt() {
+        this(0);
+    }
+
+    /**
+     * @param lagTops retard, en tops, sur le dernier top classé au-delà duquel une frame en attente expire
+     */
+    public PartitionRankBolt(int lagTops) {
+        if (lagTops < 0) {
+            throw new IllegalArgumentException("Invalid lag tops: " + lagTops);
+        }
+        this.lagTops = lagTops;
+    }
+
+    @Override
+    public void execute(Tuple t) {
+        try {
+            if (RunnerSplitBolt.FRAME_END_STREAM.equals(t.getSourceStreamId())) {
+                emitHistogram(t);
+            } else if (RankMergeBolt.COUNTS_STREAM.equals(t.getSourceStreamId())) {
+                assignRanks(t);
+            } else {
+                int id = (Integer) t.getValueByField("id");
+                int top = (Integer) t.getValueByField("top");
+                int nbCells = (Integer) t.getValueByField("nbCellsParcourus");
+                int total = (Integer) t.getValueByField("total");
+                int maxcel = (Integer) t.getValueByField("maxcel");
+
+                PendingFrame frame = pendingFrames.get(top);
+                if (frame != null && frame.ended) {
+                    logger.fine(() -> "Replayed frame top=" + top);
+                    replayedFrames.inc();
+                    fail(frame);
+                    frame = null;
+                }
+                if (frame == null) {
+                    frame = new PendingFrame();
+                    pendingFrames.put(top, frame);
+                }
+                // Le tuple sera acquitté une fois son rang émis, sa trace prise à l'émission
+                frame.add(id, nbCells, total, maxcel, FrameTimestamps.ofTuple(t), t);
+            }
+        } catch (Exception e) {
+            logger.severe("Error in PartitionRankBolt: " + e.getMessage());
+            e.printStackTrace();
+            collector.fail(t);
+        }
+    }
+
+    /**
+     * Phase 1 : histogramme local de la frame (éventuellement vide) vers RankMergeBolt
+     */
+    private void emitHistogram(Tuple frameEnd) {
+        int top = (Integer) frameEnd.getValueByField("top");
+        PendingFrame frame = pendingFrames.get(top);
+
+        CellHistogram histogram;
+        if (frame == null) {
+            histogram = CellHistogram.of(new int[0], 0);
+        } else {
+            histogram = CellHistogram.of(frame.cells, frame.size);
+            frame.ended = true;
+        }
+
+        collector.emit(HISTOGRAM_STREAM, frameEnd, new Values(top, partitions, histogram.values(), histogram.counts()));
+        collector.ack(frameEnd);
+    }
+
+    /**
+     * Phase 2 : rangs définitifs à partir des comptes cumulés globaux
+     */
+    private void assignRanks(Tuple counts) {
+        int top = (Integer) counts.getValueByField("top");
+        PendingFrame frame = pendingFrames.remove(top);
+
+        if (frame != null) {
+            long start = System.nanoTime();
+            CellHistogram global = CellHistogram.fromArrays(
+                    (int[]) counts.getValueByField("values"),
+                    (int[]) counts.getValueByField("counts"),
+                    (int[]) counts.getValueByField("greater"));
+
+            for (int i = 0; i < frame.size; i++) {
+                int cells = frame.cells[i];
+                collector.emit(frame.tuples[i], new Values(frame.ids[i], top, global.rankOf(cells), global.isTie(cells),
+                        frame.totals[i], frame.maxcels[i], frame.timestamps[i], Tracing.next(frame.tuples[i], taskId)));
+                collector.ack(frame.tuples[i]);
+            }
+            rankTime.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            logger.fine(() -> "Ranked " + frame.size + " runners for top=" + top);
+        }
+        expireFrames(top);
+
+        collector.ack(counts);
+    }
+
+    /**
+     * Retire les frames de plus de lagTops tops plus anciennes que le top classé
+     */
+    private void expireFrames(int rankedTop) {
+        Iterator<Map.Entry<Integer, PendingFrame>> it = pendingFrames.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, PendingFrame> e = it.next();
+            if ((long) e.getKey() < (long) rankedTop - lagTops) {
+                logger.fine(() -> "Expiring frame top=" + e.getKey() + " after top=" + rankedTop);
+                expiredFrames.inc();
+                fail(e.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    private void fail(PendingFrame frame) {
+        for (int i = 0; i < frame.size; i++) {
+            collector.fail(frame.tuples[i]);
+        }
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        declarer.declare(new Fields("id", "top", "rang", "exaequo", "total", "maxcel", "timestamp", "trace"));
+        declarer.declareStream(HISTOGRAM_STREAM, new Fields("top", "partitions", "values", "counts"));
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        return null;
+    }
+
+    @Override
+    public void cleanup() {
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        this.collector = new MeteredOutputCollector(collector, context);
+        this.taskId = context.getThisTaskId();
+        this.partitions = context.getComponentTasks(context.getThisComponentId()).size();
+        this.rankTime = context.registerTimer("rankTime");
+        context.registerGauge("pendingFrames", () -> pendingFrames.size());
+        this.expiredFrames = context.registerCounter("expiredFrames");
+        this.replayedFrames = context.registerCounter("replayedFrames");
+    }
+}
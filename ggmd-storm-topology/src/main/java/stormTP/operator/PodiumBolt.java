@@ -0,0 +1,129 @@
+package stormTP.operator;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.IRichBolt;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.Values;
+import stormTP.core.FrameReader;
+import stormTP.core.PodiumHeap;
+
+/**
+ * Bolt qui calcule le podium (K meilleures tortues) de chaque frame sans classer toute la frame.
+ * Émet un tuple par top avec le schéma: (top, total, ids, ranks, ties, timestamp, trace)
+ * où ids/ranks sont des int[] et ties un boolean[], triés du premier au dernier du podium.
+ */
+public class PodiumBolt implements IRichBolt {
+
+    private static final long serialVersionUID = 4262369370788107355L;
+    private static Logger logger = Logger.getLogger("PodiumBoltLogger");
+    private OutputCollector collector;
+    private int taskId;
+
+
+    // Taille du podium
+    private final int podiumSize;
+    private transient PodiumHeap heap;
+    private transient PodiumHeap.Podium podium;
+    private transient FrameReader frame;
+
+    // Métriques : analyse et podium d'une frame, tortues par frame
+    private transient Timer frameTimer;
+    private transient Histogram frameSizes;
+
+    public PodiumBolt() {
+        this(3);
+    }
+
+    /**
+     * @param podiumSize nombre de places du podium (K)
+     */
+    public PodiumBolt(int podiumSize) {
+        this.podiumSize = podiumSize;
+    }
+
+    @Override
+    public void execute(Tuple t) {
+        try {
+            long start = System.nanoTime();
+            String jsonInput = t.getValueByField("json").toString();
+            if (frame.reset(jsonInput)) {
+                int top = -1;
+                int total = 0;
+                int count = 0;
+
+                while (frame.next()) {
+                    top = frame.top();
+                    total = frame.total();
+                    heap.offer(frame.id(), frame.cells());
+                    count++;
+                }
+
+                frameSizes.update(count);
+                if (count > 0) {
+                    heap.drainTo(podium);
+                    int n = podium.size();
+                    int[] ids = new int[n];
+                    int[] ranks = new int[n];
+                    boolean[] ties = new boolean[n];
+                    for (int pos = 0; pos < n; pos++) {
+                        ids[pos] = podium.id(pos);
+                        ranks[pos] = podium.rank(pos);
+                        ties[pos] = podium.isTie(pos);
+                    }
+
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.fine("Podium top=" + top + " ids=" + Arrays.toString(ids));
+                    }
+                    collector.emit(t, new Values(top, total, ids, ranks, ties, FrameTimestamps.ofFrame(jsonInput),
+                            Tracing.next(t, taskId)));
+                }
+                frameTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+
+            collector.ack(t);
+
+        } catch (Exception e) {
+            logger.severe("Error in PodiumBolt: " + e.getMessage());
+            e.printStackTrace();
+            heap.clear();
+            collector.fail(t);
+        }
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        declarer.declare(new Fields("top", "total", "ids", "ranks", "ties", "timestamp", "trace"));
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        return null;
+    }
+
+    @Override
+    public void cleanup() {
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        this.collector = new MeteredOutputCollector(collector, context);
+        this.taskId = context.getThisTaskId();
+        this.heap = new PodiumHeap(podiumSize);
+        this.podium = new PodiumHeap.Podium();
+        this.frameTimer = context.registerTimer("frameTime");
+        this.frame = new FrameReader();
+        this.frameSizes = context.registerHistogram("runnersPerFrame");
+    }
+}
@@ -0,0 +1,280 @@
+package stormTP.operator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.apache.storm.Config;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.IRichBolt;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.Values;
+import org.apache.storm.utils.TupleUtils;
+import stormTP.core.RunnerStore;
+
+/**
+ * Bolt placé après GiveRankBolt qui n'émet que les changements de rang : le dernier rang émis
+ * de chaque tortue est gardé dans des colonnes primitives (RunnerStore), et une tortue dont le
+ * rang et l'égalité n'ont pas changé n'émet rien. Toutes les snapshotTops tops, le classement
+ * complet est réémis (snapshot) pour les auditeurs arrivés en cours de course, une fois tous les
+ * rangs de la frame reçus (total) : avec un tuple par tortue, chaque tortue y a son rang de cette
+ * frame. Une frame incomplète (rang perdu) n'est plus attendue snapshotTops tops plus tard.
+ *
+ * Conflation : quand le flux est en retard de plus de maxLagMs (horloge murale moins le
+ * timestamp du producteur, signe que l'aval freine), les changements sont seulement marqués,
+ * puis émis toutes les conflateMs avec le dernier rang de chaque tortue : les rangs
+ * intermédiaires d'une tortue qui bouge plusieurs fois sont perdus, jamais son rang courant.
+ * Les changements retenus sont ancrés au tuple qui les émet ; une perte est réparée au snapshot suivant.
+ *
+ * Entrée : flux par tortue ou BATCH_STREAM de GiveRankBolt.
+ * Sortie : (id, top, rang, exaequo, total, maxcel, timestamp, trace), le schéma de GiveRankBolt ; top et timestamp
+ * sont ceux du changement, sauf au snapshot où timestamp est celui de la frame courante.
+ */
+public class RankDeltaBolt implements IRichBolt {
+
+    private static final long serialVersionUID = 4262369370788107368L;
+    private static Logger logger = Logger.getLogger("RankDeltaBoltLogger");
+
+    public static final int DEFAULT_SNAPSHOT_TOPS = 100;
+
+    private final int snapshotTops;
+    private final long maxLagMs;
+    private final long conflateMs;
+
+    private transient OutputCollector collector;
+    private transient int taskId;
+    private transient RunnerStore runners;
+    // Dernier rang émis ou retenu (0 = jamais vu), égalité (0/1), top et timestamp du changement
+    private transient RunnerStore.IntColumn ranks;
+    private transient RunnerStore.IntColumn ties;
+    private transient RunnerStore.IntColumn changeTops;
+    private transient RunnerStore.LongColumn changeTimestamps;
+    private transient RunnerStore.SlotVisitor emitSlot;
+    private transient Tuple anchor;
+
+    // Dernière frame vue
+    private transient int lastTotal;
+    private transient int lastMaxcel;
+    private transient long lastTimestamp;
+    private transient long[] lastTrace;
+    private transient int nextSnapshotTop;
+    // Frame du snapshot en attente de ses rangs (-1 = aucune), rangs reçus de cette frame
+    private transient int snapshotTop;
+    private transient int snapshotRanks;
+    private transient boolean conflating;
+    private transient long lastFlushNanos;
+
+    private transient long received;
+    private transient long emitted;
+    private transient long conflated;
+
+    public RankDeltaBolt() {
+        this(DEFAULT_SNAPSHOT_TOPS, 0, 0);
+    }
+
+    /**
+     * @param snapshotTops tops entre deux classements complets (0 = jamais)
+     * @param maxLagMs retard au-delà duquel les changements sont regroupés (0 = jamais)
+     * @param conflateMs intervalle d'émission des changements regroupés
+     */
+    public RankDeltaBolt(int snapshotTops, long maxLagMs, long conflateMs) {
+        if (snapshotTops < 0 || maxLagMs < 0 || conflateMs < 0 || (maxLagMs > 0 && conflateMs == 0)) {
+            throw new IllegalArgumentException("Invalid snapshot=" + snapshotTops + " lag=" + maxLagMs + " conflate=" + conflateMs);
+        }
+        this.snapshotTops = snapshotTops;
+        this.maxLagMs = maxLagMs;
+        this.conflateMs = conflateMs;
+    }
+
+    @Override
+    public void execute(Tuple t) {
+        try {
+            if (TupleUtils.isTick(t)) {
+                if (conflating) {
+                    flushIfDue(null);
+                }
+                collector.ack(t);
+                return;
+            }
+            int top = (Integer) t.getValueByField("top");
+            lastTotal = (Integer) t.getValueByField("total");
+            lastMaxcel = (Integer) t.getValueByField("maxcel");
+            lastTimestamp = FrameTimestamps.ofTuple(t);
+            lastTrace = Tracing.next(t, taskId);
+            updateConflation(t);
+
+            int count;
+            if (GiveRankBolt.BATCH_STREAM.equals(t.getSourceStreamId())) {
+                int[] ids = (int[]) t.getValueByField("ids");
+                int[] rangs = (int[]) t.getValueByField("rangs");
+                boolean[] exaequos = (boolean[]) t.getValueByField("exaequos");
+                for (int i = 0; i < ids.length; i++) {
+                    update(ids[i], top, rangs[i], exaequos[i], t);
+                }
+                count = ids.length;
+            } else {
+                update((Integer) t.getValueByField("id"), top, (Integer) t.getValueByField("rang"),
+                        (Boolean) t.getValueByField("exaequo"), t);
+                count = 1;
+            }
+
+            if (snapshotTops > 0 && snapshotDue(top, count)) {
+                snapshot(t);
+            } else if (conflating) {
+                flushIfDue(t);
+            }
+            collector.ack(t);
+        } catch (Exception e) {
+            logger.severe("Error in RankDeltaBolt: " + e.getMessage());
+            collector.fail(t);
+        }
+    }
+
+    /**
+     * Garde le rang de la tortue ; l'émet aussitôt s'il a changé, ou le marque en conflation
+     */
+    private void update(int id, int top, int rang, boolean exaequo, Tuple t) {
+        received++;
+        int slot = runners.find(id);
+        if (slot < 0) {
+            slot = runners.add(id);
+        }
+        int tie = exaequo ? 1 : 0;
+        if (ranks.get(slot) == rang && ties.get(slot) == tie) {
+            return;
+        }
+        ranks.set(slot, rang);
+        ties.set(slot, tie);
+        changeTops.set(slot, top);
+        changeTimestamps.set(slot, lastTimestamp);
+        if (conflating) {
+            runners.touch(slot);
+            conflated++;
+        } else {
+            emit(slot, lastTimestamp, t);
+        }
+    }
+
+    /**
+     * Compte les rangs reçus de la frame du snapshot ; vrai quand elle est complète,
+     * ou quand elle a snapshotTops tops de retard
+     */
+    private boolean snapshotDue(int top, int count) {
+        if (snapshotTop < 0) {
+            if (top < nextSnapshotTop) {
+                return false;
+            }
+            snapshotTop = top;
+            snapshotRanks = 0;
+        }
+        if (top == snapshotTop) {
+            snapshotRanks += count;
+        }
+        if (snapshotRanks < lastTotal && (long) top < (long) snapshotTop + snapshotTops) {
+            return false;
+        }
+        nextSnapshotTop = snapshotTop + snapshotTops;
+        snapshotTop = -1;
+        return true;
+    }
+
+    /**
+     * Entre en conflation quand le flux prend du retard ; en sort en émettant les changements retenus
+     */
+    private void updateConflation(Tuple t) {
+        if (maxLagMs == 0 || !t.contains(FrameTimestamps.FIELD)) {
+            return;
+        }
+        long lag = System.currentTimeMillis() - lastTimestamp;
+        if (!conflating && lag > maxLagMs) {
+            conflating = true;
+            lastFlushNanos = System.nanoTime();
+            logger.info("Stream is " + lag + " ms late: conflating rank changes");
+        } else if (conflating && lag <= maxLagMs / 2) {
+            flush(t);
+            conflating = false;
+            logger.info("Stream caught up: rank changes emitted as they happen");
+        }
+    }
+
+    private void flushIfDue(Tuple t) {
+        long now = System.nanoTime();
+        if (now - lastFlushNanos >= TimeUnit.MILLISECONDS.toNanos(conflateMs)) {
+            flush(t);
+            lastFlushNanos = now;
+        }
+    }
+
+    /**
+     * Émet une fois chaque tortue marquée, avec son dernier rang
+     */
+    private void flush(Tuple t) {
+        anchor = t;
+        runners.drainChanges(emitSlot);
+        anchor = null;
+    }
+
+    /**
+     * Réémet le classement courant de toutes les tortues ; les changements retenus y sont compris
+     */
+    private void snapshot(Tuple t) {
+        runners.drainChanges(slot -> { });
+        for (int slot = 0; slot < runners.size(); slot++) {
+            emit(slot, lastTimestamp, t);
+        }
+    }
+
+    private void emit(int slot, long timestamp, Tuple t) {
+        Values values = new Values(runners.id(slot), changeTops.get(slot), ranks.get(slot), ties.get(slot) == 1,
+                lastTotal, lastMaxcel, timestamp, t != null ? lastTrace : null);
+        if (t != null) {
+            collector.emit(t, values);
+        } else {
+            collector.emit(values);
+        }
+        emitted++;
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        declarer.declare(new Fields("id", "top", "rang", "exaequo", "total", "maxcel", "timestamp", "trace"));
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        // Tick pour émettre les changements retenus d'un flux arrêté
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, 1);
+        return conf;
+    }
+
+    @Override
+    public void cleanup() {
+        logger.info("RankDeltaBolt: " + received + " ranks received, " + emitted + " emitted, " + conflated + " conflated");
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        this.collector = new MeteredOutputCollector(collector, context);
+        this.taskId = context.getThisTaskId();
+        this.runners = new RunnerStore();
+        runners.trackChanges();
+        this.ranks = runners.intColumn();
+        this.ties = runners.intColumn();
+        this.changeTops = runners.intColumn();
+        this.changeTimestamps = runners.longColumn();
+        this.emitSlot = slot -> emit(slot, changeTimestamps.get(slot), anchor);
+        this.nextSnapshotTop = 0;
+        this.snapshotTop = -1;
+        this.conflating = false;
+        context.registerGauge("ranksReceived", () -> received);
+        context.registerGauge("ranksEmitted", () -> emitted);
+        context.registerGauge("ranksConflated", () -> conflated);
+        context.registerGauge("liveRunners", () -> runners.size());
+    }
+}
@@ -1,14 +1,20 @@
 package stormTP.operator;
 
-import java.util.Map;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Map;
 import java.util.logging.Logger;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import org.apache.storm.Config;
+import org.apache.storm.generated.GlobalStreamId;
 import org.apache.storm.task.OutputCollector;
 import org.apache.storm.task.TopologyContext;
 import org.apache.storm.topology.IRichBolt;
@@ -16,162 +22,309 @@ import org.apache.storm.topology.OutputFieldsDeclarer;
 import org.apache.storm.tuple.Fields;
 import org.apache.storm.tuple.Tuple;
 import org.apache.storm.tuple.Values;
+import org.apache.storm.utils.TupleUtils;
+import stormTP.core.AppliedTops;
+import stormTP.core.PaneWindow;
+import stormTP.core.RunnerStore;
+import stormTP.core.TimerWheel;
+import stormTP.core.WatermarkTracker;
 
 /**
  * Opérateur stateful avec fenêtrage temporel qui détermine l'évolution du rang des tortues.
- * Fenêtre temporelle: 30 secondes
- * Émet des tuples avec le schéma: (id, nom, date, evolution)
+ * Fenêtre temporelle: 30 secondes (par défaut) en temps d'événement, c'est-à-dire sur le
+ * "timestamp" producteur de la frame, fenêtres alignées [k*30 s, (k+1)*30 s).
+ * Émet des tuples avec le schéma: (id, nom, date, evolution, timestamp, trace), date étant la fin de la fenêtre
+ * et timestamp le plus grand temps d'événement reçu à l'évaluation.
+ * Accepte aussi le flux batch de GiveRankBolt (un tuple par frame, à recevoir en allGrouping).
+ *
+ * Une fenêtre est évaluée quand le filigrane, diminué du retard toléré, dépasse sa fin.
+ * Le filigrane vient du spout via GiveRankBolt (WATERMARK_STREAM, en allGrouping) ; sans ce flux,
+ * il est déduit du plus grand temps d'événement reçu. Un rang arrivant pour une fenêtre déjà
+ * évaluée part sur LATE_STREAM avec le schéma (id, top, rang, timestamp). Un rang dont le top est
+ * déjà appliqué à la tortue (frame rejouée par le spout) est ignoré (compteur replayedRanks) :
+ * voir AppliedTops.
+ *
+ * Avec tickSeconds > 0, l'évaluation est déclenchée par les tick tuples de Storm
+ * (topology.tick.tuple.freq.secs) et non par chaque tuple : une passe par fenêtre close,
+ * qui ne visite, via une roue de temporisation, que les tortues ayant un rang dans cette fenêtre.
+ * Seuls paneCount volets sont conservés : un volet qui va être remplacé par un volet plus récent
+ * est clos et évalué aussitôt, sans attendre le tick. Un arriéré ou un rejeu traité à pleine
+ * vitesse donne donc les mêmes fenêtres ; les ticks évaluent les fenêtres d'un flux au repos.
+ * Les résultats ne dépendent ni des files d'attente, ni du parallélisme, ni de la vitesse de rejeu.
+ *
+ * Avec idleMs > 0, l'état d'une tortue sans rang depuis idleMs en temps d'événement est retiré
+ * (gauges liveRunners et evictedRunners), jamais avant l'évaluation de ses fenêtres.
+ * Version checkpointée : StatefulRankEvolutionBolt.
  */
-public class RankEvolutionBolt implements IRichBolt {
+public class RankEvolutionBolt implements IRichBolt, RunnerCheckpoint {
 
     private static final long serialVersionUID = 4262369370788107350L;
     private static Logger logger = Logger.getLogger("RankEvolutionBoltLogger");
     private OutputCollector collector;
-    
+    private int taskId;
+    private int taskIndex = 0;
+    private int numTasks = 1;
+
+    public static final String LATE_STREAM = "late";
+
     // Configuration de la fenêtre temporelle
-    private static final long WINDOW_DURATION_MS = 30000; // 30 secondes
-    
-    // Stockage des données de rang par tortue avec fenêtre temporelle
-    private Map<Integer, TurtleRankHistory> turtleHistories = new HashMap<>();
-    
-    // Classe interne pour stocker l'historique des rangs d'une tortue
-    private static class TurtleRankHistory {
-        int id;
-        String nom;
-        List<RankEntry> rankEntries = new ArrayList<>();
-        long lastCalculationTime = 0;
-        
-        TurtleRankHistory(int id, String nom) {
-            this.id = id;
-            this.nom = nom;
-        }
-    }
-    
-    // Classe pour stocker une entrée de rang avec timestamp
-    private static class RankEntry {
-        long timestamp;
-        int top;
-        String rang;
-        int numericRank;
-        
-        RankEntry(long timestamp, int top, String rang) {
-            this.timestamp = timestamp;
-            this.top = top;
-            this.rang = rang;
-            this.numericRank = parseNumericRank(rang);
-        }
-        
-        private static int parseNumericRank(String rang) {
-            try {
-                return Integer.parseInt(rang.replaceAll("ex", ""));
-            } catch (NumberFormatException e) {
-                return Integer.MAX_VALUE; // Rang invalide -> dernier
-            }
+    private static final long DEFAULT_WINDOW_MS = 30000; // 30 secondes
+    private static final long DEFAULT_ALLOWED_LATENESS_MS = 1000;
+    private static final int DEFAULT_TICK_SECONDS = 1;
+    private final long windowMs;
+    private final long allowedLatenessMs;
+    private final int tickSeconds;
+    private final long idleMs;
+
+    // Rangs de chaque tortue, un volet par fenêtre (premier et dernier rang en temps d'événement)
+    private transient RunnerStore runners;
+    private transient RunnerStore.ObjectColumn<PaneWindow> turtlePanes;
+    private transient AppliedTops appliedTops;
+    private transient PaneWindow.Span span;
+    private transient int paneCount;
+    // Ids des tortues ayant un rang dans chaque volet, par numéro de volet
+    private transient TimerWheel dueRunners;
+
+    // Filigrane des tâches amont (null : filigrane déduit des données)
+    private transient WatermarkTracker watermarks;
+    private transient long maxEventTime;
+    // Premier volet non encore évalué, premier volet non clos au filigrane, plus grand volet reçu
+    private transient long nextPane;
+    private transient long closedPane;
+    private transient long maxPane;
+
+    private transient Histogram windowSize;
+    private transient Counter lateRanks;
+    private transient Counter replayedRanks;
+
+    public RankEvolutionBolt() {
+        this(DEFAULT_WINDOW_MS, DEFAULT_ALLOWED_LATENESS_MS);
+    }
+
+    /**
+     * @param windowMs durée d'une fenêtre en temps d'événement
+     * @param allowedLatenessMs retard toléré avant d'évaluer une fenêtre close
+     */
+    public RankEvolutionBolt(long windowMs, long allowedLatenessMs) {
+        this(windowMs, allowedLatenessMs, DEFAULT_TICK_SECONDS);
+    }
+
+    /**
+     * @param windowMs durée d'une fenêtre en temps d'événement
+     * @param allowedLatenessMs retard toléré avant d'évaluer une fenêtre close
+     * @param tickSeconds période des tick tuples qui déclenchent l'évaluation (0 = à chaque tuple)
+     */
+    public RankEvolutionBolt(long windowMs, long allowedLatenessMs, int tickSeconds) {
+        this(windowMs, allowedLatenessMs, tickSeconds, 0);
+    }
+
+    /**
+     * @param windowMs durée d'une fenêtre en temps d'événement
+     * @param allowedLatenessMs retard toléré avant d'évaluer une fenêtre close
+     * @param tickSeconds période des tick tuples qui déclenchent l'évaluation (0 = à chaque tuple)
+     * @param idleMs temps d'événement sans rang après lequel l'état d'une tortue est retiré
+     *               (0 = jamais, sinon au moins la durée des volets conservés)
+     */
+    public RankEvolutionBolt(long windowMs, long allowedLatenessMs, int tickSeconds, long idleMs) {
+        if (windowMs <= 0 || allowedLatenessMs < 0 || tickSeconds < 0
+                || (idleMs != 0 && idleMs < paneCount(windowMs, allowedLatenessMs) * windowMs)) {
+            throw new IllegalArgumentException("Invalid window=" + windowMs + " lateness=" + allowedLatenessMs
+                    + " tick=" + tickSeconds + " idle=" + idleMs);
         }
+        this.windowMs = windowMs;
+        this.allowedLatenessMs = allowedLatenessMs;
+        this.tickSeconds = tickSeconds;
+        this.idleMs = idleMs;
     }
-    
-    public RankEvolutionBolt() {
+
+    /**
+     * Volets en attente d'évaluation : ceux du retard toléré, plus le volet courant et le précédent
+     */
+    private static int paneCount(long windowMs, long allowedLatenessMs) {
+        return (int) (allowedLatenessMs / windowMs) + 3;
     }
-    
+
     @Override
     public void execute(Tuple t) {
         try {
-            // Lire le schéma d'entrée de GiveRankBolt: (id, top, rang, total, maxcel)
-            int id = (Integer) t.getValueByField("id");
-            int top = (Integer) t.getValueByField("top");
-            String rang = (String) t.getValueByField("rang");
-            int total = (Integer) t.getValueByField("total");
-            int maxcel = (Integer) t.getValueByField("maxcel");
-            
-            long currentTime = System.currentTimeMillis();
-            String nom = "Turtle" + id;
-            
-            logger.info("Received turtle: id=" + id + " top=" + top + " rang=" + rang);
-            
-            // Initialiser l'historique de la tortue si nécessaire
-            if (!turtleHistories.containsKey(id)) {
-                turtleHistories.put(id, new TurtleRankHistory(id, nom));
+            if (TupleUtils.isTick(t)) {
+                fireWindows(t);
+                collector.ack(t);
+                return;
             }
-            
-            TurtleRankHistory history = turtleHistories.get(id);
-            
-            // Ajouter la nouvelle entrée de rang
-            history.rankEntries.add(new RankEntry(currentTime, top, rang));
-            
-            // Nettoyer les entrées trop anciennes (hors fenêtre)
-            cleanOldEntries(history, currentTime);
-            
-            // Calculer l'évolution si assez de temps s'est écoulé depuis le dernier calcul
-            if (currentTime - history.lastCalculationTime >= WINDOW_DURATION_MS) {
-                String evolution = calculateRankEvolution(history, currentTime);
-                if (evolution != null) {
-                    // Formater la date
-                    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-                    String date = sdf.format(new Date(currentTime));
-                    
-                    logger.info("Emitting evolution for turtle id=" + id + " evolution=" + evolution);
-                    
-                    // Émettre le tuple avec le schéma (id, nom, date, evolution)
-                    collector.emit(t, new Values(id, nom, date, evolution));
-                    
-                    history.lastCalculationTime = currentTime;
+
+            if (GiveRankBolt.WATERMARK_STREAM.equals(t.getSourceStreamId())) {
+                advanceWatermark(watermarks.update(t.getSourceTask(), (Long) t.getValueByField("watermark")));
+                if (tickSeconds == 0) {
+                    fireWindows(t);
                 }
+                collector.ack(t);
+                return;
+            }
+
+            if (GiveRankBolt.BATCH_STREAM.equals(t.getSourceStreamId())) {
+                // Lire le schéma batch de GiveRankBolt: (top, total, maxcel, ids, rangs, exaequos, timestamp, trace)
+                int top = (Integer) t.getValueByField("top");
+                long eventTime = FrameTimestamps.ofTuple(t);
+                int[] ids = (int[]) t.getValueByField("ids");
+                int[] rangs = (int[]) t.getValueByField("rangs");
+
+                boolean late = isLate(eventTime, t);
+                for (int i = 0; i < ids.length; i++) {
+                    if (GiveRankBolt.ownsRunner(ids[i], taskIndex, numTasks)) {
+                        processRank(ids[i], top, rangs[i], eventTime, late, t);
+                    }
+                }
+            } else {
+                // Lire le schéma d'entrée de GiveRankBolt: (id, top, rang, exaequo, total, maxcel, timestamp, trace)
+                int id = (Integer) t.getValueByField("id");
+                int top = (Integer) t.getValueByField("top");
+                int rang = (Integer) t.getValueByField("rang");
+                long eventTime = FrameTimestamps.ofTuple(t);
+
+                processRank(id, top, rang, eventTime, isLate(eventTime, t), t);
+            }
+
+            if (watermarks == null) {
+                advanceWatermark(maxEventTime);
+            }
+            if (tickSeconds == 0) {
+                fireWindows(t);
             }
-            
+            evictIdle();
+
             collector.ack(t);
-            
+
         } catch (Exception e) {
             logger.severe("Error in RankEvolutionBolt: " + e.getMessage());
             e.printStackTrace();
             collector.fail(t);
         }
     }
-    
+
     /**
-     * Nettoie les entrées trop anciennes (hors de la fenêtre temporelle)
+     * Vrai si la fenêtre de eventTime est déjà close au filigrane ; sinon avance le temps d'événement.
+     * Le verdict ne dépend que de l'ordre des tuples, pas de l'instant des évaluations.
      */
-    private void cleanOldEntries(TurtleRankHistory history, long currentTime) {
-        Iterator<RankEntry> iterator = history.rankEntries.iterator();
-        while (iterator.hasNext()) {
-            RankEntry entry = iterator.next();
-            if (currentTime - entry.timestamp > WINDOW_DURATION_MS) {
-                iterator.remove();
+    private boolean isLate(long eventTime, Tuple anchor) {
+        long pane = Math.floorDiv(eventTime, windowMs);
+        if (pane < closedPane) {
+            return true;
+        }
+        if (nextPane == Long.MIN_VALUE) {
+            nextPane = pane;
+        }
+        maxEventTime = Math.max(maxEventTime, eventTime);
+        if (pane > maxPane) {
+            maxPane = pane;
+            // Les volets qui sortent de l'anneau sont clos : évalués avant que le volet pane ne réutilise leur case
+            closedPane = Math.max(closedPane, pane - paneCount + 1);
+            if (nextPane < closedPane) {
+                fireWindows(anchor);
             }
         }
+        return false;
     }
-    
+
     /**
-     * Calcule l'évolution du rang sur la fenêtre temporelle
+     * Ajoute le rang d'une tortue au volet de sa fenêtre, ou l'envoie sur le flux des retardataires
      */
-    private String calculateRankEvolution(TurtleRankHistory history, long currentTime) {
-        if (history.rankEntries.size() < 2) {
-            return null; // Pas assez de données
-        }
-        
-        // Trouver la première et la dernière entrée dans la fenêtre
-        RankEntry firstEntry = null;
-        RankEntry lastEntry = null;
-        
-        for (RankEntry entry : history.rankEntries) {
-            if (currentTime - entry.timestamp <= WINDOW_DURATION_MS) {
-                if (firstEntry == null || entry.timestamp < firstEntry.timestamp) {
-                    firstEntry = entry;
-                }
-                if (lastEntry == null || entry.timestamp > lastEntry.timestamp) {
-                    lastEntry = entry;
-                }
-            }
+    private void processRank(int id, int top, int rang, long eventTime, boolean late, Tuple anchor) {
+        logger.fine(() -> "Received turtle: id=" + id + " top=" + top + " rang=" + rang + " timestamp=" + eventTime);
+
+        if (late) {
+            logger.fine(() -> "Late rank for turtle id=" + id + " top=" + top);
+            lateRanks.inc();
+            collector.emit(LATE_STREAM, anchor, new Values(id, top, rang, eventTime));
+            return;
         }
-        
-        if (firstEntry == null || lastEntry == null || firstEntry == lastEntry) {
-            return null;
+
+        int slot = runners.find(id);
+        if (slot < 0) {
+            slot = runners.add(id);
+            turtlePanes.set(slot, new PaneWindow(windowMs, paneCount));
+        }
+        if (!appliedTops.apply(slot, top)) {
+            logger.fine(() -> "Replayed rank for turtle id=" + id + " top=" + top);
+            replayedRanks.inc();
+            return;
+        }
+        PaneWindow panes = turtlePanes.get(slot);
+        long pane = Math.floorDiv(eventTime, windowMs);
+        if (!panes.pane(pane, span)) {
+            // Premier rang de la tortue dans cette fenêtre : elle sera visitée à son évaluation
+            dueRunners.schedule(pane, id);
+        }
+        panes.add(eventTime, rang);
+        runners.access(slot, maxEventTime);
+        runners.touch(slot);
+    }
+
+    /**
+     * Les volets sont clos jusqu'à closedPane exclu, au filigrane diminué du retard toléré
+     */
+    private void advanceWatermark(long watermark) {
+        if (watermark != Long.MIN_VALUE) {
+            closedPane = Math.max(closedPane, Math.floorDiv(watermark - allowedLatenessMs, windowMs));
         }
-        
-        // Calculer l'évolution
-        int rankDifference = firstEntry.numericRank - lastEntry.numericRank;
-        
-        logger.info("Turtle id=" + history.id + " rank evolution: " + firstEntry.numericRank + " -> " + lastEntry.numericRank + " (diff=" + rankDifference + ")");
-        
+    }
+
+    /**
+     * Évalue dans l'ordre les fenêtres closes pas encore évaluées. Les volets à partir de nextPane
+     * sont toujours conservés : un volet est évalué au plus tard quand sa case va être réutilisée.
+     */
+    private void fireWindows(Tuple anchor) {
+        if (nextPane == Long.MIN_VALUE) {
+            return;
+        }
+        for (long pane = nextPane; pane < closedPane && pane <= maxPane; pane++) {
+            fireWindow(pane, anchor);
+        }
+        nextPane = Math.max(nextPane, closedPane);
+    }
+
+    /**
+     * Retire les tortues sans rang depuis idleMs dont toutes les fenêtres ont été évaluées :
+     * leur dernier rang précède le premier volet non évalué
+     */
+    private void evictIdle() {
+        if (idleMs == 0 || nextPane == Long.MIN_VALUE) {
+            return;
+        }
+        long now = Math.min(maxEventTime, nextPane * windowMs - 1 + idleMs);
+        runners.evictIdle(now, slot -> logger.fine(() -> "Evicting idle turtle id=" + runners.id(slot)));
+    }
+
+    private void fireWindow(long pane, Tuple anchor) {
+        if (dueRunners.size(pane) == 0) {
+            return;
+        }
+        long[] trace = Tracing.next(anchor, taskId);
+        long windowEnd = (pane + 1) * windowMs;
+        String date = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(windowEnd));
+
+        dueRunners.expire(pane, id -> {
+            int slot = runners.find(id);
+            if (slot >= 0 && turtlePanes.get(slot).pane(pane, span) && span.count() >= 2) {
+                windowSize.update(span.count());
+                String evolution = calculateRankEvolution(id, span.firstValue(), span.lastValue());
+
+                logger.fine(() -> "Emitting evolution for turtle id=" + id + " evolution=" + evolution);
+
+                // Émettre le tuple avec le schéma (id, nom, date, evolution, timestamp, trace)
+                collector.emit(anchor, new Values(id, "Turtle" + id, date, evolution, maxEventTime, trace));
+            }
+        });
+    }
+
+    /**
+     * Calcule l'évolution du rang entre le premier et le dernier rang de la fenêtre
+     */
+    private String calculateRankEvolution(int id, int firstRank, int lastRank) {
+        int rankDifference = firstRank - lastRank;
+
+        logger.fine(() -> "Turtle id=" + id + " rank evolution: " + firstRank + " -> " + lastRank + " (diff=" + rankDifference + ")");
+
         if (rankDifference > 0) {
             return "En progression"; // Le rang a diminué (meilleur classement)
         } else if (rankDifference < 0) {
@@ -180,24 +333,113 @@ public class RankEvolutionBolt implements IRichBolt {
             return "Constant"; // Même rang
         }
     }
-    
+
+    @Override
+    public void resetState() {
+        this.runners = new RunnerStore();
+        this.turtlePanes = runners.objectColumn();
+        this.appliedTops = new AppliedTops(runners);
+        this.dueRunners = new TimerWheel(paneCount);
+        if (idleMs > 0) {
+            runners.expireIdle(idleMs);
+        }
+        this.maxEventTime = Long.MIN_VALUE;
+        this.nextPane = Long.MIN_VALUE;
+        this.closedPane = Long.MIN_VALUE;
+        this.maxPane = Long.MIN_VALUE;
+    }
+
+    @Override
+    public RunnerStore runners() {
+        return runners;
+    }
+
+    @Override
+    public void writeRunner(int slot, DataOutput out) throws IOException {
+        out.writeLong(runners.lastAccess(slot));
+        appliedTops.writeTo(slot, out);
+        turtlePanes.get(slot).writeTo(out);
+    }
+
+    @Override
+    public void readRunner(int id, DataInput in) throws IOException {
+        long lastAccess = in.readLong();
+        int slot = runners.add(id);
+        appliedTops.readFrom(slot, in);
+        PaneWindow panes = new PaneWindow(windowMs, paneCount);
+        panes.readFrom(in);
+        turtlePanes.set(slot, panes);
+        runners.access(slot, lastAccess);
+
+        // Reprogrammer les fenêtres pas encore évaluées
+        if (nextPane != Long.MIN_VALUE) {
+            for (long pane = Math.max(nextPane, maxPane - paneCount + 1); pane <= maxPane; pane++) {
+                if (panes.pane(pane, span)) {
+                    dueRunners.schedule(pane, id);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void writeGlobal(DataOutput out) throws IOException {
+        out.writeLong(maxEventTime);
+        out.writeLong(nextPane);
+        out.writeLong(closedPane);
+        out.writeLong(maxPane);
+    }
+
+    @Override
+    public void readGlobal(DataInput in) throws IOException {
+        maxEventTime = in.readLong();
+        nextPane = in.readLong();
+        closedPane = in.readLong();
+        maxPane = in.readLong();
+    }
+
     @Override
     public void declareOutputFields(OutputFieldsDeclarer declarer) {
-        declarer.declare(new Fields("id", "nom", "date", "evolution"));
+        declarer.declare(new Fields("id", "nom", "date", "evolution", "timestamp", "trace"));
+        declarer.declareStream(LATE_STREAM, new Fields("id", "top", "rang", "timestamp"));
     }
-    
+
     @Override
     public Map<String, Object> getComponentConfiguration() {
-        return null;
+        if (tickSeconds == 0) {
+            return null;
+        }
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, tickSeconds);
+        return conf;
     }
-    
+
     @Override
     public void cleanup() {
     }
-    
+
     @Override
     @SuppressWarnings("rawtypes")
     public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
-        this.collector = collector;
+        this.collector = new MeteredOutputCollector(collector, context);
+        this.taskId = context.getThisTaskId();
+        this.taskIndex = context.getThisTaskIndex();
+        this.numTasks = context.getComponentTasks(context.getThisComponentId()).size();
+
+        this.paneCount = paneCount(windowMs, allowedLatenessMs);
+        this.span = new PaneWindow.Span();
+        resetState();
+        context.registerGauge("liveRunners", () -> runners.size());
+        context.registerGauge("evictedRunners", () -> runners.evictions());
+        this.windowSize = context.registerHistogram("windowSize");
+        this.lateRanks = context.registerCounter("lateRanks");
+        this.replayedRanks = context.registerCounter("replayedRanks");
+
+        List<Integer> watermarkTasks = new ArrayList<>();
+        for (GlobalStreamId source : context.getThisSources().keySet()) {
+            if (GiveRankBolt.WATERMARK_STREAM.equals(source.get_streamId())) {
+                watermarkTasks.addAll(context.getComponentTasks(source.get_componentId()));
+            }
+        }
+        this.watermarks = watermarkTasks.isEmpty() ? null : new WatermarkTracker(watermarkTasks);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,151 @@
+package stormTP.operator;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Timer;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.IRichBolt;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.Values;
+import stormTP.core.CellHistogram;
+
+/**
+ * Fusion du classement distribué (fieldsGrouping sur top).
+ * Attend l'histogramme de chaque partition pour un top, les fusionne et renvoie
+ * à toutes les partitions (allGrouping) les comptes cumulés globaux sur COUNTS_STREAM
+ * avec le schéma: (top, values, greater, counts)
+ *
+ * Un top est complet avec l'histogramme de chaque tâche partition ; celui d'une frame rejouée
+ * par le spout remplace le précédent de la même tâche, dont le tuple est mis en échec
+ * (compteur replayedHistograms). À chaque top complet, un top en attente de plus de lagTops
+ * tops plus ancien ne sera plus complété : il est retiré et ses tuples mis en échec
+ * (compteur expiredMerges). Voir PartitionRankBolt.
+ */
+public class RankMergeBolt implements IRichBolt {
+
+    private static final long serialVersionUID = 4262369370788107354L;
+    private static Logger logger = Logger.getLogger("RankMergeBoltLogger");
+    private OutputCollector collector;
+    private transient Timer mergeTime;
+    private transient Counter expiredMerges;
+    private transient Counter replayedHistograms;
+
+    public static final String COUNTS_STREAM = "counts";
+
+    // Histogrammes reçus par top
+    private Map<Integer, PendingMerge> pendingMerges = new HashMap<>();
+    private final int lagTops;
+
+    // Classe interne pour stocker les histogrammes partiels d'un top, par tâche partition
+    private static class PendingMerge {
+        Map<Integer, CellHistogram> histograms = new HashMap<>();
+        Map<Integer, Tuple> tuples = new HashMap<>();
+    }
+
+    public RankMergeBolt() {
+        this(0);
+    }
+
+    /**
+     * @param lagTops retard, en tops, sur le dernier top complet au-delà duquel un top en attente expire
+     */
+    public RankMergeBolt(int lagTops) {
+        if (lagTops < 0) {
+            throw new IllegalArgumentException("Invalid lag tops: " + lagTops);
+        }
+        this.lagTops = lagTops;
+    }
+
+    @Override
+    public void execute(Tuple t) {
+        try {
+            int top = (Integer) t.getValueByField("top");
+            int partitions = (Integer) t.getValueByField("partitions");
+            int[] values = (int[]) t.getValueByField("values");
+            int[] counts = (int[]) t.getValueByField("counts");
+
+            PendingMerge merge = pendingMerges.get(top);
+            if (merge == null) {
+                merge = new PendingMerge();
+                pendingMerges.put(top, merge);
+            }
+            merge.histograms.put(t.getSourceTask(), CellHistogram.fromArrays(values, counts, null));
+            Tuple replaced = merge.tuples.put(t.getSourceTask(), t);
+            if (replaced != null) {
+                logger.fine(() -> "Replayed histogram for top=" + top + " from task " + t.getSourceTask());
+                replayedHistograms.inc();
+                collector.fail(replaced);
+            }
+
+            if (merge.histograms.size() == partitions) {
+                pendingMerges.remove(top);
+                long start = System.nanoTime();
+                CellHistogram global = CellHistogram.merge(new ArrayList<>(merge.histograms.values()));
+                mergeTime.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+                logger.fine(() -> "Merged " + partitions + " histograms for top=" + top + " distinct=" + global.size());
+                collector.emit(COUNTS_STREAM, merge.tuples.values(), new Values(top, global.values(), global.greater(), global.counts()));
+                for (Tuple histogram : merge.tuples.values()) {
+                    collector.ack(histogram);
+                }
+                expireMerges(top);
+            }
+
+        } catch (Exception e) {
+            logger.severe("Error in RankMergeBolt: " + e.getMessage());
+            e.printStackTrace();
+            collector.fail(t);
+        }
+    }
+
+    /**
+     * Retire les tops de plus de lagTops tops plus anciens que le top complet
+     */
+    private void expireMerges(int mergedTop) {
+        Iterator<Map.Entry<Integer, PendingMerge>> it = pendingMerges.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, PendingMerge> e = it.next();
+            if ((long) e.getKey() < (long) mergedTop - lagTops) {
+                logger.fine(() -> "Expiring merge top=" + e.getKey() + " after top=" + mergedTop);
+                expiredMerges.inc();
+                for (Tuple histogram : e.getValue().tuples.values()) {
+                    collector.fail(histogram);
+                }
+                it.remove();
+            }
+        }
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        declarer.declareStream(COUNTS_STREAM, new Fields("top", "values", "greater", "counts"));
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        return null;
+    }
+
+    @Override
+    public void cleanup() {
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        this.collector = new MeteredOutputCollector(collector, context);
+        this.mergeTime = context.registerTimer("mergeTime");
+        context.registerGauge("pendingMerges", () -> pendingMerges.size());
+        this.expiredMerges = context.registerCounter("expiredMerges");
+        this.replayedHistograms = context.registerCounter("replayedHistograms");
+    }
+}
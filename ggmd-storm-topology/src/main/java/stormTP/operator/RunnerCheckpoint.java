@@ -0,0 +1,37 @@
+package stormTP.operator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import stormTP.core.RunnerStore;
+
+/**
+ * Opérateur dont l'état par tortue se sauvegarde tortue par tortue, en binaire compact
+ * (voir CheckpointedRunnerBolt). L'opérateur marque par runners().touch(slot) chaque tortue modifiée.
+ */
+public interface RunnerCheckpoint {
+
+    /**
+     * Remet l'état à vide (avant une restauration)
+     */
+    void resetState();
+
+    RunnerStore runners();
+
+    void writeRunner(int slot, DataOutput out) throws IOException;
+
+    /**
+     * Recrée l'état d'une tortue écrit par writeRunner, après readGlobal
+     */
+    void readRunner(int id, DataInput in) throws IOException;
+
+    /**
+     * État commun à toutes les tortues, sauvegardé à chaque checkpoint
+     */
+    default void writeGlobal(DataOutput out) throws IOException {
+    }
+
+    default void readGlobal(DataInput in) throws IOException {
+    }
+}
@@ -0,0 +1,98 @@
+package stormTP.operator;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.codahale.metrics.Timer;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.IRichBolt;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.Values;
+import stormTP.core.FrameReader;
+
+/**
+ * Bolt qui découpe une frame en un tuple par tortue pour le classement distribué.
+ * Émet des tuples avec le schéma: (id, top, nbCellsParcourus, total, maxcel, timestamp, trace)
+ * puis, sur le flux FRAME_END_STREAM, un tuple (top) qui clôt la frame.
+ *
+ * Storm conserve l'ordre des tuples entre deux tâches : une partition reçoit donc
+ * toujours la fin de frame après les tortues de cette frame qui lui sont destinées.
+ */
+public class RunnerSplitBolt implements IRichBolt {
+
+    private static final long serialVersionUID = 4262369370788107352L;
+    private static Logger logger = Logger.getLogger("RunnerSplitBoltLogger");
+    private OutputCollector collector;
+    private int taskId;
+    private transient Timer parseTimer;
+    private transient FrameReader frame;
+
+    public static final String FRAME_END_STREAM = "frameEnd";
+
+    public RunnerSplitBolt() {
+    }
+
+    @Override
+    public void execute(Tuple t) {
+        try {
+            long start = System.nanoTime();
+            String jsonInput = t.getValueByField("json").toString();
+            if (frame.reset(jsonInput)) {
+                int top = -1;
+                int count = 0;
+                long timestamp = FrameTimestamps.ofFrame(jsonInput);
+                long[] trace = Tracing.next(t, taskId);
+
+                while (frame.next()) {
+                    top = frame.top();
+                    collector.emit(t, new Values(frame.id(), top, frame.cells(), frame.total(), frame.maxcel(), timestamp, trace));
+                    count++;
+                }
+
+                if (count > 0) {
+                    collector.emit(FRAME_END_STREAM, t, new Values(top));
+                }
+                parseTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine("Split frame top=" + top + " into " + count + " runners");
+                }
+            }
+
+            collector.ack(t);
+
+        } catch (Exception e) {
+            logger.severe("Error in RunnerSplitBolt: " + e.getMessage());
+            e.printStackTrace();
+            collector.fail(t);
+        }
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+        declarer.declare(new Fields("id", "top", "nbCellsParcourus", "total", "maxcel", "timestamp", "trace"));
+        declarer.declareStream(FRAME_END_STREAM, new Fields("top"));
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        return null;
+    }
+
+    @Override
+    public void cleanup() {
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        this.collector = new MeteredOutputCollector(collector, context);
+        this.taskId = context.getThisTaskId();
+        this.parseTimer = context.registerTimer("parseTime");
+        this.frame = new FrameReader();
+    }
+}
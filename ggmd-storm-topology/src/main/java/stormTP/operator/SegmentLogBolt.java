@@ -0,0 +1,159 @@
+package stormTP.operator;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import com.codahale.metrics.Timer;
+import org.apache.storm.Config;
+import org.apache.storm.generated.GlobalStreamId;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.topology.IRichBolt;
+import org.apache.storm.topology.OutputFieldsDeclarer;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.utils.TupleUtils;
+import stormTP.stream.RecordBuffer;
+import stormTP.stream.RecordSerializer;
+import stormTP.stream.SegmentLog;
+
+/**
+ * Bolt terminal qui ajoute chaque tuple à un SegmentLog (remplace ExitInLogBolt pour les gros
+ * débits) : une copie en mémoire par tuple, sans verrou ni formatage de journalisation.
+ * Chaque tâche écrit dans son répertoire, directory/composant-tâche ; lecture : SegmentLogReader.
+ *
+ * Sans sérialiseur, l'enregistrement est le texte du champ "json" suivi d'une fin de ligne ;
+ * sinon tous les champs du tuple sont écrits par le sérialiseur. La clé d'index est le champ
+ * "top" s'il existe, sinon le numéro d'enregistrement divisé par SEQUENCE_BLOCK.
+ *
+ * Durabilité : force() toutes les forceIntervalMs (0 = après chaque tuple, lent) ; un tuple
+ * est acquitté une fois écrit dans le segment, et au plus forceIntervalMs de données sont
+ * perdues si la machine s'arrête.
+ */
+public class SegmentLogBolt implements IRichBolt {
+
+    private static final long serialVersionUID = 4262369370788107367L;
+    private static Logger logger = Logger.getLogger("SegmentLogBolt");
+
+    public static final long DEFAULT_FORCE_INTERVAL_MS = 1000;
+    public static final int SEQUENCE_BLOCK = 1024;
+
+    private final String directory;
+    private final RecordSerializer serializer;
+    private final int segmentSize;
+    private final long forceIntervalMs;
+
+    private transient OutputCollector collector;
+    private transient SegmentLog log;
+    private transient RecordBuffer record;
+    private transient boolean hasTop;
+    private transient long sequence;
+    private transient long lastForceNanos;
+    private transient Timer forceTime;
+
+    public SegmentLogBolt(String directory) {
+        this(directory, null, SegmentLog.DEFAULT_SEGMENT_SIZE, DEFAULT_FORCE_INTERVAL_MS);
+    }
+
+    /**
+     * @param serializer format des enregistrements, ou null pour le texte du champ "json"
+     * @param forceIntervalMs intervalle entre deux écritures sur disque (0 = après chaque tuple)
+     */
+    public SegmentLogBolt(String directory, RecordSerializer serializer, int segmentSize, long forceIntervalMs) {
+        if (forceIntervalMs < 0) {
+            throw new IllegalArgumentException("Invalid force interval: " + forceIntervalMs);
+        }
+        this.directory = directory;
+        this.serializer = serializer;
+        this.segmentSize = segmentSize;
+        this.forceIntervalMs = forceIntervalMs;
+    }
+
+    @Override
+    public void execute(Tuple t) {
+        try {
+            if (!TupleUtils.isTick(t)) {
+                record.clear();
+                if (serializer == null) {
+                    record.putUtf8(t.getStringByField("json")).put((byte) '\n');
+                } else {
+                    serializer.beginRecord(record);
+                    Fields fields = t.getFields();
+                    for (int i = 0; i < fields.size(); i++) {
+                        // La trace (Tracing) n'est pas une donnée du flux
+                        if (!Tracing.FIELD.equals(fields.get(i))) {
+                            AbstractExitBolt.writeValue(serializer, record, fields.get(i), t.getValue(i));
+                        }
+                    }
+                    serializer.endRecord(record);
+                }
+                long key = hasTop ? ((Number) t.getValueByField("top")).longValue() : sequence / SEQUENCE_BLOCK;
+                log.append(key, record.array(), 0, record.length());
+                sequence++;
+            }
+            long now = System.nanoTime();
+            if (now - lastForceNanos >= TimeUnit.MILLISECONDS.toNanos(forceIntervalMs)) {
+                log.force();
+                forceTime.update(System.nanoTime() - now, TimeUnit.NANOSECONDS);
+                lastForceNanos = now;
+            }
+            collector.ack(t);
+        } catch (IOException | RuntimeException e) {
+            logger.severe("Cannot append to log in " + directory + ": " + e.getMessage());
+            collector.fail(t);
+        }
+    }
+
+    @Override
+    public void declareOutputFields(OutputFieldsDeclarer declarer) {
+    }
+
+    @Override
+    public Map<String, Object> getComponentConfiguration() {
+        // Tick pour l'écriture périodique sur disque d'un flux arrêté
+        Map<String, Object> conf = new HashMap<>();
+        conf.put(Config.TOPOLOGY_TICK_TUPLE_FREQ_SECS, 1);
+        return conf;
+    }
+
+    @Override
+    public void cleanup() {
+        try {
+            log.close();
+            logger.info("Closed log in " + directory + ": " + sequence + " records");
+        } catch (IOException e) {
+            logger.warning("Cannot close log in " + directory + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
+        this.collector = new MeteredOutputCollector(collector, context);
+        this.hasTop = true;
+        for (GlobalStreamId source : context.getThisSources().keySet()) {
+            Fields declared = context.getComponentOutputFields(source);
+            hasTop &= declared.contains("top");
+            if (serializer == null && !declared.contains("json")) {
+                throw new IllegalStateException("SegmentLogBolt without serializer needs field json but "
+                        + source.get_componentId() + ":" + source.get_streamId() + " declares " + declared);
+            }
+        }
+        File dir = new File(directory, context.getThisComponentId() + "-" + context.getThisTaskId());
+        try {
+            this.log = new SegmentLog(dir, segmentSize);
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot open log in " + dir, e);
+        }
+        this.record = new RecordBuffer();
+        this.sequence = 0;
+        this.lastForceNanos = System.nanoTime();
+        this.forceTime = context.registerTimer("forceTime");
+        context.registerGauge("records", () -> sequence);
+    }
+}
@@ -1,15 +1,15 @@
 package stormTP.operator;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Map;
-import java.util.HashMap;
-import java.util.List;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Timer;
 import org.apache.storm.task.OutputCollector;
 import org.apache.storm.task.TopologyContext;
 import org.apache.storm.topology.IRichBolt;
@@ -17,60 +17,72 @@ import org.apache.storm.topology.OutputFieldsDeclarer;
 import org.apache.storm.tuple.Fields;
 import org.apache.storm.tuple.Tuple;
 import org.apache.storm.tuple.Values;
+import stormTP.core.AppliedTops;
+import stormTP.core.FrameReader;
+import stormTP.core.RunnerStore;
+import stormTP.core.SlidingCountWindow;
+import stormTP.core.WindowBuffer;
 
 /**
  * Opérateur stateless avec fenêtrage qui calcule la vitesse moyenne des tortues
  * Fenêtre glissante: 10 tops, calcul tous les 5 tuples reçus
- * Émet des tuples avec le schéma: (id, nom, tops, vitesse)
+ * Émet des tuples avec le schéma: (id, nom, tops, vitesse, timestamp, trace)
+ * Avec idleTops > 0, l'état d'une tortue absente depuis idleTops tops est retiré
+ * (gauges liveRunners et evictedRunners).
+ * L'instantané d'un top déjà appliqué à la tortue (frame rejouée par le spout) est ignoré
+ * (compteur replayedSnapshots) : voir AppliedTops.
+ * Version checkpointée : StatefulSpeedBolt.
  */
-public class SpeedBolt implements IRichBolt {
+public class SpeedBolt implements IRichBolt, RunnerCheckpoint {
 
     private static final long serialVersionUID = 4262369370788107348L;
     private static Logger logger = Logger.getLogger("SpeedBoltLogger");
     private OutputCollector collector;
+    private int taskId;
     
     // Configuration de la fenêtre glissante
     private static final int WINDOW_SIZE = 10; // 10 tops
     private static final int SLIDE_INTERVAL = 5; // tous les 5 tuples
     
-    // Buffer pour stocker les données de fenêtrage par tortue
-    private Map<Integer, TurtleWindow> turtleWindows = new HashMap<>();
+    // Fenêtre glissante de chaque tortue : les WINDOW_SIZE derniers instantanés (top, cellules) triés par top
+    private transient RunnerStore runners;
+    private transient RunnerStore.ObjectColumn<SlidingCountWindow> turtleWindows;
+    private transient AppliedTops appliedTops;
+    private transient FrameReader frame;
     
-    // Classe interne pour stocker les données de fenêtrage d'une tortue
-    private static class TurtleWindow {
-        int id;
-        String nom;
-        List<TurtleSnapshot> snapshots = new ArrayList<>();
-        int tupleCount = 0;
-        
-        TurtleWindow(int id, String nom) {
-            this.id = id;
-            this.nom = nom;
-        }
-    }
+    // Expiration des tortues inactives, en tops (0 = jamais) ; horloge = plus grand top reçu
+    private final int idleTops;
+    private transient long clock;
     
-    // Classe pour stocker un instantané d'une tortue à un top donné
-    private static class TurtleSnapshot {
-        int top;
-        int nbCellsParcourus;
-        
-        TurtleSnapshot(int top, int nbCellsParcourus) {
-            this.top = top;
-            this.nbCellsParcourus = nbCellsParcourus;
-        }
-    }
+    // Métriques : traitement d'une frame, instantanés par fenêtre évaluée
+    private transient Timer frameTimer;
+    private transient Histogram windowSizes;
+    private transient Counter replayedSnapshots;
     
     public SpeedBolt() {
+        this(0);
+    }
+    
+    /**
+     * @param idleTops nombre de tops sans instantané après lequel l'état d'une tortue est retiré (0 = jamais)
+     */
+    public SpeedBolt(int idleTops) {
+        if (idleTops < 0) {
+            throw new IllegalArgumentException("Invalid idle tops: " + idleTops);
+        }
+        this.idleTops = idleTops;
     }
     
     @Override
     public void execute(Tuple t) {
         try {
             String jsonInput = t.getValueByField("json").toString();
-            logger.info("Received JSON: " + jsonInput);
+            logger.fine(() -> "Received JSON: " + jsonInput);
             
             // Parse le JSON et traite toutes les tortues
+            long start = System.nanoTime();
             parseJsonAndProcess(jsonInput, t);
+            frameTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
             
         } catch (Exception e) {
             logger.severe("Error in SpeedBolt: " + e.getMessage());
@@ -82,32 +94,20 @@ public class SpeedBolt implements IRichBolt {
     private void parseJsonAndProcess(String jsonInput, Tuple originalTuple) {
         try {
             // Find all runners in the JSON
-            Pattern runnersPattern = Pattern.compile("\"runners\"\\s*:\\s*\\[([^\\]]+)\\]");
-            Matcher runnersMatcher = runnersPattern.matcher(jsonInput);
-            
-            if (runnersMatcher.find()) {
-                String runnersArray = runnersMatcher.group(1);
-                
-                // Parse individual runner objects
-                Pattern runnerPattern = Pattern.compile("\\{[^}]+\\}");
-                Matcher runnerMatcher = runnerPattern.matcher(runnersArray);
+            if (frame.reset(jsonInput)) {
+                long timestamp = FrameTimestamps.ofFrame(jsonInput);
                 
-                while (runnerMatcher.find()) {
-                    String runnerJson = runnerMatcher.group();
-                    
-                    int id = extractIntField(runnerJson, "id");
-                    int top = extractIntField(runnerJson, "top");
-                    int tour = extractIntField(runnerJson, "tour");
-                    int cellule = extractIntField(runnerJson, "cellule");
-                    int maxcel = extractIntField(runnerJson, "maxcel");
-                    
-                    int nbCellsParcourus = tour * maxcel + cellule;
+                while (frame.next()) {
+                    int id = frame.id();
+                    int top = frame.top();
+                    int nbCellsParcourus = frame.cells();
                     String nom = "Turtle" + id;
                     
                     // Traiter cette tortue pour le calcul de vitesse
-                    processTurtleSpeed(id, nom, top, nbCellsParcourus, originalTuple);
+                    processTurtleSpeed(id, nom, top, nbCellsParcourus, timestamp, originalTuple);
                 }
             }
+            runners.evictIdle(clock, slot -> logger.fine(() -> "Evicting idle turtle id=" + runners.id(slot)));
             
             collector.ack(originalTuple);
             
@@ -118,80 +118,106 @@ public class SpeedBolt implements IRichBolt {
         }
     }
     
-    private void processTurtleSpeed(int id, String nom, int top, int nbCellsParcourus, Tuple originalTuple) {
+    private void processTurtleSpeed(int id, String nom, int top, int nbCellsParcourus, long timestamp, Tuple originalTuple) {
         // Initialiser la fenêtre de la tortue si nécessaire
-        if (!turtleWindows.containsKey(id)) {
-            turtleWindows.put(id, new TurtleWindow(id, nom));
+        int slot = runners.find(id);
+        if (slot < 0) {
+            slot = runners.add(id);
+            turtleWindows.set(slot, new SlidingCountWindow(WINDOW_SIZE, SLIDE_INTERVAL));
         }
+        if (!appliedTops.apply(slot, top)) {
+            logger.fine(() -> "Replayed snapshot for turtle id=" + id + " top=" + top);
+            replayedSnapshots.inc();
+            return;
+        }
+        SlidingCountWindow window = turtleWindows.get(slot);
+        clock = Math.max(clock, top);
+        runners.access(slot, clock);
         
-        TurtleWindow window = turtleWindows.get(id);
-        
-        // Ajouter le nouvel instantané
-        window.snapshots.add(new TurtleSnapshot(top, nbCellsParcourus));
-        window.tupleCount++;
-        
-        // Trier par top pour maintenir l'ordre chronologique
-        Collections.sort(window.snapshots, new Comparator<TurtleSnapshot>() {
-            @Override
-            public int compare(TurtleSnapshot s1, TurtleSnapshot s2) {
-                return Integer.compare(s1.top, s2.top);
-            }
-        });
-        
-        // Calculer la vitesse tous les SLIDE_INTERVAL tuples
-        if (window.tupleCount % SLIDE_INTERVAL == 0 && window.snapshots.size() >= 2) {
-            calculateAndEmitSpeed(window, originalTuple);
+        // Ajouter le nouvel instantané et calculer la vitesse tous les SLIDE_INTERVAL tuples
+        boolean evaluate = window.add(top, nbCellsParcourus);
+        runners.touch(slot);
+        if (evaluate) {
+            calculateAndEmitSpeed(id, nom, window.buffer(), timestamp, originalTuple);
         }
         
-        logger.info("Turtle id=" + id + " top=" + top + " cells=" + nbCellsParcourus + " tupleCount=" + window.tupleCount);
+        logger.fine(() -> "Turtle id=" + id + " top=" + top + " cells=" + nbCellsParcourus + " tupleCount=" + window.added());
     }
     
-    private void calculateAndEmitSpeed(TurtleWindow window, Tuple originalTuple) {
-        List<TurtleSnapshot> snapshots = window.snapshots;
-        
-        // Prendre les WINDOW_SIZE derniers snapshots (ou tous s'il y en a moins)
-        int startIndex = Math.max(0, snapshots.size() - WINDOW_SIZE);
-        List<TurtleSnapshot> windowSnapshots = snapshots.subList(startIndex, snapshots.size());
-        
-        if (windowSnapshots.size() < 2) {
+    private void calculateAndEmitSpeed(int id, String nom, WindowBuffer window, long timestamp, Tuple originalTuple) {
+        // Le tampon contient les WINDOW_SIZE derniers instantanés (ou tous s'il y en a moins)
+        windowSizes.update(window.size());
+        if (window.size() < 2) {
             return; // Pas assez de données pour calculer la vitesse
         }
         
         // Calculer la vitesse moyenne sur la fenêtre
-        TurtleSnapshot first = windowSnapshots.get(0);
-        TurtleSnapshot last = windowSnapshots.get(windowSnapshots.size() - 1);
+        int firstTop = (int) window.firstPosition();
+        int lastTop = (int) window.lastPosition();
         
-        int topDiff = last.top - first.top;
-        int cellDiff = last.nbCellsParcourus - first.nbCellsParcourus;
+        int topDiff = lastTop - firstTop;
+        int cellDiff = window.lastValue() - window.firstValue();
         
         if (topDiff > 0) {
             double vitesse = (double) cellDiff / topDiff;
             
             // Format de la chaîne tops
-            String tops = first.top + "-" + last.top;
+            String tops = firstTop + "-" + lastTop;
             
-            logger.info("Emitting speed for turtle id=" + window.id + " tops=" + tops + " vitesse=" + vitesse);
+            logger.fine(() -> "Emitting speed for turtle id=" + id + " tops=" + tops + " vitesse=" + vitesse);
             
-            // Émettre le tuple avec le schéma (id, nom, tops, vitesse)
-            collector.emit(originalTuple, new Values(window.id, window.nom, tops, vitesse));
+            // Émettre le tuple avec le schéma (id, nom, tops, vitesse, timestamp, trace)
+            collector.emit(originalTuple, new Values(id, nom, tops, vitesse, timestamp, Tracing.next(originalTuple, taskId)));
         }
     }
     
-    /**
-     * Extract integer field value from JSON string using regex
-     */
-    private int extractIntField(String json, String fieldName) {
-        Pattern pattern = Pattern.compile("\"" + fieldName + "\"\\s*:\\s*(\\d+)");
-        Matcher matcher = pattern.matcher(json);
-        if (matcher.find()) {
-            return Integer.parseInt(matcher.group(1));
+    @Override
+    public void resetState() {
+        this.runners = new RunnerStore();
+        this.turtleWindows = runners.objectColumn();
+        this.appliedTops = new AppliedTops(runners);
+        if (idleTops > 0) {
+            runners.expireIdle(idleTops);
         }
-        throw new RuntimeException("Field " + fieldName + " not found in JSON: " + json);
+        this.clock = 0;
+    }
+    
+    @Override
+    public RunnerStore runners() {
+        return runners;
+    }
+    
+    @Override
+    public void writeRunner(int slot, DataOutput out) throws IOException {
+        out.writeLong(runners.lastAccess(slot));
+        appliedTops.writeTo(slot, out);
+        turtleWindows.get(slot).writeTo(out);
+    }
+    
+    @Override
+    public void readRunner(int id, DataInput in) throws IOException {
+        long lastAccess = in.readLong();
+        int slot = runners.add(id);
+        appliedTops.readFrom(slot, in);
+        SlidingCountWindow window = new SlidingCountWindow(WINDOW_SIZE, SLIDE_INTERVAL);
+        window.readFrom(in);
+        turtleWindows.set(slot, window);
+        runners.access(slot, lastAccess);
+    }
+    
+    @Override
+    public void writeGlobal(DataOutput out) throws IOException {
+        out.writeLong(clock);
+    }
+    
+    @Override
+    public void readGlobal(DataInput in) throws IOException {
+        clock = in.readLong();
     }
     
     @Override
     public void declareOutputFields(OutputFieldsDeclarer declarer) {
-        declarer.declare(new Fields("id", "nom", "tops", "vitesse"));
+        declarer.declare(new Fields("id", "nom", "tops", "vitesse", "timestamp", "trace"));
     }
     
     @Override
@@ -206,6 +232,14 @@ public class SpeedBolt implements IRichBolt {
     @Override
     @SuppressWarnings("rawtypes")
     public void prepare(Map stormConf, TopologyContext context, OutputCollector collector) {
-        this.collector = collector;
+        this.collector = new MeteredOutputCollector(collector, context);
+        this.taskId = context.getThisTaskId();
+        resetState();
+        context.registerGauge("liveRunners", () -> runners.size());
+        context.registerGauge("evictedRunners", () -> runners.evictions());
+        this.frameTimer = context.registerTimer("frameTime");
+        this.frame = new FrameReader();
+        this.windowSizes = context.registerHistogram("windowSize");
+        this.replayedSnapshots = context.registerCounter("replayedSnapshots");
     }
 }
\ No newline at end of file
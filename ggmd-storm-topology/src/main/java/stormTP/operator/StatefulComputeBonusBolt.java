@@ -0,0 +1,21 @@
+package stormTP.operator;
+
+/**
+ * ComputeBonusBolt checkpointé : score, bloc courant et tops appliqués de chaque tortue (32 octets)
+ * sauvegardés par le mécanisme de checkpoint de Storm et restaurés dans initState().
+ */
+public class StatefulComputeBonusBolt extends CheckpointedRunnerBolt<ComputeBonusBolt> {
+
+    private static final long serialVersionUID = 4262369370788107360L;
+
+    public StatefulComputeBonusBolt() {
+        super(new ComputeBonusBolt());
+    }
+
+    /**
+     * @see ComputeBonusBolt#ComputeBonusBolt(int)
+     */
+    public StatefulComputeBonusBolt(int idleTops) {
+        super(new ComputeBonusBolt(idleTops));
+    }
+}
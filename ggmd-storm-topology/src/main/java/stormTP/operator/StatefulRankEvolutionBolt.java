@@ -0,0 +1,28 @@
+package stormTP.operator;
+
+/**
+ * RankEvolutionBolt checkpointé : volets de chaque tortue et avancement des fenêtres
+ * sauvegardés par le mécanisme de checkpoint de Storm et restaurés dans initState().
+ */
+public class StatefulRankEvolutionBolt extends CheckpointedRunnerBolt<RankEvolutionBolt> {
+
+    private static final long serialVersionUID = 4262369370788107362L;
+
+    public StatefulRankEvolutionBolt() {
+        super(new RankEvolutionBolt());
+    }
+
+    /**
+     * @see RankEvolutionBolt#RankEvolutionBolt(long, long, int)
+     */
+    public StatefulRankEvolutionBolt(long windowMs, long allowedLatenessMs, int tickSeconds) {
+        super(new RankEvolutionBolt(windowMs, allowedLatenessMs, tickSeconds));
+    }
+
+    /**
+     * @see RankEvolutionBolt#RankEvolutionBolt(long, long, int, long)
+     */
+    public StatefulRankEvolutionBolt(long windowMs, long allowedLatenessMs, int tickSeconds, long idleMs) {
+        super(new RankEvolutionBolt(windowMs, allowedLatenessMs, tickSeconds, idleMs));
+    }
+}
@@ -0,0 +1,21 @@
+package stormTP.operator;
+
+/**
+ * SpeedBolt checkpointé : fenêtre glissante de chaque tortue (instantanés et cadence)
+ * sauvegardée par le mécanisme de checkpoint de Storm et restaurée dans initState().
+ */
+public class StatefulSpeedBolt extends CheckpointedRunnerBolt<SpeedBolt> {
+
+    private static final long serialVersionUID = 4262369370788107361L;
+
+    public StatefulSpeedBolt() {
+        super(new SpeedBolt());
+    }
+
+    /**
+     * @see SpeedBolt#SpeedBolt(int)
+     */
+    public StatefulSpeedBolt(int idleTops) {
+        super(new SpeedBolt(idleTops));
+    }
+}
@@ -0,0 +1,95 @@
+package stormTP.operator;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.codahale.metrics.Histogram;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.Tuple;
+import stormTP.core.TraceContext;
+
+/**
+ * Traçage par étape, optionnel : InputStreamSpout trace une frame sur SAMPLE_EVERY (clé de la
+ * configuration de la topologie, par exemple storm jar ... -c stormtp.trace.sample.every=100 ;
+ * 0 ou absente = aucune trace). La trace (TraceContext) est le dernier champ "trace" de chaque
+ * schéma, null pour une frame non tracée : le coût d'une frame non échantillonnée se limite
+ * à ce champ vide. Chaque opérateur y ajoute son étape avec next().
+ *
+ * Les bolts de sortie agrègent les traces reçues en histogrammes de métriques Storm (µs) :
+ * "trace.<composant>" est le temps entre l'étape précédente et l'émission du composant
+ * (transfert, file d'attente et traitement), "trace.<sortie>" celui jusqu'au bolt de sortie,
+ * "trace.total" celui depuis le spout.
+ */
+public final class Tracing {
+
+    public static final String FIELD = "trace";
+    public static final String SAMPLE_EVERY = "stormtp.trace.sample.every";
+
+    private final TopologyContext context;
+    private final Map<Integer, Histogram> hops = new HashMap<>();
+    private final Histogram last;
+    private final Histogram total;
+
+    /**
+     * Histogrammes par étape des traces reçues par le bolt de sortie du contexte
+     */
+    public Tracing(TopologyContext context) {
+        this.context = context;
+        this.last = context.registerHistogram("trace." + context.getThisComponentId());
+        this.total = context.registerHistogram("trace.total");
+    }
+
+    /**
+     * Trace à émettre par la tâche pour le tuple reçu : sa trace avec une étape de plus, ou null
+     */
+    public static long[] next(Tuple t, int task) {
+        return t.contains(FIELD) ? TraceContext.hop((long[]) t.getValueByField(FIELD), task, TraceContext.nowNanos()) : null;
+    }
+
+    /**
+     * Une frame sur combien est tracée, d'après la configuration de la topologie
+     */
+    @SuppressWarnings("rawtypes")
+    public static int sampleEvery(Map conf) {
+        Object value = conf.get(SAMPLE_EVERY);
+        if (value == null) {
+            return 0;
+        }
+        int every = value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString());
+        if (every < 0) {
+            throw new IllegalArgumentException("Invalid " + SAMPLE_EVERY + ": " + value);
+        }
+        return every;
+    }
+
+    /**
+     * Ajoute les durées des étapes d'une trace reçue (rien pour null)
+     */
+    public void record(long[] trace) {
+        if (trace == null) {
+            return;
+        }
+        long now = TraceContext.nowNanos();
+        int hopCount = TraceContext.hops(trace);
+        for (int hop = 1; hop < hopCount; hop++) {
+            hop(TraceContext.task(trace, hop)).update(micros(TraceContext.nanos(trace, hop) - TraceContext.nanos(trace, hop - 1)));
+        }
+        last.update(micros(now - TraceContext.nanos(trace, hopCount - 1)));
+        total.update(micros(now - TraceContext.nanos(trace, 0)));
+    }
+
+    private Histogram hop(int task) {
+        Histogram histogram = hops.get(task);
+        if (histogram == null) {
+            // Les tâches d'un même composant partagent son histogramme
+            histogram = context.registerHistogram("trace." + context.getComponentId(task));
+            hops.put(task, histogram);
+        }
+        return histogram;
+    }
+
+    private static long micros(long nanos) {
+        // Horloges de workers décalées : une durée négative compte pour 0
+        return Math.max(0, nanos / 1_000);
+    }
+}
@@ -0,0 +1,471 @@
+package stormTP.state;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.apache.storm.state.KeyValueState;
+import org.apache.storm.state.Serializer;
+
+/**
+ * KeyValueState persisté dans des segments de journal projetés en mémoire (segment-N.log).
+ *
+ * Seules les clés et la position de leur dernière valeur validée restent dans le tas : les valeurs
+ * sont relues dans les segments à la demande. Chaque checkpoint n'écrit que les clés modifiées
+ * depuis le précédent (prepareCommit), puis un marqueur COMMIT suivi d'un force() (commit).
+ * À l'ouverture, l'index est reconstruit en rejouant les segments : les écritures suivies d'un
+ * COMMIT sont appliquées, celles suivies d'un PREPARE restent préparées (le checkpoint spout peut
+ * encore les valider), les autres sont abandonnées.
+ *
+ * Format d'un enregistrement : [int taille][byte type][...] ; une taille nulle marque la fin des données.
+ *
+ * Compactage : après un commit, quand les octets morts (valeurs remplacées ou supprimées, marqueurs)
+ * dépassent compactBytes et le volume des valeurs vivantes, les clés validées sont réécrites dans
+ * de nouveaux segments suivis d'un COMMIT, puis les anciens segments sont supprimés, du plus ancien
+ * au plus récent. Les segments sont numérotés à partir du plus petit présent : un arrêt en cours de
+ * compactage rejoue les anciens segments restants puis les nouveaux, et retrouve le même état.
+ */
+public class MappedKeyValueState<K, V> implements KeyValueState<K, V> {
+
+    private static Logger logger = Logger.getLogger("MappedKeyValueStateLogger");
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    private static final Pattern SEGMENT_FILE = Pattern.compile("segment-(\\d+)\\.log");
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    private static final byte PREPARE = 3;
+    private static final byte COMMIT = 4;
+    private static final byte ROLLBACK = 5;
+
+    // Marqueurs de suppression (comparés par identité)
+    private static final byte[] TOMBSTONE = new byte[0];
+    private static final long DELETED = -1;
+
+    private final File dir;
+    private final int segmentSize;
+    private final long compactBytes;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    // Numéro de fichier du premier segment projeté
+    private int firstSegment;
+    private int writePosition;
+    // Premier segment écrit depuis le dernier force()
+    private int dirtySegment;
+
+    // Position (segment << 32 | offset) de la valeur validée de chaque clé
+    private final Map<ByteBuffer, Long> committed = new HashMap<>();
+    // Écrit dans le journal mais pas encore validé (DELETED pour une suppression)
+    private final Map<ByteBuffer, Long> prepared = new HashMap<>();
+    // Modifié depuis le dernier checkpoint, pas encore écrit (TOMBSTONE pour une suppression)
+    private final Map<ByteBuffer, byte[]> pending = new HashMap<>();
+    // Des enregistrements suivent le dernier COMMIT ou ROLLBACK
+    private boolean staged = false;
+    private long preparedTxid = -1;
+    private long committedTxid = -1;
+    // Octets écrits dans les segments, dont ceux des valeurs validées encore lues
+    private long logBytes;
+    private long liveBytes;
+    private long compactions;
+
+    /**
+     * État sans compactage
+     */
+    public MappedKeyValueState(File dir, int segmentSize, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        this(dir, segmentSize, 0, keySerializer, valueSerializer);
+    }
+
+    /**
+     * @param compactBytes octets morts au-delà desquels le journal est compacté (0 = jamais)
+     */
+    public MappedKeyValueState(File dir, int segmentSize, long compactBytes,
+                               Serializer<K> keySerializer, Serializer<V> valueSerializer) {
+        if (segmentSize < 64) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        if (compactBytes < 0) {
+            throw new IllegalArgumentException("Invalid compaction threshold: " + compactBytes);
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.compactBytes = compactBytes;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        try {
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open state in " + dir, e);
+        }
+    }
+
+    @Override
+    public void put(K key, V value) {
+        pending.put(ByteBuffer.wrap(keySerializer.serialize(key)), valueSerializer.serialize(value));
+    }
+
+    @Override
+    public V get(K key) {
+        return get(key, null);
+    }
+
+    @Override
+    public V get(K key, V defaultValue) {
+        byte[] value = lookup(ByteBuffer.wrap(keySerializer.serialize(key)));
+        return value == null ? defaultValue : valueSerializer.deserialize(value);
+    }
+
+    @Override
+    public V delete(K key) {
+        ByteBuffer k = ByteBuffer.wrap(keySerializer.serialize(key));
+        byte[] previous = lookup(k);
+        pending.put(k, TOMBSTONE);
+        return previous == null ? null : valueSerializer.deserialize(previous);
+    }
+
+    /**
+     * Parcourt l'état courant (modifications non validées comprises)
+     */
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+        Stream<Map.Entry<ByteBuffer, byte[]>> fromPending = pending.entrySet().stream()
+                .filter(e -> e.getValue() != TOMBSTONE)
+                .map(e -> new AbstractMap.SimpleImmutableEntry<>(e.getKey(), e.getValue()));
+        Stream<Map.Entry<ByteBuffer, byte[]>> fromPrepared = prepared.entrySet().stream()
+                .filter(e -> e.getValue() != DELETED && !pending.containsKey(e.getKey()))
+                .map(e -> new AbstractMap.SimpleImmutableEntry<>(e.getKey(), read(e.getValue())));
+        Stream<Map.Entry<ByteBuffer, byte[]>> fromCommitted = committed.entrySet().stream()
+                .filter(e -> !pending.containsKey(e.getKey()) && !prepared.containsKey(e.getKey()))
+                .map(e -> new AbstractMap.SimpleImmutableEntry<>(e.getKey(), read(e.getValue())));
+
+        return Stream.concat(fromPending, Stream.concat(fromPrepared, fromCommitted))
+                .<Map.Entry<K, V>>map(e -> new AbstractMap.SimpleImmutableEntry<>(
+                        keySerializer.deserialize(e.getKey().array()), valueSerializer.deserialize(e.getValue())))
+                .iterator();
+    }
+
+    /**
+     * Écrit dans le journal les clés modifiées depuis le dernier checkpoint
+     */
+    @Override
+    public void prepareCommit(long txid) {
+        for (Map.Entry<ByteBuffer, byte[]> e : pending.entrySet()) {
+            byte[] key = e.getKey().array();
+            if (e.getValue() == TOMBSTONE) {
+                append(DELETE, key, null, 0);
+                prepared.put(e.getKey(), DELETED);
+            } else {
+                prepared.put(e.getKey(), append(PUT, key, e.getValue(), 0));
+            }
+        }
+        pending.clear();
+        append(PREPARE, null, null, txid);
+        preparedTxid = txid;
+    }
+
+    /**
+     * Valide le checkpoint txid : marqueur COMMIT, écriture sur disque, puis mise à jour de l'index
+     */
+    @Override
+    public void commit(long txid) {
+        if (!pending.isEmpty() || preparedTxid != txid) {
+            prepareCommit(txid);
+        }
+        append(COMMIT, null, null, txid);
+        flush();
+
+        for (Map.Entry<ByteBuffer, Long> e : prepared.entrySet()) {
+            Long previous = e.getValue() == DELETED ? committed.remove(e.getKey()) : committed.put(e.getKey(), e.getValue());
+            if (previous != null) {
+                liveBytes -= recordBytes(previous);
+            }
+            if (e.getValue() != DELETED) {
+                liveBytes += recordBytes(e.getValue());
+            }
+        }
+        prepared.clear();
+        staged = false;
+        preparedTxid = -1;
+        committedTxid = txid;
+
+        long dead = logBytes - liveBytes;
+        if (compactBytes > 0 && dead >= compactBytes && dead >= liveBytes) {
+            compact();
+        }
+    }
+
+    @Override
+    public void commit() {
+        commit(committedTxid + 1);
+    }
+
+    /**
+     * Revient au dernier checkpoint validé
+     */
+    @Override
+    public void rollback() {
+        pending.clear();
+        prepared.clear();
+        preparedTxid = -1;
+        if (staged) {
+            append(ROLLBACK, null, null, 0);
+            flush();
+            staged = false;
+        }
+    }
+
+    public long committedTxid() {
+        return committedTxid;
+    }
+
+    /**
+     * Nombre de clés validées (sans les modifications en cours)
+     */
+    public int committedSize() {
+        return committed.size();
+    }
+
+    /**
+     * Nombre de compactages depuis l'ouverture
+     */
+    public long compactions() {
+        return compactions;
+    }
+
+    /**
+     * Réécrit les valeurs validées dans de nouveaux segments, puis supprime les anciens.
+     * Appelé juste après un commit : aucune écriture préparée ni en attente dans le journal.
+     */
+    private void compact() {
+        int oldSegments = segments.size();
+        long before = logBytes;
+        // Les enregistrements suivants commencent un nouveau segment
+        writePosition = segmentSize;
+        logBytes = 0;
+        for (Map.Entry<ByteBuffer, Long> e : committed.entrySet()) {
+            e.setValue(append(PUT, e.getKey().array(), read(e.getValue()), 0));
+        }
+        append(COMMIT, null, null, committedTxid);
+        dirtySegment = oldSegments;
+        flush();
+        staged = false;
+
+        for (int i = 0; i < oldSegments; i++) {
+            File file = segmentFile(firstSegment + i);
+            if (!file.delete()) {
+                logger.warning("Cannot delete compacted state segment " + file);
+            }
+        }
+        segments.subList(0, oldSegments).clear();
+        firstSegment += oldSegments;
+        long shift = (long) oldSegments << 32;
+        for (Map.Entry<ByteBuffer, Long> e : committed.entrySet()) {
+            e.setValue(e.getValue() - shift);
+        }
+        dirtySegment = segments.size() - 1;
+        compactions++;
+        logger.info("Compacted state " + dir + ": " + before + " -> " + logBytes + " bytes, "
+                + committed.size() + " keys");
+    }
+
+    private byte[] lookup(ByteBuffer key) {
+        byte[] value = pending.get(key);
+        if (value != null) {
+            return value == TOMBSTONE ? null : value;
+        }
+        Long location = prepared.get(key);
+        if (location == null) {
+            location = committed.get(key);
+        }
+        return location == null || location == DELETED ? null : read(location);
+    }
+
+    /**
+     * Taille de l'enregistrement à la position location, en-tête compris
+     */
+    private int recordBytes(long location) {
+        return 4 + segments.get((int) (location >>> 32)).getInt((int) location);
+    }
+
+    /**
+     * Valeur de l'enregistrement PUT à la position location
+     */
+    private byte[] read(long location) {
+        ByteBuffer segment = segments.get((int) (location >>> 32));
+        int offset = (int) location;
+        int length = segment.getInt(offset);
+        int keyLength = segment.getInt(offset + 5);
+        byte[] value = new byte[length - 5 - keyLength];
+        segment.get(offset + 9 + keyLength, value);
+        return value;
+    }
+
+    /**
+     * Ajoute un enregistrement et retourne sa position. La taille est écrite en dernier :
+     * un enregistrement interrompu se lit comme la fin des données.
+     */
+    private long append(byte type, byte[] key, byte[] value, long txid) {
+        int length;
+        if (type == PUT || type == DELETE) {
+            length = 5 + key.length + (value == null ? 0 : value.length);
+        } else {
+            length = type == ROLLBACK ? 1 : 9;
+        }
+        if (4 + length > segmentSize) {
+            throw new IllegalArgumentException("State record of " + length + " bytes exceeds segment size " + segmentSize);
+        }
+        if (writePosition + 4 + length > segmentSize) {
+            try {
+                segments.add(map(segments.size()));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot create state segment in " + dir, e);
+            }
+            writePosition = 0;
+        }
+
+        int segmentIndex = segments.size() - 1;
+        MappedByteBuffer segment = segments.get(segmentIndex);
+        int offset = writePosition;
+        segment.put(offset + 4, type);
+        if (type == PUT || type == DELETE) {
+            segment.putInt(offset + 5, key.length);
+            segment.put(offset + 9, key);
+            if (value != null) {
+                segment.put(offset + 9 + key.length, value);
+            }
+        } else if (type != ROLLBACK) {
+            segment.putLong(offset + 5, txid);
+        }
+        segment.putInt(offset, length);
+
+        writePosition += 4 + length;
+        logBytes += 4 + length;
+        staged = true;
+        return ((long) segmentIndex << 32) | offset;
+    }
+
+    private void flush() {
+        for (int i = dirtySegment; i < segments.size(); i++) {
+            segments.get(i).force();
+        }
+        dirtySegment = segments.size() - 1;
+    }
+
+    private File segmentFile(int number) {
+        return new File(dir, "segment-" + number + ".log");
+    }
+
+    /**
+     * Projette le segment d'indice index (numéro de fichier firstSegment + index)
+     */
+    private MappedByteBuffer map(int index) throws IOException {
+        File file = segmentFile(firstSegment + index);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            long size = Math.max(raf.length(), segmentSize);
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * Projette les segments existants et rejoue le journal
+     */
+    private void open() throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory " + dir);
+        }
+        // Un compactage interrompu laisse les derniers des anciens segments
+        firstSegment = Integer.MAX_VALUE;
+        String[] names = dir.list();
+        for (String name : names != null ? names : new String[0]) {
+            Matcher m = SEGMENT_FILE.matcher(name);
+            if (m.matches()) {
+                firstSegment = Math.min(firstSegment, Integer.parseInt(m.group(1)));
+            }
+        }
+        if (firstSegment == Integer.MAX_VALUE) {
+            firstSegment = 0;
+        }
+        while (segmentFile(firstSegment + segments.size()).exists()) {
+            segments.add(map(segments.size()));
+        }
+        if (segments.isEmpty()) {
+            segments.add(map(0));
+        }
+
+        Map<ByteBuffer, Long> staging = new HashMap<>();
+        for (int s = 0; s < segments.size(); s++) {
+            MappedByteBuffer segment = segments.get(s);
+            int offset = 0;
+            while (offset + 4 <= segment.capacity() && segment.getInt(offset) > 0) {
+                int length = segment.getInt(offset);
+                byte type = segment.get(offset + 4);
+                long location = ((long) s << 32) | offset;
+                switch (type) {
+                    case PUT:
+                    case DELETE:
+                        byte[] key = new byte[segment.getInt(offset + 5)];
+                        segment.get(offset + 9, key);
+                        staging.put(ByteBuffer.wrap(key), type == PUT ? location : DELETED);
+                        staged = true;
+                        break;
+                    case PREPARE:
+                        preparedTxid = segment.getLong(offset + 5);
+                        staged = true;
+                        break;
+                    case COMMIT:
+                        for (Map.Entry<ByteBuffer, Long> e : staging.entrySet()) {
+                            if (e.getValue() == DELETED) {
+                                committed.remove(e.getKey());
+                            } else {
+                                committed.put(e.getKey(), e.getValue());
+                            }
+                        }
+                        committedTxid = segment.getLong(offset + 5);
+                        staging.clear();
+                        preparedTxid = -1;
+                        staged = false;
+                        break;
+                    case ROLLBACK:
+                        staging.clear();
+                        preparedTxid = -1;
+                        staged = false;
+                        break;
+                    default:
+                        throw new IOException("Corrupted state segment " + s + " at offset " + offset);
+                }
+                offset += 4 + length;
+            }
+            writePosition = offset;
+            logBytes += offset;
+        }
+        for (long location : committed.values()) {
+            liveBytes += recordBytes(location);
+        }
+
+        if (preparedTxid != -1) {
+            // Checkpoint préparé avant l'arrêt : en attente de commit(txid) ou rollback()
+            prepared.putAll(staging);
+        } else if (staged) {
+            // Écritures interrompues avant leur PREPARE
+            rollback();
+        }
+        dirtySegment = segments.size() - 1;
+        logger.info("Opened state " + dir + ": " + committed.size() + " keys, txid=" + committedTxid
+                + (preparedTxid != -1 ? ", prepared txid=" + preparedTxid : ""));
+    }
+}
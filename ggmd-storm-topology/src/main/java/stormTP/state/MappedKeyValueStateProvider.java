@@ -0,0 +1,45 @@
+package stormTP.state;
+
+import java.io.File;
+import java.util.Map;
+
+import org.apache.storm.Config;
+import org.apache.storm.state.DefaultStateSerializer;
+import org.apache.storm.state.State;
+import org.apache.storm.state.StateProvider;
+import org.apache.storm.task.TopologyContext;
+
+/**
+ * StateProvider des bolts stateful vers MappedKeyValueState, sans service externe :
+ *   config.put(Config.TOPOLOGY_STATE_PROVIDER, MappedKeyValueStateProvider.class.getName());
+ *
+ * Chaque état (namespace = composant et tâche) a son répertoire sous
+ * STATE_DIR/nom de la topologie/namespace, sur le disque local du worker : une tâche relancée
+ * sur la même machine retrouve son état. Clés et valeurs passent par le sérialiseur Kryo de Storm.
+ */
+public class MappedKeyValueStateProvider implements StateProvider {
+
+    // Répertoire racine des états (par défaut java.io.tmpdir/stormtp-state)
+    public static final String STATE_DIR = "stormtp.state.dir";
+    // Taille des segments projetés en mémoire, en octets
+    public static final String SEGMENT_SIZE = "stormtp.state.segment.bytes";
+    // Octets morts au-delà desquels le journal est compacté (par défaut la taille d'un segment, 0 = jamais)
+    public static final String COMPACT_BYTES = "stormtp.state.compact.bytes";
+
+    @Override
+    public State newState(String namespace, Map<String, Object> topoConf, TopologyContext context) {
+        Object root = topoConf.get(STATE_DIR);
+        File rootDir = root != null ? new File(root.toString())
+                : new File(System.getProperty("java.io.tmpdir"), "stormtp-state");
+        Object topologyName = topoConf.get(Config.TOPOLOGY_NAME);
+        File dir = new File(new File(rootDir, topologyName != null ? topologyName.toString() : context.getStormId()), namespace);
+
+        Object segmentSize = topoConf.get(SEGMENT_SIZE);
+        int size = segmentSize != null ? ((Number) segmentSize).intValue() : MappedKeyValueState.DEFAULT_SEGMENT_SIZE;
+        Object compactBytes = topoConf.get(COMPACT_BYTES);
+        long compact = compactBytes != null ? ((Number) compactBytes).longValue() : size;
+
+        return new MappedKeyValueState<>(dir, size, compact,
+                new DefaultStateSerializer<>(topoConf, context), new DefaultStateSerializer<>(topoConf, context));
+    }
+}
@@ -0,0 +1,223 @@
+package stormTP.stream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * Micro-lots d'enregistrements sérialisés : les enregistrements (déjà délimités) sont copiés
+ * dans des tampons réutilisés, puis remis à la cible en un seul appel quand le lot atteint
+ * batchBytes ou quand son premier enregistrement attend depuis maxLatency. Un lot ne coupe
+ * jamais un enregistrement et tient en 2 * batchBytes octets.
+ *
+ * Les tampons sont sur le tas : la cible (StreamEmiter) copie le lot pour son thread d'envoi,
+ * qui l'écrit aux auditeurs depuis son propre tampon direct.
+ *
+ * L'échéance est vérifiée à chaque append() ; un flux inactif doit appeler flushIfDue()
+ * (tick tuple du bolt). Non thread-safe : un sink par exécuteur.
+ *
+ * Chaque enregistrement garde son étiquette (type, id de tortue, rang ; voir Subscription),
+ * transmise avec le lot pour que la cible filtre sans relire les octets.
+ *
+ * Histogrammes (HdrHistogram) : taille des lots en enregistrements, et latence d'un lot
+ * en microsecondes, du premier enregistrement à la fin de l'écriture.
+ */
+public class BatchingSink {
+
+    /**
+     * Destination des lots : écrit buffers[0..count) (prêts à lire), contenant records
+     * enregistrements, décrits dans l'ordre par TAGS_PER_RECORD entiers de tags (longueur,
+     * type, id, rang) ; les tampons sont réutilisés au retour
+     */
+    public interface Target {
+        void write(ByteBuffer[] buffers, int count, int records, int[] tags) throws IOException;
+    }
+
+    public static final int TAGS_PER_RECORD = 4;
+    public static final int TAG_LENGTH = 0;
+    public static final int TAG_TYPE = 1;
+    public static final int TAG_ID = 2;
+    public static final int TAG_RANK = 3;
+
+    public static final int DEFAULT_BATCH_BYTES = 16 * 1024;
+    // Un lot de 2 * MAX_BATCH_BYTES tient dans un lot du StreamEmiter
+    public static final int MAX_BATCH_BYTES = 32 * 1024;
+    public static final long DEFAULT_MAX_LATENCY_MS = 5;
+    private static final int CHUNK_BYTES = 8 * 1024;
+
+    private final Target target;
+    private final int batchBytes;
+    private final long maxLatencyNanos;
+
+    // Tampons du lot : de quoi tenir batchBytes plus un enregistrement d'au plus batchBytes
+    private final ByteBuffer[] chunks;
+    private int current = 0;
+    private int pendingBytes = 0;
+    private int pendingRecords = 0;
+    private long firstAppendNanos;
+    private int[] tags = new int[64 * TAGS_PER_RECORD];
+
+    private final Histogram batchSizes = new Histogram(3);
+    private final Histogram flushLatencies = new Histogram(TimeUnit.SECONDS.toMicros(60), 3);
+
+    public BatchingSink(Target target) {
+        this(target, DEFAULT_BATCH_BYTES, DEFAULT_MAX_LATENCY_MS);
+    }
+
+    /**
+     * @param batchBytes taille à partir de laquelle un lot est écrit (aussi taille maximale d'un enregistrement),
+     *                   au plus MAX_BATCH_BYTES
+     * @param maxLatencyMs attente maximale d'un enregistrement dans le lot (0 = écrire à chaque enregistrement)
+     */
+    public BatchingSink(Target target, int batchBytes, long maxLatencyMs) {
+        if (batchBytes <= 0 || batchBytes > MAX_BATCH_BYTES || maxLatencyMs < 0) {
+            throw new IllegalArgumentException("Invalid batch=" + batchBytes + " latency=" + maxLatencyMs);
+        }
+        this.target = target;
+        this.batchBytes = batchBytes;
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMs);
+        this.chunks = new ByteBuffer[(2 * batchBytes + CHUNK_BYTES - 1) / CHUNK_BYTES];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = ByteBuffer.allocate(CHUNK_BYTES);
+        }
+    }
+
+    public void append(byte[] record, int offset, int length) throws IOException {
+        append(record, offset, length, Subscription.TYPE_RAW, Subscription.UNTAGGED, Subscription.UNTAGGED);
+    }
+
+    /**
+     * Ajoute un enregistrement étiqueté (id ou rang UNTAGGED s'il n'en a pas)
+     */
+    public void append(byte[] record, int offset, int length, int type, int id, int rank) throws IOException {
+        begin(length, type, id, rank);
+        while (length > 0) {
+            ByteBuffer chunk = chunk();
+            int n = Math.min(length, chunk.remaining());
+            chunk.put(record, offset, n);
+            offset += n;
+            length -= n;
+        }
+        end();
+    }
+
+    /**
+     * Copie les octets restants de record (sa position avance jusqu'à sa limite)
+     */
+    public void append(ByteBuffer record) throws IOException {
+        begin(record.remaining(), Subscription.TYPE_RAW, Subscription.UNTAGGED, Subscription.UNTAGGED);
+        while (record.hasRemaining()) {
+            ByteBuffer chunk = chunk();
+            if (record.remaining() <= chunk.remaining()) {
+                chunk.put(record);
+            } else {
+                ByteBuffer part = record.duplicate();
+                part.limit(part.position() + chunk.remaining());
+                chunk.put(part);
+                record.position(part.position());
+            }
+        }
+        end();
+    }
+
+    /**
+     * Écrit le lot si son premier enregistrement attend depuis maxLatency
+     */
+    public void flushIfDue(long nowNanos) throws IOException {
+        if (pendingRecords > 0 && nowNanos - firstAppendNanos >= maxLatencyNanos) {
+            flush();
+        }
+    }
+
+    /**
+     * Écrit le lot en cours, s'il n'est pas vide
+     */
+    public void flush() throws IOException {
+        if (pendingRecords == 0) {
+            return;
+        }
+        int count = current + 1;
+        for (int i = 0; i < count; i++) {
+            chunks[i].flip();
+        }
+        try {
+            target.write(chunks, count, pendingRecords, tags);
+        } finally {
+            for (int i = 0; i < count; i++) {
+                chunks[i].clear();
+            }
+            batchSizes.recordValue(pendingRecords);
+            flushLatencies.recordValue(Math.min(flushLatencies.getHighestTrackableValue(),
+                    TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - firstAppendNanos)));
+            current = 0;
+            pendingBytes = 0;
+            pendingRecords = 0;
+        }
+    }
+
+    /**
+     * Nombre d'enregistrements par lot écrit
+     */
+    public Histogram batchSizes() {
+        return batchSizes;
+    }
+
+    /**
+     * Latence des lots écrits, en microsecondes
+     */
+    public Histogram flushLatencies() {
+        return flushLatencies;
+    }
+
+    /**
+     * Résumé des histogrammes, pour les journaux
+     */
+    public String summary() {
+        return "batches=" + batchSizes.getTotalCount()
+                + " records/batch p50=" + batchSizes.getValueAtPercentile(50)
+                + " p99=" + batchSizes.getValueAtPercentile(99)
+                + " latency(us) p50=" + flushLatencies.getValueAtPercentile(50)
+                + " p99=" + flushLatencies.getValueAtPercentile(99)
+                + " max=" + flushLatencies.getMaxValue();
+    }
+
+    /**
+     * Vérifie la taille de l'enregistrement et écrit d'abord le lot s'il est dû
+     */
+    private void begin(int length, int type, int id, int rank) throws IOException {
+        if (length > batchBytes) {
+            throw new IllegalArgumentException("Record of " + length + " bytes exceeds batch size " + batchBytes);
+        }
+        long now = System.nanoTime();
+        flushIfDue(now);
+        if (pendingRecords == 0) {
+            firstAppendNanos = now;
+        }
+        pendingBytes += length;
+        int t = pendingRecords * TAGS_PER_RECORD;
+        if (t == tags.length) {
+            tags = Arrays.copyOf(tags, 2 * tags.length);
+        }
+        tags[t + TAG_LENGTH] = length;
+        tags[t + TAG_TYPE] = type;
+        tags[t + TAG_ID] = id;
+        tags[t + TAG_RANK] = rank;
+    }
+
+    private void end() throws IOException {
+        pendingRecords++;
+        if (pendingBytes >= batchBytes || maxLatencyNanos == 0) {
+            flush();
+        }
+    }
+
+    private ByteBuffer chunk() {
+        if (!chunks[current].hasRemaining()) {
+            current++;
+        }
+        return chunks[current];
+    }
+}
@@ -0,0 +1,91 @@
+package stormTP.stream;
+
+/**
+ * Format binaire compact (gros-boutiste, sans noms de champs : le lecteur connaît le schéma).
+ * Enregistrement : [int longueur][champs]. int sur 4 octets, long et double sur 8,
+ * boolean sur 1, texte en [int longueur][UTF-8], entier + suffixe en [long][texte],
+ * tableau en [int nombre d'éléments][éléments].
+ */
+public class BinarySerializer implements RecordSerializer {
+
+    private static final long serialVersionUID = 4262369370788107365L;
+    private static final int MAX_DEPTH = 8;
+
+    private transient int recordStart;
+    // Position du nombre d'éléments et nombre d'éléments de chaque tableau ouvert
+    private transient int[] countPositions;
+    private transient int[] counts;
+    private transient int depth;
+
+    @Override
+    public void beginRecord(RecordBuffer out) {
+        if (counts == null) {
+            countPositions = new int[MAX_DEPTH];
+            counts = new int[MAX_DEPTH];
+        }
+        depth = 0;
+        recordStart = out.length();
+        out.putInt(0);
+    }
+
+    @Override
+    public void endRecord(RecordBuffer out) {
+        out.putIntAt(recordStart, out.length() - recordStart - 4);
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, int value) {
+        out.putInt(value);
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, long value) {
+        out.putLong(value);
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, double value, int decimals) {
+        out.putLong(Double.doubleToLongBits(value));
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, boolean value) {
+        out.put((byte) (value ? 1 : 0));
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, CharSequence value) {
+        int start = out.length();
+        out.putInt(0).putUtf8(value);
+        out.putIntAt(start, out.length() - start - 4);
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, long value, CharSequence suffix) {
+        out.putLong(value);
+        field(out, name, suffix);
+    }
+
+    @Override
+    public void beginArray(RecordBuffer out, String name) {
+        depth++;
+        countPositions[depth] = out.length();
+        counts[depth] = 0;
+        out.putInt(0);
+    }
+
+    @Override
+    public void beginElement(RecordBuffer out) {
+        counts[depth]++;
+    }
+
+    @Override
+    public void endElement(RecordBuffer out) {
+    }
+
+    @Override
+    public void endArray(RecordBuffer out) {
+        out.putIntAt(countPositions[depth], counts[depth]);
+        depth--;
+    }
+}
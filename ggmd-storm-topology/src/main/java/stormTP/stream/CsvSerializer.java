@@ -0,0 +1,121 @@
+package stormTP.stream;
+
+/**
+ * Une ligne CSV par enregistrement, champs dans l'ordre d'écriture (sans noms ni en-tête).
+ * Un tableau occupe un seul champ : éléments séparés par ';', champs d'un élément par ':'.
+ * Un texte contenant un séparateur ou un guillemet est mis entre guillemets.
+ */
+public class CsvSerializer implements RecordSerializer {
+
+    private static final long serialVersionUID = 4262369370788107364L;
+    // Séparateur de chaque niveau : enregistrement, tableau, élément
+    private static final byte[] SEPARATORS = {',', ';', ':'};
+
+    private transient boolean[] first;
+    private transient int depth;
+
+    private void separator(RecordBuffer out) {
+        if (first[depth]) {
+            first[depth] = false;
+        } else {
+            out.put(SEPARATORS[depth]);
+        }
+    }
+
+    private void open() {
+        if (++depth >= SEPARATORS.length) {
+            throw new IllegalStateException("CSV records cannot nest arrays");
+        }
+        first[depth] = true;
+    }
+
+    @Override
+    public void beginRecord(RecordBuffer out) {
+        if (first == null) {
+            first = new boolean[SEPARATORS.length];
+        }
+        depth = 0;
+        first[0] = true;
+    }
+
+    @Override
+    public void endRecord(RecordBuffer out) {
+        out.put((byte) '\n');
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, int value) {
+        separator(out);
+        out.putDecimal(value);
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, long value) {
+        separator(out);
+        out.putDecimal(value);
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, double value, int decimals) {
+        separator(out);
+        out.putFixed(value, decimals);
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, boolean value) {
+        separator(out);
+        out.putAscii(value ? "true" : "false");
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, CharSequence value) {
+        separator(out);
+        boolean quote = false;
+        int n = value.length();
+        for (int i = 0; i < n && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == ';' || c == ':' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.putUtf8(value);
+            return;
+        }
+        out.put((byte) '"');
+        int start = 0;
+        for (int i = 0; i < n; i++) {
+            if (value.charAt(i) == '"') {
+                out.putUtf8(value, start, i + 1).put((byte) '"');
+                start = i + 1;
+            }
+        }
+        out.putUtf8(value, start, n).put((byte) '"');
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, long value, CharSequence suffix) {
+        separator(out);
+        out.putDecimal(value).putUtf8(suffix);
+    }
+
+    @Override
+    public void beginArray(RecordBuffer out, String name) {
+        separator(out);
+        open();
+    }
+
+    @Override
+    public void beginElement(RecordBuffer out) {
+        separator(out);
+        open();
+    }
+
+    @Override
+    public void endElement(RecordBuffer out) {
+        depth--;
+    }
+
+    @Override
+    public void endArray(RecordBuffer out) {
+        depth--;
+    }
+}
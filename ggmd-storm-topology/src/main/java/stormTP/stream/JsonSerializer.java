@@ -0,0 +1,125 @@
+package stormTP.stream;
+
+/**
+ * Un objet JSON par ligne : {"id":3,"nom":"Turtle3",...}, tableaux d'objets pour les éléments
+ */
+public class JsonSerializer implements RecordSerializer {
+
+    private static final long serialVersionUID = 4262369370788107363L;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private static final int MAX_DEPTH = 8;
+
+    // Premier champ (ou élément) du niveau courant : pas de virgule avant
+    private transient boolean[] first;
+    private transient int depth;
+
+    private void open(RecordBuffer out, byte bracket) {
+        if (first == null) {
+            first = new boolean[MAX_DEPTH];
+        }
+        out.put(bracket);
+        first[++depth] = true;
+    }
+
+    private void name(RecordBuffer out, String name) {
+        separator(out);
+        out.put((byte) '"').putAscii(name).put((byte) '"').put((byte) ':');
+    }
+
+    private void separator(RecordBuffer out) {
+        if (first[depth]) {
+            first[depth] = false;
+        } else {
+            out.put((byte) ',');
+        }
+    }
+
+    @Override
+    public void beginRecord(RecordBuffer out) {
+        depth = -1;
+        open(out, (byte) '{');
+    }
+
+    @Override
+    public void endRecord(RecordBuffer out) {
+        out.put((byte) '}').put((byte) '\n');
+        depth = -1;
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, int value) {
+        name(out, name);
+        out.putDecimal(value);
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, long value) {
+        name(out, name);
+        out.putDecimal(value);
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, double value, int decimals) {
+        name(out, name);
+        out.putFixed(value, decimals);
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, boolean value) {
+        name(out, name);
+        out.putAscii(value ? "true" : "false");
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, CharSequence value) {
+        name(out, name);
+        out.put((byte) '"');
+        int start = 0;
+        int n = value.length();
+        for (int i = 0; i < n; i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\' || c < 0x20) {
+                out.putUtf8(value, start, i);
+                out.put((byte) '\\');
+                if (c < 0x20) {
+                    out.put((byte) 'u').put((byte) '0').put((byte) '0').put(HEX[c >> 4]).put(HEX[c & 0xF]);
+                } else {
+                    out.put((byte) c);
+                }
+                start = i + 1;
+            }
+        }
+        out.putUtf8(value, start, n);
+        out.put((byte) '"');
+    }
+
+    @Override
+    public void field(RecordBuffer out, String name, long value, CharSequence suffix) {
+        name(out, name);
+        out.put((byte) '"').putDecimal(value).putUtf8(suffix).put((byte) '"');
+    }
+
+    @Override
+    public void beginArray(RecordBuffer out, String name) {
+        name(out, name);
+        open(out, (byte) '[');
+    }
+
+    @Override
+    public void beginElement(RecordBuffer out) {
+        separator(out);
+        open(out, (byte) '{');
+    }
+
+    @Override
+    public void endElement(RecordBuffer out) {
+        out.put((byte) '}');
+        depth--;
+    }
+
+    @Override
+    public void endArray(RecordBuffer out) {
+        out.put((byte) ']');
+        depth--;
+    }
+}
@@ -0,0 +1,200 @@
+package stormTP.stream;
+
+import java.util.Arrays;
+
+/**
+ * Tampon d'octets réutilisable où les sérialiseurs écrivent un enregistrement :
+ * nombres en décimal, texte en UTF-8 et entiers binaires, sans String ni objet intermédiaire.
+ */
+public class RecordBuffer {
+
+    private static final long[] POWERS_OF_TEN = {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+    };
+
+    private byte[] bytes;
+    private int length = 0;
+
+    public RecordBuffer() {
+        this(256);
+    }
+
+    public RecordBuffer(int capacity) {
+        this.bytes = new byte[Math.max(16, capacity)];
+    }
+
+    /**
+     * Vide le tampon (sa capacité est conservée)
+     */
+    public void clear() {
+        length = 0;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Octets écrits : array()[0..length())
+     */
+    public byte[] array() {
+        return bytes;
+    }
+
+    public RecordBuffer put(byte b) {
+        ensure(1);
+        bytes[length++] = b;
+        return this;
+    }
+
+    /**
+     * Texte ASCII (noms de champs, constantes)
+     */
+    public RecordBuffer putAscii(CharSequence s) {
+        int n = s.length();
+        ensure(n);
+        for (int i = 0; i < n; i++) {
+            bytes[length++] = (byte) s.charAt(i);
+        }
+        return this;
+    }
+
+    /**
+     * Texte en UTF-8
+     */
+    public RecordBuffer putUtf8(CharSequence s) {
+        return putUtf8(s, 0, s.length());
+    }
+
+    /**
+     * Caractères s[start..end) en UTF-8
+     */
+    public RecordBuffer putUtf8(CharSequence s, int start, int end) {
+        ensure(end - start);
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else {
+                if (putUtf8Char(s, i, end)) {
+                    i++;
+                }
+                ensure(end - i);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Écrit le caractère non ASCII s[i] ; vrai s'il forme une paire avec s[i + 1]
+     */
+    private boolean putUtf8Char(CharSequence s, int i, int end) {
+        char c = s.charAt(i);
+        ensure(4);
+        if (c < 0x800) {
+            bytes[length++] = (byte) (0xC0 | c >> 6);
+            bytes[length++] = (byte) (0x80 | c & 0x3F);
+        } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+            int cp = Character.toCodePoint(c, s.charAt(i + 1));
+            bytes[length++] = (byte) (0xF0 | cp >> 18);
+            bytes[length++] = (byte) (0x80 | cp >> 12 & 0x3F);
+            bytes[length++] = (byte) (0x80 | cp >> 6 & 0x3F);
+            bytes[length++] = (byte) (0x80 | cp & 0x3F);
+            return true;
+        } else if (Character.isSurrogate(c)) {
+            bytes[length++] = (byte) '?';
+        } else {
+            bytes[length++] = (byte) (0xE0 | c >> 12);
+            bytes[length++] = (byte) (0x80 | c >> 6 & 0x3F);
+            bytes[length++] = (byte) (0x80 | c & 0x3F);
+        }
+        return false;
+    }
+
+    /**
+     * Entier en décimal
+     */
+    public RecordBuffer putDecimal(long v) {
+        if (v == Long.MIN_VALUE) {
+            return putAscii("-9223372036854775808");
+        }
+        ensure(20);
+        if (v < 0) {
+            bytes[length++] = '-';
+            v = -v;
+        }
+        int digits = 1;
+        for (long p = 10; digits < 19 && v >= p; p *= 10) {
+            digits++;
+        }
+        for (int i = length + digits - 1; i >= length; i--) {
+            bytes[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        length += digits;
+        return this;
+    }
+
+    /**
+     * Réel en virgule fixe avec decimals chiffres (0 à 9), arrondi au plus proche, point décimal
+     * quelle que soit la locale (comme %.Nf en Locale.ROOT)
+     */
+    public RecordBuffer putFixed(double v, int decimals) {
+        if (decimals < 0 || decimals >= POWERS_OF_TEN.length) {
+            throw new IllegalArgumentException("Invalid decimals: " + decimals);
+        }
+        long scale = POWERS_OF_TEN[decimals];
+        double scaled = Math.abs(v) * scale;
+        if (Double.isNaN(v) || Double.isInfinite(v) || scaled >= Long.MAX_VALUE / 10) {
+            // Hors plage : rare, la conversion standard suffit
+            return putAscii(Double.toString(v));
+        }
+        long units = Math.round(scaled);
+        if (v < 0 && units != 0) {
+            put((byte) '-');
+        }
+        putDecimal(units / scale);
+        if (decimals > 0) {
+            ensure(decimals + 1);
+            bytes[length++] = '.';
+            long fraction = units % scale;
+            for (int i = length + decimals - 1; i >= length; i--) {
+                bytes[i] = (byte) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            length += decimals;
+        }
+        return this;
+    }
+
+    /**
+     * Entier binaire sur 4 octets (gros-boutiste)
+     */
+    public RecordBuffer putInt(int v) {
+        ensure(4);
+        putIntAt(length, v);
+        length += 4;
+        return this;
+    }
+
+    /**
+     * Réécrit un entier binaire déjà réservé (longueur, nombre d'éléments)
+     */
+    public void putIntAt(int position, int v) {
+        bytes[position] = (byte) (v >>> 24);
+        bytes[position + 1] = (byte) (v >>> 16);
+        bytes[position + 2] = (byte) (v >>> 8);
+        bytes[position + 3] = (byte) v;
+    }
+
+    public RecordBuffer putLong(long v) {
+        putInt((int) (v >>> 32));
+        return putInt((int) v);
+    }
+
+    private void ensure(int n) {
+        if (length + n > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + n));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package stormTP.stream;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * File bornée sans verrou, plusieurs producteurs et un consommateur (anneau à séquences de Vyukov).
+ * offer() ne bloque jamais : il retourne faux si la file est pleine.
+ */
+public class RecordQueue<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> elements;
+    // Séquence attendue de chaque case : index pour écrire, index + 1 pour lire
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity capacité, arrondie à la puissance de deux supérieure (au moins 2)
+     */
+    public RecordQueue(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid queue capacity: " + capacity);
+        }
+        int size = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Ajoute e en fin de file ; faux si elle est pleine
+     */
+    public boolean offer(E e) {
+        while (true) {
+            long t = tail.get();
+            int i = (int) t & mask;
+            long sequence = sequences.get(i);
+            if (sequence == t) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    elements.lazySet(i, e);
+                    sequences.set(i, t + 1);
+                    return true;
+                }
+            } else if (sequence < t) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Retire le premier élément, ou null si la file est vide (un seul consommateur)
+     */
+    public E poll() {
+        long h = head.get();
+        int i = (int) h & mask;
+        if (sequences.get(i) != h + 1) {
+            return null;
+        }
+        E e = elements.get(i);
+        elements.lazySet(i, null);
+        head.lazySet(h + 1);
+        sequences.set(i, h + mask + 1);
+        return e;
+    }
+
+    /**
+     * Nombre approximatif d'éléments en attente
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - head.get());
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
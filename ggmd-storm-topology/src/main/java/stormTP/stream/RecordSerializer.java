@@ -0,0 +1,62 @@
+package stormTP.stream;
+
+import java.io.Serializable;
+
+/**
+ * Format de sortie des bolts de sortie : écrit un enregistrement champ par champ dans un
+ * RecordBuffer réutilisé, sans String intermédiaire. Un enregistrement contient des champs
+ * et des tableaux d'éléments (eux-mêmes faits de champs).
+ *
+ * Un sérialiseur garde l'état de l'enregistrement en cours : une instance par bolt.
+ */
+public interface RecordSerializer extends Serializable {
+
+    /**
+     * Sérialiseur du format nommé : json, csv ou binary
+     */
+    static RecordSerializer forFormat(String format) {
+        switch (format) {
+            case "json":
+                return new JsonSerializer();
+            case "csv":
+                return new CsvSerializer();
+            case "binary":
+                return new BinarySerializer();
+            default:
+                throw new IllegalArgumentException("Unknown record format: " + format);
+        }
+    }
+
+    void beginRecord(RecordBuffer out);
+
+    /**
+     * Termine l'enregistrement, délimiteur compris
+     */
+    void endRecord(RecordBuffer out);
+
+    void field(RecordBuffer out, String name, int value);
+
+    void field(RecordBuffer out, String name, long value);
+
+    /**
+     * Réel avec decimals chiffres après le point
+     */
+    void field(RecordBuffer out, String name, double value, int decimals);
+
+    void field(RecordBuffer out, String name, boolean value);
+
+    void field(RecordBuffer out, String name, CharSequence value);
+
+    /**
+     * Valeur textuelle faite d'un entier suivi d'un suffixe (rang "3ex")
+     */
+    void field(RecordBuffer out, String name, long value, CharSequence suffix);
+
+    void beginArray(RecordBuffer out, String name);
+
+    void beginElement(RecordBuffer out);
+
+    void endElement(RecordBuffer out);
+
+    void endArray(RecordBuffer out);
+}
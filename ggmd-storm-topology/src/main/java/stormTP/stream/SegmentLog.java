@@ -0,0 +1,171 @@
+package stormTP.stream;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Journal d'enregistrements en ajout seul, dans des segments projetés en mémoire
+ * (segment-N.log) qui tournent à segmentSize octets. Écrire un enregistrement est une copie
+ * en mémoire : ni verrou, ni formatage, ni appel système (sauf à la rotation).
+ *
+ * Chaque enregistrement porte une clé croissante (le top) : [int taille][long clé][octets].
+ * La taille est écrite en dernier, une taille nulle marque la fin des données. Un index par
+ * segment (segment-N.idx) donne la position du premier enregistrement de chaque clé :
+ * [long clé][int position]. L'index est écrit par blocs, il peut être en retard sur le journal.
+ *
+ * Durabilité : force() écrit sur disque le journal et l'index ; sans force() les données
+ * survivent à l'arrêt du processus mais pas à celui de la machine. Un redémarrage ouvre un
+ * nouveau segment. Lecture : SegmentLogReader. Non thread-safe.
+ */
+public class SegmentLog implements Closeable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+    static final int HEADER_BYTES = 12;
+    static final int INDEX_ENTRY_BYTES = 12;
+
+    private final File dir;
+    private final int segmentSize;
+
+    private int segmentIndex;
+    private MappedByteBuffer segment;
+    private FileChannel indexChannel;
+    private int writePosition;
+    // Entrées d'index pas encore écrites
+    private final ByteBuffer indexEntries = ByteBuffer.allocate(1024 * INDEX_ENTRY_BYTES);
+    private long lastKey = Long.MIN_VALUE;
+    // Le segment courant a été écrit depuis le dernier force()
+    private boolean dirty;
+    // Segments remplis depuis le dernier force(), et leurs index, écrits au prochain force()
+    private final List<MappedByteBuffer> retiredSegments = new ArrayList<>();
+    private final List<FileChannel> retiredIndexes = new ArrayList<>();
+    private long records;
+
+    public SegmentLog(File dir) throws IOException {
+        this(dir, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public SegmentLog(File dir, int segmentSize) throws IOException {
+        if (segmentSize < 64) {
+            throw new IllegalArgumentException("Invalid segment size: " + segmentSize);
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory " + dir);
+        }
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        int next = 0;
+        while (segmentFile(dir, next).exists()) {
+            next++;
+        }
+        open(next);
+    }
+
+    /**
+     * Ajoute un enregistrement de clé key (au moins la clé précédente pour que l'index serve)
+     */
+    public void append(long key, byte[] record, int offset, int length) throws IOException {
+        if (HEADER_BYTES + length + 4 > segmentSize) {
+            throw new IllegalArgumentException("Record of " + length + " bytes exceeds segment size " + segmentSize);
+        }
+        if (writePosition + HEADER_BYTES + length + 4 > segmentSize) {
+            rotate();
+        }
+        if (key != lastKey) {
+            if (!indexEntries.hasRemaining()) {
+                writeIndex();
+            }
+            indexEntries.putLong(key).putInt(writePosition);
+            lastKey = key;
+        }
+        segment.putLong(writePosition + 4, key);
+        segment.position(writePosition + HEADER_BYTES);
+        segment.put(record, offset, length);
+        segment.putInt(writePosition, length);
+        writePosition += HEADER_BYTES + length;
+        dirty = true;
+        records++;
+    }
+
+    /**
+     * Écrit sur disque les segments remplis depuis le dernier appel, le segment courant et leurs index
+     */
+    public void force() throws IOException {
+        writeIndex();
+        for (int i = 0; i < retiredSegments.size(); i++) {
+            retiredSegments.get(i).force();
+            retiredIndexes.get(i).force(false);
+            retiredIndexes.get(i).close();
+        }
+        retiredSegments.clear();
+        retiredIndexes.clear();
+        if (dirty) {
+            segment.force();
+            indexChannel.force(false);
+            dirty = false;
+        }
+    }
+
+    /**
+     * Nombre d'enregistrements écrits depuis l'ouverture
+     */
+    public long records() {
+        return records;
+    }
+
+    /**
+     * Numéro du segment courant
+     */
+    public int segmentIndex() {
+        return segmentIndex;
+    }
+
+    @Override
+    public void close() throws IOException {
+        force();
+        indexChannel.close();
+    }
+
+    static File segmentFile(File dir, int index) {
+        return new File(dir, "segment-" + index + ".log");
+    }
+
+    static File indexFile(File dir, int index) {
+        return new File(dir, "segment-" + index + ".idx");
+    }
+
+    private void rotate() throws IOException {
+        writeIndex();
+        retiredSegments.add(segment);
+        retiredIndexes.add(indexChannel);
+        dirty = false;
+        open(segmentIndex + 1);
+    }
+
+    private void open(int index) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(segmentFile(dir, index), "rw"); FileChannel channel = raf.getChannel()) {
+            this.segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        this.indexChannel = FileChannel.open(indexFile(dir, index).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.segmentIndex = index;
+        this.writePosition = 0;
+        // La première clé de chaque segment est indexée
+        this.lastKey = Long.MIN_VALUE;
+    }
+
+    private void writeIndex() throws IOException {
+        indexEntries.flip();
+        while (indexEntries.hasRemaining()) {
+            indexChannel.write(indexEntries);
+        }
+        indexEntries.clear();
+    }
+}
@@ -0,0 +1,166 @@
+package stormTP.stream;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Lecture hors ligne d'un SegmentLog : parcourt les enregistrements de tous les segments dans
+ * l'ordre d'écriture, à partir du début ou d'une clé (seek, par l'index des segments).
+ * Un index absent ou en retard n'empêche pas la lecture : la fin du parcours se fait dans le journal.
+ *
+ * Usage : SegmentLogReader <dir> [fromTop] [toTop] affiche les enregistrements texte, un par ligne.
+ */
+public class SegmentLogReader implements Closeable {
+
+    private final File dir;
+    private final int segmentCount;
+
+    private int segmentIndex = -1;
+    private MappedByteBuffer segment;
+    private int position;
+    private long key;
+    private ByteBuffer record;
+
+    public SegmentLogReader(File dir) throws IOException {
+        if (!dir.isDirectory()) {
+            throw new IOException("No log in " + dir);
+        }
+        this.dir = dir;
+        int count = 0;
+        while (SegmentLog.segmentFile(dir, count).exists()) {
+            count++;
+        }
+        this.segmentCount = count;
+        openSegment(0, 0);
+    }
+
+    /**
+     * Se place sur le premier enregistrement de clé au moins key (clés croissantes)
+     */
+    public void seek(long key) throws IOException {
+        // Dernier segment qui commence avant key (une clé peut déborder sur le segment suivant)
+        int from = 0;
+        int offset = 0;
+        for (int s = 0; s < segmentCount; s++) {
+            ByteBuffer index = readIndex(s);
+            if (index.limit() < SegmentLog.INDEX_ENTRY_BYTES) {
+                // Index absent : ce segment sera parcouru depuis le précédent
+                continue;
+            }
+            if (index.getLong(0) >= key) {
+                break;
+            }
+            from = s;
+            offset = 0;
+            // Dernière entrée de clé au plus key dans ce segment
+            for (int e = 0; e + SegmentLog.INDEX_ENTRY_BYTES <= index.limit(); e += SegmentLog.INDEX_ENTRY_BYTES) {
+                if (index.getLong(e) > key) {
+                    break;
+                }
+                offset = index.getInt(e + 8);
+            }
+        }
+        openSegment(from, offset);
+        while (peek() && peekKey() < key) {
+            next();
+        }
+    }
+
+    /**
+     * Passe à l'enregistrement suivant ; faux à la fin du journal
+     */
+    public boolean next() throws IOException {
+        if (!peek()) {
+            return false;
+        }
+        int length = segment.getInt(position);
+        key = segment.getLong(position + 4);
+        ByteBuffer view = segment.duplicate();
+        view.limit(position + SegmentLog.HEADER_BYTES + length).position(position + SegmentLog.HEADER_BYTES);
+        record = view.slice();
+        position += SegmentLog.HEADER_BYTES + length;
+        return true;
+    }
+
+    /**
+     * Clé de l'enregistrement courant
+     */
+    public long key() {
+        return key;
+    }
+
+    /**
+     * Octets de l'enregistrement courant (vue en lecture sur le segment)
+     */
+    public ByteBuffer record() {
+        return record.asReadOnlyBuffer();
+    }
+
+    @Override
+    public void close() {
+        segment = null;
+        record = null;
+    }
+
+    /**
+     * Vrai s'il reste un enregistrement, en passant au segment suivant si besoin
+     */
+    private boolean peek() throws IOException {
+        while (segment != null) {
+            if (position + SegmentLog.HEADER_BYTES <= segment.capacity() && segment.getInt(position) > 0) {
+                return true;
+            }
+            if (segmentIndex + 1 >= segmentCount) {
+                return false;
+            }
+            openSegment(segmentIndex + 1, 0);
+        }
+        return false;
+    }
+
+    private long peekKey() {
+        return segment.getLong(position + 4);
+    }
+
+    private void openSegment(int index, int offset) throws IOException {
+        if (index >= segmentCount) {
+            segment = null;
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(SegmentLog.segmentFile(dir, index), "r"); FileChannel channel = raf.getChannel()) {
+            this.segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+        this.segmentIndex = index;
+        this.position = offset;
+    }
+
+    private ByteBuffer readIndex(int index) throws IOException {
+        File file = SegmentLog.indexFile(dir, index);
+        return file.exists() ? ByteBuffer.wrap(Files.readAllBytes(file.toPath())) : ByteBuffer.allocate(0);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: SegmentLogReader <dir> [fromTop] [toTop]");
+            return;
+        }
+        long from = args.length >= 2 ? Long.parseLong(args[1]) : Long.MIN_VALUE;
+        long to = args.length >= 3 ? Long.parseLong(args[2]) : Long.MAX_VALUE;
+        try (SegmentLogReader reader = new SegmentLogReader(new File(args[0]))) {
+            reader.seek(from);
+            while (reader.next() && reader.key() <= to) {
+                ByteBuffer record = reader.record();
+                byte[] bytes = new byte[record.remaining()];
+                record.get(bytes);
+                System.out.print(new String(bytes, StandardCharsets.UTF_8));
+            }
+        }
+    }
+}
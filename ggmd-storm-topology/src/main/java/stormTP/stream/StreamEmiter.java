@@ -1,60 +1,613 @@
 package stormTP.stream;
 
 
+import java.io.IOException;
 import java.io.Serializable;
-import java.io.BufferedWriter;
-import java.io.OutputStreamWriter;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import stormTP.core.IntObjectMap;
 
 
 /**
- * Classe permettant d'émettre un output en UDP.
+ * Canal de sortie TCP : une ligne par enregistrement, diffusée à tous les auditeurs connectés.
+ *
+ * open() (dans le prepare() du bolt) ouvre le port une fois et démarre un thread sélecteur
+ * qui accepte autant d'auditeurs que voulu. send() ne bloque jamais : l'enregistrement est
+ * déposé dans une file bornée sans verrou (perdu et compté si elle est pleine). Le thread
+ * vide la file par lots et écrit chaque lot en un appel par auditeur ; un auditeur trop lent
+ * perd des lots entiers (jamais une ligne tronquée). Un auditeur ne reçoit que les
+ * enregistrements émis après sa connexion.
+ *
+ * En cible d'un BatchingSink, un micro-lot entier passe par la file en un seul élément.
+ *
+ * Un auditeur peut envoyer une ligne d'abonnement (voir Subscription) pour ne recevoir que
+ * certains enregistrements ; il reçoit tout tant qu'il n'en a pas envoyé. Chaque enregistrement
+ * est étiqueté à l'envoi (type, id, rang) : il est encodé une fois, et le thread le copie
+ * seulement chez les auditeurs concernés, trouvés par un index id -> auditeurs reconstruit à
+ * chaque (dés)abonnement. Un auditeur filtré trop lent perd des enregistrements entiers.
  */
-public class StreamEmiter implements Serializable{
-	
+public class StreamEmiter implements Serializable, BatchingSink.Target{
+
+
+	private static final long serialVersionUID = 4262369370788016342L;
+	private static Logger logger = Logger.getLogger("StreamEmiterLogger");
+
+	public static final int DEFAULT_QUEUE_CAPACITY = 1 << 16;
+	// Taille d'un lot (au moins le plus grand micro-lot d'un BatchingSink), et du tampon
+	// de chaque auditeur (plusieurs lots en retard)
+	private static final int BATCH_BYTES = 2 * BatchingSink.MAX_BATCH_BYTES;
+	private static final int PENDING_BATCHES = 4;
+	// Longueur maximale d'une ligne d'abonnement
+	private static final int MAX_SUBSCRIPTION_BYTES = 4096;
+	private static final Subscriber[] NONE = new Subscriber[0];
+	// Pause des connexions après un échec d'accept (plus de descripteurs, par exemple)
+	private static final long ACCEPT_RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
 
-	private static final long serialVersionUID = 4262369370788016342L;;
-	
-	 private int port = -1;
+	private final int port;
+	private final int queueCapacity;
+
+	private transient RecordQueue<Chunk> queue;
+	private transient Selector selector;
+	private transient ServerSocketChannel server;
+	private transient Thread thread;
+	private transient volatile boolean running;
+	// Vrai quand le thread attend dans select() : send() doit le réveiller
+	private transient AtomicBoolean parked;
+	private transient AtomicLong dropped;
+	private transient volatile int subscribers;
+	private transient SelectionKey acceptKey;
+	// Instant de reprise des connexions après un échec d'accept (0 = acceptées)
+	private transient long acceptRetryAt;
+
+	// Index des auditeurs, propre au thread d'envoi : sans filtre, filtrés sans critère d'id,
+	// filtrés par id (tous, et par id)
+	private transient Subscriber[] unfiltered;
+	private transient Subscriber[] anyId;
+	private transient Subscriber[] byIdAll;
+	private transient IntObjectMap<Subscriber[]> byId;
+	private transient boolean indexDirty;
+	// Auditeurs filtrés ayant reçu des enregistrements du lot en cours
+	private transient Subscriber[] touched;
+	private transient int touchedCount;
 
 	public StreamEmiter(int port){
-			this.port = port;
+		this(port, DEFAULT_QUEUE_CAPACITY);
+	}
+
+	/**
+	 * @param port port d'écoute (0 = port libre, voir localPort())
+	 * @param queueCapacity nombre d'enregistrements en attente d'envoi avant perte
+	 */
+	public StreamEmiter(int port, int queueCapacity){
+		this.port = port;
+		this.queueCapacity = queueCapacity;
+	}
+
+
+	/**
+	 * Ouvre le port et démarre le thread d'envoi (sans effet si déjà ouvert)
+	 */
+	public synchronized void open() throws IOException {
+		if (running) {
+			return;
+		}
+		this.queue = new RecordQueue<>(queueCapacity);
+		this.parked = new AtomicBoolean();
+		this.dropped = new AtomicLong();
+		this.unfiltered = NONE;
+		this.anyId = NONE;
+		this.byIdAll = NONE;
+		this.byId = new IntObjectMap<>();
+		this.touched = NONE;
+		this.selector = Selector.open();
+		this.server = ServerSocketChannel.open();
+		server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+		server.bind(new InetSocketAddress(port));
+		server.configureBlocking(false);
+		this.acceptKey = server.register(selector, SelectionKey.OP_ACCEPT);
+		this.acceptRetryAt = 0;
+
+		this.running = true;
+		this.thread = new Thread(this::serve, "StreamEmiter-" + localPort());
+		thread.setDaemon(true);
+		thread.start();
+		logger.info("StreamEmiter listening on port " + localPort());
+	}
+
+	/**
+	 * Dépose une ligne pour tous les auditeurs ; faux si elle est perdue (file pleine, trop longue)
+	 */
+	public boolean send(String row){
+		return send(row.getBytes(StandardCharsets.UTF_8));
 	}
 
+	/**
+	 * Dépose un enregistrement (sans fin de ligne, ajoutée ici) ; faux s'il est perdu
+	 */
+	public boolean send(byte[] record){
+		return send(record, 0, record.length);
+	}
+
+	public boolean send(byte[] record, int offset, int length){
+		return send(record, offset, length, Subscription.TYPE_RAW, Subscription.UNTAGGED, Subscription.UNTAGGED);
+	}
+
+	/**
+	 * Dépose un enregistrement étiqueté pour le filtrage des abonnements (id ou rang UNTAGGED s'il n'en a pas)
+	 */
+	public boolean send(byte[] record, int offset, int length, int type, int id, int rank){
+		if (!running) {
+			throw new IllegalStateException(this + " is not open");
+		}
+		if (length + 1 > BATCH_BYTES) {
+			dropped.incrementAndGet();
+			return false;
+		}
+		byte[] line = new byte[length + 1];
+		System.arraycopy(record, offset, line, 0, length);
+		line[length] = '\n';
+		int[] tags = new int[BatchingSink.TAGS_PER_RECORD];
+		tags[BatchingSink.TAG_LENGTH] = length + 1;
+		tags[BatchingSink.TAG_TYPE] = type;
+		tags[BatchingSink.TAG_ID] = id;
+		tags[BatchingSink.TAG_RANK] = rank;
+		return enqueue(new Chunk(line, 1, tags));
+	}
+
+	/**
+	 * Dépose un micro-lot de lignes entières (déjà terminées par une fin de ligne), avec leurs étiquettes.
+	 * Les tampons étant réutilisés au retour, le lot est copié en un tableau pour le thread d'envoi.
+	 */
+	@Override
+	public void write(ByteBuffer[] buffers, int count, int records, int[] tags){
+		if (!running) {
+			throw new IllegalStateException(this + " is not open");
+		}
+		int length = 0;
+		for (int i = 0; i < count; i++) {
+			length += buffers[i].remaining();
+		}
+		if (length > BATCH_BYTES) {
+			dropped.addAndGet(records);
+			return;
+		}
+		byte[] lines = new byte[length];
+		int offset = 0;
+		for (int i = 0; i < count; i++) {
+			int n = buffers[i].remaining();
+			buffers[i].get(lines, offset, n);
+			offset += n;
+		}
+		enqueue(new Chunk(lines, records, Arrays.copyOf(tags, records * BatchingSink.TAGS_PER_RECORD)));
+	}
 
-	public void send(String row){
+	private boolean enqueue(Chunk chunk){
+		if (!queue.offer(chunk)) {
+			dropped.addAndGet(chunk.records);
+			return false;
+		}
+		if (parked.get() && parked.compareAndSet(true, false)) {
+			selector.wakeup();
+		}
+		return true;
+	}
 
+	/**
+	 * Arrête le thread d'envoi et ferme le port et les connexions
+	 */
+	public synchronized void close(){
+		if (!running) {
+			return;
+		}
+		running = false;
+		selector.wakeup();
 		try {
-			ServerSocket server = new ServerSocket(this.port);
+			thread.join(1000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
 
-			Socket serverClient = server.accept();  //server accept the client connection request
+	/**
+	 * Port effectivement ouvert
+	 */
+	public int localPort(){
+		return server != null ? server.socket().getLocalPort() : port;
+	}
 
-			BufferedWriter out = new BufferedWriter(
-					new OutputStreamWriter(serverClient.getOutputStream()));
+	/**
+	 * Nombre d'enregistrements en attente d'envoi
+	 */
+	public int queued(){
+		return queue != null ? queue.size() : 0;
+	}
+
+	/**
+	 * Enregistrements perdus : file pleine, ou auditeur trop lent (compté par auditeur)
+	 */
+	public long dropped(){
+		return dropped != null ? dropped.get() : 0;
+	}
+
+	public int subscribers(){
+		return subscribers;
+	}
 
-			while (true) {
 
-				out.write(row);
-				out.newLine();
-				out.flush();
-				try {
-					Thread.sleep(1000);
-				} catch (InterruptedException e1) {
-					e1.printStackTrace();
+	private void serve(){
+		ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_BYTES);
+		ByteBuffer scratch = ByteBuffer.allocate(1024);
+		int[] batchTags = new int[1024 * BatchingSink.TAGS_PER_RECORD];
+		Chunk carry = null;
+		try {
+			while (running) {
+				// Attendre de nouveaux enregistrements ou un événement réseau
+				if (carry == null && queue.size() == 0) {
+					parked.set(true);
+					if (queue.size() == 0) {
+						selector.select(100);
+					}
+					parked.set(false);
+				} else {
+					selector.selectNow();
+				}
+				if (acceptRetryAt != 0 && System.nanoTime() - acceptRetryAt >= 0) {
+					acceptRetryAt = 0;
+					acceptKey.interestOps(SelectionKey.OP_ACCEPT);
 				}
 
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					try {
+						if (!key.isValid()) {
+							continue;
+						}
+						if (key.isAcceptable()) {
+							accept();
+						} else {
+							if (key.isReadable()) {
+								read(key, scratch);
+							}
+							if (key.isValid() && key.isWritable()) {
+								flush(key);
+							}
+						}
+					} catch (CancelledKeyException e) {
+						// Auditeur fermé pendant le traitement de ses événements
+					}
+				}
+
+				// Lot : enregistrements entiers, jusqu'à remplir le tampon
+				batch.clear();
+				int records = 0;
+				Chunk chunk = carry;
+				carry = null;
+				if (chunk == null) {
+					chunk = queue.poll();
+				}
+				while (chunk != null) {
+					if (chunk.bytes.length > batch.remaining()) {
+						carry = chunk;
+						break;
+					}
+					batch.put(chunk.bytes);
+					int n = chunk.records * BatchingSink.TAGS_PER_RECORD;
+					int t = records * BatchingSink.TAGS_PER_RECORD;
+					if (t + n > batchTags.length) {
+						batchTags = Arrays.copyOf(batchTags, Math.max(2 * batchTags.length, t + n));
+					}
+					System.arraycopy(chunk.tags, 0, batchTags, t, n);
+					records += chunk.records;
+					chunk = queue.poll();
+				}
+				if (records > 0) {
+					batch.flip();
+					broadcast(batch, records, batchTags);
+				}
+			}
+		} catch (IOException e) {
+			// Seul le sélecteur peut arrêter le thread : les erreurs d'un auditeur sont traitées sur place
+			logger.severe("StreamEmiter on port " + localPort() + " stopped: " + e.getMessage());
+		} finally {
+			running = false;
+			for (SelectionKey key : selector.keys()) {
+				closeQuietly(key);
+			}
+			try {
+				selector.close();
+			} catch (IOException ignored) {
 			}
-		} catch (Exception e) {
-			System.out.println(e);
 		}
 	}
 
+	/**
+	 * Accepte un auditeur. Un échec ne concerne que cette connexion : le thread continue
+	 * d'envoyer aux autres auditeurs, et les connexions reprennent après ACCEPT_RETRY_NANOS
+	 * si c'est accept() qui échoue (plus de descripteurs de fichier, par exemple).
+	 */
+	private void accept() {
+		SocketChannel channel;
+		try {
+			channel = server.accept();
+		} catch (IOException e) {
+			logger.warning("Cannot accept listener on port " + localPort() + ": " + e.getMessage()
+					+ " (retrying in " + TimeUnit.NANOSECONDS.toMillis(ACCEPT_RETRY_NANOS) + " ms)");
+			acceptKey.interestOps(0);
+			acceptRetryAt = System.nanoTime() + ACCEPT_RETRY_NANOS;
+			return;
+		}
+		if (channel == null) {
+			return;
+		}
+		try {
+			channel.configureBlocking(false);
+			Subscriber subscriber = new Subscriber();
+			subscriber.key = channel.register(selector, SelectionKey.OP_READ, subscriber);
+			subscribers++;
+			indexDirty = true;
+			logger.info("Listener connected to port " + localPort() + ": " + channel.socket().getRemoteSocketAddress());
+		} catch (IOException e) {
+			// Connexion réinitialisée par l'auditeur avant d'être enregistrée
+			logger.warning("Dropping listener on port " + localPort() + ": " + e.getMessage());
+			try {
+				channel.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	/**
+	 * Lit les lignes d'abonnement de l'auditeur (et détecte sa déconnexion) ; une ligne
+	 * invalide laisse l'abonnement précédent en place
+	 */
+	private void read(SelectionKey key, ByteBuffer scratch) {
+		Subscriber subscriber = (Subscriber) key.attachment();
+		try {
+			scratch.clear();
+			if (((SocketChannel) key.channel()).read(scratch) < 0) {
+				disconnect(key);
+				return;
+			}
+		} catch (IOException e) {
+			disconnect(key);
+			return;
+		}
+		scratch.flip();
+		while (scratch.hasRemaining()) {
+			byte b = scratch.get();
+			if (b != '\n') {
+				// Au-delà de la longueur maximale, la ligne est invalide (octets ignorés)
+				if (subscriber.lineLength < MAX_SUBSCRIPTION_BYTES) {
+					subscriber.line[subscriber.lineLength] = b;
+				}
+				subscriber.lineLength++;
+				continue;
+			}
+			String text = subscriber.lineLength <= MAX_SUBSCRIPTION_BYTES
+					? new String(subscriber.line, 0, subscriber.lineLength, StandardCharsets.US_ASCII).trim()
+					: "(too long)";
+			subscriber.lineLength = 0;
+			if (text.isEmpty()) {
+				continue;
+			}
+			try {
+				subscriber.subscription = Subscription.parse(text);
+				indexDirty = true;
+				logger.info("Listener on port " + localPort() + " subscribed: " + subscriber.subscription);
+			} catch (IllegalArgumentException e) {
+				logger.warning("Ignoring subscription on port " + localPort() + ": " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Répartit les auditeurs selon leur abonnement
+	 */
+	private void rebuildIndex() {
+		List<Subscriber> all = new ArrayList<>();
+		List<Subscriber> withoutIds = new ArrayList<>();
+		List<Subscriber> withIds = new ArrayList<>();
+		byId.clear();
+		for (SelectionKey key : selector.keys()) {
+			if (!key.isValid() || !(key.attachment() instanceof Subscriber)) {
+				continue;
+			}
+			Subscriber subscriber = (Subscriber) key.attachment();
+			Subscription subscription = subscriber.subscription;
+			if (subscription.isAll()) {
+				all.add(subscriber);
+			} else if (subscription.ids() == null) {
+				withoutIds.add(subscriber);
+			} else {
+				withIds.add(subscriber);
+				for (int id : subscription.ids()) {
+					Subscriber[] listeners = byId.get(id);
+					listeners = listeners == null ? new Subscriber[1] : Arrays.copyOf(listeners, listeners.length + 1);
+					listeners[listeners.length - 1] = subscriber;
+					byId.put(id, listeners);
+				}
+			}
+		}
+		unfiltered = all.toArray(NONE);
+		anyId = withoutIds.toArray(NONE);
+		byIdAll = withIds.toArray(NONE);
+		touched = new Subscriber[anyId.length + byIdAll.length];
+		indexDirty = false;
+	}
+
+	/**
+	 * Écrit le lot entier aux auditeurs sans filtre, puis chaque enregistrement aux seuls
+	 * auditeurs filtrés qu'il intéresse
+	 */
+	private void broadcast(ByteBuffer batch, int records, int[] tags) {
+		if (indexDirty) {
+			rebuildIndex();
+		}
+		for (Subscriber subscriber : unfiltered) {
+			sendBatch(subscriber, batch, records);
+		}
+		if (touched.length == 0) {
+			return;
+		}
+		ByteBuffer record = batch.duplicate();
+		int offset = 0;
+		for (int r = 0; r < records; r++) {
+			int t = r * BatchingSink.TAGS_PER_RECORD;
+			int length = tags[t + BatchingSink.TAG_LENGTH];
+			int type = tags[t + BatchingSink.TAG_TYPE];
+			int id = tags[t + BatchingSink.TAG_ID];
+			int rank = tags[t + BatchingSink.TAG_RANK];
+			record.limit(offset + length).position(offset);
+			for (Subscriber subscriber : anyId) {
+				sendRecord(subscriber, record, type, rank);
+			}
+			Subscriber[] listeners = id == Subscription.UNTAGGED ? byIdAll : byId.get(id);
+			if (listeners != null) {
+				for (Subscriber subscriber : listeners) {
+					sendRecord(subscriber, record, type, rank);
+				}
+			}
+			offset += length;
+		}
+		for (int i = 0; i < touchedCount; i++) {
+			touched[i].touched = false;
+			if (touched[i].key.isValid()) {
+				flush(touched[i].key);
+			}
+		}
+		touchedCount = 0;
+	}
+
+	/**
+	 * Écrit le lot à l'auditeur : directement si rien n'est en retard, sinon à la suite
+	 * de son tampon ; le lot est perdu si son tampon est plein
+	 */
+	private void sendBatch(Subscriber subscriber, ByteBuffer batch, int records) {
+		SelectionKey key = subscriber.key;
+		if (!key.isValid()) {
+			return;
+		}
+		ByteBuffer data = batch.duplicate();
+		try {
+			if (subscriber.pending.position() == 0) {
+				((SocketChannel) key.channel()).write(data);
+			}
+			if (data.hasRemaining()) {
+				if (data.remaining() > subscriber.pending.remaining()) {
+					dropped.addAndGet(records);
+					return;
+				}
+				subscriber.pending.put(data);
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			}
+		} catch (IOException e) {
+			disconnect(key);
+		}
+	}
+
+	/**
+	 * Copie l'enregistrement dans le tampon de l'auditeur filtré s'il passe son filtre
+	 * (écrit en fin de lot) ; perdu si le tampon est plein
+	 */
+	private void sendRecord(Subscriber subscriber, ByteBuffer record, int type, int rank) {
+		if (!subscriber.key.isValid() || !subscriber.subscription.matchesTypeAndRank(type, rank)) {
+			return;
+		}
+		if (record.remaining() > subscriber.pending.remaining()) {
+			dropped.incrementAndGet();
+			return;
+		}
+		int start = record.position();
+		subscriber.pending.put(record);
+		record.position(start);
+		if (!subscriber.touched) {
+			subscriber.touched = true;
+			touched[touchedCount++] = subscriber;
+		}
+	}
+
+	/**
+	 * Écrit ce qui est en retard pour l'auditeur ; le reste attend que sa socket redevienne disponible
+	 */
+	private void flush(SelectionKey key) {
+		Subscriber subscriber = (Subscriber) key.attachment();
+		try {
+			subscriber.pending.flip();
+			((SocketChannel) key.channel()).write(subscriber.pending);
+			subscriber.pending.compact();
+			key.interestOps(subscriber.pending.position() == 0
+					? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		} catch (IOException e) {
+			disconnect(key);
+		}
+	}
+
+	private void disconnect(SelectionKey key) {
+		closeQuietly(key);
+		subscribers--;
+		indexDirty = true;
+		logger.info("Listener disconnected from port " + localPort());
+	}
+
+	private static void closeQuietly(SelectionKey key) {
+		key.cancel();
+		try {
+			key.channel().close();
+		} catch (IOException ignored) {
+		}
+	}
+
+	/**
+	 * Élément de la file : une ligne, ou un micro-lot de lignes, et leurs étiquettes
+	 */
+	private static final class Chunk {
+		final byte[] bytes;
+		final int records;
+		final int[] tags;
+
+		Chunk(byte[] bytes, int records, int[] tags) {
+			this.bytes = bytes;
+			this.records = records;
+			this.tags = tags;
+		}
+	}
+
+	/**
+	 * Un auditeur : son abonnement, la ligne d'abonnement en cours de lecture, et les octets
+	 * pas encore écrits (lots ou enregistrements entiers)
+	 */
+	private static final class Subscriber {
+		final ByteBuffer pending = ByteBuffer.allocateDirect(BATCH_BYTES * PENDING_BATCHES);
+		final byte[] line = new byte[MAX_SUBSCRIPTION_BYTES];
+		SelectionKey key;
+		int lineLength;
+		Subscription subscription = Subscription.ALL;
+		boolean touched;
+	}
+
 
 	@Override
 		public String toString(){
 			return "StreamEmiter[port="+ this.port +"]";
 		}
-		
+
 
 }
@@ -0,0 +1,141 @@
+package stormTP.stream;
+
+import java.util.Arrays;
+
+/**
+ * Filtre d'un auditeur du StreamEmiter, envoyé en une ligne après la connexion :
+ *
+ *   subscribe [ids=1,5,7] [rank<=3] [types=rank,bonus]
+ *
+ * Un critère absent laisse tout passer ; une nouvelle ligne remplace le filtre. Un enregistrement
+ * porte une étiquette (type, id de tortue, rang) ; un enregistrement sans id ou sans rang
+ * (UNTAGGED, un podium par exemple) n'est pas filtré sur ce critère.
+ */
+public final class Subscription {
+
+    public static final int UNTAGGED = -1;
+
+    // Types d'enregistrement, un par bolt de sortie
+    public static final int TYPE_RAW = 0;
+    public static final int TYPE_POSITION = 1;
+    public static final int TYPE_RANK = 2;
+    public static final int TYPE_BONUS = 3;
+    public static final int TYPE_SPEED = 4;
+    public static final int TYPE_EVOLUTION = 5;
+    public static final int TYPE_PODIUM = 6;
+    private static final String[] TYPE_NAMES = {"raw", "position", "rank", "bonus", "speed", "evolution", "podium"};
+
+    /**
+     * Filtre qui laisse tout passer (auditeur sans abonnement)
+     */
+    public static final Subscription ALL = new Subscription(null, 0, 0);
+
+    // Ids triés (null = tous), rang maximal (0 = tous), masque des types (0 = tous)
+    private final int[] ids;
+    private final int maxRank;
+    private final int typeMask;
+
+    private Subscription(int[] ids, int maxRank, int typeMask) {
+        this.ids = ids;
+        this.maxRank = maxRank;
+        this.typeMask = typeMask;
+    }
+
+    /**
+     * Lit une ligne d'abonnement
+     *
+     * @throws IllegalArgumentException si la ligne est invalide
+     */
+    public static Subscription parse(CharSequence line) {
+        String[] tokens = line.toString().trim().split("\\s+");
+        if (!"subscribe".equals(tokens[0])) {
+            throw new IllegalArgumentException("Not a subscription: " + line);
+        }
+        int[] ids = null;
+        int maxRank = 0;
+        int typeMask = 0;
+        for (int i = 1; i < tokens.length; i++) {
+            String token = tokens[i];
+            if (token.startsWith("ids=")) {
+                String[] values = token.substring(4).split(",");
+                ids = new int[values.length];
+                for (int j = 0; j < values.length; j++) {
+                    ids[j] = Integer.parseInt(values[j]);
+                }
+                ids = distinct(ids);
+            } else if (token.startsWith("rank<=")) {
+                maxRank = Integer.parseInt(token.substring(6));
+                if (maxRank <= 0) {
+                    throw new IllegalArgumentException("Invalid rank bound: " + token);
+                }
+            } else if (token.startsWith("types=")) {
+                for (String name : token.substring(6).split(",")) {
+                    typeMask |= 1 << type(name);
+                }
+            } else {
+                throw new IllegalArgumentException("Unknown subscription criterion: " + token);
+            }
+        }
+        return new Subscription(ids, maxRank, typeMask);
+    }
+
+    /**
+     * Ids triés sans doublon (un auditeur figure une seule fois par id dans l'index)
+     */
+    private static int[] distinct(int[] ids) {
+        Arrays.sort(ids);
+        int n = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (n == 0 || ids[n - 1] != ids[i]) {
+                ids[n++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, n);
+    }
+
+    /**
+     * Numéro du type d'enregistrement nommé
+     */
+    public static int type(String name) {
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            if (TYPE_NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown record type: " + name);
+    }
+
+    /**
+     * Ids de tortues retenus (triés), ou null pour toutes
+     */
+    public int[] ids() {
+        return ids;
+    }
+
+    /**
+     * Vrai si l'enregistrement passe le filtre, l'id compris
+     */
+    public boolean matches(int type, int id, int rank) {
+        return (ids == null || id == UNTAGGED || Arrays.binarySearch(ids, id) >= 0) && matchesTypeAndRank(type, rank);
+    }
+
+    /**
+     * Vrai si l'enregistrement passe le filtre, hors critère d'id (déjà appliqué par l'index)
+     */
+    public boolean matchesTypeAndRank(int type, int rank) {
+        return (typeMask == 0 || (typeMask & 1 << type) != 0)
+                && (maxRank == 0 || rank == UNTAGGED || rank <= maxRank);
+    }
+
+    /**
+     * Vrai si le filtre laisse tout passer
+     */
+    public boolean isAll() {
+        return ids == null && maxRank == 0 && typeMask == 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Subscription[ids=" + Arrays.toString(ids) + " rank<=" + maxRank + " types=" + Integer.toBinaryString(typeMask) + "]";
+    }
+}
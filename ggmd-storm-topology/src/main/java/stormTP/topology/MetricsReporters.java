@@ -0,0 +1,81 @@
+package stormTP.topology;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.storm.Config;
+import org.apache.storm.metrics2.filters.RegexFilter;
+import org.apache.storm.metrics2.reporters.ConsoleStormReporter;
+import org.apache.storm.metrics2.reporters.CsvStormReporter;
+import org.apache.storm.metrics2.reporters.ScheduledStormReporter;
+import org.apache.storm.utils.Utils;
+
+/**
+ * Consommateur des métriques v2 des opérateurs (compteurs de tuples, temps de calcul, tailles
+ * de fenêtre, file de l'émetteur...), choisi à la soumission par les options -c de storm jar :
+ *
+ *   stormtp.metrics=console|csv    rapporteur de Storm (absent = aucun)
+ *   stormtp.metrics.period=10      période de rapport en secondes
+ *   stormtp.metrics.dir=...        répertoire des fichiers CSV (un fichier par métrique)
+ *   stormtp.metrics.filter=...     expression régulière sur le nom des métriques
+ *
+ * Console : les métriques s'affichent dans le journal de chaque worker.
+ */
+public final class MetricsReporters {
+
+    public static final String REPORTER = "stormtp.metrics";
+    public static final String PERIOD = "stormtp.metrics.period";
+    public static final String DIR = "stormtp.metrics.dir";
+    public static final String FILTER = "stormtp.metrics.filter";
+
+    public static final long DEFAULT_PERIOD_SECS = 10;
+    public static final String DEFAULT_DIR = "/tmp/stormTP-metrics";
+
+    private MetricsReporters() {
+    }
+
+    /**
+     * Ajoute à la configuration le rapporteur demandé sur la ligne de commande
+     */
+    public static void configure(Config config) {
+        configure(config, Utils.readCommandLineOpts());
+    }
+
+    /**
+     * Ajoute à la configuration le rapporteur décrit par les options (rien si REPORTER est absent)
+     */
+    public static void configure(Config config, Map<String, Object> options) {
+        Object name = options.get(REPORTER);
+        if (name == null) {
+            return;
+        }
+        Map<String, Object> reporter = new HashMap<>();
+        if ("console".equals(name.toString())) {
+            reporter.put("class", ConsoleStormReporter.class.getName());
+        } else if ("csv".equals(name.toString())) {
+            reporter.put("class", CsvStormReporter.class.getName());
+            reporter.put(CsvStormReporter.CSV_LOG_DIR, String.valueOf(options.getOrDefault(DIR, DEFAULT_DIR)));
+        } else {
+            throw new IllegalArgumentException("Invalid " + REPORTER + ": " + name + " (console or csv)");
+        }
+        long period = Long.parseLong(String.valueOf(options.getOrDefault(PERIOD, DEFAULT_PERIOD_SECS)));
+        if (period <= 0) {
+            throw new IllegalArgumentException("Invalid " + PERIOD + ": " + period);
+        }
+        reporter.put(ScheduledStormReporter.REPORT_PERIOD, period);
+        reporter.put(ScheduledStormReporter.REPORT_PERIOD_UNITS, "SECONDS");
+        Object filter = options.get(FILTER);
+        if (filter != null) {
+            Map<String, Object> regex = new HashMap<>();
+            regex.put("class", RegexFilter.class.getName());
+            regex.put("expression", filter.toString());
+            reporter.put("filter", regex);
+        }
+
+        List<Map<String, Object>> reporters = new ArrayList<>();
+        reporters.add(reporter);
+        config.put(Config.TOPOLOGY_METRICS_REPORTERS, reporters);
+    }
+}
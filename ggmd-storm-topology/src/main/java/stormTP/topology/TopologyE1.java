@@ -7,6 +7,8 @@ import org.apache.storm.topology.TopologyBuilder;
 import stormTP.operator.InputStreamSpout;
 import stormTP.operator.ConsumeTimeBolt;
 import stormTP.operator.ExitInLogBolt;
+import stormTP.operator.SegmentLogBolt;
+import stormTP.stream.SegmentLog;
 
 
 public class TopologyE1 {
@@ -16,6 +18,9 @@ public class TopologyE1 {
         int nbExecutors = 1;
         int portINPUT = Integer.parseInt(args[0]);
         int portOUTPUT = Integer.parseInt(args[1]);
+        /* Répertoire du journal en segments (sinon sortie dans le log), et intervalle des force() */
+        String logDir = args.length >= 3 ? args[2] : null;
+        long forceMs = args.length >= 4 ? Long.parseLong(args[3]) : SegmentLogBolt.DEFAULT_FORCE_INTERVAL_MS;
 
         /*Création du spout*/
         InputStreamSpout spout = new InputStreamSpout("127.0.0.1", portINPUT);
@@ -25,13 +30,20 @@ public class TopologyE1 {
         builder.setSpout("masterStream", spout);
         /* Opérateur qui consomme du temps */
         builder.setBolt("consume", new ConsumeTimeBolt(), nbExecutors).shuffleGrouping("masterStream");
-        /* OutPut mis dans le log  */
-        builder.setBolt("exit", new ExitInLogBolt(), nbExecutors).shuffleGrouping("consume");
+        if (logDir != null) {
+            /* OutPut ajouté au journal en segments */
+            builder.setBolt("exit", new SegmentLogBolt(logDir, null, SegmentLog.DEFAULT_SEGMENT_SIZE, forceMs), nbExecutors).shuffleGrouping("consume");
+        } else {
+            /* OutPut mis dans le log  */
+            builder.setBolt("exit", new ExitInLogBolt(), nbExecutors).shuffleGrouping("consume");
+        }
            
         /**
          * Configuration of metadata of the topology
          */
         Config config = new Config();
+        /*Rapporteur des métriques des opérateurs, si demandé (-c stormtp.metrics=console|csv)*/
+        MetricsReporters.configure(config);
         config.setDebug(true);
         config.setNumWorkers(4);
 		
@@ -0,0 +1,92 @@
+package stormTP.topology;
+
+import org.apache.storm.Config;
+import org.apache.storm.StormSubmitter;
+import org.apache.storm.topology.TopologyBuilder;
+import stormTP.operator.Exit4Bolt;
+import stormTP.operator.Exit5Bolt;
+import stormTP.operator.Exit6Bolt;
+import stormTP.operator.GiveRankBolt;
+import stormTP.operator.InputStreamSpout;
+import stormTP.operator.StatefulComputeBonusBolt;
+import stormTP.operator.StatefulRankEvolutionBolt;
+import stormTP.operator.StatefulSpeedBolt;
+import stormTP.state.MappedKeyValueStateProvider;
+
+/**
+ * Topologie T10 : bonus, vitesses et évolutions du rang checkpointés, repris après un arrêt de worker
+ *
+ * Flux: InputStreamSpout (fiable) -> GiveRankBolt -> StatefulComputeBonusBolt -> Exit4Bolt
+ *                                               -> StatefulRankEvolutionBolt -> Exit6Bolt
+ *       InputStreamSpout (fiable) -> StatefulSpeedBolt -> Exit5Bolt
+ */
+public class TopologyT10 {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("Usage: TopologyT10 <portINPUT> <portBONUS> <portSPEED> <portEVOLUTION> [checkpointMs] [idleTops] [idleMs]");
+            return;
+        }
+
+        int nbExecutors = 1;
+        int portINPUT = Integer.parseInt(args[0]);
+        int portBONUS = Integer.parseInt(args[1]);
+        int portSPEED = Integer.parseInt(args[2]);
+        int portEVOLUTION = Integer.parseInt(args[3]);
+        int checkpointMs = args.length >= 5 ? Integer.parseInt(args[4]) : 1000;
+        // Expiration des tortues inactives (0 = jamais) : en tops pour bonus et vitesses, en ms pour les évolutions
+        int idleTops = args.length >= 6 ? Integer.parseInt(args[5]) : 0;
+        long idleMs = args.length >= 7 ? Long.parseLong(args[6]) : 0L;
+
+        System.out.println("Starting TopologyT10:");
+        System.out.println("  - Input port: " + portINPUT);
+        System.out.println("  - Bonus output port: " + portBONUS);
+        System.out.println("  - Speed output port: " + portSPEED);
+        System.out.println("  - Evolution output port: " + portEVOLUTION);
+        System.out.println("  - Checkpoint interval: " + checkpointMs + " ms");
+        System.out.println("  - Idle eviction: " + idleTops + " tops / " + idleMs + " ms");
+
+        /*Création du spout, qui rejoue les frames non acquittées*/
+        InputStreamSpout spout = new InputStreamSpout("127.0.0.1", portINPUT, true);
+
+        /*Création de la topologie*/
+        TopologyBuilder builder = new TopologyBuilder();
+
+        /*Affectation à la topologie du spout*/
+        builder.setSpout("masterStream", spout);
+
+        /*Bolt qui calcule les rangs de toutes les tortues, en mode batch*/
+        builder.setBolt("giveRank", new GiveRankBolt(0, true), nbExecutors)
+                .shuffleGrouping("masterStream")
+                .allGrouping("masterStream", InputStreamSpout.WATERMARK_STREAM);
+
+        /*Bolts stateful checkpointés : leur état est restauré au redémarrage*/
+        builder.setBolt("computeBonus", new StatefulComputeBonusBolt(idleTops), nbExecutors)
+                .allGrouping("giveRank", GiveRankBolt.BATCH_STREAM);
+        builder.setBolt("rankEvolution", new StatefulRankEvolutionBolt(30000L, 1000L, 1, idleMs), nbExecutors)
+                .allGrouping("giveRank", GiveRankBolt.BATCH_STREAM)
+                .allGrouping("giveRank", GiveRankBolt.WATERMARK_STREAM);
+        builder.setBolt("speed", new StatefulSpeedBolt(idleTops), nbExecutors).shuffleGrouping("masterStream");
+
+        /*Bolts qui émettent les flux de sortie JSON*/
+        builder.setBolt("exitBonus", new Exit4Bolt(portBONUS), nbExecutors).shuffleGrouping("computeBonus");
+        builder.setBolt("exitSpeed", new Exit5Bolt(portSPEED), nbExecutors).shuffleGrouping("speed");
+        builder.setBolt("exitEvolution", new Exit6Bolt(portEVOLUTION), nbExecutors).shuffleGrouping("rankEvolution");
+
+        /*Création d'une configuration*/
+        Config config = new Config();
+        /*Rapporteur des métriques des opérateurs, si demandé (-c stormtp.metrics=console|csv)*/
+        MetricsReporters.configure(config);
+        config.setDebug(false);
+        // État local projeté en mémoire, checkpoint toutes les checkpointMs millisecondes
+        config.put(Config.TOPOLOGY_STATE_PROVIDER, MappedKeyValueStateProvider.class.getName());
+        config.put(Config.TOPOLOGY_STATE_CHECKPOINT_INTERVAL, checkpointMs);
+        // Les frames en vol sont gardées par le spout jusqu'à leur ack
+        config.setMaxSpoutPending(1000);
+
+        /*La topologie est soumise à STORM*/
+        StormSubmitter.submitTopology("topoT10", config, builder.createTopology());
+
+        System.out.println("TopologyT10 submitted successfully!");
+    }
+}
@@ -46,6 +46,8 @@ public class TopologyT2 {
        
         /*Création d'une configuration*/
         Config config = new Config();
+        /*Rapporteur des métriques des opérateurs, si demandé (-c stormtp.metrics=console|csv)*/
+        MetricsReporters.configure(config);
         /*La topologie est soumise à STORM*/
         StormSubmitter.submitTopology("topoT2", config, builder.createTopology());
 	}
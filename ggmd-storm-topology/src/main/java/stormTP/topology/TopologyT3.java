@@ -6,11 +6,13 @@ import org.apache.storm.topology.TopologyBuilder;
 import stormTP.operator.Exit3Bolt;
 import stormTP.operator.GiveRankBolt;
 import stormTP.operator.InputStreamSpout;
+import stormTP.operator.RankDeltaBolt;
 
 /**
  * Topologie T3 pour tester GiveRankBolt avec classement des tortues
  * 
  * Flux: InputStreamSpout -> GiveRankBolt -> Exit3Bolt
+ *   ou InputStreamSpout -> GiveRankBolt -> RankDeltaBolt -> Exit3Bolt (changements de rang seulement)
  * 
  * @author lumineau
  */
@@ -18,17 +20,34 @@ public class TopologyT3 {
     
     public static void main(String[] args) throws Exception {
         if (args.length < 2) {
-            System.err.println("Usage: TopologyT3 <portINPUT> <portOUTPUT>");
+            System.err.println("Usage: TopologyT3 <portINPUT> <portOUTPUT> [rankParallelism] [snapshotTops [maxLagMs conflateMs]]");
             return;
         }
         
         int nbExecutors = 1;
         int portINPUT = Integer.parseInt(args[0]);
         int portOUTPUT = Integer.parseInt(args[1]);
+        int rankParallelism = 0; // default: tri séquentiel
+        if (args.length >= 3) {
+            try {
+                rankParallelism = Integer.parseInt(args[2]);
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid rank parallelism, using sequential ranking");
+            }
+        }
+        
+        // Sortie des seuls changements de rang, avec un classement complet toutes les snapshotTops tops
+        int snapshotTops = args.length >= 4 ? Integer.parseInt(args[3]) : -1;
+        long maxLagMs = args.length >= 6 ? Long.parseLong(args[4]) : 0L;
+        long conflateMs = args.length >= 6 ? Long.parseLong(args[5]) : 0L;
         
         System.out.println("Starting TopologyT3:");
         System.out.println("  - Input port: " + portINPUT);
         System.out.println("  - Output port: " + portOUTPUT);
+        System.out.println("  - Rank parallelism: " + rankParallelism);
+        if (snapshotTops >= 0) {
+            System.out.println("  - Rank deltas: snapshot every " + snapshotTops + " tops, conflation after " + maxLagMs + " ms late");
+        }
         
         /*Création du spout*/
         InputStreamSpout spout = new InputStreamSpout("127.0.0.1", portINPUT);
@@ -40,13 +59,21 @@ public class TopologyT3 {
         builder.setSpout("masterStream", spout);
         
         /*Affectation du bolt qui calcule les rangs, il prend en input le spout masterStream*/
-        builder.setBolt("giveRank", new GiveRankBolt(), nbExecutors).shuffleGrouping("masterStream");
+        builder.setBolt("giveRank", new GiveRankBolt(rankParallelism), nbExecutors).shuffleGrouping("masterStream");
         
         /*Affectation du bolt qui émet le flux de sortie JSON, il prend en input le bolt giveRank*/
-        builder.setBolt("exit", new Exit3Bolt(portOUTPUT), nbExecutors).shuffleGrouping("giveRank");
+        if (snapshotTops >= 0) {
+            /*Bolt qui ne garde que les changements de rang ; un seul exécuteur voit toutes les tortues*/
+            builder.setBolt("rankDelta", new RankDeltaBolt(snapshotTops, maxLagMs, conflateMs), 1).globalGrouping("giveRank");
+            builder.setBolt("exit", new Exit3Bolt(portOUTPUT), nbExecutors).shuffleGrouping("rankDelta");
+        } else {
+            builder.setBolt("exit", new Exit3Bolt(portOUTPUT), nbExecutors).shuffleGrouping("giveRank");
+        }
         
         /*Création d'une configuration*/
         Config config = new Config();
+        /*Rapporteur des métriques des opérateurs, si demandé (-c stormtp.metrics=console|csv)*/
+        MetricsReporters.configure(config);
         config.setDebug(false); // Désactiver le debug pour réduire les logs
         
         /*La topologie est soumise à STORM*/
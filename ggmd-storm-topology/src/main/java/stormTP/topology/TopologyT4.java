@@ -20,7 +20,7 @@ public class TopologyT4 {
     
     public static void main(String[] args) throws Exception {
         if (args.length < 2) {
-            System.err.println("Usage: TopologyT4 <portINPUT> <portOUTPUT> [targetTortoiseId]");
+            System.err.println("Usage: TopologyT4 <portINPUT> <portOUTPUT> [targetTortoiseId] [bonusExecutors]");
             return;
         }
         
@@ -35,11 +35,20 @@ public class TopologyT4 {
                 System.err.println("Invalid target id, using default 3");
             }
         }
+        int bonusExecutors = nbExecutors;
+        if (args.length >= 4) {
+            try {
+                bonusExecutors = Integer.parseInt(args[3]);
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid bonus executors, using default " + nbExecutors);
+            }
+        }
         
         System.out.println("Starting TopologyT4:");
         System.out.println("  - Input port: " + portINPUT);
         System.out.println("  - Output port: " + portOUTPUT);
         System.out.println("  - Target turtle id: " + targetId);
+        System.out.println("  - Bonus executors: " + bonusExecutors);
         
         /*Création du spout*/
         InputStreamSpout spout = new InputStreamSpout("127.0.0.1", portINPUT);
@@ -53,17 +62,19 @@ public class TopologyT4 {
         /*Bolt qui parse le JSON et filtre une tortue spécifique*/
         builder.setBolt("myTortoise", new MyTortoiseBolt(targetId), nbExecutors).shuffleGrouping("masterStream");
         
-        /*Bolt qui calcule les rangs de toutes les tortues*/
-        builder.setBolt("giveRank", new GiveRankBolt(), nbExecutors).shuffleGrouping("masterStream");
+        /*Bolt qui calcule les rangs de toutes les tortues, en mode batch : un seul tuple (et un seul ancrage) par frame*/
+        builder.setBolt("giveRank", new GiveRankBolt(0, true), nbExecutors).shuffleGrouping("masterStream");
         
-        /*Bolt stateful qui calcule les points bonus*/
-        builder.setBolt("computeBonus", new ComputeBonusBolt(), nbExecutors).shuffleGrouping("giveRank");
+        /*Bolt stateful qui calcule les points bonus : chaque tâche ne garde que ses tortues (partition par id)*/
+        builder.setBolt("computeBonus", new ComputeBonusBolt(), bonusExecutors).allGrouping("giveRank", GiveRankBolt.BATCH_STREAM);
         
         /*Bolt qui émet le flux de sortie JSON*/
         builder.setBolt("exit", new Exit4Bolt(portOUTPUT), nbExecutors).shuffleGrouping("computeBonus");
         
         /*Création d'une configuration*/
         Config config = new Config();
+        /*Rapporteur des métriques des opérateurs, si demandé (-c stormtp.metrics=console|csv)*/
+        MetricsReporters.configure(config);
         config.setDebug(false); // Désactiver le debug pour réduire les logs
         
         /*La topologie est soumise à STORM*/
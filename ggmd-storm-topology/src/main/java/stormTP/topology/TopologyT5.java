@@ -47,6 +47,8 @@ public class TopologyT5 {
         
         /*Création d'une configuration*/
         Config config = new Config();
+        /*Rapporteur des métriques des opérateurs, si demandé (-c stormtp.metrics=console|csv)*/
+        MetricsReporters.configure(config);
         config.setDebug(false); // Désactiver le debug pour réduire les logs
         
         /*La topologie est soumise à STORM*/
@@ -51,17 +51,25 @@ public class TopologyT6 {
         /*Affectation à la topologie du spout*/
         builder.setSpout("masterStream", spout);
         
-        /*Bolt qui calcule les rangs de toutes les tortues*/
-        builder.setBolt("giveRank", new GiveRankBolt(), nbExecutors).shuffleGrouping("masterStream");
+        /*Bolt qui calcule les rangs de toutes les tortues, en mode batch : un seul tuple (et un seul ancrage) par frame*/
+        /*Il relaie aussi les filigranes du spout, après les frames qui les précèdent*/
+        builder.setBolt("giveRank", new GiveRankBolt(0, true), nbExecutors)
+                .shuffleGrouping("masterStream")
+                .allGrouping("masterStream", InputStreamSpout.WATERMARK_STREAM);
         
-        /*Bolt stateful qui analyse l'évolution du rang avec fenêtre temporelle*/
-        builder.setBolt("rankEvolution", new RankEvolutionBolt(), nbExecutors).shuffleGrouping("giveRank");
+        /*Bolt stateful qui analyse l'évolution du rang avec fenêtre en temps d'événement (30 s, retard toléré 1 s)*/
+        /*Les fenêtres closes sont évaluées à chaque tick tuple (toutes les secondes), ou aussitôt lors d'un arriéré*/
+        builder.setBolt("rankEvolution", new RankEvolutionBolt(30000L, 1000L, 1), nbExecutors)
+                .allGrouping("giveRank", GiveRankBolt.BATCH_STREAM)
+                .allGrouping("giveRank", GiveRankBolt.WATERMARK_STREAM);
         
         /*Bolt qui émet le flux de sortie JSON*/
         builder.setBolt("exit", new Exit6Bolt(portOUTPUT), nbExecutors).shuffleGrouping("rankEvolution");
         
         /*Création d'une configuration*/
         Config config = new Config();
+        /*Rapporteur des métriques des opérateurs, si demandé (-c stormtp.metrics=console|csv)*/
+        MetricsReporters.configure(config);
         config.setDebug(false); // Désactiver le debug pour réduire les logs
         
         /*La topologie est soumise à STORM*/
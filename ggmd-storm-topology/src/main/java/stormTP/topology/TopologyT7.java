@@ -0,0 +1,84 @@
+package stormTP.topology;
+
+import org.apache.storm.Config;
+import org.apache.storm.StormSubmitter;
+import org.apache.storm.topology.TopologyBuilder;
+import org.apache.storm.tuple.Fields;
+import stormTP.operator.Exit3Bolt;
+import stormTP.operator.InputStreamSpout;
+import stormTP.operator.PartitionRankBolt;
+import stormTP.operator.RankMergeBolt;
+import stormTP.operator.RunnerSplitBolt;
+
+/**
+ * Topologie T7 : classement distribué en deux phases, même sortie que TopologyT3
+ * 
+ * Flux: InputStreamSpout -> RunnerSplitBolt -> PartitionRankBolt (x N) <-> RankMergeBolt
+ *                                                     -> Exit3Bolt
+ * 
+ * @author lumineau
+ */
+public class TopologyT7 {
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: TopologyT7 <portINPUT> <portOUTPUT> [nbPartitions]");
+            return;
+        }
+        
+        int nbExecutors = 1;
+        int portINPUT = Integer.parseInt(args[0]);
+        int portOUTPUT = Integer.parseInt(args[1]);
+        int nbPartitions = 4; // default
+        if (args.length >= 3) {
+            try {
+                nbPartitions = Integer.parseInt(args[2]);
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid number of partitions, using default 4");
+            }
+        }
+        
+        System.out.println("Starting TopologyT7:");
+        System.out.println("  - Input port: " + portINPUT);
+        System.out.println("  - Output port: " + portOUTPUT);
+        System.out.println("  - Rank partitions: " + nbPartitions);
+        
+        /*Création du spout*/
+        InputStreamSpout spout = new InputStreamSpout("127.0.0.1", portINPUT);
+        
+        /*Création de la topologie*/
+        TopologyBuilder builder = new TopologyBuilder();
+        
+        /*Affectation à la topologie du spout*/
+        builder.setSpout("masterStream", spout);
+        
+        /*Bolt qui découpe chaque frame en un tuple par tortue*/
+        builder.setBolt("split", new RunnerSplitBolt(), nbExecutors).shuffleGrouping("masterStream");
+        
+        /*Partitions : histogrammes locaux puis rangs définitifs à partir des comptes globaux*/
+        builder.setBolt("partitionRank", new PartitionRankBolt(), nbPartitions)
+                .fieldsGrouping("split", new Fields("id"))
+                .allGrouping("split", RunnerSplitBolt.FRAME_END_STREAM)
+                .allGrouping("rankMerge", RankMergeBolt.COUNTS_STREAM);
+        
+        /*Bolt léger qui fusionne les histogrammes d'un même top*/
+        builder.setBolt("rankMerge", new RankMergeBolt(), nbExecutors)
+                .fieldsGrouping("partitionRank", PartitionRankBolt.HISTOGRAM_STREAM, new Fields("top"));
+        
+        /*Bolt qui émet le flux de sortie JSON*/
+        builder.setBolt("exit", new Exit3Bolt(portOUTPUT), nbExecutors).shuffleGrouping("partitionRank");
+        
+        /*Création d'une configuration*/
+        Config config = new Config();
+        /*Rapporteur des métriques des opérateurs, si demandé (-c stormtp.metrics=console|csv)*/
+        MetricsReporters.configure(config);
+        config.setDebug(false); // Désactiver le debug pour réduire les logs
+        // Les histogrammes voyagent en int[] entre workers
+        config.registerSerialization(int[].class);
+        
+        /*La topologie est soumise à STORM*/
+        StormSubmitter.submitTopology("topoT7", config, builder.createTopology());
+        
+        System.out.println("TopologyT7 submitted successfully!");
+    }
+}
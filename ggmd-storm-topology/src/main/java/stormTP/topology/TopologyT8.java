@@ -0,0 +1,71 @@
+package stormTP.topology;
+
+import org.apache.storm.Config;
+import org.apache.storm.StormSubmitter;
+import org.apache.storm.topology.TopologyBuilder;
+import stormTP.operator.Exit8Bolt;
+import stormTP.operator.InputStreamSpout;
+import stormTP.operator.PodiumBolt;
+
+/**
+ * Topologie T8 pour tester PodiumBolt (K meilleures tortues par top)
+ * 
+ * Flux: InputStreamSpout -> PodiumBolt -> Exit8Bolt
+ * 
+ * @author lumineau
+ */
+public class TopologyT8 {
+    
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: TopologyT8 <portINPUT> <portOUTPUT> [podiumSize]");
+            return;
+        }
+        
+        int nbExecutors = 1;
+        int portINPUT = Integer.parseInt(args[0]);
+        int portOUTPUT = Integer.parseInt(args[1]);
+        int podiumSize = 3; // default
+        if (args.length >= 3) {
+            try {
+                podiumSize = Integer.parseInt(args[2]);
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid podium size, using default 3");
+            }
+        }
+        
+        System.out.println("Starting TopologyT8:");
+        System.out.println("  - Input port: " + portINPUT);
+        System.out.println("  - Output port: " + portOUTPUT);
+        System.out.println("  - Podium size: " + podiumSize);
+        
+        /*Création du spout*/
+        InputStreamSpout spout = new InputStreamSpout("127.0.0.1", portINPUT);
+        
+        /*Création de la topologie*/
+        TopologyBuilder builder = new TopologyBuilder();
+        
+        /*Affectation à la topologie du spout*/
+        builder.setSpout("masterStream", spout);
+        
+        /*Bolt qui calcule le podium de chaque frame*/
+        builder.setBolt("podium", new PodiumBolt(podiumSize), nbExecutors).shuffleGrouping("masterStream");
+        
+        /*Bolt qui émet le flux de sortie JSON*/
+        builder.setBolt("exit", new Exit8Bolt(portOUTPUT), nbExecutors).shuffleGrouping("podium");
+        
+        /*Création d'une configuration*/
+        Config config = new Config();
+        /*Rapporteur des métriques des opérateurs, si demandé (-c stormtp.metrics=console|csv)*/
+        MetricsReporters.configure(config);
+        config.setDebug(false); // Désactiver le debug pour réduire les logs
+        // Le podium voyage en tableaux primitifs entre workers
+        config.registerSerialization(int[].class);
+        config.registerSerialization(boolean[].class);
+        
+        /*La topologie est soumise à STORM*/
+        StormSubmitter.submitTopology("topoT8", config, builder.createTopology());
+        
+        System.out.println("TopologyT8 submitted successfully!");
+    }
+}
@@ -0,0 +1,71 @@
+package stormTP.topology;
+
+import org.apache.storm.Config;
+import org.apache.storm.StormSubmitter;
+import org.apache.storm.topology.TopologyBuilder;
+import stormTP.operator.Exit5Bolt;
+import stormTP.operator.Exit6Bolt;
+import stormTP.operator.GiveRankBolt;
+import stormTP.operator.InputStreamSpout;
+import stormTP.operator.MultiRankEvolutionBolt;
+import stormTP.operator.MultiSpeedBolt;
+
+/**
+ * Topologie T9 : vitesses et évolutions du rang sur plusieurs tailles de fenêtre à la fois
+ *
+ * Flux: InputStreamSpout -> MultiSpeedBolt (10, 50, 500 tops) -> Exit5Bolt
+ *       InputStreamSpout -> GiveRankBolt -> MultiRankEvolutionBolt (30 s, 5 min, 1 h) -> Exit6Bolt
+ */
+public class TopologyT9 {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: TopologyT9 <portINPUT> <portSPEED> <portEVOLUTION>");
+            return;
+        }
+
+        int nbExecutors = 1;
+        int portINPUT = Integer.parseInt(args[0]);
+        int portSPEED = Integer.parseInt(args[1]);
+        int portEVOLUTION = Integer.parseInt(args[2]);
+
+        System.out.println("Starting TopologyT9:");
+        System.out.println("  - Input port: " + portINPUT);
+        System.out.println("  - Speed output port: " + portSPEED);
+        System.out.println("  - Evolution output port: " + portEVOLUTION);
+
+        /*Création du spout*/
+        InputStreamSpout spout = new InputStreamSpout("127.0.0.1", portINPUT);
+
+        /*Création de la topologie*/
+        TopologyBuilder builder = new TopologyBuilder();
+
+        /*Affectation à la topologie du spout*/
+        builder.setSpout("masterStream", spout);
+
+        /*Bolt qui calcule les vitesses sur 10, 50 et 500 tops à partir des mêmes volets*/
+        builder.setBolt("multiSpeed", new MultiSpeedBolt(10, 50, 500), nbExecutors).shuffleGrouping("masterStream");
+
+        /*Bolt qui calcule les rangs de toutes les tortues, en mode batch*/
+        builder.setBolt("giveRank", new GiveRankBolt(0, true), nbExecutors).shuffleGrouping("masterStream");
+
+        /*Bolt qui analyse l'évolution du rang sur 30 s, 5 min et 1 h à partir des mêmes volets*/
+        builder.setBolt("multiRankEvolution", new MultiRankEvolutionBolt(30000L, 300000L, 3600000L), nbExecutors)
+                .allGrouping("giveRank", GiveRankBolt.BATCH_STREAM);
+
+        /*Bolts qui émettent les flux de sortie JSON*/
+        builder.setBolt("exitSpeed", new Exit5Bolt(portSPEED), nbExecutors).shuffleGrouping("multiSpeed");
+        builder.setBolt("exitEvolution", new Exit6Bolt(portEVOLUTION), nbExecutors).shuffleGrouping("multiRankEvolution");
+
+        /*Création d'une configuration*/
+        Config config = new Config();
+        /*Rapporteur des métriques des opérateurs, si demandé (-c stormtp.metrics=console|csv)*/
+        MetricsReporters.configure(config);
+        config.setDebug(false);
+
+        /*La topologie est soumise à STORM*/
+        StormSubmitter.submitTopology("topoT9", config, builder.createTopology());
+
+        System.out.println("TopologyT9 submitted successfully!");
+    }
+}
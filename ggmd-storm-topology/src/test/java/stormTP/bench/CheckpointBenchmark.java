@@ -0,0 +1,185 @@
+package stormTP.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.storm.state.InMemoryKeyValueState;
+import org.apache.storm.state.KeyValueState;
+import org.apache.storm.state.Serializer;
+import org.apache.storm.topology.IRichBolt;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.utils.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import stormTP.operator.BoltHarness;
+import stormTP.operator.ComputeBonusBolt;
+import stormTP.operator.StatefulComputeBonusBolt;
+import stormTP.state.MappedKeyValueState;
+
+/**
+ * Surcoût des checkpoints de l'état des bonus selon leur fréquence : un StatefulComputeBonusBolt
+ * reçoit les rangs de chaque frame (execute), puis toutes les interval frames le checkpoint
+ * est déroulé comme par Storm (prePrepare, prepareCommit et commit du KeyValueState).
+ * interval = 0 : ComputeBonusBolt seul, sans checkpoint (référence).
+ *
+ * Chaque invocation rejoue une course complète (tops x runners) sur une tâche neuve (BoltHarness).
+ * mvn test-compile puis lancer main() avec le classpath de test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckpointBenchmark {
+
+    private static final Map<String, Fields> STREAMS = Collections.singletonMap(Utils.DEFAULT_STREAM_ID,
+            new Fields("id", "top", "rang", "exaequo", "total", "maxcel", "timestamp", "trace"));
+
+    @Param({"1000"})
+    int runners;
+
+    @Param({"300"})
+    int tops;
+
+    @Param({"0", "1", "10", "100"})
+    int interval;
+
+    @Param({"memory", "mapped"})
+    String backend;
+
+    Tuple[] tuples;
+    long txid;
+    KeyValueState<Integer, byte[]> state;
+    File dir;
+    BoltHarness harness;
+    IRichBolt bolt;
+    StatefulComputeBonusBolt stateful;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        BoltHarness tupleHarness = new BoltHarness(STREAMS, false);
+        tuples = new Tuple[tops * runners];
+        for (int top = 0; top < tops; top++) {
+            for (int id = 0; id < runners; id++) {
+                tuples[top * runners + id] = tupleHarness.tuple(Utils.DEFAULT_STREAM_ID, id, top,
+                        1 + random.nextInt(runners), false, runners, 100, 1_700_000_000_000L + top, null);
+            }
+        }
+    }
+
+    /**
+     * Une tâche et un état neufs par course : le journal projeté n'est pas compacté
+     */
+    @Setup(Level.Invocation)
+    public void openState() throws IOException {
+        if ("mapped".equals(backend)) {
+            dir = Files.createTempDirectory("checkpoint-bench").toFile();
+            state = new MappedKeyValueState<>(dir, 16 << 20, new IntSerializer(), new BytesSerializer());
+        } else {
+            state = new InMemoryKeyValueState<>();
+        }
+        harness = new BoltHarness(STREAMS, false);
+        Map<String, Object> conf = new HashMap<>();
+        if (interval > 0) {
+            stateful = new StatefulComputeBonusBolt();
+            stateful.prepare(conf, harness.context(), harness.collector());
+            stateful.initState(state);
+            bolt = null;
+        } else {
+            bolt = new ComputeBonusBolt();
+            bolt.prepare(conf, harness.context(), harness.collector());
+            stateful = null;
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void deleteState() {
+        if (dir != null) {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    f.delete();
+                }
+            }
+            dir.delete();
+            dir = null;
+        }
+    }
+
+    @Benchmark
+    public long race() {
+        for (int top = 0; top < tops; top++) {
+            for (int i = top * runners; i < (top + 1) * runners; i++) {
+                if (stateful != null) {
+                    stateful.execute(tuples[i]);
+                } else {
+                    bolt.execute(tuples[i]);
+                }
+            }
+
+            if (interval > 0 && (top + 1) % interval == 0) {
+                txid++;
+                stateful.prePrepare(txid);
+                state.prepareCommit(txid);
+                state.commit(txid);
+            }
+        }
+        return harness.emitted();
+    }
+
+    private static class IntSerializer implements Serializer<Integer> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public byte[] serialize(Integer i) {
+            return ByteBuffer.allocate(4).putInt(i).array();
+        }
+
+        @Override
+        public Integer deserialize(byte[] b) {
+            return ByteBuffer.wrap(b).getInt();
+        }
+    }
+
+    private static class BytesSerializer implements Serializer<byte[]> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public byte[] serialize(byte[] b) {
+            return b;
+        }
+
+        @Override
+        public byte[] deserialize(byte[] b) {
+            return b;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(CheckpointBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,88 @@
+package stormTP.bench;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import stormTP.core.FrameRanker;
+
+/**
+ * Classement d'une frame : Collections.sort (mode actuel de GiveRankBolt)
+ * contre le tri par comptage parallèle de FrameRanker.
+ *
+ * mvn test-compile puis lancer main() avec le classpath de test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameRankerBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    int runners;
+
+    @Param({"4"})
+    int parallelism;
+
+    int[] cells;
+    ForkJoinPool pool;
+    FrameRanker ranker;
+    FrameRanker.Ranking ranking;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        // Positions simulées comme StreamRunners : avance de 0, 1 ou 2 cellules par top
+        Random random = new Random(42);
+        int tops = 5_000;
+        cells = new int[runners];
+        for (int i = 0; i < runners; i++) {
+            int pos = 0;
+            for (int t = 0; t < tops; t += 50) {
+                pos += random.nextInt(101);
+            }
+            cells[i] = pos;
+        }
+        pool = new ForkJoinPool(parallelism);
+        ranker = new FrameRanker(pool);
+        ranking = new FrameRanker.Ranking();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public FrameRanker.Ranking collectionsSort() {
+        FrameRanker.rankByComparison(cells, runners, ranking);
+        return ranking;
+    }
+
+    @Benchmark
+    public FrameRanker.Ranking parallelCountingSort() {
+        ranker.rank(cells, runners, ranking);
+        return ranking;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(FrameRankerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,192 @@
+package stormTP.bench;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import stormTP.core.IntObjectMap;
+import stormTP.core.SlidingCountWindow;
+import stormTP.core.SlidingTimeWindow;
+import stormTP.core.SumAggregator;
+import stormTP.core.TumblingCountWindow;
+import stormTP.core.WindowBuffer;
+
+/**
+ * Fenêtres par tortue : buffers ad hoc des anciens SpeedBolt, ComputeBonusBolt et
+ * RankEvolutionBolt (historique en ArrayList, tri ou reparcours à chaque évaluation)
+ * contre les fenêtres incrémentales de stormTP.core.
+ *
+ * Chaque invocation rejoue une course complète (tops x runners).
+ * mvn test-compile puis lancer main() avec le classpath de test.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WindowBenchmark {
+
+    @Param({"1000"})
+    int runners;
+
+    @Param({"300", "3000"})
+    int tops;
+
+    int[] cells;
+    int[] ranks;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        cells = new int[tops * runners];
+        ranks = new int[tops * runners];
+        for (int t = 0; t < tops; t++) {
+            for (int r = 0; r < runners; r++) {
+                int i = t * runners + r;
+                cells[i] = (t == 0 ? 0 : cells[i - runners]) + random.nextInt(3);
+                ranks[i] = 1 + random.nextInt(runners);
+            }
+        }
+    }
+
+    // Un top par seconde simulée
+    private static long timeOf(int top) {
+        return 1_700_000_000_000L + top * 1000L;
+    }
+
+    @Benchmark
+    public void speedHistorySort(Blackhole bh) {
+        Map<Integer, List<int[]>> histories = new HashMap<>();
+        for (int t = 0; t < tops; t++) {
+            for (int r = 0; r < runners; r++) {
+                List<int[]> history = histories.computeIfAbsent(r, k -> new ArrayList<>());
+                history.add(new int[] {t, cells[t * runners + r]});
+                if (history.size() % 5 == 0) {
+                    history.sort((a, b) -> Integer.compare(a[0], b[0]));
+                    List<int[]> window = history.subList(Math.max(0, history.size() - 10), history.size());
+                    int[] first = window.get(0);
+                    int[] last = window.get(window.size() - 1);
+                    bh.consume((double) (last[1] - first[1]) / (last[0] - first[0]));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void speedSlidingCountWindow(Blackhole bh) {
+        IntObjectMap<SlidingCountWindow> windows = new IntObjectMap<>();
+        for (int t = 0; t < tops; t++) {
+            for (int r = 0; r < runners; r++) {
+                SlidingCountWindow window = windows.get(r);
+                if (window == null) {
+                    window = new SlidingCountWindow(10, 5);
+                    windows.put(r, window);
+                }
+                if (window.add(t, cells[t * runners + r])) {
+                    WindowBuffer buffer = window.buffer();
+                    bh.consume((double) (buffer.lastValue() - buffer.firstValue())
+                            / (buffer.lastPosition() - buffer.firstPosition()));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void bonusHistoryRescan(Blackhole bh) {
+        Map<Integer, List<Integer>> histories = new HashMap<>();
+        for (int t = 0; t < tops; t++) {
+            for (int r = 0; r < runners; r++) {
+                List<Integer> history = histories.computeIfAbsent(r, k -> new ArrayList<>());
+                history.add(ranks[t * runners + r]);
+                if (history.size() % 15 == 0) {
+                    int bonus = 0;
+                    for (int rang : history.subList(history.size() - 15, history.size())) {
+                        bonus += Math.max(0, runners - rang);
+                    }
+                    bh.consume(bonus);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void bonusTumblingCountWindow(Blackhole bh) {
+        IntObjectMap<SumAggregator> sums = new IntObjectMap<>();
+        IntObjectMap<TumblingCountWindow> windows = new IntObjectMap<>();
+        for (int t = 0; t < tops; t++) {
+            for (int r = 0; r < runners; r++) {
+                TumblingCountWindow window = windows.get(r);
+                if (window == null) {
+                    sums.put(r, new SumAggregator());
+                    window = new TumblingCountWindow(15, sums.get(r));
+                    windows.put(r, window);
+                }
+                if (window.add(t, ranks[t * runners + r])) {
+                    bh.consume(15L * runners - sums.get(r).sum());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void evolutionHistoryPurge(Blackhole bh) {
+        Map<Integer, List<long[]>> histories = new HashMap<>();
+        for (int t = 0; t < tops; t++) {
+            long now = timeOf(t);
+            for (int r = 0; r < runners; r++) {
+                List<long[]> history = histories.computeIfAbsent(r, k -> new ArrayList<>());
+                history.add(new long[] {now, ranks[t * runners + r]});
+                Iterator<long[]> iterator = history.iterator();
+                while (iterator.hasNext()) {
+                    if (now - iterator.next()[0] > 30000) {
+                        iterator.remove();
+                    }
+                }
+                bh.consume(history.get(0)[1] - history.get(history.size() - 1)[1]);
+            }
+        }
+    }
+
+    @Benchmark
+    public void evolutionSlidingTimeWindow(Blackhole bh) {
+        IntObjectMap<SlidingTimeWindow> windows = new IntObjectMap<>();
+        for (int t = 0; t < tops; t++) {
+            long now = timeOf(t);
+            for (int r = 0; r < runners; r++) {
+                SlidingTimeWindow window = windows.get(r);
+                if (window == null) {
+                    window = new SlidingTimeWindow(30000, 30000);
+                    windows.put(r, window);
+                }
+                window.add(now, ranks[t * runners + r]);
+                window.evict(now);
+                bh.consume(window.buffer().firstValue() - window.buffer().lastValue());
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder().include(WindowBenchmark.class.getSimpleName()).build()).run();
+    }
+}
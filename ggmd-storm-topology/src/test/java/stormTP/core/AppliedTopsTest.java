@@ -0,0 +1,78 @@
+package stormTP.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests de la détection des tops rejoués
+ */
+public class AppliedTopsTest extends TestCase {
+
+    public void testReplayedTopsAreRejected() {
+        RunnerStore store = new RunnerStore();
+        AppliedTops tops = new AppliedTops(store);
+        int slot = store.add(7);
+        for (int top = 0; top < 100; top++) {
+            assertTrue(tops.apply(slot, top));
+        }
+        assertFalse(tops.apply(slot, 99));
+        assertFalse(tops.apply(slot, 50));
+        // Hors du masque : traité comme un rejeu
+        assertFalse(tops.apply(slot, 99 - AppliedTops.SPAN));
+        assertEquals(99, tops.lastTop(slot));
+    }
+
+    public void testOutOfOrderTopsAreAppliedOnce() {
+        RunnerStore store = new RunnerStore();
+        AppliedTops tops = new AppliedTops(store);
+        int slot = store.add(0);
+        assertTrue(tops.apply(slot, 10));
+        assertTrue(tops.apply(slot, 13));
+        assertTrue(tops.apply(slot, 11));
+        assertTrue(tops.apply(slot, 12));
+        assertFalse(tops.apply(slot, 11));
+        assertTrue(tops.apply(slot, 13 + AppliedTops.SPAN - 1));
+        // Le top 13 est encore dans le masque, 12 n'y est plus
+        assertFalse(tops.apply(slot, 13));
+        assertFalse(tops.apply(slot, 12));
+        // Saut plus grand que le masque
+        assertTrue(tops.apply(slot, 1000));
+        assertTrue(tops.apply(slot, 999));
+        assertFalse(tops.apply(slot, 1000));
+    }
+
+    public void testRemovedRunnerStartsAfresh() {
+        RunnerStore store = new RunnerStore();
+        AppliedTops tops = new AppliedTops(store);
+        int slot = store.add(3);
+        assertTrue(tops.apply(slot, 500));
+        store.remove(3);
+        slot = store.add(3);
+        assertTrue(tops.apply(slot, 2));
+    }
+
+    public void testWriteReadRoundTrip() throws IOException {
+        RunnerStore store = new RunnerStore();
+        AppliedTops tops = new AppliedTops(store);
+        int slot = store.add(1);
+        tops.apply(slot, 40);
+        tops.apply(slot, 38);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        tops.writeTo(slot, new DataOutputStream(bytes));
+        assertEquals(12, bytes.size());
+
+        RunnerStore restored = new RunnerStore();
+        AppliedTops copy = new AppliedTops(restored);
+        int other = restored.add(1);
+        copy.readFrom(other, new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertFalse(copy.apply(other, 40));
+        assertFalse(copy.apply(other, 38));
+        assertTrue(copy.apply(other, 39));
+        assertEquals(40, copy.lastTop(other));
+    }
+}
@@ -0,0 +1,53 @@
+package stormTP.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests du classement distribué : histogrammes par partition puis fusion
+ */
+public class CellHistogramTest extends TestCase {
+
+    public void testHistogramOfFrame() {
+        int[] cells = {594, 523, 667, 523, 511};
+        CellHistogram histogram = CellHistogram.of(cells, cells.length);
+
+        assertEquals(4, histogram.size());
+        assertTrue(Arrays.equals(new int[] {667, 594, 523, 511}, histogram.values()));
+        assertTrue(Arrays.equals(new int[] {1, 1, 2, 1}, histogram.counts()));
+    }
+
+    public void testMergedRanksMatchSingleTaskRanking() {
+        Random random = new Random(3);
+        int n = 10_000;
+        int partitions = 5;
+        int[] cells = new int[n];
+        for (int i = 0; i < n; i++) {
+            cells[i] = 5_000 + random.nextInt(400);
+        }
+
+        // Répartition par id comme un fieldsGrouping
+        List<CellHistogram> parts = new ArrayList<>();
+        for (int p = 0; p < partitions; p++) {
+            int[] local = new int[n];
+            int size = 0;
+            for (int i = p; i < n; i += partitions) {
+                local[size++] = cells[i];
+            }
+            parts.add(CellHistogram.of(local, size));
+        }
+        parts.add(CellHistogram.of(new int[0], 0)); // partition sans tortue
+        CellHistogram global = CellHistogram.merge(parts);
+
+        FrameRanker.Ranking expected = new FrameRanker.Ranking();
+        FrameRanker.rankByComparison(cells, n, expected);
+        for (int i = 0; i < n; i++) {
+            assertEquals(expected.rank(i), global.rankOf(cells[i]));
+            assertEquals(expected.isTie(i), global.isTie(cells[i]));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package stormTP.core;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests du classement intra-frame (séquentiel et parallèle)
+ */
+public class FrameRankerTest extends TestCase {
+
+    /**
+     * Exemple de AppTest.test1TortoisecomputeRank (maxcel = 200)
+     */
+    public void testRankByComparisonMatchesExpectedRanks() {
+        int[] cells = {594, 523, 667, 578, 601, 564, 563, 511, 559, 523};
+        int[] expectedRank = {3, 8, 1, 4, 2, 5, 6, 10, 7, 8};
+
+        FrameRanker.Ranking ranking = new FrameRanker.Ranking();
+        FrameRanker.rankByComparison(cells, cells.length, ranking);
+
+        for (int i = 0; i < cells.length; i++) {
+            assertEquals("rank of " + i, expectedRank[i], ranking.rank(i));
+            assertEquals("tie of " + i, i == 1 || i == 9, ranking.isTie(i));
+        }
+        assertEquals(2, ranking.order(0));
+        // tri stable : l'id 1 reste devant l'id 9
+        assertEquals(1, ranking.order(7));
+        assertEquals(9, ranking.order(8));
+    }
+
+    public void testParallelMatchesSequential() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            FrameRanker ranker = new FrameRanker(pool);
+            Random random = new Random(42);
+            int n = 200_000;
+            int[] cells = new int[n];
+            for (int i = 0; i < n; i++) {
+                cells[i] = 10_000 + random.nextInt(3_000);
+            }
+            assertSameRanking(cells, n, ranker);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void testParallelRadixOnSparseValues() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            FrameRanker ranker = new FrameRanker(pool);
+            Random random = new Random(7);
+            int n = FrameRanker.SEQUENTIAL_THRESHOLD * 2;
+            int[] cells = new int[n];
+            for (int i = 0; i < n; i++) {
+                cells[i] = random.nextInt(Integer.MAX_VALUE);
+            }
+            assertSameRanking(cells, n, ranker);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Étendue plus grande que la frame (longue course) avec de nombreuses égalités
+     */
+    public void testParallelRadixOnWideRangeWithTies() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            FrameRanker ranker = new FrameRanker(pool);
+            Random random = new Random(11);
+            int n = FrameRanker.SEQUENTIAL_THRESHOLD * 4;
+            int[] cells = new int[n];
+            for (int i = 0; i < n; i++) {
+                cells[i] = random.nextInt(8) == 0 ? 5_000_000 : random.nextInt(10 * n);
+            }
+            assertSameRanking(cells, n, ranker);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void assertSameRanking(int[] cells, int n, FrameRanker ranker) {
+        FrameRanker.Ranking expected = new FrameRanker.Ranking();
+        FrameRanker.Ranking actual = new FrameRanker.Ranking();
+        FrameRanker.rankByComparison(cells, n, expected);
+        ranker.rank(cells, n, actual);
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < n; i++) {
+            assertEquals(expected.order(i), actual.order(i));
+            assertEquals(expected.rank(i), actual.rank(i));
+            assertEquals(expected.isTie(i), actual.isTie(i));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package stormTP.core;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests de la lecture en un passage des tortues d'une frame
+ */
+public class FrameReaderTest extends TestCase {
+
+    public void testReadsEveryRunnerOfAFrame() {
+        String json = "{\"runners\":[{\"id\":0,\"top\":12,\"tour\":1,\"cellule\":7,\"total\":2,\"maxcel\":100},"
+                + "{\"id\":1,\"top\":12,\"tour\":0,\"cellule\":95,\"total\":2,\"maxcel\":100}],\"timestamp\":1700000000000}";
+        FrameReader reader = new FrameReader();
+
+        assertTrue(reader.reset(json));
+        assertTrue(reader.next());
+        assertEquals(0, reader.id());
+        assertEquals(12, reader.top());
+        assertEquals(107, reader.cells());
+        assertEquals(2, reader.total());
+        assertTrue(reader.next());
+        assertEquals(1, reader.id());
+        assertEquals(95, reader.cells());
+        assertFalse(reader.next());
+    }
+
+    public void testToleratesBlanksKeyOrderAndUnknownKeys() {
+        String json = "{ \"timestamp\": 5, \"runners\" : [ { \"nom\" : \"a,}\\\"b\", \"maxcel\" : 10, \"cellule\":3,"
+                + " \"tour\":2, \"total\":1, \"extra\": {\"x\": [1, 2]}, \"top\":4, \"id\":9 } ] }";
+        FrameReader reader = new FrameReader();
+
+        assertTrue(reader.reset(json));
+        assertTrue(reader.next());
+        assertEquals(9, reader.id());
+        assertEquals(4, reader.top());
+        assertEquals(23, reader.cells());
+        assertFalse(reader.next());
+    }
+
+    public void testFramesWithoutRunnersAndIncompleteRunners() {
+        FrameReader reader = new FrameReader();
+        assertFalse(reader.reset("{\"timestamp\":5}"));
+        assertTrue(reader.reset("{\"runners\":[]}"));
+        assertFalse(reader.next());
+
+        assertTrue(reader.reset("{\"runners\":[{\"id\":1,\"top\":2}]}"));
+        try {
+            reader.next();
+            fail();
+        } catch (RuntimeException expected) {
+            assertTrue(expected.getMessage().contains("tour"));
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package stormTP.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests de la table à clés int
+ */
+public class IntObjectMapTest extends TestCase {
+
+    public void testMatchesHashMap() {
+        Random random = new Random(5);
+        IntObjectMap<Integer> map = new IntObjectMap<>(4);
+        Map<Integer, Integer> expected = new HashMap<>();
+
+        for (int i = 0; i < 100_000; i++) {
+            int key = random.nextInt(2000) - 100;
+            int op = random.nextInt(3);
+            if (op == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else if (op == 1) {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            } else {
+                assertEquals(expected.get(key), map.get(key));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+
+        final int[] visited = {0};
+        map.forEach((key, value) -> {
+            assertEquals(expected.get(key), value);
+            visited[0]++;
+        });
+        assertEquals(expected.size(), visited[0]);
+    }
+
+    public void testNullValueIsRejected() {
+        try {
+            new IntObjectMap<String>().put(1, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // attendu
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package stormTP.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests des fenêtres partagées en volets
+ */
+public class PaneWindowTest extends TestCase {
+
+    public void testPaneSizeIsGcd() {
+        assertEquals(10, PaneWindow.paneSizeFor(10, 50, 500));
+        assertEquals(30000, PaneWindow.paneSizeFor(30000, 300000, 3600000));
+        assertEquals(5, PaneWindow.paneSizeFor(15, 10));
+    }
+
+    /**
+     * Chaque fenêtre reconstituée doit donner le premier et le dernier élément
+     * du parcours direct de l'historique sur les mêmes volets clos
+     */
+    public void testCombineMatchesDirectScan() {
+        Random random = new Random(9);
+        int[] sizes = {10, 50, 500};
+        PaneWindow panes = new PaneWindow(10, 51);
+        PaneWindow.Span span = new PaneWindow.Span();
+        int[] cells = new int[3000];
+        int pos = 0;
+
+        for (int top = 0; top < cells.length; top++) {
+            pos += random.nextInt(3);
+            cells[top] = pos;
+            boolean opened = panes.add(top, pos);
+
+            assertEquals(top > 0 && top % 10 == 0, opened);
+            if (opened) {
+                for (int size : sizes) {
+                    assertTrue(panes.combine(size / 10, span));
+                    int first = Math.max(0, top - size);
+                    assertEquals(first, span.firstPosition());
+                    assertEquals(cells[first], span.firstValue());
+                    assertEquals(top - 1, span.lastPosition());
+                    assertEquals(cells[top - 1], span.lastValue());
+                    assertEquals(top - first, span.count());
+                }
+            }
+        }
+    }
+
+    public void testLateElementUpdatesItsPane() {
+        PaneWindow panes = new PaneWindow(10, 3);
+        PaneWindow.Span span = new PaneWindow.Span();
+        panes.add(12, 1);
+        panes.add(25, 2);
+        panes.add(31, 3);
+        panes.add(11, 7);  // volet 1 encore conservé
+        assertFalse(panes.add(3, 9)); // volet 0 sorti des volets conservés : ignoré
+
+        assertTrue(panes.combine(2, span));
+        assertEquals(11, span.firstPosition());
+        assertEquals(7, span.firstValue());
+        assertEquals(25, span.lastPosition());
+        assertEquals(3, span.count());
+    }
+
+    public void testSinglePane() {
+        PaneWindow panes = new PaneWindow(30000, 3);
+        PaneWindow.Span span = new PaneWindow.Span();
+        panes.add(61000, 4);
+        panes.add(89000, 2);
+        panes.add(95000, 1);
+
+        assertTrue(panes.pane(2, span));
+        assertEquals(2, span.count());
+        assertEquals(4, span.firstValue());
+        assertEquals(2, span.lastValue());
+        assertFalse(panes.pane(1, span));
+        assertFalse(panes.pane(0, span));
+    }
+
+    public void testEmptyPanesAreSkipped() {
+        PaneWindow panes = new PaneWindow(10, 4);
+        PaneWindow.Span span = new PaneWindow.Span();
+        panes.add(5, 1);
+        panes.add(35, 2);
+        assertTrue(panes.combine(3, span));
+        assertEquals(1, span.count());
+        assertFalse(panes.combine(2, span));
+    }
+
+    public void testRestoredPanesBehaveLikeOriginal() throws IOException {
+        PaneWindow original = new PaneWindow(10, 4);
+        Random random = new Random(7);
+        for (int top = 0; top < 57; top++) {
+            original.add(top, random.nextInt(100));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        original.writeTo(new DataOutputStream(bytes));
+        PaneWindow restored = new PaneWindow(10, 4);
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        for (int top = 57; top < 90; top++) {
+            int value = random.nextInt(100);
+            assertEquals(original.add(top, value), restored.add(top, value));
+            PaneWindow.Span expected = new PaneWindow.Span();
+            PaneWindow.Span actual = new PaneWindow.Span();
+            assertEquals(original.combine(3, expected), restored.combine(3, actual));
+            assertEquals(expected.count(), actual.count());
+            assertEquals(expected.firstValue(), actual.firstValue());
+            assertEquals(expected.lastValue(), actual.lastValue());
+        }
+    }
+}
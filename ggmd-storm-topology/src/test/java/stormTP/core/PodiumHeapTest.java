@@ -0,0 +1,79 @@
+package stormTP.core;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests du podium borné
+ */
+public class PodiumHeapTest extends TestCase {
+
+    /**
+     * Exemple de AppTest.test1TortoisecomputeRank (maxcel = 200)
+     */
+    public void testPodiumOfExampleFrame() {
+        int[] cells = {594, 523, 667, 578, 601, 564, 563, 511, 559, 523};
+        PodiumHeap heap = new PodiumHeap(3);
+        for (int id = 0; id < cells.length; id++) {
+            heap.offer(id, cells[id]);
+        }
+        PodiumHeap.Podium podium = new PodiumHeap.Podium();
+        heap.drainTo(podium);
+
+        assertEquals(3, podium.size());
+        assertEquals(2, podium.id(0));
+        assertEquals(4, podium.id(1));
+        assertEquals(0, podium.id(2));
+        assertEquals(3, podium.rank(2));
+        assertFalse(podium.isTie(2));
+    }
+
+    public void testTiesAtBoundaryAreKept() {
+        // K = 8 : les ids 1 et 9 sont 8ex et doivent tous deux figurer sur le podium
+        int[] cells = {594, 523, 667, 578, 601, 564, 563, 511, 559, 523};
+        PodiumHeap heap = new PodiumHeap(8);
+        for (int id = 0; id < cells.length; id++) {
+            heap.offer(id, cells[id]);
+        }
+        PodiumHeap.Podium podium = new PodiumHeap.Podium();
+        heap.drainTo(podium);
+
+        assertEquals(9, podium.size());
+        assertEquals(1, podium.id(7));
+        assertEquals(9, podium.id(8));
+        assertEquals(8, podium.rank(8));
+        assertTrue(podium.isTie(7));
+        assertTrue(podium.isTie(8));
+    }
+
+    public void testPodiumMatchesFullRanking() {
+        Random random = new Random(11);
+        int n = 50_000;
+        int k = 1_000;
+        int[] cells = new int[n];
+        PodiumHeap heap = new PodiumHeap(k);
+        for (int id = 0; id < n; id++) {
+            cells[id] = random.nextInt(5_000);
+            heap.offer(id, cells[id]);
+        }
+        PodiumHeap.Podium podium = new PodiumHeap.Podium();
+        heap.drainTo(podium);
+
+        FrameRanker.Ranking expected = new FrameRanker.Ranking();
+        FrameRanker.rankByComparison(cells, n, expected);
+        int expectedSize = 0;
+        for (int id = 0; id < n; id++) {
+            if (expected.rank(id) <= k) {
+                expectedSize++;
+            }
+        }
+
+        assertEquals(expectedSize, podium.size());
+        for (int pos = 0; pos < podium.size(); pos++) {
+            int id = podium.id(pos);
+            assertEquals(expected.rank(id), podium.rank(pos));
+            assertEquals(expected.isTie(id), podium.isTie(pos));
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package stormTP.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests du stockage en colonnes de l'état par tortue
+ */
+public class RunnerStoreTest extends TestCase {
+
+    public void testDenseAndSparseIdsMatchHashMap() {
+        RunnerStore store = new RunnerStore(1000);
+        RunnerStore.LongColumn sums = store.longColumn();
+        Map<Integer, Long> reference = new HashMap<>();
+
+        Random random = new Random(42);
+        for (int i = 0; i < 20000; i++) {
+            // Ids denses, grands et négatifs mélangés
+            int id = random.nextInt(3) == 0 ? random.nextInt() : random.nextInt(1000);
+            int slot = store.find(id);
+            if (slot < 0) {
+                slot = store.add(id);
+            }
+            assertEquals(id, store.id(slot));
+            sums.set(slot, sums.get(slot) + i);
+            reference.merge(id, (long) i, Long::sum);
+        }
+
+        assertEquals(reference.size(), store.size());
+        for (Map.Entry<Integer, Long> e : reference.entrySet()) {
+            assertEquals(e.getValue().longValue(), sums.get(store.find(e.getKey())));
+        }
+    }
+
+    public void testColumnsGrowWithSlots() {
+        RunnerStore store = new RunnerStore();
+        RunnerStore.IntColumn values = store.intColumn();
+        RunnerStore.ObjectColumn<String> names = store.objectColumn();
+        for (int id = 0; id < 100; id++) {
+            int slot = store.add(id);
+            assertEquals(0, values.get(slot));
+            assertNull(names.get(slot));
+            values.set(slot, id * 2);
+            names.set(slot, "Turtle" + id);
+        }
+        assertEquals(-1, store.find(100));
+        assertEquals(198, values.get(store.find(99)));
+        assertEquals("Turtle7", names.get(store.find(7)));
+    }
+
+    public void testDuplicateIdIsRejected() {
+        RunnerStore store = new RunnerStore();
+        store.add(5);
+        try {
+            store.add(5);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // attendu
+        }
+    }
+
+    public void testChangesAreDrainedOnce() {
+        RunnerStore store = new RunnerStore();
+        for (int id = 0; id < 10; id++) {
+            store.touch(store.add(id));
+        }
+        store.trackChanges();
+        for (int id = 10; id < 100; id++) {
+            store.add(id);
+        }
+        store.touch(store.find(42));
+        store.touch(store.find(3));
+        store.touch(store.find(42));
+
+        List<Integer> changed = new ArrayList<>();
+        assertEquals(2, store.drainChanges(changed::add));
+        assertEquals(Arrays.asList(42, 3), changed);
+        assertEquals(0, store.drainChanges(changed::add));
+
+        store.touch(store.find(42));
+        assertEquals(1, store.drainChanges(changed::add));
+    }
+
+    public void testRemoveMatchesHashMap() {
+        RunnerStore store = new RunnerStore(1000);
+        RunnerStore.LongColumn sums = store.longColumn();
+        Map<Integer, Long> reference = new HashMap<>();
+
+        Random random = new Random(7);
+        for (int i = 0; i < 50000; i++) {
+            // Ids denses et épars, retirés une fois sur trois
+            int id = random.nextBoolean() ? random.nextInt(2000) - 500 : random.nextInt(600);
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(id) != null, store.remove(id));
+                assertEquals(-1, store.find(id));
+            } else {
+                int slot = store.find(id);
+                if (slot < 0) {
+                    slot = store.add(id);
+                    assertEquals(0, sums.get(slot));
+                }
+                sums.set(slot, sums.get(slot) + i);
+                reference.merge(id, (long) i, Long::sum);
+            }
+        }
+
+        assertEquals(reference.size(), store.size());
+        for (Map.Entry<Integer, Long> e : reference.entrySet()) {
+            assertEquals(e.getValue().longValue(), sums.get(store.find(e.getKey())));
+        }
+    }
+
+    public void testRemovedSlotsAreReused() {
+        RunnerStore store = new RunnerStore();
+        RunnerStore.ObjectColumn<String> names = store.objectColumn();
+        for (int id = 0; id < 10; id++) {
+            names.set(store.add(id), "Turtle" + id);
+        }
+        int slot = store.find(4);
+        assertTrue(store.remove(4));
+        assertFalse(store.remove(4));
+        assertEquals(9, store.size());
+
+        assertEquals(slot, store.add(100));
+        assertNull(names.get(slot));
+        assertEquals(100, store.id(slot));
+    }
+
+    public void testIdleRunnersAreEvictedOldestFirst() {
+        RunnerStore store = new RunnerStore();
+        store.expireIdle(10);
+        for (int id = 0; id < 5; id++) {
+            store.access(store.add(id), id);
+        }
+        // La tortue 0 revient : elle devient la plus récente
+        store.access(store.find(0), 6);
+
+        List<Integer> evicted = new ArrayList<>();
+        assertEquals(0, store.evictIdle(10, slot -> evicted.add(store.id(slot))));
+        assertEquals(3, store.evictIdle(13, slot -> evicted.add(store.id(slot))));
+        assertEquals(Arrays.asList(1, 2, 3), evicted);
+        assertEquals(2, store.size());
+        assertEquals(3, store.evictions());
+        assertEquals(-1, store.find(2));
+        assertTrue(store.find(0) >= 0);
+
+        assertEquals(2, store.evictIdle(100, slot -> { }));
+        assertEquals(0, store.size());
+    }
+
+    public void testOutOfOrderAccessKeepsEvictionOrder() {
+        RunnerStore store = new RunnerStore();
+        store.expireIdle(10);
+        // Restauration : dernier accès relu dans un ordre quelconque
+        long[] times = {50, 20, 40, 10, 30};
+        for (int id = 0; id < times.length; id++) {
+            store.access(store.add(id), times[id]);
+        }
+        List<Integer> evicted = new ArrayList<>();
+        assertEquals(3, store.evictIdle(45, slot -> evicted.add(store.id(slot))));
+        assertEquals(Arrays.asList(3, 1, 4), evicted);
+        assertEquals(40, store.lastAccess(store.find(2)));
+    }
+
+    public void testRemovedIdsAreDrainedForCheckpoint() {
+        RunnerStore store = new RunnerStore();
+        store.trackChanges();
+        for (int id = 0; id < 5; id++) {
+            store.touch(store.add(id));
+        }
+        store.remove(1);
+        store.remove(3);
+
+        List<Integer> removed = new ArrayList<>();
+        assertEquals(2, store.drainRemoved(removed::add));
+        assertEquals(Arrays.asList(1, 3), removed);
+        assertEquals(0, store.drainRemoved(removed::add));
+
+        // Les cases retirées ne sont plus restituées comme modifiées
+        List<Integer> changed = new ArrayList<>();
+        assertEquals(3, store.drainChanges(slot -> changed.add(store.id(slot))));
+        assertEquals(Arrays.asList(0, 2, 4), changed);
+    }
+}
@@ -0,0 +1,83 @@
+package stormTP.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests de la fenêtre glissante par nombre d'éléments
+ */
+public class SlidingCountWindowTest extends TestCase {
+
+    public void testFiresEverySlide() {
+        SlidingCountWindow window = new SlidingCountWindow(10, 5);
+        for (int top = 1; top <= 20; top++) {
+            assertEquals(top % 5 == 0, window.add(top, top * 3));
+        }
+        assertEquals(10, window.size());
+        assertEquals(11, window.buffer().firstPosition());
+        assertEquals(20, window.buffer().lastPosition());
+        assertEquals(60, window.buffer().lastValue());
+    }
+
+    /**
+     * Même fenêtre que l'ancien SpeedBolt : historique complet trié (tri stable) par top,
+     * dont on garde les 10 derniers, avec des tops en retard et en double
+     */
+    public void testMatchesSortedHistory() {
+        Random random = new Random(7);
+        SumAggregator sum = new SumAggregator();
+        SlidingCountWindow window = new SlidingCountWindow(10, 5, sum);
+        List<int[]> history = new ArrayList<>();
+
+        for (int i = 0; i < 5000; i++) {
+            int top = i / 2 - random.nextInt(15);
+            int cells = random.nextInt(1000);
+            boolean fire = window.add(top, cells);
+
+            history.add(new int[] {top, cells});
+            history.sort(Comparator.comparingInt(s -> s[0]));
+            List<int[]> expected = history.subList(Math.max(0, history.size() - 10), history.size());
+
+            assertEquals((i + 1) % 5 == 0, fire);
+            assertEquals(expected.size(), window.size());
+            long expectedSum = 0;
+            for (int k = 0; k < expected.size(); k++) {
+                assertEquals(expected.get(k)[0], window.buffer().position(k));
+                assertEquals(expected.get(k)[1], window.buffer().value(k));
+                expectedSum += expected.get(k)[1];
+            }
+            assertEquals(expectedSum, sum.sum());
+            assertEquals(expected.size(), sum.count());
+        }
+    }
+
+    public void testRestoredWindowKeepsContentAndCadence() throws IOException {
+        SumAggregator originalSum = new SumAggregator();
+        SlidingCountWindow original = new SlidingCountWindow(10, 5, originalSum);
+        for (int top = 1; top <= 13; top++) {
+            original.add(top, top * 3);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        original.writeTo(new DataOutputStream(bytes));
+        SumAggregator restoredSum = new SumAggregator();
+        SlidingCountWindow restored = new SlidingCountWindow(10, 5, restoredSum);
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(original.added(), restored.added());
+        assertEquals(originalSum.sum(), restoredSum.sum());
+        for (int top = 14; top <= 30; top++) {
+            assertEquals(original.add(top, top), restored.add(top, top));
+            assertEquals(original.buffer().firstPosition(), restored.buffer().firstPosition());
+            assertEquals(originalSum.sum(), restoredSum.sum());
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package stormTP.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests de la fenêtre glissante temporelle
+ */
+public class SlidingTimeWindowTest extends TestCase {
+
+    /**
+     * Même contenu que l'ancien RankEvolutionBolt : liste des entrées reçues,
+     * purgée de celles à plus de 30 s de l'instant courant
+     */
+    public void testMatchesPurgedHistory() {
+        Random random = new Random(11);
+        long length = 30000;
+        SumAggregator sum = new SumAggregator();
+        SlidingTimeWindow window = new SlidingTimeWindow(length, length, sum);
+        List<long[]> history = new ArrayList<>();
+        long now = 1_700_000_000_000L;
+
+        for (int i = 0; i < 3000; i++) {
+            // Plusieurs entrées peuvent tomber sur la même milliseconde
+            now += random.nextInt(4) == 0 ? 0 : random.nextInt(2000);
+            int rang = 1 + random.nextInt(10);
+
+            window.add(now, rang);
+            window.evict(now);
+
+            history.add(new long[] {now, rang});
+            Iterator<long[]> iterator = history.iterator();
+            while (iterator.hasNext()) {
+                if (now - iterator.next()[0] > length) {
+                    iterator.remove();
+                }
+            }
+
+            assertEquals(history.size(), window.size());
+            long expectedSum = 0;
+            for (int k = 0; k < history.size(); k++) {
+                assertEquals(history.get(k)[0], window.buffer().position(k));
+                assertEquals(history.get(k)[1], window.buffer().value(k));
+                expectedSum += history.get(k)[1];
+            }
+            assertEquals(expectedSum, sum.sum());
+        }
+    }
+
+    public void testDueEverySlide() {
+        SlidingTimeWindow window = new SlidingTimeWindow(30000, 30000);
+        assertTrue(window.isDue(1000));
+        window.markFired(1000);
+        assertFalse(window.isDue(30999));
+        assertTrue(window.isDue(31000));
+    }
+
+    public void testLateElementIsInsertedInOrder() {
+        SlidingTimeWindow window = new SlidingTimeWindow(100, 100);
+        window.add(10, 1);
+        window.add(30, 3);
+        window.add(20, 2);
+        assertEquals(20, window.buffer().position(1));
+        assertEquals(3, window.buffer().lastValue());
+
+        window.evict(125);
+        assertEquals(1, window.size());
+        assertEquals(30, window.buffer().firstPosition());
+    }
+}
@@ -0,0 +1,38 @@
+package stormTP.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests de la roue de temporisation
+ */
+public class TimerWheelTest extends TestCase {
+
+    public void testExpireVisitsScheduledIdsInOrder() {
+        TimerWheel wheel = new TimerWheel(4);
+        for (int id = 0; id < 10; id++) {
+            wheel.schedule(7, id);
+        }
+        wheel.schedule(8, 42);
+
+        List<Integer> visited = new ArrayList<>();
+        assertEquals(10, wheel.expire(7, visited::add));
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), visited);
+        assertEquals(0, wheel.expire(7, visited::add));
+        assertEquals(1, wheel.size(8));
+    }
+
+    public void testNewerTickReusesSlot() {
+        TimerWheel wheel = new TimerWheel(4);
+        wheel.schedule(-1, 1);
+        wheel.schedule(3, 2);
+
+        List<Integer> visited = new ArrayList<>();
+        assertEquals(0, wheel.expire(-1, visited::add));
+        assertEquals(1, wheel.expire(3, visited::add));
+        assertEquals(Arrays.asList(2), visited);
+    }
+}
@@ -0,0 +1,40 @@
+package stormTP.core;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests du contexte de trace porté par les tuples échantillonnés
+ */
+public class TraceContextTest extends TestCase {
+
+    public void testHopsAppendWithoutChangingReceivedTrace() {
+        long[] spout = TraceContext.start(42, 3, 1_000);
+        long[] rank = TraceContext.hop(spout, 7, 1_500);
+        long[] bonus = TraceContext.hop(rank, 9, 4_000);
+
+        assertEquals(1, TraceContext.hops(spout));
+        assertEquals(2, TraceContext.hops(rank));
+        assertEquals(3, TraceContext.hops(bonus));
+        assertEquals(42, TraceContext.frameId(bonus));
+        assertEquals(3, TraceContext.task(bonus, 0));
+        assertEquals(7, TraceContext.task(bonus, 1));
+        assertEquals(9, TraceContext.task(bonus, 2));
+        assertEquals(2_500, TraceContext.nanos(bonus, 2) - TraceContext.nanos(bonus, 1));
+        assertEquals(3, spout.length);
+    }
+
+    public void testUnsampledFramesHaveNoTrace() {
+        assertNull(TraceContext.hop(null, 7, 1_500));
+        assertFalse(TraceContext.sampled(0, 0));
+        assertTrue(TraceContext.sampled(0, 100));
+        assertFalse(TraceContext.sampled(1, 100));
+        assertTrue(TraceContext.sampled(200, 100));
+        assertTrue(TraceContext.sampled(5, 1));
+    }
+
+    public void testClockIsEpochNanos() {
+        long before = System.currentTimeMillis();
+        long now = TraceContext.nowNanos() / 1_000_000L;
+        assertTrue(Math.abs(now - before) < 1_000);
+    }
+}
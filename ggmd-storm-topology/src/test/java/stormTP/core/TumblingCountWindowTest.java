@@ -0,0 +1,57 @@
+package stormTP.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests de la fenêtre sautante par nombre d'éléments
+ */
+public class TumblingCountWindowTest extends TestCase {
+
+    /**
+     * Mêmes points bonus que l'ancien ComputeBonusBolt, qui reparcourait
+     * les 15 derniers rangs de l'historique complet tous les 15 tops
+     */
+    public void testMatchesBonusOverHistory() {
+        Random random = new Random(3);
+        int total = 10;
+        SumAggregator ranks = new SumAggregator();
+        TumblingCountWindow block = new TumblingCountWindow(15, ranks);
+        List<Integer> history = new ArrayList<>();
+        int fired = 0;
+
+        for (int top = 0; top < 1000; top++) {
+            int rang = 1 + random.nextInt(total);
+            boolean complete = block.add(top, rang);
+            history.add(rang);
+
+            assertEquals(history.size() % 15 == 0, complete);
+            if (complete) {
+                int expected = 0;
+                for (int rank : history.subList(history.size() - 15, history.size())) {
+                    expected += Math.max(0, total - rank);
+                }
+                assertEquals(expected, 15L * total - ranks.sum());
+                assertEquals(top - 14, block.firstPosition());
+                assertEquals(top, block.lastPosition());
+                fired++;
+            }
+        }
+        assertEquals(1000 / 15, fired);
+    }
+
+    public void testNextBlockStartsAfterCompletion() {
+        SumAggregator sum = new SumAggregator();
+        TumblingCountWindow block = new TumblingCountWindow(2, sum);
+        assertFalse(block.add(1, 5));
+        assertTrue(block.add(2, 7));
+        assertEquals(12, sum.sum());
+        assertFalse(block.add(3, 1));
+        assertEquals(1, sum.sum());
+        assertEquals(1, block.count());
+        assertEquals(3, block.firstPosition());
+    }
+}
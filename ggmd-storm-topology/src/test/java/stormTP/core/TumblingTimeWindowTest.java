@@ -0,0 +1,36 @@
+package stormTP.core;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests de la fenêtre sautante temporelle
+ */
+public class TumblingTimeWindowTest extends TestCase {
+
+    public void testWindowsAreAligned() {
+        SumAggregator sum = new SumAggregator();
+        TumblingTimeWindow window = new TumblingTimeWindow(1000, sum);
+
+        assertTrue(window.add(1200, 1));
+        assertTrue(window.add(1999, 2));
+        assertEquals(1000, window.start());
+        assertEquals(2000, window.end());
+        assertFalse(window.isComplete(1999));
+        assertTrue(window.isComplete(2000));
+        assertEquals(3, sum.sum());
+
+        // La fenêtre suivante est [3000, 4000) : aucune fenêtre vide n'est ouverte
+        assertTrue(window.add(3500, 4));
+        assertEquals(3000, window.start());
+        assertEquals(4, sum.sum());
+        assertEquals(1, window.count());
+    }
+
+    public void testLateElementIsDropped() {
+        SumAggregator sum = new SumAggregator();
+        TumblingTimeWindow window = new TumblingTimeWindow(1000, sum);
+        window.add(2500, 1);
+        assertFalse(window.add(1500, 10));
+        assertEquals(1, sum.sum());
+    }
+}
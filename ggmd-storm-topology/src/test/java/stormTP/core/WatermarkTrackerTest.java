@@ -0,0 +1,37 @@
+package stormTP.core;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests du filigrane multi-sources
+ */
+public class WatermarkTrackerTest extends TestCase {
+
+    public void testMinimumOverAllSources() {
+        WatermarkTracker tracker = new WatermarkTracker(Arrays.asList(7, 3));
+
+        assertEquals(Long.MIN_VALUE, tracker.update(3, 1000));
+        assertEquals(900, tracker.update(7, 900));
+        assertEquals(1000, tracker.update(7, 1500));
+        assertEquals(1500, tracker.update(3, 2000));
+    }
+
+    public void testWatermarkNeverGoesBack() {
+        WatermarkTracker tracker = new WatermarkTracker(Arrays.asList(1));
+        tracker.update(1, 5000);
+        assertEquals(5000, tracker.update(1, 4000));
+        assertEquals(5000, tracker.current());
+    }
+
+    public void testUnknownSourceIsRejected() {
+        WatermarkTracker tracker = new WatermarkTracker(Arrays.asList(1));
+        try {
+            tracker.update(2, 10);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // attendu
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package stormTP.operator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.storm.Constants;
+import org.apache.storm.generated.Bolt;
+import org.apache.storm.generated.ComponentCommon;
+import org.apache.storm.generated.ComponentObject;
+import org.apache.storm.generated.GlobalStreamId;
+import org.apache.storm.generated.Grouping;
+import org.apache.storm.generated.NullStruct;
+import org.apache.storm.generated.StormTopology;
+import org.apache.storm.generated.StreamInfo;
+import org.apache.storm.metrics2.StormMetricRegistry;
+import org.apache.storm.task.IOutputCollector;
+import org.apache.storm.task.OutputCollector;
+import org.apache.storm.task.TopologyContext;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.tuple.Tuple;
+import org.apache.storm.tuple.TupleImpl;
+import org.apache.storm.utils.Utils;
+
+/**
+ * Exécution d'un bolt hors cluster, pour les tests et les benchmarks : contexte réel d'une
+ * tâche unique (métriques v2 comprises), tuples des flux d'entrée déclarés et collecteur qui
+ * compte les tuples émis, acquittés et en échec (et garde les tuples émis si demandé).
+ *
+ * La topologie déclare le composant SOURCE (une ou plusieurs tâches) dont chaque flux est une
+ * entrée du bolt : context.getThisSources() et getComponentTasks() répondent comme en cluster.
+ */
+public class BoltHarness {
+
+    public static final String COMPONENT = "bolt";
+    public static final String SOURCE = "source";
+    public static final int TASK = 1;
+    public static final int SOURCE_TASK = 2;
+
+    private final StormMetricRegistry metrics;
+    private final TopologyContext context;
+    private final Collector collector;
+
+    /**
+     * @param streams champs de chaque flux émis par le composant SOURCE, par id de flux
+     * @param record vrai pour garder les tuples émis (emissions())
+     */
+    public BoltHarness(Map<String, Fields> streams, boolean record) {
+        this(streams, 1, record);
+    }
+
+    /**
+     * @param streams champs de chaque flux émis par le composant SOURCE, par id de flux
+     * @param sourceTasks nombre de tâches de SOURCE (SOURCE_TASK, SOURCE_TASK + 1...)
+     * @param record vrai pour garder les tuples émis (emissions())
+     */
+    public BoltHarness(Map<String, Fields> streams, int sourceTasks, boolean record) {
+        this.collector = new Collector(record);
+        List<Integer> sources = new ArrayList<>();
+        for (int i = 0; i < sourceTasks; i++) {
+            sources.add(SOURCE_TASK + i);
+        }
+        Map<Integer, String> taskToComponent = new HashMap<>();
+        taskToComponent.put(TASK, COMPONENT);
+        for (int task : sources) {
+            taskToComponent.put(task, SOURCE);
+        }
+        taskToComponent.put((int) Constants.SYSTEM_TASK_ID, Constants.SYSTEM_COMPONENT_ID);
+        Map<String, List<Integer>> componentToTasks = new HashMap<>();
+        componentToTasks.put(COMPONENT, Collections.singletonList(TASK));
+        componentToTasks.put(SOURCE, sources);
+        Map<String, Map<String, Fields>> componentToStreams = new HashMap<>();
+        componentToStreams.put(SOURCE, new HashMap<>(streams));
+        componentToStreams.put(COMPONENT, new HashMap<>());
+        componentToStreams.put(Constants.SYSTEM_COMPONENT_ID,
+                Collections.singletonMap(Constants.SYSTEM_TICK_STREAM_ID, new Fields("rate_secs")));
+
+        // Chaque flux de SOURCE est une entrée du bolt
+        Map<GlobalStreamId, Grouping> inputs = new HashMap<>();
+        Map<String, StreamInfo> sourceStreams = new HashMap<>();
+        for (Map.Entry<String, Fields> stream : streams.entrySet()) {
+            inputs.put(new GlobalStreamId(SOURCE, stream.getKey()), Grouping.all(new NullStruct()));
+            sourceStreams.put(stream.getKey(), new StreamInfo(stream.getValue().toList(), false));
+        }
+        Map<String, Bolt> bolts = new HashMap<>();
+        bolts.put(COMPONENT, new Bolt(ComponentObject.serialized_java(Utils.javaSerialize("bolt")),
+                new ComponentCommon(inputs, new HashMap<>())));
+        bolts.put(SOURCE, new Bolt(ComponentObject.serialized_java(Utils.javaSerialize("source")),
+                new ComponentCommon(new HashMap<>(), sourceStreams)));
+        Map<String, Object> conf = new HashMap<>();
+        this.metrics = new StormMetricRegistry();
+
+        List<Integer> workerTasks = new ArrayList<>(sources);
+        workerTasks.add(0, TASK);
+        this.context = new TopologyContext(new StormTopology(new HashMap<>(), bolts, new HashMap<>()), conf,
+                taskToComponent, componentToTasks, componentToStreams, new HashMap<>(), "harness", null, null,
+                TASK, 6700, workerTasks, new HashMap<>(), new HashMap<>(), new HashMap<>(),
+                new HashMap<>(), new AtomicBoolean(false), metrics);
+    }
+
+    public TopologyContext context() {
+        return context;
+    }
+
+    public OutputCollector collector() {
+        return new OutputCollector(collector);
+    }
+
+    /**
+     * Tuple reçu de SOURCE sur le flux streamId
+     */
+    public Tuple tuple(String streamId, Object... values) {
+        return tuple(SOURCE_TASK, streamId, values);
+    }
+
+    /**
+     * Tuple reçu de la tâche sourceTask de SOURCE sur le flux streamId
+     */
+    public Tuple tuple(int sourceTask, String streamId, Object... values) {
+        return new TupleImpl(context, new ArrayList<>(Arrays.asList(values)), SOURCE, sourceTask, streamId);
+    }
+
+    /**
+     * Tick tuple de Storm (topology.tick.tuple.freq.secs)
+     */
+    public Tuple tick() {
+        return new TupleImpl(context, new ArrayList<>(Collections.singletonList(1)), Constants.SYSTEM_COMPONENT_ID,
+                (int) Constants.SYSTEM_TASK_ID, Constants.SYSTEM_TICK_STREAM_ID);
+    }
+
+    /**
+     * Valeurs des tuples émis depuis le dernier appel, tous flux confondus
+     */
+    public List<List<Object>> emissions() {
+        List<List<Object>> emissions = new ArrayList<>(collector.emissions);
+        collector.emissions.clear();
+        collector.streams.clear();
+        return emissions;
+    }
+
+    /**
+     * Valeurs des tuples émis sur le flux streamId depuis le dernier appel ; les autres sont gardés
+     */
+    public List<List<Object>> emissions(String streamId) {
+        List<List<Object>> emissions = new ArrayList<>();
+        for (int i = 0; i < collector.emissions.size(); i++) {
+            if (collector.streams.get(i).equals(streamId)) {
+                emissions.add(collector.emissions.remove(i));
+                collector.streams.remove(i);
+                i--;
+            }
+        }
+        return emissions;
+    }
+
+    /**
+     * Valeur du compteur name enregistré par le bolt (métriques v2)
+     */
+    public long counter(String name) {
+        return metrics.getTaskCounters(TASK).get(name).getCount();
+    }
+
+    /**
+     * Valeur de la jauge name enregistrée par le bolt (métriques v2)
+     */
+    public Object gauge(String name) {
+        return metrics.getTaskGauges(TASK).get(name).getValue();
+    }
+
+    public long emitted() {
+        return collector.emitted;
+    }
+
+    public long acked() {
+        return collector.acked;
+    }
+
+    public long failed() {
+        return collector.failed;
+    }
+
+    private static class Collector implements IOutputCollector {
+        long emitted;
+        long acked;
+        long failed;
+        final boolean record;
+        final List<List<Object>> emissions = new ArrayList<>();
+        final List<String> streams = new ArrayList<>();
+
+        Collector(boolean record) {
+            this.record = record;
+        }
+
+        @Override
+        public List<Integer> emit(String streamId, Collection<Tuple> anchors, List<Object> tuple) {
+            emitted++;
+            if (record) {
+                emissions.add(tuple);
+                streams.add(streamId);
+            }
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void emitDirect(int taskId, String streamId, Collection<Tuple> anchors, List<Object> tuple) {
+            emitted++;
+        }
+
+        @Override
+        public void ack(Tuple input) {
+            acked++;
+        }
+
+        @Override
+        public void fail(Tuple input) {
+            failed++;
+        }
+
+        @Override
+        public void resetTimeout(Tuple input) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void reportError(Throwable error) {
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package stormTP.operator;
+
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.utils.Utils;
+
+/**
+ * Tests des fenêtres multiples de MultiRankEvolutionBolt en temps d'événement
+ */
+public class MultiRankEvolutionBoltTest extends TestCase {
+
+    // Début d'un volet de 30 s
+    static final long BASE = 30_000L * 56_666_667L;
+
+    private BoltHarness harness;
+    private MultiRankEvolutionBolt bolt;
+
+    @Override
+    protected void setUp() {
+        harness = new BoltHarness(Collections.singletonMap(Utils.DEFAULT_STREAM_ID,
+                new Fields("id", "top", "rang", "exaequo", "total", "maxcel", "timestamp", "trace")), true);
+        bolt = new MultiRankEvolutionBolt(30_000L, 60_000L);
+        bolt.prepare(new HashMap<>(), harness.context(), harness.collector());
+    }
+
+    public void testPanesFollowFrameTimestampsNotArrival() {
+        // Frames d'une minute rejouées d'un coup : seuls leurs timestamps découpent les volets
+        rank(0, 3);
+        rank(20, 2);
+        assertEquals(0, harness.emissions().size());
+
+        rank(35, 2);
+        List<List<Object>> windows = harness.emissions();
+        assertEquals(2, windows.size());
+        assertWindow(windows.get(0), 30_000L, 30, "En progression");
+        assertWindow(windows.get(1), 60_000L, 30, "En progression");
+
+        rank(50, 3);
+        rank(61, 1);
+        windows = harness.emissions();
+        assertEquals(2, windows.size());
+        assertWindow(windows.get(0), 30_000L, 60, "En régression");
+        assertWindow(windows.get(1), 60_000L, 60, "Constant");
+        assertEquals(BASE + 61_000, windows.get(1).get(5));
+    }
+
+    private void rank(int second, int rang) {
+        bolt.execute(harness.tuple(Utils.DEFAULT_STREAM_ID, 0, second, rang, false, 1, 100,
+                BASE + second * 1000L, null));
+    }
+
+    private static void assertWindow(List<Object> values, long duration, int endSecond, String evolution) {
+        assertEquals(0, values.get(0));
+        assertEquals(duration, values.get(2));
+        assertEquals(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(BASE + endSecond * 1000L)), values.get(3));
+        assertEquals(evolution, values.get(4));
+    }
+}
@@ -0,0 +1,99 @@
+package stormTP.operator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.utils.Utils;
+import stormTP.core.CellHistogram;
+
+/**
+ * Tests des frames en attente d'une partition : frames rejouées et frames jamais classées
+ */
+public class PartitionRankBoltTest extends TestCase {
+
+    private BoltHarness harness;
+    private PartitionRankBolt bolt;
+
+    @Override
+    protected void setUp() {
+        Map<String, Fields> streams = new HashMap<>();
+        streams.put(Utils.DEFAULT_STREAM_ID,
+                new Fields("id", "top", "nbCellsParcourus", "total", "maxcel", "timestamp", "trace"));
+        streams.put(RunnerSplitBolt.FRAME_END_STREAM, new Fields("top"));
+        streams.put(RankMergeBolt.COUNTS_STREAM, new Fields("top", "values", "greater", "counts"));
+        harness = new BoltHarness(streams, true);
+        bolt = new PartitionRankBolt();
+        bolt.prepare(new HashMap<>(), harness.context(), harness.collector());
+    }
+
+    public void testReplayedFrameReplacesEndedFrame() {
+        frame(5, 30, 10);
+        List<Object> histogram = histogram();
+
+        // Frame rejouée par le spout avant l'arrivée des comptes
+        frame(5, 30, 10);
+        assertEquals(2, harness.failed());
+        assertEquals(1, harness.counter("replayedFrames"));
+        List<Object> replayed = histogram();
+        assertTrue(Arrays.equals((int[]) histogram.get(2), (int[]) replayed.get(2)));
+        assertTrue(Arrays.equals((int[]) histogram.get(3), (int[]) replayed.get(3)));
+
+        counts(histogram);
+        List<List<Object>> ranks = harness.emissions(Utils.DEFAULT_STREAM_ID);
+        assertEquals(2, ranks.size());
+        assertEquals(1, ranks.get(0).get(2));
+        assertEquals(2, ranks.get(1).get(2));
+        assertEquals(0, harness.gauge("pendingFrames"));
+    }
+
+    public void testFramesOlderThanRankedTopExpire() {
+        frame(1, 10, 20);
+        List<Object> lost = histogram();
+        frame(2, 12, 25);
+        List<Object> histogram = histogram();
+        assertEquals(2, harness.gauge("pendingFrames"));
+
+        // Comptes du top 1 perdus : la frame expire quand le top 2 est classé
+        counts(histogram);
+        assertEquals(2, harness.emissions(Utils.DEFAULT_STREAM_ID).size());
+        assertEquals(0, harness.gauge("pendingFrames"));
+        assertEquals(1, harness.counter("expiredFrames"));
+        assertEquals(2, harness.failed());
+
+        // Comptes arrivés trop tard : plus rien à classer
+        counts(lost);
+        assertEquals(0, harness.emissions(Utils.DEFAULT_STREAM_ID).size());
+    }
+
+    /**
+     * Tortues d'une frame (id = position, cells donnés) puis fin de frame
+     */
+    private void frame(int top, int... cells) {
+        for (int id = 0; id < cells.length; id++) {
+            bolt.execute(harness.tuple(Utils.DEFAULT_STREAM_ID, id, top, cells[id], cells.length, 100,
+                    1_700_000_000_000L + top, null));
+        }
+        bolt.execute(harness.tuple(RunnerSplitBolt.FRAME_END_STREAM, top));
+    }
+
+    private List<Object> histogram() {
+        List<List<Object>> histograms = harness.emissions(PartitionRankBolt.HISTOGRAM_STREAM);
+        assertEquals(1, histograms.size());
+        return histograms.get(0);
+    }
+
+    /**
+     * Comptes globaux de RankMergeBolt pour l'histogramme de la seule partition
+     */
+    private void counts(List<Object> histogram) {
+        CellHistogram global = CellHistogram.merge(Collections.singletonList(
+                CellHistogram.fromArrays((int[]) histogram.get(2), (int[]) histogram.get(3), null)));
+        bolt.execute(harness.tuple(RankMergeBolt.COUNTS_STREAM, histogram.get(0), global.values(), global.greater(),
+                global.counts()));
+    }
+}
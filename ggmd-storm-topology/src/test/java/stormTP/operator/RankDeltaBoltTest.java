@@ -0,0 +1,154 @@
+package stormTP.operator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.utils.Utils;
+
+/**
+ * Tests des changements de rang : rangs inchangés supprimés, snapshots et conflation
+ */
+public class RankDeltaBoltTest extends TestCase {
+
+    private static final int RUNNERS = 3;
+
+    private BoltHarness harness;
+    private RankDeltaBolt bolt;
+
+    public void testUnchangedRanksAreNotEmitted() {
+        start(0, 0, 0);
+        frame(1, now(), 1, 2, 3);
+        assertRanks(harness.emissions(), "0@1=1", "1@1=2", "2@1=3");
+
+        frame(2, now(), 1, 2, 3);
+        assertEquals(0, harness.emissions().size());
+
+        // Les tortues 0 et 1 échangent leurs rangs, puis 1 et 2 deviennent ex aequo (rang 1 inchangé)
+        frame(3, now(), 2, 1, 3);
+        assertRanks(harness.emissions(), "0@3=2", "1@3=1");
+        frame(4, now(), 2, 1, 1);
+        List<List<Object>> changes = harness.emissions();
+        assertRanks(changes, "1@4=1", "2@4=1");
+        assertEquals(true, changes.get(0).get(3));
+        assertEquals(true, changes.get(1).get(3));
+        assertEquals(RUNNERS * 4L, harness.gauge("ranksReceived"));
+        assertEquals(7L, harness.gauge("ranksEmitted"));
+    }
+
+    public void testSnapshotWaitsForEveryRankOfTheFrame() {
+        start(10, 0, 0);
+        frame(0, now(), 1, 2, 3);
+        // Changements, puis classement complet une fois la frame reçue
+        assertRanks(harness.emissions(), "0@0=1", "1@0=2", "2@0=3", "0@0=1", "1@0=2", "2@0=3");
+        for (int top = 1; top < 10; top++) {
+            frame(top, now(), 1, 2, 3);
+        }
+        assertEquals(0, harness.emissions().size());
+
+        // Frame du snapshot : la tortue 0 passe 3e avant que les autres rangs ne soient arrivés
+        rank(0, 10, 3, now());
+        assertRanks(harness.emissions(), "0@10=3");
+        rank(1, 10, 1, now());
+        rank(2, 10, 2, now());
+        assertRanks(harness.emissions(), "1@10=1", "2@10=2", "0@10=3", "1@10=1", "2@10=2");
+    }
+
+    public void testBatchFrameTakesSnapshotAtOnce() {
+        start(5, 0, 0);
+        batch(0, 1, 2, 3);
+        assertEquals(2 * RUNNERS, harness.emissions().size());
+        batch(4, 1, 2, 3);
+        assertEquals(0, harness.emissions().size());
+        batch(5, 2, 1, 3);
+        assertRanks(harness.emissions(), "0@5=2", "1@5=1", "0@5=2", "1@5=1", "2@0=3");
+    }
+
+    public void testLateStreamConflatesChangesUntilCaughtUp() {
+        start(0, 1000, 60_000);
+        frame(1, now(), 1, 2, 3);
+        assertEquals(RUNNERS, harness.emissions().size());
+
+        // Flux en retard de 10 s : les changements sont retenus, seul le dernier rang compte
+        long late = now() - 10_000;
+        frame(2, late, 2, 1, 3);
+        frame(3, late, 3, 1, 2);
+        frame(4, late, 2, 1, 3);
+        assertEquals(0, harness.emissions().size());
+        assertEquals(6L, harness.gauge("ranksConflated"));
+
+        // Retour à l'heure : chaque tortue marquée est émise une fois avec son dernier rang
+        rank(1, 5, 1, now());
+        assertRanks(harness.emissions(), "0@4=2", "1@2=1", "2@4=3");
+        rank(2, 5, 2, now());
+        assertRanks(harness.emissions(), "2@5=2");
+    }
+
+    public void testTickFlushesConflatedChangesOfStoppedStream() throws InterruptedException {
+        start(0, 1000, 50);
+        frame(1, now(), 1, 2, 3);
+        harness.emissions();
+        frame(2, now() - 10_000, 2, 1, 3);
+        Thread.sleep(60);
+
+        // Plus aucun tuple : le tick émet les changements retenus, sans ancre
+        bolt.execute(harness.tick());
+        assertRanks(harness.emissions(), "0@2=2", "1@2=1");
+        assertEquals(RUNNERS + 2L, harness.gauge("ranksEmitted"));
+    }
+
+    private void start(int snapshotTops, long maxLagMs, long conflateMs) {
+        Map<String, Fields> streams = new HashMap<>();
+        streams.put(Utils.DEFAULT_STREAM_ID,
+                new Fields("id", "top", "rang", "exaequo", "total", "maxcel", "timestamp", "trace"));
+        streams.put(GiveRankBolt.BATCH_STREAM,
+                new Fields("top", "total", "maxcel", "ids", "rangs", "exaequos", "timestamp", "trace"));
+        harness = new BoltHarness(streams, true);
+        bolt = new RankDeltaBolt(snapshotTops, maxLagMs, conflateMs);
+        bolt.prepare(new HashMap<>(), harness.context(), harness.collector());
+    }
+
+    private static long now() {
+        return System.currentTimeMillis();
+    }
+
+    private void rank(int id, int top, int rang, long timestamp) {
+        bolt.execute(harness.tuple(Utils.DEFAULT_STREAM_ID, id, top, rang, false, RUNNERS, 100, timestamp, null));
+    }
+
+    /**
+     * Un tuple par tortue ; deux rangs égaux sont ex aequo
+     */
+    private void frame(int top, long timestamp, int... rangs) {
+        for (int id = 0; id < rangs.length; id++) {
+            boolean exaequo = false;
+            for (int other = 0; other < rangs.length; other++) {
+                exaequo |= other != id && rangs[other] == rangs[id];
+            }
+            bolt.execute(harness.tuple(Utils.DEFAULT_STREAM_ID, id, top, rangs[id], exaequo, RUNNERS, 100,
+                    timestamp, null));
+        }
+    }
+
+    private void batch(int top, int... rangs) {
+        int[] ids = new int[rangs.length];
+        for (int id = 0; id < ids.length; id++) {
+            ids[id] = id;
+        }
+        bolt.execute(harness.tuple(GiveRankBolt.BATCH_STREAM, top, RUNNERS, 100, ids, rangs,
+                new boolean[rangs.length], now(), null));
+    }
+
+    /**
+     * Rangs émis, "id@top=rang" dans l'ordre d'émission
+     */
+    private static void assertRanks(List<List<Object>> emissions, String... expected) {
+        assertEquals(expected.length, emissions.size());
+        for (int i = 0; i < expected.length; i++) {
+            List<Object> values = emissions.get(i);
+            assertEquals(expected[i], values.get(0) + "@" + values.get(1) + "=" + values.get(2));
+        }
+    }
+}
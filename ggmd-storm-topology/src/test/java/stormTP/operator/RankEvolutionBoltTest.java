@@ -0,0 +1,166 @@
+package stormTP.operator;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.utils.Utils;
+
+/**
+ * Tests de RankEvolutionBolt en temps d'événement : fermeture des fenêtres au filigrane,
+ * rangs en retard (LATE_STREAM) et frames rejouées
+ */
+public class RankEvolutionBoltTest extends TestCase {
+
+    static final long WINDOW_MS = 30_000;
+    static final long LATENESS_MS = 1_000;
+    // Début d'une fenêtre de 30 s
+    static final long BASE = WINDOW_MS * 56_666_667L;
+
+    private BoltHarness harness;
+
+    public void testWindowClosesWhenWatermarkPassesItsEnd() {
+        RankEvolutionBolt bolt = start(true, 0);
+        rank(bolt, 0, 0, 3);
+        rank(bolt, 0, 10, 2);
+        rank(bolt, 0, 29, 1);
+        // Rangs d'une fenêtre suivante : sans filigrane amont, ils ne ferment rien
+        rank(bolt, 0, 45, 1);
+        assertEquals(0, harness.emissions().size());
+
+        watermark(bolt, BASE + WINDOW_MS);
+        assertEquals(0, harness.emissions().size());
+
+        // Fin de fenêtre plus le retard toléré
+        watermark(bolt, BASE + WINDOW_MS + LATENESS_MS);
+        List<List<Object>> windows = harness.emissions(Utils.DEFAULT_STREAM_ID);
+        assertEquals(1, windows.size());
+        assertEquals(0, windows.get(0).get(0));
+        assertEquals(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date(BASE + WINDOW_MS)), windows.get(0).get(2));
+        assertEquals("En progression", windows.get(0).get(3));
+    }
+
+    public void testRanksOfClosedWindowGoToLateStream() {
+        RankEvolutionBolt bolt = start(false, 0);
+        rank(bolt, 0, 0, 1);
+        rank(bolt, 0, 10, 2);
+        // Filigrane déduit des données : 40 s ferment la première fenêtre
+        rank(bolt, 0, 40, 2);
+        List<List<Object>> windows = harness.emissions(Utils.DEFAULT_STREAM_ID);
+        assertEquals(1, windows.size());
+        assertEquals("En régression", windows.get(0).get(3));
+
+        rank(bolt, 0, 20, 5);
+        List<List<Object>> late = harness.emissions(RankEvolutionBolt.LATE_STREAM);
+        assertEquals(1, late.size());
+        assertEquals(0, late.get(0).get(0));
+        assertEquals(20, late.get(0).get(1));
+        assertEquals(5, late.get(0).get(2));
+        assertEquals(BASE + 20_000, late.get(0).get(3));
+        assertEquals(1, harness.counter("lateRanks"));
+        assertEquals(0, harness.emissions().size());
+    }
+
+    public void testReplayedFramesDoNotChangeWindows() {
+        RankEvolutionBolt reference = start(false, 0);
+        race(reference, 0, 150);
+        List<String> expected = windows(harness.emissions(Utils.DEFAULT_STREAM_ID));
+        assertEquals(3 * 4, expected.size());
+
+        // Frames 50..89 rejouées par le spout après un échec : fenêtre close ou encore ouverte
+        RankEvolutionBolt replayed = start(false, 0);
+        race(replayed, 0, 90);
+        race(replayed, 50, 90);
+        race(replayed, 90, 150);
+        assertEquals(expected, windows(harness.emissions(Utils.DEFAULT_STREAM_ID)));
+        assertEquals(3 * 10, harness.emissions(RankEvolutionBolt.LATE_STREAM).size());
+    }
+
+    public void testBacklogFiresEveryWindowBetweenTicks() {
+        // Évaluation à chaque tuple
+        RankEvolutionBolt eager = start(false, 0, 0);
+        backlog(eager);
+        List<String> expected = windows(harness.emissions(Utils.DEFAULT_STREAM_ID));
+        // 20 fenêtres de la tortue 0, la dernière pas encore close ; 2 de la tortue 1
+        assertEquals(19 + 2, expected.size());
+
+        // Tick tuples : tout l'arriéré arrive entre deux ticks, puis la tortue 1 est retirée
+        RankEvolutionBolt ticked = start(false, 1, 3 * WINDOW_MS);
+        backlog(ticked);
+        ticked.execute(harness.tick());
+        assertEquals(expected, windows(harness.emissions(Utils.DEFAULT_STREAM_ID)));
+        assertEquals(1L, harness.gauge("evictedRunners"));
+    }
+
+    /**
+     * Tâche neuve ; avec watermarks, le bolt reçoit aussi WATERMARK_STREAM de SOURCE
+     */
+    RankEvolutionBolt start(boolean watermarks, int tickSeconds) {
+        return start(watermarks, tickSeconds, 0);
+    }
+
+    RankEvolutionBolt start(boolean watermarks, int tickSeconds, long idleMs) {
+        Map<String, Fields> streams = new HashMap<>();
+        streams.put(Utils.DEFAULT_STREAM_ID,
+                new Fields("id", "top", "rang", "exaequo", "total", "maxcel", "timestamp", "trace"));
+        if (watermarks) {
+            streams.put(GiveRankBolt.WATERMARK_STREAM, new Fields("watermark"));
+        }
+        harness = new BoltHarness(streams, true);
+        RankEvolutionBolt bolt = new RankEvolutionBolt(WINDOW_MS, LATENESS_MS, tickSeconds, idleMs);
+        bolt.prepare(new HashMap<>(), harness.context(), harness.collector());
+        return bolt;
+    }
+
+    /**
+     * Rang d'une tortue dans la frame de la seconde second (top = second)
+     */
+    void rank(RankEvolutionBolt bolt, int id, int second, int rang) {
+        bolt.execute(harness.tuple(Utils.DEFAULT_STREAM_ID, id, second, rang, false, 3, 100,
+                BASE + second * 1000L, null));
+    }
+
+    void watermark(RankEvolutionBolt bolt, long watermark) {
+        bolt.execute(harness.tuple(GiveRankBolt.WATERMARK_STREAM, watermark));
+    }
+
+    /**
+     * Frames des secondes [from, to) : trois tortues dont les rangs tournent
+     */
+    void race(RankEvolutionBolt bolt, int from, int to) {
+        for (int second = from; second < to; second++) {
+            for (int id = 0; id < 3; id++) {
+                rank(bolt, id, second, 1 + (second / 7 + id) % 3);
+            }
+        }
+    }
+
+    /**
+     * Rejeu d'un enregistrement à pleine vitesse : 600 frames d'une seconde pour la tortue 0,
+     * la tortue 1 s'arrêtant après 60 s
+     */
+    void backlog(RankEvolutionBolt bolt) {
+        for (int second = 0; second < 600; second++) {
+            rank(bolt, 0, second, 1 + (second / 7) % 3);
+            if (second < 60) {
+                rank(bolt, 1, second, 1 + (second / 11) % 3);
+            }
+        }
+    }
+
+    /**
+     * Fenêtres émises, sans le temps d'événement à l'évaluation qui dépend de l'instant d'évaluation
+     */
+    static List<String> windows(List<List<Object>> emissions) {
+        List<String> windows = new ArrayList<>();
+        for (List<Object> values : emissions) {
+            windows.add(values.get(0) + " " + values.get(2) + " " + values.get(3));
+        }
+        return windows;
+    }
+}
@@ -0,0 +1,68 @@
+package stormTP.operator;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.apache.storm.tuple.Fields;
+
+/**
+ * Tests de la fusion des histogrammes de deux partitions : histogrammes rejoués et tops incomplets
+ */
+public class RankMergeBoltTest extends TestCase {
+
+    private static final int PARTITIONS = 2;
+
+    private BoltHarness harness;
+    private RankMergeBolt bolt;
+
+    @Override
+    protected void setUp() {
+        harness = new BoltHarness(Collections.singletonMap(PartitionRankBolt.HISTOGRAM_STREAM,
+                new Fields("top", "partitions", "values", "counts")), PARTITIONS, true);
+        bolt = new RankMergeBolt();
+        bolt.prepare(new HashMap<>(), harness.context(), harness.collector());
+    }
+
+    public void testReplayedHistogramReplacesPrevious() {
+        histogram(0, 1, 30);
+        // Frame rejouée : la partition renvoie son histogramme
+        histogram(0, 1, 30);
+        assertEquals(1, harness.failed());
+        assertEquals(1, harness.counter("replayedHistograms"));
+        assertEquals(0, harness.emitted());
+
+        histogram(1, 1, 20);
+        List<List<Object>> counts = harness.emissions(RankMergeBolt.COUNTS_STREAM);
+        assertEquals(1, counts.size());
+        assertTrue(Arrays.equals(new int[] {30, 20}, (int[]) counts.get(0).get(1)));
+        assertTrue(Arrays.equals(new int[] {1, 1}, (int[]) counts.get(0).get(3)));
+        assertEquals(2, harness.acked());
+        assertEquals(0, harness.gauge("pendingMerges"));
+    }
+
+    public void testIncompleteTopsExpire() {
+        // Histogramme de la seconde partition perdu pour le top 1
+        histogram(0, 1, 30);
+        histogram(0, 2, 31);
+        assertEquals(2, harness.gauge("pendingMerges"));
+        histogram(1, 2, 21);
+
+        assertEquals(1, harness.emissions(RankMergeBolt.COUNTS_STREAM).size());
+        assertEquals(1, harness.counter("expiredMerges"));
+        assertEquals(1, harness.failed());
+        assertEquals(0, harness.gauge("pendingMerges"));
+    }
+
+    /**
+     * Histogramme de la partition d'indice partition pour un top (une tortue par valeur)
+     */
+    private void histogram(int partition, int top, int... values) {
+        int[] counts = new int[values.length];
+        Arrays.fill(counts, 1);
+        bolt.execute(harness.tuple(BoltHarness.SOURCE_TASK + partition, PartitionRankBolt.HISTOGRAM_STREAM,
+                top, PARTITIONS, values, counts));
+    }
+}
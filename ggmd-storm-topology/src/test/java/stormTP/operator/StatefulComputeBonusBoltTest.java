@@ -0,0 +1,125 @@
+package stormTP.operator;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.apache.storm.state.InMemoryKeyValueState;
+import org.apache.storm.state.KeyValueState;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.utils.Utils;
+
+/**
+ * Tests de la restauration de l'état des bonus : checkpoint (prePrepare), rollback et
+ * redémarrage (initState)
+ */
+public class StatefulComputeBonusBoltTest extends TestCase {
+
+    private static final int RUNNERS = 3;
+
+    private BoltHarness harness;
+    private KeyValueState<Integer, byte[]> state;
+    private long txid;
+
+    @Override
+    protected void setUp() {
+        state = new InMemoryKeyValueState<>();
+    }
+
+    public void testRollbackReplaysBlockFromCheckpoint() {
+        StatefulComputeBonusBolt bolt = start();
+        race(bolt, 0, 10);
+        checkpoint(bolt);
+        race(bolt, 10, 15);
+        assertScores(30, 15, 0);
+
+        // Tuples postérieurs au checkpoint rejoués : le bloc ne compte qu'une fois
+        bolt.preRollback();
+        state.rollback();
+        race(bolt, 10, 15);
+        assertScores(30, 15, 0);
+
+        race(bolt, 15, 30);
+        assertScores(60, 30, 0);
+    }
+
+    public void testReplayedRanksAreIgnored() {
+        StatefulComputeBonusBolt bolt = start();
+        race(bolt, 0, 10);
+        // Frames en échec rejouées sans rollback : le bloc ne se complète pas plus tôt
+        race(bolt, 5, 10);
+        assertScores();
+        assertEquals(RUNNERS * 5, harness.counter("replayedRanks"));
+        race(bolt, 10, 15);
+        assertScores(30, 15, 0);
+
+        // Après un redémarrage, les tops du checkpoint restent appliqués
+        checkpoint(bolt);
+        StatefulComputeBonusBolt restarted = start();
+        race(restarted, 14, 30);
+        assertScores(60, 30, 0);
+        assertEquals(RUNNERS, harness.counter("replayedRanks"));
+    }
+
+    public void testRestartRestoresScoresAndBlockSums() {
+        StatefulComputeBonusBolt bolt = start();
+        race(bolt, 0, 15);
+        assertScores(30, 15, 0);
+        race(bolt, 15, 20);
+        checkpoint(bolt);
+        // Checkpoints : 3 tortues puis l'état commun
+        assertEquals(RUNNERS, harness.counter("checkpointRunnersWritten"));
+        assertEquals(0, harness.counter("checkpointRunnersDeleted"));
+        assertEquals(RUNNERS + 1, harness.gauge("stateKeys"));
+
+        // Nouvelle tâche dans un nouveau worker : état relu depuis le dernier checkpoint
+        StatefulComputeBonusBolt restarted = start();
+        assertEquals(RUNNERS + 1, harness.gauge("stateKeys"));
+        race(restarted, 20, 30);
+        assertScores(60, 30, 0);
+    }
+
+    /**
+     * Tâche neuve, dans un nouveau worker (contexte et métriques neufs), sur l'état partagé
+     */
+    private StatefulComputeBonusBolt start() {
+        harness = new BoltHarness(Collections.singletonMap(Utils.DEFAULT_STREAM_ID,
+                new Fields("id", "top", "rang", "exaequo", "total", "maxcel", "timestamp", "trace")), true);
+        StatefulComputeBonusBolt bolt = new StatefulComputeBonusBolt();
+        bolt.prepare(new HashMap<>(), harness.context(), harness.collector());
+        bolt.initState(state);
+        return bolt;
+    }
+
+    /**
+     * Tops [from, to) : la tortue id a toujours le rang id + 1 sur RUNNERS
+     */
+    private void race(StatefulComputeBonusBolt bolt, int from, int to) {
+        for (int top = from; top < to; top++) {
+            for (int id = 0; id < RUNNERS; id++) {
+                bolt.execute(harness.tuple(Utils.DEFAULT_STREAM_ID, id, top, id + 1, false, RUNNERS, 100,
+                        1_700_000_000_000L + top, null));
+            }
+        }
+    }
+
+    private void checkpoint(StatefulComputeBonusBolt bolt) {
+        txid++;
+        bolt.prePrepare(txid);
+        state.prepareCommit(txid);
+        state.commit(txid);
+    }
+
+    /**
+     * Scores émis depuis le dernier appel, un par tortue dans l'ordre des ids
+     */
+    private void assertScores(int... expected) {
+        List<List<Object>> emissions = harness.emissions();
+        assertEquals(expected.length, emissions.size());
+        for (int id = 0; id < expected.length; id++) {
+            assertEquals(id, emissions.get(id).get(0));
+            assertEquals(expected[id], emissions.get(id).get(2));
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package stormTP.operator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.apache.storm.state.InMemoryKeyValueState;
+import org.apache.storm.state.KeyValueState;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.utils.Utils;
+
+/**
+ * Tests de la restauration des volets et de l'avancement des fenêtres : checkpoint (prePrepare),
+ * rollback, redémarrage (initState) et frames rejouées par le spout
+ */
+public class StatefulRankEvolutionBoltTest extends TestCase {
+
+    private static final long WINDOW_MS = RankEvolutionBoltTest.WINDOW_MS;
+    private static final long LATENESS_MS = RankEvolutionBoltTest.LATENESS_MS;
+    private static final long BASE = RankEvolutionBoltTest.BASE;
+    private static final int RUNNERS = 3;
+
+    private BoltHarness harness;
+    private KeyValueState<Integer, byte[]> state;
+    private long txid;
+    private List<String> expected;
+
+    @Override
+    protected void setUp() {
+        state = new InMemoryKeyValueState<>();
+        // Fenêtres d'une exécution sans incident
+        StatefulRankEvolutionBolt reference = start();
+        race(reference, 0, 150);
+        expected = windows();
+        assertEquals(RUNNERS * 4, expected.size());
+        state = new InMemoryKeyValueState<>();
+    }
+
+    public void testRollbackReplaysWindowsFromCheckpoint() {
+        StatefulRankEvolutionBolt bolt = start();
+        race(bolt, 0, 45);
+        List<String> emitted = windows();
+        checkpoint(bolt);
+        race(bolt, 45, 75);
+        List<String> afterCheckpoint = windows();
+        assertEquals(RUNNERS, afterCheckpoint.size());
+
+        // Frames postérieures au checkpoint appliquées de nouveau : mêmes fenêtres, réémises
+        bolt.preRollback();
+        state.rollback();
+        race(bolt, 45, 75);
+        assertEquals(afterCheckpoint, windows());
+        race(bolt, 75, 150);
+        emitted.addAll(afterCheckpoint);
+        emitted.addAll(windows());
+        assertEquals(expected, emitted);
+        assertEquals(0, harness.counter("replayedRanks"));
+    }
+
+    public void testRestartRestoresPanesAndPendingWindows() {
+        StatefulRankEvolutionBolt bolt = start();
+        race(bolt, 0, 50);
+        List<String> emitted = windows();
+        checkpoint(bolt);
+        assertEquals(RUNNERS, harness.counter("checkpointRunnersWritten"));
+
+        // Nouvelle tâche : la fenêtre [30 s, 60 s) ouverte au checkpoint est évaluée après restauration
+        StatefulRankEvolutionBolt restarted = start();
+        race(restarted, 50, 150);
+        emitted.addAll(windows());
+        assertEquals(expected, emitted);
+    }
+
+    public void testReplayedFramesCountOnce() {
+        StatefulRankEvolutionBolt bolt = start();
+        race(bolt, 0, 40);
+        // Frames de la fenêtre ouverte rejouées sans rollback
+        race(bolt, 35, 40);
+        assertEquals(RUNNERS * 5, harness.counter("replayedRanks"));
+        race(bolt, 40, 150);
+        assertEquals(expected, windows());
+    }
+
+    /**
+     * Tâche neuve, dans un nouveau worker (contexte et métriques neufs), sur l'état partagé ;
+     * fenêtres évaluées à chaque tuple
+     */
+    private StatefulRankEvolutionBolt start() {
+        harness = new BoltHarness(Collections.singletonMap(Utils.DEFAULT_STREAM_ID,
+                new Fields("id", "top", "rang", "exaequo", "total", "maxcel", "timestamp", "trace")), true);
+        StatefulRankEvolutionBolt bolt = new StatefulRankEvolutionBolt(WINDOW_MS, LATENESS_MS, 0);
+        bolt.prepare(new HashMap<>(), harness.context(), harness.collector());
+        bolt.initState(state);
+        return bolt;
+    }
+
+    /**
+     * Frames des secondes [from, to) (top = seconde) : RUNNERS tortues dont les rangs tournent
+     */
+    private void race(StatefulRankEvolutionBolt bolt, int from, int to) {
+        for (int second = from; second < to; second++) {
+            for (int id = 0; id < RUNNERS; id++) {
+                bolt.execute(harness.tuple(Utils.DEFAULT_STREAM_ID, id, second, 1 + (second / 7 + id) % RUNNERS,
+                        false, RUNNERS, 100, BASE + second * 1000L, null));
+            }
+        }
+    }
+
+    private void checkpoint(StatefulRankEvolutionBolt bolt) {
+        txid++;
+        bolt.prePrepare(txid);
+        state.prepareCommit(txid);
+        state.commit(txid);
+    }
+
+    /**
+     * Fenêtres émises depuis le dernier appel
+     */
+    private List<String> windows() {
+        return new ArrayList<>(RankEvolutionBoltTest.windows(harness.emissions(Utils.DEFAULT_STREAM_ID)));
+    }
+}
@@ -0,0 +1,124 @@
+package stormTP.operator;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import junit.framework.TestCase;
+import org.apache.storm.state.InMemoryKeyValueState;
+import org.apache.storm.state.KeyValueState;
+import org.apache.storm.tuple.Fields;
+import org.apache.storm.utils.Utils;
+
+/**
+ * Tests de la restauration des fenêtres de vitesse : checkpoint (prePrepare), rollback,
+ * redémarrage (initState) et frames rejouées par le spout
+ */
+public class StatefulSpeedBoltTest extends TestCase {
+
+    private static final int RUNNERS = 2;
+
+    private BoltHarness harness;
+    private KeyValueState<Integer, byte[]> state;
+    private long txid;
+
+    @Override
+    protected void setUp() {
+        state = new InMemoryKeyValueState<>();
+    }
+
+    public void testRollbackReplaysFramesFromCheckpoint() {
+        StatefulSpeedBolt bolt = start();
+        race(bolt, 0, 8);
+        assertSpeeds("0-4");
+        checkpoint(bolt);
+        race(bolt, 8, 10);
+        assertSpeeds("0-9");
+
+        // Frames postérieures au checkpoint appliquées de nouveau, sorties réémises
+        bolt.preRollback();
+        state.rollback();
+        race(bolt, 8, 10);
+        assertSpeeds("0-9");
+        race(bolt, 10, 15);
+        assertSpeeds("5-14");
+        assertEquals(0, harness.counter("replayedSnapshots"));
+    }
+
+    public void testReplayedFramesAreIgnored() {
+        StatefulSpeedBolt bolt = start();
+        race(bolt, 0, 11);
+        assertSpeeds("0-4", "0-9");
+
+        // Frames en échec rejouées sans rollback : ni la fenêtre ni la cadence ne changent
+        race(bolt, 7, 11);
+        assertSpeeds();
+        assertEquals(RUNNERS * 4, harness.counter("replayedSnapshots"));
+        race(bolt, 11, 15);
+        assertSpeeds("5-14");
+    }
+
+    public void testRestartRestoresWindowsAndAppliedTops() {
+        StatefulSpeedBolt bolt = start();
+        race(bolt, 0, 13);
+        assertSpeeds("0-4", "0-9");
+        checkpoint(bolt);
+        assertEquals(RUNNERS, harness.counter("checkpointRunnersWritten"));
+
+        // Nouvelle tâche : la frame 12, déjà dans l'état, est ignorée
+        StatefulSpeedBolt restarted = start();
+        race(restarted, 12, 15);
+        assertSpeeds("5-14");
+        assertEquals(RUNNERS, harness.counter("replayedSnapshots"));
+    }
+
+    /**
+     * Tâche neuve, dans un nouveau worker (contexte et métriques neufs), sur l'état partagé
+     */
+    private StatefulSpeedBolt start() {
+        harness = new BoltHarness(Collections.singletonMap(Utils.DEFAULT_STREAM_ID, new Fields("json", "trace")), true);
+        StatefulSpeedBolt bolt = new StatefulSpeedBolt();
+        bolt.prepare(new HashMap<>(), harness.context(), harness.collector());
+        bolt.initState(state);
+        return bolt;
+    }
+
+    /**
+     * Frames des tops [from, to) : la tortue id avance de 3 * (id + 1) cellules par top
+     */
+    private void race(StatefulSpeedBolt bolt, int from, int to) {
+        for (int top = from; top < to; top++) {
+            StringBuilder json = new StringBuilder("{\"runners\":[");
+            for (int id = 0; id < RUNNERS; id++) {
+                if (id > 0) {
+                    json.append(',');
+                }
+                json.append("{\"id\":").append(id).append(",\"top\":").append(top).append(",\"tour\":0,\"cellule\":")
+                        .append(3 * (id + 1) * top).append(",\"total\":").append(RUNNERS).append(",\"maxcel\":100000}");
+            }
+            json.append("],\"timestamp\":").append(1_700_000_000_000L + top).append('}');
+            bolt.execute(harness.tuple(Utils.DEFAULT_STREAM_ID, json.toString(), null));
+        }
+    }
+
+    private void checkpoint(StatefulSpeedBolt bolt) {
+        txid++;
+        bolt.prePrepare(txid);
+        state.prepareCommit(txid);
+        state.commit(txid);
+    }
+
+    /**
+     * Vitesses émises depuis le dernier appel : une par tortue pour chaque fenêtre de tops
+     */
+    private void assertSpeeds(String... tops) {
+        List<List<Object>> emissions = harness.emissions();
+        assertEquals(tops.length * RUNNERS, emissions.size());
+        for (int i = 0; i < emissions.size(); i++) {
+            int id = i % RUNNERS;
+            assertEquals(id, emissions.get(i).get(0));
+            assertEquals(tops[i / RUNNERS], emissions.get(i).get(2));
+            assertEquals(3.0 * (id + 1), (Double) emissions.get(i).get(3), 1e-9);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package stormTP.state;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.storm.state.Serializer;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests de l'état clé-valeur projeté en mémoire : checkpoints, reprise et retour arrière
+ */
+public class MappedKeyValueStateTest extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("mapped-state").toFile();
+    }
+
+    @Override
+    protected void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private MappedKeyValueState<String, String> open(int segmentSize) {
+        return new MappedKeyValueState<>(dir, segmentSize, new StringSerializer(), new StringSerializer());
+    }
+
+    public void testCommittedStateSurvivesReopen() {
+        MappedKeyValueState<String, String> state = open(256);
+        for (int i = 0; i < 100; i++) {
+            state.put("k" + (i % 20), "v" + i);
+        }
+        state.delete("k3");
+        state.prepareCommit(1);
+        state.commit(1);
+
+        // Segments de 256 octets : le journal en occupe plusieurs
+        assertTrue(new File(dir, "segment-1.log").exists());
+
+        MappedKeyValueState<String, String> reopened = open(256);
+        assertEquals(1, reopened.committedTxid());
+        assertEquals(19, reopened.committedSize());
+        assertEquals("v99", reopened.get("k19"));
+        assertNull(reopened.get("k3"));
+        assertEquals("none", reopened.get("k3", "none"));
+    }
+
+    public void testUncommittedWritesAreDropped() {
+        MappedKeyValueState<String, String> state = open(4096);
+        state.put("a", "1");
+        state.commit(1);
+        state.put("a", "2");
+        state.put("b", "2");
+        assertEquals("2", state.get("a"));
+
+        state.rollback();
+        assertEquals("1", state.get("a"));
+        assertNull(state.get("b"));
+
+        state.put("c", "3");
+        state.prepareCommit(2);
+        state.rollback();
+        state.put("d", "4");
+        state.commit(2);
+
+        MappedKeyValueState<String, String> reopened = open(4096);
+        assertEquals("1", reopened.get("a"));
+        assertNull(reopened.get("c"));
+        assertEquals("4", reopened.get("d"));
+    }
+
+    public void testPreparedCheckpointCanBeCommittedAfterReopen() {
+        MappedKeyValueState<String, String> state = open(4096);
+        state.put("a", "1");
+        state.commit(1);
+        state.put("a", "2");
+        state.prepareCommit(2);
+
+        MappedKeyValueState<String, String> reopened = open(4096);
+        assertEquals(1, reopened.committedTxid());
+        assertEquals("2", reopened.get("a"));
+        reopened.commit(2);
+
+        assertEquals("2", open(4096).get("a"));
+    }
+
+    public void testIteratorMergesPendingPreparedAndCommitted() {
+        MappedKeyValueState<String, String> state = open(4096);
+        state.put("a", "1");
+        state.put("b", "1");
+        state.commit(1);
+        state.put("b", "2");
+        state.put("c", "2");
+        state.prepareCommit(2);
+        state.put("c", "3");
+        state.delete("a");
+
+        Map<String, String> seen = new HashMap<>();
+        for (Map.Entry<String, String> e : state) {
+            assertNull(seen.put(e.getKey(), e.getValue()));
+        }
+        Map<String, String> expected = new HashMap<>();
+        expected.put("b", "2");
+        expected.put("c", "3");
+        assertEquals(expected, seen);
+    }
+
+    public void testCompactionKeepsCommittedStateAcrossReopen() {
+        MappedKeyValueState<String, String> state = open(256, 512);
+        for (int txid = 1; txid <= 20; txid++) {
+            for (int i = 0; i < 10; i++) {
+                state.put("k" + i, "v" + txid);
+            }
+            state.commit(txid);
+        }
+        state.delete("k1");
+        state.commit(21);
+        assertTrue(state.compactions() > 0);
+        assertFalse(new File(dir, "segment-0.log").exists());
+        // Le journal reste de l'ordre des valeurs vivantes, pas de l'historique
+        assertTrue(segmentFiles() <= 8);
+
+        MappedKeyValueState<String, String> reopened = open(256, 512);
+        assertEquals(21, reopened.committedTxid());
+        assertEquals(9, reopened.committedSize());
+        assertEquals("v20", reopened.get("k0"));
+        assertNull(reopened.get("k1"));
+        assertEquals("v20", reopened.get("k9"));
+
+        // Les positions des valeurs compactées restent valides pour les écritures suivantes
+        reopened.put("k0", "w");
+        reopened.commit(22);
+        MappedKeyValueState<String, String> again = open(256, 512);
+        assertEquals(22, again.committedTxid());
+        assertEquals("w", again.get("k0"));
+        assertEquals("v20", again.get("k9"));
+    }
+
+    public void testInterruptedCompactionIsReplayed() throws Exception {
+        MappedKeyValueState<String, String> state = open(256);
+        for (int txid = 1; txid <= 10; txid++) {
+            for (int i = 0; i < 5; i++) {
+                state.put("k" + i, "v" + txid + "-" + i);
+            }
+            state.commit(txid);
+        }
+        state.delete("k4");
+        state.commit(11);
+        Map<String, byte[]> history = new HashMap<>();
+        for (File f : dir.listFiles()) {
+            history.put(f.getName(), Files.readAllBytes(f.toPath()));
+        }
+
+        MappedKeyValueState<String, String> compacting = open(256, 1);
+        compacting.put("k0", "x");
+        compacting.commit(12);
+        assertEquals(1, compacting.compactions());
+
+        // Arrêt pendant la suppression : seuls les plus anciens segments ont été supprimés
+        history.remove("segment-0.log");
+        for (Map.Entry<String, byte[]> e : history.entrySet()) {
+            Files.write(new File(dir, e.getKey()).toPath(), e.getValue());
+        }
+        MappedKeyValueState<String, String> reopened = open(256, 1);
+        assertEquals(12, reopened.committedTxid());
+        assertEquals(4, reopened.committedSize());
+        assertEquals("x", reopened.get("k0"));
+        assertEquals("v10-3", reopened.get("k3"));
+        assertNull(reopened.get("k4"));
+
+        // Le compactage suivant supprime les anciens segments restants
+        reopened.put("k1", "y");
+        reopened.commit(13);
+        assertEquals(1, reopened.compactions());
+        for (String name : history.keySet()) {
+            assertFalse(name, new File(dir, name).exists());
+        }
+        MappedKeyValueState<String, String> again = open(256);
+        assertEquals("y", again.get("k1"));
+        assertEquals("x", again.get("k0"));
+    }
+
+    private MappedKeyValueState<String, String> open(int segmentSize, long compactBytes) {
+        return new MappedKeyValueState<>(dir, segmentSize, compactBytes, new StringSerializer(), new StringSerializer());
+    }
+
+    private int segmentFiles() {
+        return dir.list((d, name) -> name.startsWith("segment-")).length;
+    }
+
+    private static class StringSerializer implements Serializer<String> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public byte[] serialize(String s) {
+            return s.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String deserialize(byte[] b) {
+            return new String(b, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package stormTP.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests des micro-lots : déclenchement à la taille et à l'échéance, enregistrements entiers
+ */
+public class BatchingSinkTest extends TestCase {
+
+    /**
+     * Cible qui garde chaque lot reçu
+     */
+    private static class Batches implements BatchingSink.Target {
+        final List<String> batches = new ArrayList<>();
+        final List<Integer> records = new ArrayList<>();
+        final List<int[]> tags = new ArrayList<>();
+
+        @Override
+        public void write(ByteBuffer[] buffers, int count, int n, int[] recordTags) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            for (int i = 0; i < count; i++) {
+                while (buffers[i].hasRemaining()) {
+                    bytes.write(buffers[i].get());
+                }
+            }
+            batches.add(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+            records.add(n);
+            tags.add(Arrays.copyOf(recordTags, n * BatchingSink.TAGS_PER_RECORD));
+        }
+    }
+
+    private static void append(BatchingSink sink, String record) throws IOException {
+        byte[] b = record.getBytes(StandardCharsets.UTF_8);
+        sink.append(b, 0, b.length);
+    }
+
+    public void testBatchIsWrittenAtSizeThreshold() throws IOException {
+        Batches target = new Batches();
+        BatchingSink sink = new BatchingSink(target, 100, 60000);
+        for (int i = 0; i < 30; i++) {
+            append(sink, "record-" + i + "\n");
+        }
+        // Lignes de 9 ou 10 octets : un lot part dès 100 octets
+        assertEquals(2, target.batches.size());
+        assertEquals(Integer.valueOf(11), target.records.get(0));
+        sink.flush();
+
+        StringBuilder all = new StringBuilder();
+        int records = 0;
+        for (int i = 0; i < target.batches.size(); i++) {
+            String batch = target.batches.get(i);
+            assertTrue(batch.endsWith("\n"));
+            all.append(batch);
+            records += target.records.get(i);
+        }
+        assertEquals(30, records);
+        assertTrue(all.toString().startsWith("record-0\nrecord-1\n"));
+        assertTrue(all.toString().endsWith("record-29\n"));
+        assertEquals(3, sink.batchSizes().getTotalCount());
+    }
+
+    public void testRecordsSpanChunks() throws IOException {
+        Batches target = new Batches();
+        BatchingSink sink = new BatchingSink(target, 20000, 60000);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            StringBuilder record = new StringBuilder();
+            for (int j = 0; j < 1500; j++) {
+                record.append((char) ('a' + (i + j) % 26));
+            }
+            record.append('\n');
+            expected.append(record);
+            sink.append(ByteBuffer.wrap(record.toString().getBytes(StandardCharsets.US_ASCII)));
+        }
+        sink.flush();
+        assertEquals(expected.toString(), String.join("", target.batches));
+    }
+
+    public void testLatencyDeadlineFlushesPartialBatch() throws Exception {
+        Batches target = new Batches();
+        BatchingSink sink = new BatchingSink(target, 1 << 14, 20);
+        append(sink, "first\n");
+        sink.flushIfDue(System.nanoTime());
+        assertTrue(target.batches.isEmpty());
+
+        Thread.sleep(25);
+        sink.flushIfDue(System.nanoTime());
+        assertEquals(1, target.batches.size());
+        assertTrue(sink.flushLatencies().getMaxValue() >= 20000);
+
+        // Sans lot : chaque enregistrement part aussitôt
+        BatchingSink direct = new BatchingSink(target, 1 << 14, 0);
+        append(direct, "a\n");
+        append(direct, "b\n");
+        assertEquals(3, target.batches.size());
+    }
+
+    public void testTagsDescribeEachRecord() throws IOException {
+        Batches target = new Batches();
+        BatchingSink sink = new BatchingSink(target, 1024, 60000);
+        byte[] a = "rank-1\n".getBytes(StandardCharsets.UTF_8);
+        byte[] b = "podium\n".getBytes(StandardCharsets.UTF_8);
+        sink.append(a, 0, a.length, Subscription.TYPE_RANK, 7, 1);
+        sink.append(b, 0, b.length, Subscription.TYPE_PODIUM, Subscription.UNTAGGED, Subscription.UNTAGGED);
+        append(sink, "raw\n");
+        sink.flush();
+
+        assertEquals(1, target.tags.size());
+        assertTrue(Arrays.equals(new int[] {
+                7, Subscription.TYPE_RANK, 7, 1,
+                7, Subscription.TYPE_PODIUM, Subscription.UNTAGGED, Subscription.UNTAGGED,
+                4, Subscription.TYPE_RAW, Subscription.UNTAGGED, Subscription.UNTAGGED}, target.tags.get(0)));
+    }
+
+    public void testBatchSizeFitsStreamEmiterBatch() {
+        new BatchingSink(new Batches(), BatchingSink.MAX_BATCH_BYTES, 10);
+        try {
+            new BatchingSink(new Batches(), BatchingSink.MAX_BATCH_BYTES + 1, 10);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // attendu : un lot de plus de 64 Ko serait perdu par le StreamEmiter
+        }
+    }
+
+    public void testOversizedRecordIsRejected() throws IOException {
+        BatchingSink sink = new BatchingSink(new Batches(), 16, 10);
+        try {
+            append(sink, "this record is too long\n");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // attendu
+        }
+    }
+}
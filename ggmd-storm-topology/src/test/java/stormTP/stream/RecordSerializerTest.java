@@ -0,0 +1,122 @@
+package stormTP.stream;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests des formats de sortie : mêmes lignes JSON que l'ancien String.format, CSV, binaire
+ */
+public class RecordSerializerTest extends TestCase {
+
+    private static String text(RecordBuffer out) {
+        return new String(out.array(), 0, out.length(), StandardCharsets.UTF_8);
+    }
+
+    private static void speed(RecordSerializer format, RecordBuffer out, int id, String tops, double vitesse) {
+        format.beginRecord(out);
+        format.field(out, "id", id);
+        format.field(out, "nom", "Turtle" + id);
+        format.field(out, "tops", tops);
+        format.field(out, "vitesse", vitesse, 2);
+        format.endRecord(out);
+    }
+
+    private static void podium(RecordSerializer format, RecordBuffer out) {
+        format.beginRecord(out);
+        format.field(out, "top", 12);
+        format.beginArray(out, "podium");
+        for (int i = 0; i < 3; i++) {
+            format.beginElement(out);
+            format.field(out, "id", i + 5);
+            format.field(out, "rang", 1, i < 2 ? "ex" : "");
+            format.endElement(out);
+        }
+        format.endArray(out);
+        format.field(out, "total", 10);
+        format.endRecord(out);
+    }
+
+    public void testJsonMatchesStringFormat() {
+        RecordSerializer json = new JsonSerializer();
+        RecordBuffer out = new RecordBuffer(8);
+        for (int i = 0; i < 1000; i++) {
+            double vitesse = (i * 37 % 1000) / 7.0 - 50;
+            out.clear();
+            speed(json, out, i, i + "-" + (i + 10), vitesse);
+            String expected = String.format(Locale.ROOT, "{\"id\":%d,\"nom\":\"%s\",\"tops\":\"%s\",\"vitesse\":%.2f}",
+                    i, "Turtle" + i, i + "-" + (i + 10), vitesse);
+            assertEquals(expected + "\n", text(out));
+        }
+    }
+
+    public void testJsonArraysAndEscaping() {
+        RecordSerializer json = new JsonSerializer();
+        RecordBuffer out = new RecordBuffer();
+        podium(json, out);
+        assertEquals("{\"top\":12,\"podium\":[{\"id\":5,\"rang\":\"1ex\"},{\"id\":6,\"rang\":\"1ex\"},"
+                + "{\"id\":7,\"rang\":\"1\"}],\"total\":10}\n", text(out));
+
+        out.clear();
+        json.beginRecord(out);
+        json.field(out, "nom", "Tortue \"é\\è\n");
+        json.field(out, "ok", true);
+        json.field(out, "t", Long.MIN_VALUE);
+        json.endRecord(out);
+        assertEquals("{\"nom\":\"Tortue \\\"é\\\\è\\u000a\",\"ok\":true,\"t\":-9223372036854775808}\n", text(out));
+    }
+
+    public void testCsv() {
+        RecordSerializer csv = new CsvSerializer();
+        RecordBuffer out = new RecordBuffer();
+        speed(csv, out, 3, "1-11", -0.004);
+        podium(csv, out);
+        csv.beginRecord(out);
+        csv.field(out, "nom", "a,\"b\"");
+        csv.endRecord(out);
+        assertEquals("3,Turtle3,1-11,0.00\n12,5:1ex;6:1ex;7:1,10\n\"a,\"\"b\"\"\"\n", text(out));
+    }
+
+    public void testBinaryRoundTrip() throws IOException {
+        RecordSerializer binary = new BinarySerializer();
+        RecordBuffer out = new RecordBuffer();
+        speed(binary, out, 42, "5-15", 1.5);
+        podium(binary, out);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.array(), 0, out.length()));
+        int length = in.readInt();
+        assertEquals(4 + (4 + 8) + (4 + 4) + 8, length);
+        assertEquals(42, in.readInt());
+        assertEquals("Turtle42", readText(in));
+        assertEquals("5-15", readText(in));
+        assertEquals(1.5, in.readDouble());
+
+        in.readInt();
+        assertEquals(12, in.readInt());
+        assertEquals(3, in.readInt());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i + 5, in.readInt());
+            assertEquals(1L, in.readLong());
+            assertEquals(i < 2 ? "ex" : "", readText(in));
+        }
+        assertEquals(10, in.readInt());
+        assertEquals(0, in.available());
+    }
+
+    public void testFixedPointRounding() {
+        RecordBuffer out = new RecordBuffer();
+        out.putFixed(2.005, 0).put((byte) ' ').putFixed(-1.25, 1).put((byte) ' ').putFixed(99.999, 2)
+                .put((byte) ' ').putFixed(7, 3);
+        assertEquals("2 -1.3 100.00 7.000", text(out));
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,127 @@
+package stormTP.stream;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests du journal en segments : rotation, relecture complète, seek par l'index, redémarrage
+ */
+public class SegmentLogTest extends TestCase {
+
+    private File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = Files.createTempDirectory("segment-log").toFile();
+    }
+
+    @Override
+    protected void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static void append(SegmentLog log, long top, String text) throws IOException {
+        byte[] b = text.getBytes(StandardCharsets.UTF_8);
+        log.append(top, b, 0, b.length);
+    }
+
+    private static String text(SegmentLogReader reader) {
+        ByteBuffer record = reader.record();
+        byte[] b = new byte[record.remaining()];
+        record.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 10 enregistrements par top, pour les tops 0 à 199
+     */
+    private void writeRace(int segmentSize) throws IOException {
+        try (SegmentLog log = new SegmentLog(dir, segmentSize)) {
+            for (int top = 0; top < 200; top++) {
+                for (int id = 0; id < 10; id++) {
+                    append(log, top, "{\"id\":" + id + ",\"top\":" + top + "}\n");
+                }
+                if (top % 50 == 0) {
+                    log.force();
+                }
+            }
+            assertEquals(2000, log.records());
+            assertTrue(log.segmentIndex() > 5);
+        }
+    }
+
+    public void testRecordsAreReadBackAcrossSegments() throws IOException {
+        writeRace(4096);
+        try (SegmentLogReader reader = new SegmentLogReader(dir)) {
+            for (int top = 0; top < 200; top++) {
+                for (int id = 0; id < 10; id++) {
+                    assertTrue(reader.next());
+                    assertEquals(top, reader.key());
+                    assertEquals("{\"id\":" + id + ",\"top\":" + top + "}\n", text(reader));
+                }
+            }
+            assertFalse(reader.next());
+        }
+    }
+
+    public void testSeekUsesIndexAndToleratesMissingIndex() throws IOException {
+        writeRace(4096);
+        try (SegmentLogReader reader = new SegmentLogReader(dir)) {
+            reader.seek(137);
+            assertTrue(reader.next());
+            assertEquals(137, reader.key());
+            assertEquals("{\"id\":0,\"top\":137}\n", text(reader));
+        }
+
+        // Sans index, la lecture repart d'un segment précédent et parcourt le journal
+        assertTrue(SegmentLog.indexFile(dir, 3).delete());
+        assertTrue(SegmentLog.indexFile(dir, 4).delete());
+        try (SegmentLogReader reader = new SegmentLogReader(dir)) {
+            for (long top : new long[] {0, 60, 95, 199}) {
+                reader.seek(top);
+                assertTrue(reader.next());
+                assertEquals(top, reader.key());
+                assertEquals("{\"id\":0,\"top\":" + top + "}\n", text(reader));
+            }
+            reader.seek(500);
+            assertFalse(reader.next());
+        }
+    }
+
+    public void testReopenStartsNewSegment() throws IOException {
+        try (SegmentLog log = new SegmentLog(dir, 1024)) {
+            append(log, 1, "a\n");
+        }
+        try (SegmentLog log = new SegmentLog(dir, 1024)) {
+            assertEquals(1, log.segmentIndex());
+            append(log, 2, "b\n");
+        }
+        try (SegmentLogReader reader = new SegmentLogReader(dir)) {
+            assertTrue(reader.next());
+            assertEquals("a\n", text(reader));
+            assertTrue(reader.next());
+            assertEquals(2, reader.key());
+            assertFalse(reader.next());
+        }
+    }
+
+    public void testOversizedRecordIsRejected() throws IOException {
+        try (SegmentLog log = new SegmentLog(dir, 64)) {
+            append(log, 0, "this record does not fit in a 64 bytes segment with its header\n");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // attendu
+        }
+    }
+}
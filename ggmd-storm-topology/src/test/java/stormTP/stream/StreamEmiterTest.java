@@ -0,0 +1,238 @@
+package stormTP.stream;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests du canal de sortie : send() sans blocage, plusieurs auditeurs, lignes entières
+ */
+public class StreamEmiterTest extends TestCase {
+
+    public void testQueueIsBoundedAndFifo() {
+        RecordQueue<Integer> queue = new RecordQueue<>(3);
+        assertEquals(4, queue.capacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(4));
+        assertEquals(Integer.valueOf(0), queue.poll());
+        assertTrue(queue.offer(4));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    public void testSendWithoutListenerDoesNotBlock() throws Exception {
+        StreamEmiter emiter = new StreamEmiter(0, 16);
+        emiter.open();
+        try {
+            for (int i = 0; i < 10000; i++) {
+                emiter.send("{\"id\":" + i + "}");
+            }
+        } finally {
+            emiter.close();
+        }
+    }
+
+    public void testEveryListenerReceivesAllLines() throws Exception {
+        StreamEmiter emiter = new StreamEmiter(0);
+        emiter.open();
+        try (Socket first = new Socket("127.0.0.1", emiter.localPort());
+             Socket second = new Socket("127.0.0.1", emiter.localPort())) {
+            waitForSubscribers(emiter, 2);
+
+            int lines = 5000;
+            for (int i = 0; i < lines; i++) {
+                assertTrue(emiter.send("{\"id\":" + i + ",\"top\":" + (i * 7) + "}"));
+            }
+            for (Socket socket : new Socket[] {first, second}) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                for (int i = 0; i < lines; i++) {
+                    assertEquals("{\"id\":" + i + ",\"top\":" + (i * 7) + "}", in.readLine());
+                }
+            }
+            assertEquals(0, emiter.dropped());
+        } finally {
+            emiter.close();
+        }
+    }
+
+    public void testSinkBatchesArriveAsLines() throws Exception {
+        StreamEmiter emiter = new StreamEmiter(0);
+        emiter.open();
+        try (Socket socket = new Socket("127.0.0.1", emiter.localPort())) {
+            waitForSubscribers(emiter, 1);
+            BatchingSink sink = new BatchingSink(emiter, 1024, 1000);
+            for (int i = 0; i < 1000; i++) {
+                byte[] line = ("{\"id\":" + i + "}\n").getBytes(StandardCharsets.UTF_8);
+                sink.append(line, 0, line.length);
+            }
+            sink.flush();
+            assertTrue(sink.batchSizes().getTotalCount() < 100);
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            for (int i = 0; i < 1000; i++) {
+                assertEquals("{\"id\":" + i + "}", in.readLine());
+            }
+        } finally {
+            emiter.close();
+        }
+    }
+
+    public void testLargestSinkBatchIsDelivered() throws Exception {
+        StreamEmiter emiter = new StreamEmiter(0);
+        emiter.open();
+        try (Socket socket = new Socket("127.0.0.1", emiter.localPort())) {
+            waitForSubscribers(emiter, 1);
+            // Un lot juste sous le seuil, complété par un enregistrement de taille maximale
+            BatchingSink sink = new BatchingSink(emiter, BatchingSink.MAX_BATCH_BYTES, 60000);
+            byte[] first = line('a', BatchingSink.MAX_BATCH_BYTES - 1);
+            byte[] second = line('b', BatchingSink.MAX_BATCH_BYTES);
+            sink.append(first, 0, first.length);
+            sink.append(second, 0, second.length);
+            assertEquals(1, sink.batchSizes().getTotalCount());
+
+            BufferedReader in = reader(socket);
+            assertEquals(new String(first, 0, first.length - 1, StandardCharsets.US_ASCII), in.readLine());
+            assertEquals(new String(second, 0, second.length - 1, StandardCharsets.US_ASCII), in.readLine());
+            assertEquals(0, emiter.dropped());
+        } finally {
+            emiter.close();
+        }
+    }
+
+    public void testSubscribersOnlyReceiveMatchingRecords() throws Exception {
+        StreamEmiter emiter = new StreamEmiter(0);
+        emiter.open();
+        try (Socket all = new Socket("127.0.0.1", emiter.localPort());
+             Socket runner = new Socket("127.0.0.1", emiter.localPort());
+             Socket leaders = new Socket("127.0.0.1", emiter.localPort())) {
+            waitForSubscribers(emiter, 3);
+            subscribe(runner, "subscribe ids=3,8");
+            subscribe(leaders, "subscribe rank<=2 types=rank");
+            // L'abonnement est lu par le thread d'envoi avant les enregistrements suivants
+            Thread.sleep(200);
+
+            BatchingSink sink = new BatchingSink(emiter, 4096, 1000);
+            int records = 0;
+            for (int top = 0; top < 100; top++) {
+                for (int id = 0; id < 10; id++) {
+                    byte[] line = ("rank " + top + " " + id + "\n").getBytes(StandardCharsets.UTF_8);
+                    sink.append(line, 0, line.length, Subscription.TYPE_RANK, id, id + 1);
+                    records++;
+                }
+                byte[] podium = ("podium " + top + "\n").getBytes(StandardCharsets.UTF_8);
+                sink.append(podium, 0, podium.length, Subscription.TYPE_PODIUM, Subscription.UNTAGGED, Subscription.UNTAGGED);
+                records++;
+            }
+            sink.flush();
+            emiter.send("end");
+
+            BufferedReader in = reader(all);
+            for (int i = 0; i < records; i++) {
+                assertNotNull(in.readLine());
+            }
+            assertEquals("end", in.readLine());
+
+            in = reader(runner);
+            for (int top = 0; top < 100; top++) {
+                assertEquals("rank " + top + " 3", in.readLine());
+                assertEquals("rank " + top + " 8", in.readLine());
+                assertEquals("podium " + top, in.readLine());
+            }
+            assertEquals("end", in.readLine());
+
+            in = reader(leaders);
+            for (int top = 0; top < 100; top++) {
+                assertEquals("rank " + top + " 0", in.readLine());
+                assertEquals("rank " + top + " 1", in.readLine());
+            }
+            assertEquals(0, emiter.dropped());
+        } finally {
+            emiter.close();
+        }
+    }
+
+    public void testClosedListenerIsDropped() throws Exception {
+        StreamEmiter emiter = new StreamEmiter(0);
+        emiter.open();
+        try {
+            Socket socket = new Socket("127.0.0.1", emiter.localPort());
+            waitForSubscribers(emiter, 1);
+            socket.close();
+            waitForSubscribers(emiter, 0);
+            assertTrue(emiter.send("after"));
+        } finally {
+            emiter.close();
+        }
+    }
+
+    public void testResetListenersDoNotStopEmitter() throws Exception {
+        StreamEmiter emiter = new StreamEmiter(0);
+        emiter.open();
+        try {
+            // Connexions réinitialisées aussitôt ouvertes, parfois avant d'être acceptées
+            for (int i = 0; i < 50; i++) {
+                Socket reset = new Socket("127.0.0.1", emiter.localPort());
+                reset.setSoLinger(true, 0);
+                reset.close();
+            }
+            try (Socket socket = new Socket("127.0.0.1", emiter.localPort())) {
+                // Les connexions réinitialisées peuvent encore être comptées : renvoyer jusqu'à réception
+                socket.setSoTimeout(50);
+                BufferedReader in = reader(socket);
+                long deadline = System.currentTimeMillis() + 5000;
+                String line = null;
+                while (line == null) {
+                    assertTrue("Emitter stopped sending", System.currentTimeMillis() < deadline);
+                    assertTrue(emiter.send("still open"));
+                    try {
+                        line = in.readLine();
+                    } catch (SocketTimeoutException e) {
+                        // Pas encore accepté
+                    }
+                }
+                assertEquals("still open", line);
+            }
+            waitForSubscribers(emiter, 0);
+        } finally {
+            emiter.close();
+        }
+    }
+
+    private static void subscribe(Socket socket, String line) throws IOException {
+        socket.getOutputStream().write((line + "\n").getBytes(StandardCharsets.US_ASCII));
+        socket.getOutputStream().flush();
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    private static void waitForSubscribers(StreamEmiter emiter, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (emiter.subscribers() != count) {
+            assertTrue("Expected " + count + " listeners", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Ligne de length octets, fin de ligne comprise
+     */
+    private static byte[] line(char c, int length) {
+        byte[] line = new byte[length];
+        Arrays.fill(line, (byte) c);
+        line[length - 1] = '\n';
+        return line;
+    }
+}
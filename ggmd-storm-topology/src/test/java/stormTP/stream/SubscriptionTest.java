@@ -0,0 +1,41 @@
+package stormTP.stream;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests des abonnements : lecture de la ligne et filtre
+ */
+public class SubscriptionTest extends TestCase {
+
+    public void testEmptySubscriptionMatchesEverything() {
+        Subscription all = Subscription.parse("subscribe");
+        assertTrue(all.isAll());
+        assertTrue(all.matches(Subscription.TYPE_PODIUM, Subscription.UNTAGGED, Subscription.UNTAGGED));
+        assertTrue(all.matches(Subscription.TYPE_RANK, 12, 40));
+    }
+
+    public void testCriteriaAreCombined() {
+        Subscription s = Subscription.parse("  subscribe ids=5,2,5 rank<=3 types=rank,podium ");
+        assertFalse(s.isAll());
+        assertEquals(2, s.ids().length);
+        assertEquals(2, s.ids()[0]);
+        assertTrue(s.matches(Subscription.TYPE_RANK, 5, 3));
+        assertFalse(s.matches(Subscription.TYPE_RANK, 5, 4));
+        assertFalse(s.matches(Subscription.TYPE_RANK, 3, 1));
+        assertFalse(s.matches(Subscription.TYPE_BONUS, 2, 1));
+        // Un podium n'a ni id ni rang : seul son type compte
+        assertTrue(s.matches(Subscription.TYPE_PODIUM, Subscription.UNTAGGED, Subscription.UNTAGGED));
+    }
+
+    public void testInvalidLinesAreRejected() {
+        String[] lines = {"hello", "subscribe ids=a", "subscribe rank<=0", "subscribe types=laps", "subscribe top=3"};
+        for (String line : lines) {
+            try {
+                Subscription.parse(line);
+                fail(line);
+            } catch (IllegalArgumentException e) {
+                // attendu
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package stormTP.topology;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import org.apache.storm.Config;
+import org.apache.storm.metrics2.reporters.CsvStormReporter;
+
+/**
+ * Tests de la configuration du rapporteur de métriques à partir des options -c
+ */
+public class MetricsReportersTest extends TestCase {
+
+    public void testNoReporterByDefault() {
+        Config config = new Config();
+        MetricsReporters.configure(config, new HashMap<>());
+        assertFalse(config.containsKey(Config.TOPOLOGY_METRICS_REPORTERS));
+    }
+
+    @SuppressWarnings("unchecked")
+    public void testCsvReporterWithPeriodDirectoryAndFilter() {
+        Map<String, Object> options = new HashMap<>();
+        options.put(MetricsReporters.REPORTER, "csv");
+        options.put(MetricsReporters.PERIOD, "5");
+        options.put(MetricsReporters.DIR, "/tmp/run1");
+        options.put(MetricsReporters.FILTER, ".*tuples.*");
+        Config config = new Config();
+        MetricsReporters.configure(config, options);
+
+        List<Map<String, Object>> reporters = (List<Map<String, Object>>) config.get(Config.TOPOLOGY_METRICS_REPORTERS);
+        assertEquals(1, reporters.size());
+        Map<String, Object> reporter = reporters.get(0);
+        assertEquals(CsvStormReporter.class.getName(), reporter.get("class"));
+        assertEquals(5L, reporter.get("report.period"));
+        assertEquals("SECONDS", reporter.get("report.period.units"));
+        assertEquals("/tmp/run1", reporter.get(CsvStormReporter.CSV_LOG_DIR));
+        assertEquals(".*tuples.*", ((Map<String, Object>) reporter.get("filter")).get("expression"));
+    }
+
+    public void testUnknownReporterIsRejected() {
+        Map<String, Object> options = new HashMap<>();
+        options.put(MetricsReporters.REPORTER, "graphite");
+        try {
+            MetricsReporters.configure(new Config(), options);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}